@@ -22,6 +22,7 @@ import nxt.AccountLedger.LedgerHolding;
 import nxt.crypto.Crypto;
 import nxt.crypto.EncryptedData;
 import nxt.db.DbClause;
+import nxt.db.DbCursor;
 import nxt.db.DbIterator;
 import nxt.db.DbKey;
 import nxt.db.DbUtils;
@@ -39,9 +40,12 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -829,6 +833,31 @@ public final class Account {
         return account;
     }
 
+    /**
+     * Load accounts and their public keys into the cache of the current database transaction
+     *
+     * Each table is read with a single query, so that subsequent account lookups within the
+     * transaction do not need to access the database
+     *
+     * @param   accountIds          Account identifiers
+     */
+    static void preloadAccounts(Collection<Long> accountIds) {
+        if (accountIds.isEmpty() || !Db.db.isInTransaction()) {
+            return;
+        }
+        long[] ids = accountIds.stream().mapToLong(Long::longValue).toArray();
+        try (DbIterator<Account> accounts = accountTable.getManyBy(new DbClause.LongsClause("id", ids), 0, -1)) {
+            while (accounts.hasNext()) {
+                accounts.next();
+            }
+        }
+        try (DbIterator<PublicKey> publicKeys = publicKeyTable.getManyBy(new DbClause.LongsClause("account_id", ids), 0, -1)) {
+            while (publicKeys.hasNext()) {
+                publicKeys.next();
+            }
+        }
+    }
+
     public static Account getAccount(long id, int height) {
         DbKey dbKey = accountDbKeyFactory.newKey(id);
         Account account = accountTable.get(dbKey, height);
@@ -859,7 +888,7 @@ public final class Account {
     }
 
     public static long getId(byte[] publicKey) {
-        byte[] publicKeyHash = Crypto.sha256().digest(publicKey);
+        byte[] publicKeyHash = Crypto.sha256(publicKey);
         return Convert.fullHashToId(publicKeyHash);
     }
 
@@ -937,6 +966,10 @@ public final class Account {
         return accountAssetTable.getManyBy(new DbClause.LongClause("asset_id", assetId), from, to, " ORDER BY quantity DESC, account_id ");
     }
 
+    public static DbIterator<AccountAsset> getAssetAccounts(long assetId, DbCursor cursor, int from, int to) {
+        return accountAssetTable.getManyBy(new DbClause.LongClause("asset_id", assetId), cursor, from, to, " ORDER BY quantity DESC, account_id ");
+    }
+
     public static DbIterator<AccountAsset> getAssetAccounts(long assetId, int height, int from, int to) {
         return accountAssetTable.getManyBy(new DbClause.LongClause("asset_id", assetId), height, from, to, " ORDER BY quantity DESC, account_id ");
     }
@@ -1232,6 +1265,109 @@ public final class Account {
         }
     }
 
+    /**
+     * Return the effective balances of a group of accounts
+     *
+     * The accounts, their public keys, their lessors and the guaranteed balances are each
+     * read with a single query for the whole group instead of several queries per account.
+     *
+     * @param   accountIds          Account identifiers
+     * @param   height              Blockchain height
+     * @return                      Effective balance in NXT by account identifier, accounts without one are not included
+     */
+    public static Map<Long, Long> getEffectiveBalancesNXT(Collection<Long> accountIds, int height) {
+        Map<Long, Long> effectiveBalances = new HashMap<>();
+        if (accountIds.isEmpty()) {
+            return effectiveBalances;
+        }
+        Nxt.getBlockchain().readLock();
+        try {
+            if (height < Constants.TRANSPARENT_FORGING_BLOCK_6) {
+                for (long accountId : accountIds) {
+                    Account account = getAccount(accountId, height);
+                    if (account != null) {
+                        effectiveBalances.put(accountId, Math.max(account.getEffectiveBalanceNXT(height), 0));
+                    }
+                }
+                return effectiveBalances;
+            }
+            long[] ids = accountIds.stream().mapToLong(Long::longValue).toArray();
+            Map<Long, Account> accounts = new HashMap<>();
+            try (DbIterator<Account> iterator = accountTable.getManyBy(new DbClause.LongsClause("id", ids), height, 0, -1)) {
+                iterator.forEach(account -> accounts.put(account.id, account));
+            }
+            //
+            // Accounts with the public key revealed less than 1440 blocks ago are not allowed to generate blocks
+            //
+            List<Long> forgerIds = new ArrayList<>();
+            try (DbIterator<PublicKey> iterator = publicKeyTable.getManyBy(new DbClause.LongsClause("account_id", ids), 0, -1)) {
+                iterator.forEach(publicKey -> {
+                    if (publicKey.publicKey != null && publicKey.height != 0 && height - publicKey.height > 1440) {
+                        forgerIds.add(publicKey.accountId);
+                    }
+                });
+            }
+            if (forgerIds.isEmpty()) {
+                return effectiveBalances;
+            }
+            Map<Long, List<Account>> lessors = new HashMap<>();
+            try (DbIterator<Account> iterator = accountTable.getManyBy(new DbClause.LongsClause("active_lessee_id",
+                    forgerIds.stream().mapToLong(Long::longValue).toArray()), height, 0, -1, " ORDER BY id ASC ")) {
+                iterator.forEach(lessor -> lessors.computeIfAbsent(lessor.activeLesseeId, id -> new ArrayList<>()).add(lessor));
+            }
+            Map<Long, Long> balances = new HashMap<>();
+            forgerIds.forEach(accountId -> {
+                Account account = accounts.get(accountId);
+                if (account == null || account.activeLesseeId == 0) {
+                    balances.put(accountId, account == null ? 0 : account.balanceNQT);
+                }
+            });
+            lessors.values().forEach(list -> list.forEach(lessor -> balances.put(lessor.id, lessor.balanceNQT)));
+            Map<Long, Long> guaranteedBalances = getGuaranteedBalancesNQT(balances, height);
+            for (long accountId : forgerIds) {
+                Account account = accounts.get(accountId);
+                long effectiveBalanceNQT = 0;
+                for (Account lessor : lessors.getOrDefault(accountId, Collections.emptyList())) {
+                    effectiveBalanceNQT += guaranteedBalances.get(lessor.id);
+                }
+                if (account == null || account.activeLesseeId == 0) {
+                    effectiveBalanceNQT += guaranteedBalances.get(accountId);
+                }
+                effectiveBalances.put(accountId, (height > Constants.SHUFFLING_BLOCK && effectiveBalanceNQT < Constants.MIN_FORGING_BALANCE_NQT) ?
+                        0 : effectiveBalanceNQT / Constants.ONE_NXT);
+            }
+            return effectiveBalances;
+        } finally {
+            Nxt.getBlockchain().readUnlock();
+        }
+    }
+
+    private static Map<Long, Long> getGuaranteedBalancesNQT(Map<Long, Long> balances, int currentHeight) {
+        int height = currentHeight - Constants.GUARANTEED_BALANCE_CONFIRMATIONS;
+        if (height + Constants.GUARANTEED_BALANCE_CONFIRMATIONS < Nxt.getBlockchainProcessor().getMinRollbackHeight()
+                || height > Nxt.getBlockchain().getHeight()) {
+            throw new IllegalArgumentException("Height " + height + " not available for guaranteed balance calculation");
+        }
+        Map<Long, Long> guaranteedBalances = new HashMap<>(balances);
+        try (Connection con = Db.db.getConnection();
+             PreparedStatement pstmt = con.prepareStatement("SELECT account_id, SUM (additions) AS additions "
+                     + "FROM account_guaranteed_balance, TABLE (id BIGINT=?) T WHERE account_id = T.id AND height > ? "
+                     + "AND height <= ? GROUP BY account_id")) {
+            pstmt.setObject(1, balances.keySet().toArray(new Long[0]));
+            pstmt.setInt(2, height);
+            pstmt.setInt(3, currentHeight);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    long accountId = rs.getLong("account_id");
+                    guaranteedBalances.put(accountId, Math.max(Math.subtractExact(balances.get(accountId), rs.getLong("additions")), 0));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        return guaranteedBalances;
+    }
+
     private long getLessorsGuaranteedBalanceNQT(int height) {
         List<Account> lessors = new ArrayList<>();
         try (DbIterator<Account> iterator = getLessors(height)) {
@@ -16,6 +16,7 @@
 
 package nxt;
 
+import nxt.db.DbCursor;
 import nxt.db.DbUtils;
 import nxt.db.DerivedDbTable;
 import nxt.util.Convert;
@@ -65,6 +66,9 @@ public class AccountLedger {
     /** Pending ledger entries */
     private static final List<LedgerEntry> pendingEntries = new ArrayList<>();
 
+    /** Ledger entry sort order */
+    private static final String LEDGER_SORT = " ORDER BY db_id DESC ";
+
     /*
       Process nxt.ledgerAccounts
      */
@@ -313,6 +317,27 @@ public class AccountLedger {
     public static List<LedgerEntry> getEntries(long accountId, LedgerEvent event, long eventId,
                                                 LedgerHolding holding, long holdingId,
                                                 int firstIndex, int lastIndex) {
+        return getEntries(accountId, event, eventId, holding, holdingId, null, firstIndex, lastIndex);
+    }
+
+    /**
+     * Return the ledger entries following a cursor position sorted in descending insert order
+     *
+     * The cursor for the next page is the ledger identifier of the last entry returned
+     *
+     * @param   accountId                   Account identifier or zero if no account identifier
+     * @param   event                       Ledger event or null
+     * @param   eventId                     Ledger event identifier or zero if no event identifier
+     * @param   holding                     Ledger holding or null
+     * @param   holdingId                   Ledger holding identifier or zero if no holding identifier
+     * @param   cursor                      Position of the last entry of the previous page or null
+     * @param   firstIndex                  First matching entry index following the cursor, inclusive
+     * @param   lastIndex                   Last matching entry index following the cursor, inclusive
+     * @return                              List of ledger entries
+     */
+    public static List<LedgerEntry> getEntries(long accountId, LedgerEvent event, long eventId,
+                                                LedgerHolding holding, long holdingId,
+                                                DbCursor cursor, int firstIndex, int lastIndex) {
         if (!ledgerEnabled) {
             return Collections.emptyList();
         }
@@ -321,7 +346,7 @@ public class AccountLedger {
         // Build the SELECT statement to search the entries
         StringBuilder sb = new StringBuilder(128);
         sb.append("SELECT * FROM account_ledger ");
-        if (accountId != 0 || event != null || holding != null) {
+        if (accountId != 0 || event != null || holding != null || cursor != null) {
             sb.append("WHERE ");
         }
         if (accountId != 0) {
@@ -343,7 +368,13 @@ public class AccountLedger {
             if (holdingId != 0)
                 sb.append("AND holding_id = ? ");
         }
-        sb.append("ORDER BY db_id DESC ");
+        if (cursor != null) {
+            if (accountId != 0 || event != null || holding != null) {
+                sb.append("AND ");
+            }
+            sb.append(cursor.getCondition(LEDGER_SORT));
+        }
+        sb.append(LEDGER_SORT);
         sb.append(DbUtils.limitsClause(firstIndex, lastIndex));
         //
         // Get the ledger entries
@@ -367,6 +398,9 @@ public class AccountLedger {
                     pstmt.setLong(++i, holdingId);
                 }
             }
+            if (cursor != null) {
+                i = cursor.setCondition(pstmt, ++i) - 1;
+            }
             DbUtils.setLimits(++i, pstmt, firstIndex, lastIndex);
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
@@ -65,4 +65,6 @@ public interface Block {
 
     JSONObject getJSONObject();
 
+    JSONObject getHeaderJSONObject();
+
 }
@@ -26,10 +26,8 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
@@ -198,16 +196,16 @@ final class BlockDb {
         }
     }
 
-    static Set<Long> getBlockGenerators(int startHeight) {
-        Set<Long> generators = new HashSet<>();
+    static Map<Long, Integer> getBlockGenerators(int startHeight) {
+        Map<Long, Integer> generators = new HashMap<>();
         try (Connection con = Db.db.getConnection();
                 PreparedStatement pstmt = con.prepareStatement(
-                        "SELECT generator_id, COUNT(generator_id) AS count FROM block WHERE height >= ? GROUP BY generator_id")) {
+                        "SELECT generator_id, COUNT(generator_id) AS count, MAX(height) AS height FROM block WHERE height >= ? GROUP BY generator_id")) {
             pstmt.setInt(1, startHeight);
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
                     if (rs.getInt("count") > 1) {
-                        generators.add(rs.getLong("generator_id"));
+                        generators.put(rs.getLong("generator_id"), rs.getInt("height"));
                     }
                 }
             }
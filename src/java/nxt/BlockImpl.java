@@ -26,11 +26,11 @@ import org.json.simple.JSONObject;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.IntFunction;
 
 final class BlockImpl implements Block {
 
@@ -45,6 +45,7 @@ final class BlockImpl implements Block {
     private final byte[] generationSignature;
     private final byte[] payloadHash;
     private volatile List<TransactionImpl> blockTransactions;
+    private int numberOfTransactions = -1;
 
     private byte[] blockSignature;
     private BigInteger cumulativeDifficulty = BigInteger.ZERO;
@@ -201,7 +202,7 @@ final class BlockImpl implements Block {
             if (blockSignature == null) {
                 throw new IllegalStateException("Block is not signed yet");
             }
-            byte[] hash = Crypto.sha256().digest(bytes());
+            byte[] hash = Crypto.sha256(bytes());
             BigInteger bigInteger = new BigInteger(1, new byte[] {hash[7], hash[6], hash[5], hash[4], hash[3], hash[2], hash[1], hash[0]});
             id = bigInteger.longValue();
             stringId = bigInteger.toString();
@@ -240,6 +241,21 @@ final class BlockImpl implements Block {
 
     @Override
     public JSONObject getJSONObject() {
+        JSONObject json = getHeaderFields();
+        JSONArray transactionsData = new JSONArray();
+        getTransactions().forEach(transaction -> transactionsData.add(transaction.getJSONObject()));
+        json.put("transactions", transactionsData);
+        return json;
+    }
+
+    @Override
+    public JSONObject getHeaderJSONObject() {
+        JSONObject json = getHeaderFields();
+        json.put("numberOfTransactions", getTransactions().size());
+        return json;
+    }
+
+    private JSONObject getHeaderFields() {
         JSONObject json = new JSONObject();
         json.put("version", version);
         json.put("timestamp", timestamp);
@@ -254,9 +270,6 @@ final class BlockImpl implements Block {
             json.put("previousBlockHash", Convert.toHexString(previousBlockHash));
         }
         json.put("blockSignature", Convert.toHexString(blockSignature));
-        JSONArray transactionsData = new JSONArray();
-        getTransactions().forEach(transaction -> transactionsData.add(transaction.getJSONObject()));
-        json.put("transactions", transactionsData);
         return json;
     }
 
@@ -289,6 +302,45 @@ final class BlockImpl implements Block {
         }
     }
 
+    /**
+     * Parse a block header returned by the getNextBlockHeaders peer request.  The header
+     * has no transactions and can't be pushed, but its identifier and signature are the
+     * same as for the full block.
+     *
+     * @param   headerData          Block header
+     * @return                      Block header
+     * @throws  NxtException.NotValidException  Invalid block header
+     */
+    static BlockImpl parseBlockHeader(JSONObject headerData) throws NxtException.NotValidException {
+        try {
+            int version = ((Long) headerData.get("version")).intValue();
+            int timestamp = ((Long) headerData.get("timestamp")).intValue();
+            long previousBlock = Convert.parseUnsignedLong((String) headerData.get("previousBlock"));
+            long totalAmountNQT = Convert.parseLong(headerData.get("totalAmountNQT"));
+            long totalFeeNQT = Convert.parseLong(headerData.get("totalFeeNQT"));
+            int payloadLength = ((Long) headerData.get("payloadLength")).intValue();
+            byte[] payloadHash = Convert.parseHexString((String) headerData.get("payloadHash"));
+            byte[] generatorPublicKey = Convert.parseHexString((String) headerData.get("generatorPublicKey"));
+            byte[] generationSignature = Convert.parseHexString((String) headerData.get("generationSignature"));
+            byte[] blockSignature = Convert.parseHexString((String) headerData.get("blockSignature"));
+            byte[] previousBlockHash = version == 1 ? null : Convert.parseHexString((String) headerData.get("previousBlockHash"));
+            int numberOfTransactions = ((Long) headerData.get("numberOfTransactions")).intValue();
+            if (numberOfTransactions < 0 || numberOfTransactions > Constants.MAX_NUMBER_OF_TRANSACTIONS) {
+                throw new NxtException.NotValidException("Invalid block transaction count " + numberOfTransactions);
+            }
+            BlockImpl block = new BlockImpl(version, timestamp, previousBlock, totalAmountNQT, totalFeeNQT, payloadLength, payloadHash, generatorPublicKey,
+                    generationSignature, blockSignature, previousBlockHash, null);
+            block.numberOfTransactions = numberOfTransactions;
+            if (!block.checkSignature()) {
+                throw new NxtException.NotValidException("Invalid block signature");
+            }
+            return block;
+        } catch (NxtException.NotValidException|RuntimeException e) {
+            Logger.logDebugMessage("Failed to parse block header: " + headerData.toJSONString());
+            throw e;
+        }
+    }
+
     @Override
     public byte[] getBytes() {
         return Arrays.copyOf(bytes(), bytes.length);
@@ -301,7 +353,7 @@ final class BlockImpl implements Block {
             buffer.putInt(version);
             buffer.putInt(timestamp);
             buffer.putLong(previousBlockId);
-            buffer.putInt(getTransactions().size());
+            buffer.putInt(numberOfTransactions >= 0 ? numberOfTransactions : getTransactions().size());
             if (version < 3) {
                 buffer.putInt((int) (totalAmountNQT / Constants.ONE_NXT));
                 buffer.putInt((int) (totalFeeNQT / Constants.ONE_NXT));
@@ -357,21 +409,19 @@ final class BlockImpl implements Block {
                 return false;
             }
 
-            MessageDigest digest = Crypto.sha256();
             byte[] generationSignatureHash;
             if (version == 1) {
-                generationSignatureHash = digest.digest(generationSignature);
+                generationSignatureHash = Crypto.sha256(generationSignature);
             } else {
-                digest.update(previousBlock.generationSignature);
-                generationSignatureHash = digest.digest(getGeneratorPublicKey());
+                generationSignatureHash = Crypto.sha256(previousBlock.generationSignature, getGeneratorPublicKey());
                 if (!Arrays.equals(generationSignature, generationSignatureHash)) {
                     return false;
                 }
             }
 
-            BigInteger hit = new BigInteger(1, new byte[]{generationSignatureHash[7], generationSignatureHash[6], generationSignatureHash[5], generationSignatureHash[4], generationSignatureHash[3], generationSignatureHash[2], generationSignatureHash[1], generationSignatureHash[0]});
+            long hit = GeneratorMath.getHit(generationSignatureHash);
 
-            return Generator.verifyHit(hit, BigInteger.valueOf(effectiveBalance), previousBlock, timestamp)
+            return Generator.verifyHit(hit, effectiveBalance, previousBlock, timestamp)
                     || (this.height < Constants.TRANSPARENT_FORGING_BLOCK_5 && Arrays.binarySearch(badBlocks, this.getId()) >= 0);
 
         } catch (RuntimeException e) {
@@ -445,7 +495,23 @@ final class BlockImpl implements Block {
         }
     }
 
+    /**
+     * Set the height, base target and cumulative difficulty of a block header which is not
+     * part of the blockchain yet
+     *
+     * @param   previousBlock       Previous block or block header
+     * @param   blockAtHeight       Returns the block or block header at the given height
+     */
+    void setPreviousHeader(BlockImpl previousBlock, IntFunction<BlockImpl> blockAtHeight) {
+        this.height = previousBlock.getHeight() + 1;
+        this.calculateBaseTarget(previousBlock, blockAtHeight);
+    }
+
     private void calculateBaseTarget(BlockImpl previousBlock) {
+        calculateBaseTarget(previousBlock, BlockDb::findBlockAtHeight);
+    }
+
+    private void calculateBaseTarget(BlockImpl previousBlock, IntFunction<BlockImpl> blockAtHeight) {
         long prevBaseTarget = previousBlock.baseTarget;
         if (previousBlock.getHeight() < Constants.SHUFFLING_BLOCK) {
             baseTarget = BigInteger.valueOf(prevBaseTarget)
@@ -468,7 +534,7 @@ final class BlockImpl implements Block {
                 baseTarget = twofoldCurBaseTarget;
             }
         } else if (previousBlock.getHeight() % 2 == 0) {
-            BlockImpl block = BlockDb.findBlockAtHeight(previousBlock.getHeight() - 2);
+            BlockImpl block = blockAtHeight.apply(previousBlock.getHeight() - 2);
             int blocktimeAverage = (this.timestamp - block.timestamp) / 3;
             if (blocktimeAverage > 60) {
                 baseTarget = (prevBaseTarget * Math.min(blocktimeAverage, Constants.MAX_BLOCKTIME_LIMIT)) / 60;
@@ -0,0 +1,206 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt;
+
+import nxt.util.Logger;
+import nxt.util.ThreadPool;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Pre-assembled transaction selection for the next block
+ *
+ * Selecting the unconfirmed transactions for a new block reads and validates the whole
+ * unconfirmed pool, which delays a forger once its hit time arrives.  When the node is
+ * forging, a background task keeps a template with the selection for the current last
+ * block.  The template is selected without the timestamp checks, which depend on the block
+ * timestamp, and is used only if all of its transactions are valid for the actual block
+ * timestamp.  Otherwise the transactions are selected when the block is generated, since
+ * dropping a transaction can make room for others that were not selected.
+ *
+ * New unconfirmed transactions are appended to the template as they arrive.  This gives
+ * the same selection as a rebuild as long as each new transaction is accepted, so the
+ * template is rebuilt if a new transaction is rejected, as are removed transactions and
+ * a new last block.
+ *
+ * The template is disabled by setting nxt.enableBlockTemplate to false, in which case the
+ * transactions are always selected when the block is generated.
+ */
+final class BlockTemplate {
+
+    /** Block template is enabled */
+    private static final boolean enabled = Nxt.getBooleanProperty("nxt.enableBlockTemplate");
+
+    /** Unconfirmed transactions added since the template was built */
+    private static final Queue<Long> pendingTransactions = new ConcurrentLinkedQueue<>();
+
+    /** Template must be rebuilt */
+    private static volatile boolean dirty = true;
+
+    /** Previous block identifier for the template */
+    private static long previousBlockId;
+
+    /** Selected transactions */
+    private static SortedSet<UnconfirmedTransaction> transactions;
+
+    /** Attachment duplicates for the selected transactions */
+    private static Map<TransactionType, Map<String, Integer>> duplicates;
+
+    /** Payload length of the selected transactions */
+    private static int payloadLength;
+
+    private BlockTemplate() {} // never
+
+    /**
+     * Register the listeners and schedule the task that maintains the template
+     */
+    static void init() {
+        if (!enabled) {
+            return;
+        }
+        TransactionProcessorImpl.getInstance().addListener(addedTransactions -> {
+            if (!dirty) {
+                addedTransactions.forEach(transaction -> pendingTransactions.add(transaction.getId()));
+            }
+        }, TransactionProcessor.Event.ADDED_UNCONFIRMED_TRANSACTIONS);
+        TransactionProcessorImpl.getInstance().addListener(removedTransactions -> dirty = true,
+                TransactionProcessor.Event.REMOVED_UNCONFIRMED_TRANSACTIONS);
+        BlockchainProcessorImpl.getInstance().addListener(block -> dirty = true, BlockchainProcessor.Event.BLOCK_PUSHED);
+        BlockchainProcessorImpl.getInstance().addListener(block -> dirty = true, BlockchainProcessor.Event.BLOCK_POPPED);
+        ThreadPool.scheduleThread("BlockTemplate", BlockTemplate::update, 1);
+    }
+
+    /**
+     * Return the transactions for a new block
+     *
+     * The caller must hold the blockchain update lock
+     *
+     * @param   previousBlock       Previous block
+     * @param   blockTimestamp      New block timestamp
+     * @return                      Selected transactions or null if there is no current template
+     *                              or the template is not valid for the block timestamp
+     */
+    static SortedSet<UnconfirmedTransaction> getTransactions(Block previousBlock, int blockTimestamp) {
+        if (!enabled) {
+            return null;
+        }
+        synchronized (BlockTemplate.class) {
+            if (dirty || transactions == null || previousBlockId != previousBlock.getId()) {
+                return null;
+            }
+            addPendingTransactions(previousBlock);
+            if (dirty) {
+                return null;
+            }
+            for (UnconfirmedTransaction unconfirmedTransaction : transactions) {
+                if (unconfirmedTransaction.getTimestamp() > blockTimestamp + Constants.MAX_TIMEDRIFT
+                        || unconfirmedTransaction.getExpiration() < blockTimestamp) {
+                    Logger.logDebugMessage("Block template not valid for timestamp " + blockTimestamp);
+                    return null;
+                }
+            }
+            SortedSet<UnconfirmedTransaction> result = new TreeSet<>(BlockchainProcessorImpl.transactionArrivalComparator);
+            result.addAll(transactions);
+            return result;
+        }
+    }
+
+    /**
+     * Build the template or add the pending transactions
+     */
+    private static void update() {
+        try {
+            if (Generator.getGeneratorCount() == 0 || BlockchainProcessorImpl.getInstance().isScanning()) {
+                return;
+            }
+            BlockchainImpl blockchain = BlockchainImpl.getInstance();
+            blockchain.readLock();
+            try {
+                synchronized (BlockTemplate.class) {
+                    Block previousBlock = blockchain.getLastBlock();
+                    if (dirty || transactions == null || previousBlockId != previousBlock.getId()) {
+                        build(previousBlock);
+                    } else {
+                        addPendingTransactions(previousBlock);
+                    }
+                }
+            } finally {
+                blockchain.readUnlock();
+            }
+        } catch (Exception e) {
+            Logger.logMessage("Error updating block template", e);
+        } catch (Throwable t) {
+            Logger.logErrorMessage("CRITICAL ERROR. PLEASE REPORT TO THE DEVELOPERS.\n" + t.toString(), t);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Select the transactions for the next block
+     *
+     * Transactions are selected without the timestamp checks, which are made when the block
+     * is generated.
+     *
+     * @param   previousBlock       Previous block
+     */
+    private static void build(Block previousBlock) {
+        BlockchainProcessorImpl blockchainProcessor = BlockchainProcessorImpl.getInstance();
+        dirty = false;
+        pendingTransactions.clear();
+        duplicates = blockchainProcessor.getPhasedTransactionDuplicates();
+        transactions = blockchainProcessor.selectUnconfirmedTransactions(duplicates, previousBlock, -1);
+        payloadLength = transactions.stream().mapToInt(transaction -> transaction.getTransaction().getFullSize()).sum();
+        previousBlockId = previousBlock.getId();
+        Logger.logDebugMessage("Block template built for block " + previousBlock.getStringId()
+                + " with " + transactions.size() + " transactions");
+    }
+
+    /**
+     * Add the unconfirmed transactions received since the template was built
+     *
+     * The template is marked for rebuild if a transaction is rejected, since a selection in
+     * priority order could have included it in place of a transaction already selected.
+     *
+     * @param   previousBlock       Previous block
+     */
+    private static void addPendingTransactions(Block previousBlock) {
+        BlockchainProcessorImpl blockchainProcessor = BlockchainProcessorImpl.getInstance();
+        Long transactionId;
+        while ((transactionId = pendingTransactions.poll()) != null) {
+            Transaction transaction = TransactionProcessorImpl.getInstance().getUnconfirmedTransaction(transactionId);
+            if (!(transaction instanceof UnconfirmedTransaction)) {
+                continue;
+            }
+            UnconfirmedTransaction unconfirmedTransaction = (UnconfirmedTransaction)transaction;
+            if (transactions.contains(unconfirmedTransaction)
+                    || !blockchainProcessor.hasAllReferencedTransactions(unconfirmedTransaction)) {
+                continue;
+            }
+            if (!blockchainProcessor.isSelectable(unconfirmedTransaction, duplicates, previousBlock, -1, payloadLength)) {
+                dirty = true;
+                pendingTransactions.clear();
+                return;
+            }
+            transactions.add(unconfirmedTransaction);
+            payloadLength += unconfirmedTransaction.getTransaction().getFullSize();
+        }
+    }
+}
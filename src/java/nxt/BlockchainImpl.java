@@ -16,6 +16,7 @@
 
 package nxt;
 
+import nxt.db.DbCursor;
 import nxt.db.DbIterator;
 import nxt.db.DbUtils;
 import nxt.util.Convert;
@@ -27,6 +28,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicReference;
 
 final class BlockchainImpl implements Blockchain {
@@ -39,17 +41,26 @@ final class BlockchainImpl implements Blockchain {
 
     private BlockchainImpl() {}
 
+    private static final String ACCOUNT_TRANSACTIONS_SORT = " ORDER BY block_timestamp DESC, transaction_index DESC ";
+
     private final ReadWriteUpdateLock lock = new ReadWriteUpdateLock();
     private final AtomicReference<BlockImpl> lastBlock = new AtomicReference<>();
 
+    /** Thread is doing work on behalf of a blockchain lock holder */
+    private final ThreadLocal<Boolean> lockDelegate = ThreadLocal.withInitial(() -> false);
+
     @Override
     public void readLock() {
-        lock.readLock().lock();
+        if (!lockDelegate.get()) {
+            lock.readLock().lock();
+        }
     }
 
     @Override
     public void readUnlock() {
-        lock.readLock().unlock();
+        if (!lockDelegate.get()) {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
@@ -70,6 +81,35 @@ final class BlockchainImpl implements Blockchain {
         lock.writeLock().unlock();
     }
 
+    boolean hasWriteLock() {
+        return lock.writeLock().hasLock();
+    }
+
+    /**
+     * Return a task that runs on behalf of the current thread, which must hold the read or write lock
+     *
+     * The lock holder must wait for the task to complete before releasing the lock.  The task
+     * does not obtain the read lock, which would otherwise wait for the write lock to be released,
+     * or for a queued writer when the lock holder only has the read lock.
+     *
+     * @param   task                Task to run
+     * @return                      Task that runs as a lock delegate
+     * @throws  IllegalStateException   The current thread does not hold the read or write lock
+     */
+    <T> Callable<T> asLockDelegate(Callable<T> task) {
+        if (!lock.readLock().hasLock() && !lock.writeLock().hasLock()) {
+            throw new IllegalStateException("Blockchain lock is not held by the current thread");
+        }
+        return () -> {
+            lockDelegate.set(true);
+            try {
+                return task.call();
+            } finally {
+                lockDelegate.set(false);
+            }
+        };
+    }
+
     @Override
     public BlockImpl getLastBlock() {
         return lastBlock.get();
@@ -392,6 +432,14 @@ final class BlockchainImpl implements Blockchain {
     public DbIterator<TransactionImpl> getTransactions(long accountId, int numberOfConfirmations, byte type, byte subtype,
                                                        int blockTimestamp, boolean withMessage, boolean phasedOnly, boolean nonPhasedOnly,
                                                        int from, int to, boolean includeExpiredPrunable, boolean executedOnly) {
+        return getTransactions(accountId, numberOfConfirmations, type, subtype, blockTimestamp, withMessage, phasedOnly, nonPhasedOnly,
+                null, from, to, includeExpiredPrunable, executedOnly);
+    }
+
+    @Override
+    public DbIterator<TransactionImpl> getTransactions(long accountId, int numberOfConfirmations, byte type, byte subtype,
+                                                       int blockTimestamp, boolean withMessage, boolean phasedOnly, boolean nonPhasedOnly,
+                                                       DbCursor cursor, int from, int to, boolean includeExpiredPrunable, boolean executedOnly) {
         if (phasedOnly && nonPhasedOnly) {
             throw new IllegalArgumentException("At least one of phasedOnly or nonPhasedOnly must be false");
         }
@@ -432,6 +480,9 @@ final class BlockchainImpl implements Blockchain {
             if (executedOnly && !nonPhasedOnly) {
                 buf.append("AND (phased = FALSE OR approved = TRUE) ");
             }
+            if (cursor != null) {
+                buf.append("AND ").append(cursor.getCondition(ACCOUNT_TRANSACTIONS_SORT));
+            }
             buf.append("UNION ALL SELECT transaction.* FROM transaction ");
             if (executedOnly && !nonPhasedOnly) {
                 buf.append(" LEFT JOIN phasing_poll_result ON transaction.id = phasing_poll_result.id ");
@@ -461,8 +512,11 @@ final class BlockchainImpl implements Blockchain {
             if (executedOnly && !nonPhasedOnly) {
                 buf.append("AND (phased = FALSE OR approved = TRUE) ");
             }
+            if (cursor != null) {
+                buf.append("AND ").append(cursor.getCondition(ACCOUNT_TRANSACTIONS_SORT));
+            }
 
-            buf.append("ORDER BY block_timestamp DESC, transaction_index DESC");
+            buf.append(ACCOUNT_TRANSACTIONS_SORT);
             buf.append(DbUtils.limitsClause(from, to));
             con = Db.db.getConnection();
             PreparedStatement pstmt;
@@ -488,6 +542,9 @@ final class BlockchainImpl implements Blockchain {
             if (withMessage) {
                 pstmt.setInt(++i, prunableExpiration);
             }
+            if (cursor != null) {
+                i = cursor.setCondition(pstmt, ++i) - 1;
+            }
             pstmt.setLong(++i, accountId);
             if (blockTimestamp > 0) {
                 pstmt.setInt(++i, blockTimestamp);
@@ -504,8 +561,11 @@ final class BlockchainImpl implements Blockchain {
             if (withMessage) {
                 pstmt.setInt(++i, prunableExpiration);
             }
+            if (cursor != null) {
+                i = cursor.setCondition(pstmt, ++i) - 1;
+            }
             DbUtils.setLimits(++i, pstmt, from, to);
-            return getTransactions(con, pstmt);
+            return new DbIterator<>(con, pstmt, TransactionDb::loadTransaction, ACCOUNT_TRANSACTIONS_SORT);
         } catch (SQLException e) {
             DbUtils.close(con);
             throw new RuntimeException(e.toString(), e);
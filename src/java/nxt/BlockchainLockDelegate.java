@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Internal hook to run tasks on other threads on behalf of the thread holding the blockchain lock
+ *
+ * This is used by requests that process their work in parallel while holding the read lock, and is
+ * not part of the public API.  A task can only be created by a thread that holds the read or write
+ * lock, and that thread must wait for all of its tasks with awaitAll() before releasing the lock.
+ */
+public final class BlockchainLockDelegate {
+
+    /**
+     * Return a task that runs on behalf of the current thread
+     *
+     * @param   task                Task to run
+     * @return                      Task that runs as a lock delegate
+     * @throws  IllegalStateException   The current thread does not hold the read or write lock
+     */
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        return BlockchainImpl.getInstance().asLockDelegate(task);
+    }
+
+    /**
+     * Wait for lock delegate tasks to complete, ignoring their results
+     *
+     * Interrupts are deferred until all tasks have completed, since a task must not run once the
+     * lock has been released.
+     *
+     * @param   futures             Lock delegate futures
+     */
+    public static void awaitAll(List<? extends Future<?>> futures) {
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private BlockchainLockDelegate() {} // never
+}
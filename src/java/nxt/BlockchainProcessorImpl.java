@@ -62,6 +62,8 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
 
 final class BlockchainProcessorImpl implements BlockchainProcessor {
 
@@ -207,11 +209,16 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
     private final BlockchainImpl blockchain = BlockchainImpl.getInstance();
 
     private final ExecutorService networkService = Executors.newCachedThreadPool();
+    private final int transactionValidationThreads = Nxt.getIntProperty("nxt.transactionValidationThreads") > 0 ?
+            Nxt.getIntProperty("nxt.transactionValidationThreads") : Runtime.getRuntime().availableProcessors();
+    private final ExecutorService validationService = transactionValidationThreads > 1 ?
+            Executors.newFixedThreadPool(transactionValidationThreads) : null;
     private final List<DerivedDbTable> derivedTables = new CopyOnWriteArrayList<>();
     private final boolean trimDerivedTables = Nxt.getBooleanProperty("nxt.trimDerivedTables");
     private final int defaultNumberOfForkConfirmations = Nxt.getIntProperty(Constants.isTestnet
             ? "nxt.testnetNumberOfForkConfirmations" : "nxt.numberOfForkConfirmations");
     private final boolean simulateEndlessDownload = Nxt.getBooleanProperty("nxt.simulateEndlessDownload");
+    private final boolean headersFirstDownload = Nxt.getBooleanProperty("nxt.headersFirstDownload");
 
     private int initialScanHeight;
     private volatile int lastTrimHeight;
@@ -344,6 +351,10 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
                     isDownloading = true;
                     return;
                 }
+                if (headersFirstDownload && peer.providesService(Peer.Service.BLOCK_HEADERS)
+                        && !downloadBlockHeaders(peer, (BlockImpl)commonBlock, betterCumulativeDifficulty)) {
+                    return;
+                }
                 if (!isDownloading && lastBlockchainFeederHeight - commonBlock.getHeight() > 10) {
                     Logger.logMessage("Blockchain download in progress");
                     isDownloading = true;
@@ -521,6 +532,79 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
             return blockList;
         }
 
+        /**
+         * Download and verify the headers of the blocks following the common block before
+         * downloading the block bodies.  This allows us to reject an invalid fork without
+         * downloading the full blocks.  The block identifiers, signatures, previous block hashes,
+         * generation signature chain and cumulative difficulty are verified.  The generator hit
+         * depends on account balances which are not available until the blocks are applied, so it
+         * is checked when the full blocks are pushed.
+         *
+         * @param   peer                    Peer supplying the block headers
+         * @param   commonBlock             Common block
+         * @param   betterCumulativeDifficulty  Cumulative difficulty reported by the peer
+         * @return                          TRUE if the block bodies should be downloaded
+         */
+        private boolean downloadBlockHeaders(Peer peer, BlockImpl commonBlock, BigInteger betterCumulativeDifficulty) {
+            int count = chainBlockIds.size() - 1;
+            JSONObject request = new JSONObject();
+            request.put("requestType", "getNextBlockHeaders");
+            request.put("blockId", Long.toUnsignedString(commonBlock.getId()));
+            request.put("limit", count);
+            JSONObject response = peer.send(JSON.prepareRequest(request), 10 * 1024 * 1024);
+            if (response == null) {
+                return false;
+            }
+            List<JSONObject> headerList = (List<JSONObject>)response.get("nextBlockHeaders");
+            if (headerList == null) {
+                return false;
+            }
+            if (headerList.size() > count) {
+                Logger.logDebugMessage("Obsolete or rogue peer " + peer.getHost() + " sends too many nextBlockHeaders, blacklisting");
+                peer.blacklist("Too many nextBlockHeaders");
+                return false;
+            }
+            if (headerList.size() < count) {
+                Logger.logDebugMessage("Peer " + peer.getHost() + " returned " + headerList.size() + " of " + count + " block headers");
+                return false;
+            }
+            List<BlockImpl> headers = new ArrayList<>(count);
+            IntFunction<BlockImpl> blockAtHeight = height -> height <= commonBlock.getHeight() ?
+                    BlockDb.findBlockAtHeight(height) : headers.get(height - commonBlock.getHeight() - 1);
+            BlockImpl previousBlock = commonBlock;
+            try {
+                for (int i = 0; i < count; i++) {
+                    BlockImpl header = BlockImpl.parseBlockHeader(headerList.get(i));
+                    if (header.getId() != chainBlockIds.get(i + 1)) {
+                        throw new NxtException.NotValidException("Block header " + header.getStringId() + " is not in the block list");
+                    }
+                    validateBlockHeader(header, previousBlock, blockAtHeight);
+                    headers.add(header);
+                    previousBlock = header;
+                }
+            } catch (NxtException.NotValidException e) {
+                Logger.logDebugMessage("Invalid block header from " + peer.getHost() + ": " + e.getMessage());
+                peer.blacklist(e);
+                return false;
+            }
+            //
+            // We have the peer's complete chain if it returned fewer block identifiers than
+            // the maximum, so the block headers must then account for the difficulty it reported
+            //
+            BigInteger cumulativeDifficulty = previousBlock.getCumulativeDifficulty();
+            if (chainBlockIds.size() < 720) {
+                if (cumulativeDifficulty.compareTo(betterCumulativeDifficulty) < 0) {
+                    Logger.logDebugMessage("Peer " + peer.getHost() + " reported cumulative difficulty " + betterCumulativeDifficulty
+                            + " but its block headers only add up to " + cumulativeDifficulty);
+                    return false;
+                }
+                if (cumulativeDifficulty.compareTo(blockchain.getLastBlock().getCumulativeDifficulty()) <= 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
         /**
          * Download the block chain
          *
@@ -540,7 +624,6 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
             for (int start = 0; start < stop; start += segSize) {
                 getList.add(new GetNextBlocks(chainBlockIds, start, Math.min(start + segSize, stop)));
             }
-            int nextPeerIndex = ThreadLocalRandom.current().nextInt(connectedPublicPeers.size());
             long maxResponseTime = 0;
             Peer slowestPeer = null;
             //
@@ -552,23 +635,27 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
             download: while (!getList.isEmpty()) {
                 //
                 // Submit threads to issue 'getNextBlocks' requests.  The first segment
-                // will always be sent to the feeder peer.  Subsequent segments will
-                // be sent to the feeder peer if we failed trying to download the blocks
-                // from another peer.  We will stop the download and process any pending
-                // blocks if we are unable to download a segment from the feeder peer.
+                // will always be sent to the feeder peer.  Subsequent segments are
+                // distributed among the connected peers in proportion to their quality
+                // score.  A failed segment is retried with the best peer other than the
+                // one that just failed, or with the feeder peer if there is no other peer.
+                // We will stop the download and process any pending blocks if we are
+                // unable to download a segment after the retry.
                 //
                 for (GetNextBlocks nextBlocks : getList) {
                     Peer peer;
                     if (nextBlocks.getRequestCount() > 1) {
                         break download;
                     }
-                    if (nextBlocks.getStart() == 0 || nextBlocks.getRequestCount() != 0) {
+                    if (nextBlocks.getStart() == 0) {
                         peer = feederPeer;
-                    } else {
-                        if (nextPeerIndex >= connectedPublicPeers.size()) {
-                            nextPeerIndex = 0;
+                    } else if (nextBlocks.getRequestCount() != 0) {
+                        peer = Peers.getBestQualityPeer(connectedPublicPeers, nextBlocks.getPeer());
+                        if (peer == null) {
+                            peer = feederPeer;
                         }
-                        peer = connectedPublicPeers.get(nextPeerIndex++);
+                    } else {
+                        peer = Peers.getQualityWeightedPeer(connectedPublicPeers);
                     }
                     if (nextBlocks.getPeer() == peer) {
                         break download;
@@ -591,7 +678,9 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
                         throw new RuntimeException(exc.getMessage(), exc);
                     }
                     if (blockList == null) {
-                        nextBlocks.getPeer().deactivate();
+                        if (!nextBlocks.isBusy()) {
+                            nextBlocks.getPeer().deactivate();
+                        }
                         continue;
                     }
                     Peer peer = nextBlocks.getPeer();
@@ -603,6 +692,7 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
                         blockMap.put(block.getId(), new PeerBlock(peer, block));
                         index++;
                     }
+                    peer.updateBlockStatistics(nextBlocks.getStop() - nextBlocks.getStart(), index - nextBlocks.getStart() - 1);
                     if (index > nextBlocks.getStop()) {
                         it.remove();
                     } else {
@@ -736,6 +826,9 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
         /** Time it took to return getNextBlocks */
         private long responseTime;
 
+        /** Peer did not accept the last request */
+        private boolean busy;
+
         /**
          * Create the callable future
          *
@@ -758,6 +851,7 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
         @Override
         public List<BlockImpl> call() {
             requestCount++;
+            busy = false;
             //
             // Build the block request list
             //
@@ -781,8 +875,10 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
             // index so no more blocks will be processed.
             //
             List<JSONObject> nextBlocks = (List<JSONObject>)response.get("nextBlocks");
-            if (nextBlocks == null)
+            if (nextBlocks == null) {
+                busy = Peers.isBusyResponse(response);
                 return null;
+            }
             if (nextBlocks.size() > 36) {
                 Logger.logDebugMessage("Obsolete or rogue peer " + peer.getHost() + " sends too many nextBlocks, blacklisting");
                 peer.blacklist("Too many nextBlocks");
@@ -867,6 +963,17 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
             return stop;
         }
 
+        /**
+         * Check if the peer did not accept the last request because it was busy or our
+         * request budget was exceeded.  The segment is retried with another peer without
+         * disconnecting this one.
+         *
+         * @return                      TRUE if the peer was busy
+         */
+        public boolean isBusy() {
+            return busy;
+        }
+
         /**
          * Return the request count
          *
@@ -1072,6 +1179,13 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
                 isTrimming = true;
                 networkService.submit(() -> {
                     trimDerivedTables();
+                    if (!isDownloading && StateSnapshot.isSnapshotHeight(block.getHeight())) {
+                        try {
+                            StateSnapshot.export();
+                        } catch (Exception e) {
+                            Logger.logErrorMessage("Unable to export state snapshot", e);
+                        }
+                    }
                     isTrimming = false;
                 });
             }
@@ -1171,6 +1285,10 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
         return derivedTables;
     }
 
+    int getLastTrimHeight() {
+        return lastTrimHeight;
+    }
+
     @Override
     public Peer getLastBlockchainFeeder() {
         return lastBlockchainFeeder;
@@ -1365,6 +1483,9 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
 
     void shutdown() {
         ThreadPool.shutdownExecutor("networkService", networkService, 5);
+        if (validationService != null) {
+            ThreadPool.shutdownExecutor("validationService", validationService, 5);
+        }
     }
 
     private void addBlock(BlockImpl block) {
@@ -1516,7 +1637,7 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
             throw new BlockNotAcceptedException("Block timestamp " + block.getTimestamp() + " is before previous block timestamp "
                     + previousLastBlock.getTimestamp(), block);
         }
-        if (block.getVersion() != 1 && !Arrays.equals(Crypto.sha256().digest(previousLastBlock.bytes()), block.getPreviousBlockHash())) {
+        if (block.getVersion() != 1 && !Arrays.equals(Crypto.sha256(previousLastBlock.bytes()), block.getPreviousBlockHash())) {
             throw new BlockNotAcceptedException("Previous block hash doesn't match", block);
         }
         if (block.getId() == 0L || BlockDb.hasBlock(block.getId(), previousLastBlock.getHeight())) {
@@ -1538,6 +1659,38 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
         }
     }
 
+    private void validateBlockHeader(BlockImpl header, BlockImpl previousBlock, IntFunction<BlockImpl> blockAtHeight)
+            throws NxtException.NotValidException {
+        if (previousBlock.getId() != header.getPreviousBlockId()) {
+            throw new NxtException.NotValidException("Previous block id doesn't match");
+        }
+        if (header.getVersion() != getBlockVersion(previousBlock.getHeight())) {
+            throw new NxtException.NotValidException("Invalid version " + header.getVersion());
+        }
+        if (header.getTimestamp() <= previousBlock.getTimestamp()) {
+            throw new NxtException.NotValidException("Block timestamp " + header.getTimestamp() + " is before previous block timestamp "
+                    + previousBlock.getTimestamp());
+        }
+        if (header.getVersion() != 1 && !Arrays.equals(Crypto.sha256(previousBlock.bytes()), header.getPreviousBlockHash())) {
+            throw new NxtException.NotValidException("Previous block hash doesn't match");
+        }
+        if (header.getVersion() == 1) {
+            if (!Crypto.verify(header.getGenerationSignature(), previousBlock.getGenerationSignature(), header.getGeneratorPublicKey(), false)) {
+                throw new NxtException.NotValidException("Generation signature verification failed");
+            }
+        } else {
+            MessageDigest digest = Crypto.sha256();
+            digest.update(previousBlock.getGenerationSignature());
+            if (!Arrays.equals(header.getGenerationSignature(), digest.digest(header.getGeneratorPublicKey()))) {
+                throw new NxtException.NotValidException("Generation signature chain doesn't match");
+            }
+        }
+        if (header.getPayloadLength() > Constants.MAX_PAYLOAD_LENGTH || header.getPayloadLength() < 0) {
+            throw new NxtException.NotValidException("Invalid block payload length " + header.getPayloadLength());
+        }
+        header.setPreviousHeader(previousBlock, blockAtHeight);
+    }
+
     private void validateTransactions(BlockImpl block, BlockImpl previousLastBlock, int curTime, Map<TransactionType, Map<String, Integer>> duplicates,
                                       boolean fullValidation) throws BlockNotAcceptedException {
         long payloadLength = 0;
@@ -1545,45 +1698,14 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
         long calculatedTotalFee = 0;
         MessageDigest digest = Crypto.sha256();
         boolean hasPrunedTransactions = false;
-        for (TransactionImpl transaction : block.getTransactions()) {
-            if (transaction.getTimestamp() > curTime + Constants.MAX_TIMEDRIFT) {
-                throw new BlockOutOfOrderException("Invalid transaction timestamp: " + transaction.getTimestamp()
-                        + ", current time is " + curTime, block);
-            }
-            if (!transaction.verifySignature()) {
-                throw new TransactionNotAcceptedException("Transaction signature verification failed at height " + previousLastBlock.getHeight(), transaction);
-            }
-            if (fullValidation) {
-                // cfb: Block 303 contains a transaction which expired before the block timestamp
-                if (transaction.getTimestamp() > block.getTimestamp() + Constants.MAX_TIMEDRIFT
-                        || (transaction.getExpiration() < block.getTimestamp() && previousLastBlock.getHeight() != 303)) {
-                    throw new TransactionNotAcceptedException("Invalid transaction timestamp " + transaction.getTimestamp()
-                            + ", current time is " + curTime + ", block timestamp is " + block.getTimestamp(), transaction);
-                }
-                if (TransactionDb.hasTransaction(transaction.getId(), previousLastBlock.getHeight())) {
-                    throw new TransactionNotAcceptedException("Transaction is already in the blockchain", transaction);
-                }
-                if (transaction.referencedTransactionFullHash() != null) {
-                    if ((previousLastBlock.getHeight() < Constants.REFERENCED_TRANSACTION_FULL_HASH_BLOCK
-                            && !TransactionDb.hasTransaction(Convert.fullHashToId(transaction.referencedTransactionFullHash()), previousLastBlock.getHeight()))
-                            || (previousLastBlock.getHeight() >= Constants.REFERENCED_TRANSACTION_FULL_HASH_BLOCK
-                            && !hasAllReferencedTransactions(transaction, transaction.getTimestamp(), 0))) {
-                        throw new TransactionNotAcceptedException("Missing or invalid referenced transaction "
-                                + transaction.getReferencedTransactionFullHash(), transaction);
-                    }
-                }
-                if (transaction.getVersion() != getTransactionVersion(previousLastBlock.getHeight())) {
-                    throw new TransactionNotAcceptedException("Invalid transaction version " + transaction.getVersion()
-                            + " at height " + previousLastBlock.getHeight(), transaction);
-                }
-                if (transaction.getId() == 0L) {
-                    throw new TransactionNotAcceptedException("Invalid transaction id 0", transaction);
-                }
-                try {
-                    transaction.validate();
-                } catch (NxtException.ValidationException e) {
-                    throw new TransactionNotAcceptedException(e.getMessage(), transaction);
-                }
+        TransactionImpl.checkSignatures(block.getTransactions());
+        BlockNotAcceptedException[] errors = checkTransactions(block, previousLastBlock, curTime, fullValidation);
+        for (int i = 0; i < block.getTransactions().size(); i++) {
+            TransactionImpl transaction = block.getTransactions().get(i);
+            if (errors == null) {
+                checkTransaction(transaction, block, previousLastBlock, curTime, fullValidation);
+            } else if (errors[i] != null) {
+                throw errors[i];
             }
             if (transaction.attachmentIsDuplicate(duplicates, true)) {
                 throw new TransactionNotAcceptedException("Transaction is a duplicate", transaction);
@@ -1613,10 +1735,138 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
         }
     }
 
+    /**
+     * Run the transaction checks that do not depend on the other transactions in the block
+     *
+     * The checks only read the database, which contains no uncommitted changes at this point,
+     * so the transactions are checked concurrently by the validation threads on behalf of the
+     * write lock holder.  The checks are skipped for the transactions that follow a failed
+     * transaction.
+     *
+     * @param   block               Block
+     * @param   previousLastBlock   Previous block
+     * @param   curTime             Current time
+     * @param   fullValidation      TRUE to fully validate the transactions
+     * @return                      Check results in transaction order or null if the transactions are to be checked sequentially
+     */
+    private BlockNotAcceptedException[] checkTransactions(BlockImpl block, BlockImpl previousLastBlock, int curTime, boolean fullValidation) {
+        List<TransactionImpl> transactions = block.getTransactions();
+        if (validationService == null || transactions.size() < 2 || !blockchain.hasWriteLock()) {
+            return null;
+        }
+        BlockNotAcceptedException[] errors = new BlockNotAcceptedException[transactions.size()];
+        AtomicInteger firstError = new AtomicInteger(transactions.size());
+        int threads = Math.min(transactionValidationThreads, transactions.size());
+        List<Future<?>> futures = new ArrayList<>(threads);
+        for (int thread = 0; thread < threads; thread++) {
+            int first = thread;
+            futures.add(validationService.submit(blockchain.asLockDelegate(() -> {
+                for (int i = first; i < transactions.size() && i < firstError.get(); i += threads) {
+                    try {
+                        checkTransaction(transactions.get(i), block, previousLastBlock, curTime, fullValidation);
+                    } catch (BlockNotAcceptedException e) {
+                        errors[i] = e;
+                        firstError.accumulateAndGet(i, Math::min);
+                    }
+                }
+                return null;
+            })));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            firstError.set(0);
+            BlockchainLockDelegate.awaitAll(futures);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e.toString(), e);
+        } catch (ExecutionException e) {
+            firstError.set(0);
+            BlockchainLockDelegate.awaitAll(futures);
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new RuntimeException(e.getCause().toString(), e.getCause());
+        }
+        return errors;
+    }
+
+    private void checkTransaction(TransactionImpl transaction, BlockImpl block, BlockImpl previousLastBlock, int curTime,
+                                  boolean fullValidation) throws BlockNotAcceptedException {
+        if (transaction.getTimestamp() > curTime + Constants.MAX_TIMEDRIFT) {
+            throw new BlockOutOfOrderException("Invalid transaction timestamp: " + transaction.getTimestamp()
+                    + ", current time is " + curTime, block);
+        }
+        if (!transaction.verifySignature()) {
+            throw new TransactionNotAcceptedException("Transaction signature verification failed at height " + previousLastBlock.getHeight(), transaction);
+        }
+        if (fullValidation) {
+            // cfb: Block 303 contains a transaction which expired before the block timestamp
+            if (transaction.getTimestamp() > block.getTimestamp() + Constants.MAX_TIMEDRIFT
+                    || (transaction.getExpiration() < block.getTimestamp() && previousLastBlock.getHeight() != 303)) {
+                throw new TransactionNotAcceptedException("Invalid transaction timestamp " + transaction.getTimestamp()
+                        + ", current time is " + curTime + ", block timestamp is " + block.getTimestamp(), transaction);
+            }
+            if (TransactionDb.hasTransaction(transaction.getId(), previousLastBlock.getHeight())) {
+                throw new TransactionNotAcceptedException("Transaction is already in the blockchain", transaction);
+            }
+            if (transaction.referencedTransactionFullHash() != null) {
+                if ((previousLastBlock.getHeight() < Constants.REFERENCED_TRANSACTION_FULL_HASH_BLOCK
+                        && !TransactionDb.hasTransaction(Convert.fullHashToId(transaction.referencedTransactionFullHash()), previousLastBlock.getHeight()))
+                        || (previousLastBlock.getHeight() >= Constants.REFERENCED_TRANSACTION_FULL_HASH_BLOCK
+                        && !hasAllReferencedTransactions(transaction, transaction.getTimestamp(), 0))) {
+                    throw new TransactionNotAcceptedException("Missing or invalid referenced transaction "
+                            + transaction.getReferencedTransactionFullHash(), transaction);
+                }
+            }
+            if (transaction.getVersion() != getTransactionVersion(previousLastBlock.getHeight())) {
+                throw new TransactionNotAcceptedException("Invalid transaction version " + transaction.getVersion()
+                        + " at height " + previousLastBlock.getHeight(), transaction);
+            }
+            if (transaction.getId() == 0L) {
+                throw new TransactionNotAcceptedException("Invalid transaction id 0", transaction);
+            }
+            try {
+                transaction.validate();
+            } catch (NxtException.ValidationException e) {
+                throw new TransactionNotAcceptedException(e.getMessage(), transaction);
+            }
+        }
+    }
+
+    /**
+     * Load the accounts that are updated when the block is applied
+     *
+     * @param   block               Block
+     * @param   validPhasedTransactions Phased transactions that are released by the block
+     */
+    private void preloadAccounts(BlockImpl block, List<TransactionImpl> validPhasedTransactions) {
+        if (block.getTransactions().size() < 2) {
+            return;
+        }
+        Set<Long> accountIds = new HashSet<>();
+        accountIds.add(block.getGeneratorId());
+        for (TransactionImpl transaction : block.getTransactions()) {
+            accountIds.add(transaction.getSenderId());
+            if (transaction.getRecipientId() != 0) {
+                accountIds.add(transaction.getRecipientId());
+            }
+        }
+        for (TransactionImpl transaction : validPhasedTransactions) {
+            accountIds.add(transaction.getSenderId());
+            if (transaction.getRecipientId() != 0) {
+                accountIds.add(transaction.getRecipientId());
+            }
+        }
+        Account.preloadAccounts(accountIds);
+    }
+
     private void accept(BlockImpl block, List<TransactionImpl> validPhasedTransactions, List<TransactionImpl> invalidPhasedTransactions,
                         Map<TransactionType, Map<String, Integer>> duplicates) throws TransactionNotAcceptedException {
         try {
             isProcessingBlock = true;
+            preloadAccounts(block, validPhasedTransactions);
             for (TransactionImpl transaction : block.getTransactions()) {
                 if (! transaction.applyUnconfirmed()) {
                     throw new TransactionNotAcceptedException("Double spending", transaction);
@@ -1798,7 +2048,7 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
         List<UnconfirmedTransaction> orderedUnconfirmedTransactions = new ArrayList<>();
         try (FilteringIterator<UnconfirmedTransaction> unconfirmedTransactions = new FilteringIterator<>(
                 TransactionProcessorImpl.getInstance().getAllUnconfirmedTransactions(),
-                transaction -> hasAllReferencedTransactions(transaction.getTransaction(), transaction.getTimestamp(), 0))) {
+                this::hasAllReferencedTransactions)) {
             for (UnconfirmedTransaction unconfirmedTransaction : unconfirmedTransactions) {
                 orderedUnconfirmedTransactions.add(unconfirmedTransaction);
             }
@@ -1808,27 +2058,13 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
         while (payloadLength <= Constants.MAX_PAYLOAD_LENGTH && sortedTransactions.size() <= Constants.MAX_NUMBER_OF_TRANSACTIONS) {
             int prevNumberOfNewTransactions = sortedTransactions.size();
             for (UnconfirmedTransaction unconfirmedTransaction : orderedUnconfirmedTransactions) {
-                int transactionLength = unconfirmedTransaction.getTransaction().getFullSize();
-                if (sortedTransactions.contains(unconfirmedTransaction) || payloadLength + transactionLength > Constants.MAX_PAYLOAD_LENGTH) {
-                    continue;
-                }
-                if (unconfirmedTransaction.getVersion() != getTransactionVersion(previousBlock.getHeight())) {
-                    continue;
-                }
-                if (blockTimestamp > 0 && (unconfirmedTransaction.getTimestamp() > blockTimestamp + Constants.MAX_TIMEDRIFT
-                        || unconfirmedTransaction.getExpiration() < blockTimestamp)) {
+                if (sortedTransactions.contains(unconfirmedTransaction)) {
                     continue;
                 }
-                try {
-                    unconfirmedTransaction.getTransaction().validate();
-                } catch (NxtException.ValidationException e) {
-                    continue;
-                }
-                if (unconfirmedTransaction.getTransaction().attachmentIsDuplicate(duplicates, true)) {
-                    continue;
+                if (isSelectable(unconfirmedTransaction, duplicates, previousBlock, blockTimestamp, payloadLength)) {
+                    sortedTransactions.add(unconfirmedTransaction);
+                    payloadLength += unconfirmedTransaction.getTransaction().getFullSize();
                 }
-                sortedTransactions.add(unconfirmedTransaction);
-                payloadLength += transactionLength;
             }
             if (sortedTransactions.size() == prevNumberOfNewTransactions) {
                 break;
@@ -1837,14 +2073,47 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
         return sortedTransactions;
     }
 
+    /**
+     * Check if an unconfirmed transaction can be added to a new block.  The duplicates map
+     * is updated if the transaction is accepted.
+     *
+     * @param   unconfirmedTransaction  Unconfirmed transaction
+     * @param   duplicates          Attachment duplicates for the transactions already selected
+     * @param   previousBlock       Previous block
+     * @param   blockTimestamp      New block timestamp or -1 to skip the timestamp checks
+     * @param   payloadLength       Payload length of the transactions already selected
+     * @return                      TRUE if the transaction can be included
+     */
+    boolean isSelectable(UnconfirmedTransaction unconfirmedTransaction, Map<TransactionType, Map<String, Integer>> duplicates,
+                         Block previousBlock, int blockTimestamp, int payloadLength) {
+        if (payloadLength + unconfirmedTransaction.getTransaction().getFullSize() > Constants.MAX_PAYLOAD_LENGTH) {
+            return false;
+        }
+        if (unconfirmedTransaction.getVersion() != getTransactionVersion(previousBlock.getHeight())) {
+            return false;
+        }
+        if (blockTimestamp > 0 && (unconfirmedTransaction.getTimestamp() > blockTimestamp + Constants.MAX_TIMEDRIFT
+                || unconfirmedTransaction.getExpiration() < blockTimestamp)) {
+            return false;
+        }
+        try {
+            unconfirmedTransaction.getTransaction().validate();
+        } catch (NxtException.ValidationException e) {
+            return false;
+        }
+        return !unconfirmedTransaction.getTransaction().attachmentIsDuplicate(duplicates, true);
+    }
 
-    private static final Comparator<UnconfirmedTransaction> transactionArrivalComparator = Comparator
-            .comparingLong(UnconfirmedTransaction::getArrivalTimestamp)
-            .thenComparingInt(UnconfirmedTransaction::getHeight)
-            .thenComparingLong(UnconfirmedTransaction::getId);
-
-    void generateBlock(String secretPhrase, int blockTimestamp) throws BlockNotAcceptedException {
+    boolean hasAllReferencedTransactions(UnconfirmedTransaction unconfirmedTransaction) {
+        return hasAllReferencedTransactions(unconfirmedTransaction.getTransaction(), unconfirmedTransaction.getTimestamp(), 0);
+    }
 
+    /**
+     * Return the attachment duplicates of the phased transactions that finish in the next block
+     *
+     * @return                      Duplicates map
+     */
+    Map<TransactionType, Map<String, Integer>> getPhasedTransactionDuplicates() {
         Map<TransactionType, Map<String, Integer>> duplicates = new HashMap<>();
         if (blockchain.getHeight() >= Constants.PHASING_BLOCK) {
             try (DbIterator<TransactionImpl> phasedTransactions = PhasingPoll.getFinishingTransactions(blockchain.getHeight() + 1)) {
@@ -1857,10 +2126,23 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
                 }
             }
         }
+        return duplicates;
+    }
+
+
+    static final Comparator<UnconfirmedTransaction> transactionArrivalComparator = Comparator
+            .comparingLong(UnconfirmedTransaction::getArrivalTimestamp)
+            .thenComparingInt(UnconfirmedTransaction::getHeight)
+            .thenComparingLong(UnconfirmedTransaction::getId);
+
+    void generateBlock(String secretPhrase, int blockTimestamp) throws BlockNotAcceptedException {
 
         BlockImpl previousBlock = blockchain.getLastBlock();
         TransactionProcessorImpl.getInstance().processWaitingTransactions();
-        SortedSet<UnconfirmedTransaction> sortedTransactions = selectUnconfirmedTransactions(duplicates, previousBlock, blockTimestamp);
+        SortedSet<UnconfirmedTransaction> sortedTransactions = BlockTemplate.getTransactions(previousBlock, blockTimestamp);
+        if (sortedTransactions == null) {
+            sortedTransactions = selectUnconfirmedTransactions(getPhasedTransactionDuplicates(), previousBlock, blockTimestamp);
+        }
         List<TransactionImpl> blockTransactions = new ArrayList<>();
         MessageDigest digest = Crypto.sha256();
         long totalAmountNQT = 0;
@@ -1878,7 +2160,7 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
         digest.update(previousBlock.getGenerationSignature());
         final byte[] publicKey = Crypto.getPublicKey(secretPhrase);
         byte[] generationSignature = digest.digest(publicKey);
-        byte[] previousBlockHash = Crypto.sha256().digest(previousBlock.bytes());
+        byte[] previousBlockHash = Crypto.sha256(previousBlock.bytes());
 
         BlockImpl block = new BlockImpl(getBlockVersion(previousBlock.getHeight()), blockTimestamp, previousBlock.getId(), totalAmountNQT, totalFeeNQT, payloadLength,
                 payloadHash, publicKey, generationSignature, previousBlockHash, blockTransactions, secretPhrase);
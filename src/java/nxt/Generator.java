@@ -17,25 +17,23 @@
 package nxt;
 
 import nxt.crypto.Crypto;
+import nxt.crypto.SigningKeyStore;
 import nxt.util.Convert;
 import nxt.util.Listener;
 import nxt.util.Listeners;
 import nxt.util.Logger;
 import nxt.util.ThreadPool;
 
-import java.math.BigInteger;
-import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.TimeUnit;
 
 public final class Generator implements Comparable<Generator> {
 
@@ -44,6 +42,7 @@ public final class Generator implements Comparable<Generator> {
     }
 
     private static final int MAX_FORGERS = Nxt.getIntProperty("nxt.maxNumberOfForgers");
+    private static final boolean checkHitComputation = Nxt.getBooleanProperty("nxt.checkHitComputation");
     private static final byte[] fakeForgingPublicKey = Nxt.getBooleanProperty("nxt.enableFakeForging") ?
             Account.getPublicKey(Convert.parseAccountId(Nxt.getStringProperty("nxt.fakeForgingAccount"))) : null;
 
@@ -51,94 +50,170 @@ public final class Generator implements Comparable<Generator> {
 
     private static final ConcurrentMap<String, Generator> generators = new ConcurrentHashMap<>();
     private static final Collection<Generator> allGenerators = Collections.unmodifiableCollection(generators.values());
-    private static volatile List<Generator> sortedForgers = null;
-    private static long lastBlockId;
-    private static int delayTime = Constants.FORGING_DELAY;
-
-    private static final Runnable generateBlocksThread = new Runnable() {
-
-        private volatile boolean logged;
+    /**
+     * Hits of the forgers with a non-zero effective balance ordered by hit time, or null if they need
+     * to be recalculated.  The list is never modified once it has been published, a changed list is
+     * published as a new list.
+     */
+    private static volatile List<Hit> sortedForgers = null;
+    private static volatile long lastBlockId;
+    private static volatile int delayTime = Constants.FORGING_DELAY;
+
+    /** Generation thread wake-up */
+    private static final Object wakeup = new Object();
+    private static boolean wakeupPending;
+    private static volatile boolean shutdown;
+
+    /** Maximum time the generation thread waits for the next hit time */
+    private static final long MAX_WAIT = Constants.isOffline ? 1000 : 60000;
+
+    private static final Thread generateBlocksThread = new Thread(() -> {
+        while (!shutdown) {
+            long waitTime = generateBlocks();
+            synchronized (wakeup) {
+                try {
+                    if (!wakeupPending && !shutdown) {
+                        wakeup.wait(Math.max(Math.min(waitTime, MAX_WAIT), 100));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                wakeupPending = false;
+            }
+        }
+    }, "GenerateBlocks");
 
-        @Override
-        public void run() {
+    private static boolean logged;
 
+    /**
+     * Forge a block if a forger's hit time has been reached
+     *
+     * @return                      Milliseconds until the next hit time
+     */
+    private static long generateBlocks() {
+        try {
             try {
+                BlockchainImpl.getInstance().updateLock();
                 try {
-                    BlockchainImpl.getInstance().updateLock();
-                    try {
-                        Block lastBlock = Nxt.getBlockchain().getLastBlock();
-                        if (lastBlock == null || lastBlock.getHeight() < Constants.LAST_KNOWN_BLOCK) {
-                            return;
-                        }
-                        final int generationLimit = Nxt.getEpochTime() - delayTime;
-                        if (lastBlock.getId() != lastBlockId || sortedForgers == null) {
-                            lastBlockId = lastBlock.getId();
-                            if (lastBlock.getTimestamp() > Nxt.getEpochTime() - 600) {
-                                Block previousBlock = Nxt.getBlockchain().getBlock(lastBlock.getPreviousBlockId());
-                                for (Generator generator : generators.values()) {
-                                    generator.setLastBlock(previousBlock);
-                                    int timestamp = generator.getTimestamp(generationLimit);
-                                    if (timestamp != generationLimit && generator.getHitTime() > 0 && timestamp < lastBlock.getTimestamp()) {
-                                        Logger.logDebugMessage("Pop off: " + generator.toString() + " will pop off last block " + lastBlock.getStringId());
-                                        List<BlockImpl> poppedOffBlock = BlockchainProcessorImpl.getInstance().popOffTo(previousBlock);
-                                        for (BlockImpl block : poppedOffBlock) {
-                                            TransactionProcessorImpl.getInstance().processLater(block.getTransactions());
-                                        }
-                                        lastBlock = previousBlock;
-                                        lastBlockId = previousBlock.getId();
-                                        break;
+                    Block lastBlock = Nxt.getBlockchain().getLastBlock();
+                    if (lastBlock == null || lastBlock.getHeight() < Constants.LAST_KNOWN_BLOCK) {
+                        return MAX_WAIT;
+                    }
+                    final int generationLimit = Nxt.getEpochTime() - delayTime;
+                    if (lastBlock.getId() != lastBlockId || sortedForgers == null) {
+                        lastBlockId = lastBlock.getId();
+                        if (lastBlock.getTimestamp() > Nxt.getEpochTime() - 600) {
+                            Block previousBlock = Nxt.getBlockchain().getBlock(lastBlock.getPreviousBlockId());
+                            for (Hit hit : setLastBlock(generators.values(), previousBlock)) {
+                                int timestamp = hit.getTimestamp(generationLimit);
+                                if (timestamp != generationLimit && hit.hitTime > 0 && timestamp < lastBlock.getTimestamp()) {
+                                    Logger.logDebugMessage("Pop off: " + hit.generator.toString() + " will pop off last block " + lastBlock.getStringId());
+                                    List<BlockImpl> poppedOffBlock = BlockchainProcessorImpl.getInstance().popOffTo(previousBlock);
+                                    for (BlockImpl block : poppedOffBlock) {
+                                        TransactionProcessorImpl.getInstance().processLater(block.getTransactions());
                                     }
+                                    lastBlock = previousBlock;
+                                    lastBlockId = previousBlock.getId();
+                                    break;
                                 }
                             }
-                            List<Generator> forgers = new ArrayList<>();
-                            for (Generator generator : generators.values()) {
-                                generator.setLastBlock(lastBlock);
-                                if (generator.effectiveBalance.signum() > 0) {
-                                    forgers.add(generator);
-                                }
-                            }
-                            Collections.sort(forgers);
-                            sortedForgers = Collections.unmodifiableList(forgers);
-                            logged = false;
                         }
-                        if (!logged) {
-                            for (Generator generator : sortedForgers) {
-                                if (generator.getHitTime() - generationLimit > 60) {
-                                    break;
-                                }
-                                Logger.logDebugMessage(generator.toString());
-                                logged = true;
+                        List<Hit> forgers = new ArrayList<>();
+                        for (Hit hit : setLastBlock(generators.values(), lastBlock)) {
+                            if (hit.effectiveBalance > 0) {
+                                forgers.add(hit);
                             }
                         }
-                        for (Generator generator : sortedForgers) {
-                            if (generator.getHitTime() > generationLimit || generator.forge(lastBlock, generationLimit)) {
-                                return;
+                        Collections.sort(forgers);
+                        sortedForgers = Collections.unmodifiableList(forgers);
+                        logged = false;
+                    }
+                    List<Hit> forgers = sortedForgers;
+                    if (!logged) {
+                        for (Hit hit : forgers) {
+                            if (hit.hitTime - generationLimit > 60) {
+                                break;
                             }
+                            Logger.logDebugMessage(hit.generator.toString());
+                            logged = true;
+                        }
+                    }
+                    boolean failed = false;
+                    for (Hit hit : forgers) {
+                        if (hit.hitTime > generationLimit) {
+                            return failed ? 1000 : (hit.hitTime - generationLimit) * 1000;
                         }
-                    } finally {
-                        BlockchainImpl.getInstance().updateUnlock();
+                        if (hit.forge(lastBlock, generationLimit)) {
+                            return 0;
+                        }
+                        failed = true;
                     }
-                } catch (Exception e) {
-                    Logger.logMessage("Error in block generation thread", e);
+                    return failed ? 1000 : MAX_WAIT;
+                } finally {
+                    BlockchainImpl.getInstance().updateUnlock();
                 }
-            } catch (Throwable t) {
-                Logger.logErrorMessage("CRITICAL ERROR. PLEASE REPORT TO THE DEVELOPERS.\n" + t.toString());
-                t.printStackTrace();
-                System.exit(1);
+            } catch (Exception e) {
+                Logger.logMessage("Error in block generation thread", e);
+                return 1000;
             }
-
+        } catch (Throwable t) {
+            Logger.logErrorMessage("CRITICAL ERROR. PLEASE REPORT TO THE DEVELOPERS.\n" + t.toString());
+            t.printStackTrace();
+            System.exit(1);
+            return MAX_WAIT;
         }
+    }
+
+    /**
+     * Calculate the hits of a group of generators, reading all of their effective balances at once
+     *
+     * @param   generators          Generators
+     * @param   lastBlock           Block to generate on
+     * @return                      Generator hits
+     */
+    private static List<Hit> setLastBlock(Collection<Generator> generators, Block lastBlock) {
+        List<Long> accountIds = new ArrayList<>(generators.size());
+        generators.forEach(generator -> accountIds.add(generator.accountId));
+        Map<Long, Long> effectiveBalances = Account.getEffectiveBalancesNXT(accountIds, lastBlock.getHeight());
+        List<Hit> hits = new ArrayList<>(generators.size());
+        generators.forEach(generator -> hits.add(generator.setLastBlock(lastBlock, effectiveBalances.getOrDefault(generator.accountId, 0L))));
+        return hits;
+    }
 
-    };
+    /**
+     * Wake up the generation thread
+     */
+    private static void wakeup() {
+        synchronized (wakeup) {
+            wakeupPending = true;
+            wakeup.notify();
+        }
+    }
 
     static {
-        if (!Constants.isLightClient) {
-            ThreadPool.scheduleThread("GenerateBlocks", generateBlocksThread, 500, TimeUnit.MILLISECONDS);
+        if (!Constants.isLightClient && !Nxt.getBooleanProperty("nxt.disableGenerateBlocksThread")) {
+            generateBlocksThread.setDaemon(true);
+            ThreadPool.runAfterStart(generateBlocksThread::start);
+            Nxt.getBlockchainProcessor().addListener(block -> wakeup(), BlockchainProcessor.Event.BLOCK_PUSHED);
+            Nxt.getBlockchainProcessor().addListener(block -> wakeup(), BlockchainProcessor.Event.BLOCK_POPPED);
         }
     }
 
     static void init() {}
 
+    static void shutdown() {
+        shutdown = true;
+        wakeup();
+        if (generateBlocksThread.isAlive()) {
+            try {
+                generateBlocksThread.join(10000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     public static boolean addListener(Listener<Generator> listener, Event eventType) {
         return listeners.addListener(listener, eventType);
     }
@@ -152,25 +227,59 @@ public final class Generator implements Comparable<Generator> {
             throw new RuntimeException("Cannot forge with more than " + MAX_FORGERS + " accounts on the same node");
         }
         Generator generator = new Generator(secretPhrase);
-        Generator old = generators.putIfAbsent(secretPhrase, generator);
-        if (old != null) {
-            Logger.logDebugMessage(old + " is already forging");
-            return old;
+        Nxt.getBlockchain().updateLock();
+        try {
+            Generator old = generators.putIfAbsent(secretPhrase, generator);
+            if (old != null) {
+                Logger.logDebugMessage(old + " is already forging");
+                return old;
+            }
+            SigningKeyStore.add(secretPhrase);
+            //
+            // Add the new generator to the current forgers instead of recalculating all of them
+            //
+            if (Nxt.getBlockchain().getHeight() >= Constants.LAST_KNOWN_BLOCK) {
+                Block lastBlock = Nxt.getBlockchain().getLastBlock();
+                Hit hit = setLastBlock(Collections.singletonList(generator), lastBlock).get(0);
+                List<Hit> forgers = sortedForgers;
+                if (forgers != null && lastBlock.getId() == lastBlockId) {
+                    if (hit.effectiveBalance > 0) {
+                        List<Hit> newForgers = new ArrayList<>(forgers.size() + 1);
+                        newForgers.addAll(forgers);
+                        int index = Collections.binarySearch(newForgers, hit);
+                        newForgers.add(index < 0 ? -index - 1 : index, hit);
+                        sortedForgers = Collections.unmodifiableList(newForgers);
+                    }
+                } else {
+                    sortedForgers = null;
+                }
+            }
+        } finally {
+            Nxt.getBlockchain().updateUnlock();
         }
+        wakeup();
         listeners.notify(generator, Event.START_FORGING);
         Logger.logDebugMessage(generator + " started");
         return generator;
     }
 
     public static Generator stopForging(String secretPhrase) {
-        Generator generator = generators.remove(secretPhrase);
-        if (generator != null) {
-            Nxt.getBlockchain().updateLock();
-            try {
-                sortedForgers = null;
-            } finally {
-                Nxt.getBlockchain().updateUnlock();
+        Generator generator;
+        Nxt.getBlockchain().updateLock();
+        try {
+            generator = generators.remove(secretPhrase);
+            List<Hit> forgers = sortedForgers;
+            if (generator != null && forgers != null) {
+                Generator removed = generator;
+                List<Hit> newForgers = new ArrayList<>(forgers);
+                newForgers.removeIf(hit -> hit.generator == removed);
+                sortedForgers = Collections.unmodifiableList(newForgers);
             }
+        } finally {
+            Nxt.getBlockchain().updateUnlock();
+        }
+        if (generator != null) {
+            SigningKeyStore.remove(generator.accountId);
             Logger.logDebugMessage(generator + " stopped");
             listeners.notify(generator, Event.STOP_FORGING);
         }
@@ -183,6 +292,7 @@ public final class Generator implements Comparable<Generator> {
         while (iter.hasNext()) {
             Generator generator = iter.next();
             iter.remove();
+            SigningKeyStore.remove(generator.accountId);
             Logger.logDebugMessage(generator + " stopped");
             listeners.notify(generator, Event.STOP_FORGING);
         }
@@ -208,17 +318,23 @@ public final class Generator implements Comparable<Generator> {
     }
 
     public static List<Generator> getSortedForgers() {
-        List<Generator> forgers = sortedForgers;
-        return forgers == null ? Collections.emptyList() : forgers;
+        List<Hit> forgers = sortedForgers;
+        if (forgers == null) {
+            return Collections.emptyList();
+        }
+        List<Generator> list = new ArrayList<>(forgers.size());
+        forgers.forEach(hit -> list.add(hit.generator));
+        return Collections.unmodifiableList(list);
     }
 
     public static long getNextHitTime(long lastBlockId, int curTime) {
         BlockchainImpl.getInstance().readLock();
         try {
-            if (lastBlockId == Generator.lastBlockId && sortedForgers != null) {
-                for (Generator generator : sortedForgers) {
-                    if (generator.getHitTime() >= curTime - Constants.FORGING_DELAY) {
-                        return generator.getHitTime();
+            List<Hit> forgers = sortedForgers;
+            if (lastBlockId == Generator.lastBlockId && forgers != null) {
+                for (Hit hit : forgers) {
+                    if (hit.hitTime >= curTime - Constants.FORGING_DELAY) {
+                        return hit.hitTime;
                     }
                 }
             }
@@ -230,19 +346,30 @@ public final class Generator implements Comparable<Generator> {
 
     static void setDelay(int delay) {
         Generator.delayTime = delay;
+        wakeup();
     }
 
-    static boolean verifyHit(BigInteger hit, BigInteger effectiveBalance, Block previousBlock, int timestamp) {
+    static boolean verifyHit(long hit, long effectiveBalance, Block previousBlock, int timestamp) {
         int elapsedTime = timestamp - previousBlock.getTimestamp();
         if (elapsedTime <= 0) {
             return false;
         }
-        BigInteger effectiveBaseTarget = BigInteger.valueOf(previousBlock.getBaseTarget()).multiply(effectiveBalance);
-        BigInteger prevTarget = effectiveBaseTarget.multiply(BigInteger.valueOf(elapsedTime - 1));
-        BigInteger target = prevTarget.add(effectiveBaseTarget);
-        return hit.compareTo(target) < 0
+        long baseTarget = previousBlock.getBaseTarget();
+        boolean isBelowTarget = GeneratorMath.isBelowTarget(hit, baseTarget, effectiveBalance, elapsedTime);
+        boolean isAbovePrevTarget = GeneratorMath.isAbovePrevTarget(hit, baseTarget, effectiveBalance, elapsedTime);
+        if (checkHitComputation) {
+            boolean isBelowTargetReference = GeneratorMath.isBelowTargetReference(hit, baseTarget, effectiveBalance, elapsedTime);
+            boolean isAbovePrevTargetReference = GeneratorMath.isAbovePrevTargetReference(hit, baseTarget, effectiveBalance, elapsedTime);
+            if (isBelowTarget != isBelowTargetReference || isAbovePrevTarget != isAbovePrevTargetReference) {
+                Logger.logErrorMessage("Hit verification mismatch for hit " + Long.toUnsignedString(hit) + " base target " + baseTarget
+                        + " effective balance " + effectiveBalance + " elapsed time " + elapsedTime);
+                isBelowTarget = isBelowTargetReference;
+                isAbovePrevTarget = isAbovePrevTargetReference;
+            }
+        }
+        return isBelowTarget
                 && (previousBlock.getHeight() < Constants.TRANSPARENT_FORGING_BLOCK_8
-                || hit.compareTo(prevTarget) >= 0
+                || isAbovePrevTarget
                 || (Constants.isTestnet ? elapsedTime > 300 : elapsedTime > 3600)
                 || Constants.isOffline);
     }
@@ -251,46 +378,42 @@ public final class Generator implements Comparable<Generator> {
         return Constants.isTestnet && publicKey != null && Arrays.equals(publicKey, fakeForgingPublicKey);
     }
 
-    static BigInteger getHit(byte[] publicKey, Block block) {
+    static long getHit(byte[] publicKey, Block block) {
         if (allowsFakeForging(publicKey)) {
-            return BigInteger.ZERO;
+            return 0;
         }
         if (block.getHeight() < Constants.TRANSPARENT_FORGING_BLOCK) {
             throw new IllegalArgumentException("Not supported below Transparent Forging Block");
         }
-        MessageDigest digest = Crypto.sha256();
-        digest.update(block.getGenerationSignature());
-        byte[] generationSignatureHash = digest.digest(publicKey);
-        return new BigInteger(1, new byte[] {generationSignatureHash[7], generationSignatureHash[6], generationSignatureHash[5], generationSignatureHash[4], generationSignatureHash[3], generationSignatureHash[2], generationSignatureHash[1], generationSignatureHash[0]});
+        byte[] generationSignatureHash = Crypto.sha256(block.getGenerationSignature(), publicKey);
+        return GeneratorMath.getHit(generationSignatureHash);
     }
 
-    static long getHitTime(BigInteger effectiveBalance, BigInteger hit, Block block) {
-        return block.getTimestamp()
-                + hit.divide(BigInteger.valueOf(block.getBaseTarget()).multiply(effectiveBalance)).longValue();
+    static long getHitTime(long effectiveBalance, long hit, Block block) {
+        long quotient = GeneratorMath.divide(hit, block.getBaseTarget(), effectiveBalance);
+        if (checkHitComputation) {
+            long reference = GeneratorMath.divideReference(hit, block.getBaseTarget(), effectiveBalance);
+            if (quotient != reference) {
+                Logger.logErrorMessage("Hit time mismatch for hit " + Long.toUnsignedString(hit) + " base target " + block.getBaseTarget()
+                        + " effective balance " + effectiveBalance + ": " + quotient + " != " + reference);
+                quotient = reference;
+            }
+        }
+        return block.getTimestamp() + quotient;
     }
 
 
     private final long accountId;
     private final String secretPhrase;
     private final byte[] publicKey;
-    private volatile long hitTime;
-    private volatile BigInteger hit;
-    private volatile BigInteger effectiveBalance;
-    private volatile long deadline;
+    /** Hit for the current last block */
+    private volatile Hit currentHit;
 
     private Generator(String secretPhrase) {
         this.secretPhrase = secretPhrase;
         this.publicKey = Crypto.getPublicKey(secretPhrase);
         this.accountId = Account.getId(publicKey);
-        Nxt.getBlockchain().updateLock();
-        try {
-            if (Nxt.getBlockchain().getHeight() >= Constants.LAST_KNOWN_BLOCK) {
-                setLastBlock(Nxt.getBlockchain().getLastBlock());
-            }
-            sortedForgers = null;
-        } finally {
-            Nxt.getBlockchain().updateUnlock();
-        }
+        this.currentHit = new Hit(this, 0, 0, 0, 0);
     }
 
     public byte[] getPublicKey() {
@@ -302,120 +425,227 @@ public final class Generator implements Comparable<Generator> {
     }
 
     public long getDeadline() {
-        return deadline;
+        return currentHit.deadline;
     }
 
     public long getHitTime() {
-        return hitTime;
+        return currentHit.hitTime;
     }
 
     @Override
     public int compareTo(Generator g) {
-        int i = this.hit.multiply(g.effectiveBalance).compareTo(g.hit.multiply(this.effectiveBalance));
-        if (i != 0) {
-            return i;
-        }
-        return Long.compare(accountId, g.accountId);
+        return currentHit.compareTo(g.currentHit);
     }
 
     @Override
     public String toString() {
-        return "Forger " + Long.toUnsignedString(accountId) + " deadline " + getDeadline() + " hit " + hitTime;
+        Hit hit = currentHit;
+        return "Forger " + Long.toUnsignedString(accountId) + " deadline " + hit.deadline + " hit " + hit.hitTime;
     }
 
-    private void setLastBlock(Block lastBlock) {
-        int height = lastBlock.getHeight();
-        Account account = Account.getAccount(accountId, height);
-        if (account == null) {
-            effectiveBalance = BigInteger.ZERO;
-        } else {
-            effectiveBalance = BigInteger.valueOf(Math.max(account.getEffectiveBalanceNXT(height), 0));
-        }
-        if (effectiveBalance.signum() == 0) {
-            hitTime = 0;
-            hit = BigInteger.ZERO;
-            return;
+    /**
+     * Calculate the hit for a new last block
+     *
+     * @param   lastBlock           Block to generate on
+     * @param   effectiveBalance    Effective balance in NXT
+     * @return                      New hit
+     */
+    private Hit setLastBlock(Block lastBlock, long effectiveBalance) {
+        Hit newHit;
+        if (effectiveBalance == 0) {
+            newHit = new Hit(this, 0, 0, 0, 0);
+            currentHit = newHit;
+            return newHit;
         }
-        hit = getHit(publicKey, lastBlock);
-        hitTime = getHitTime(effectiveBalance, hit, lastBlock);
-        deadline = Math.max(hitTime - lastBlock.getTimestamp(), 0);
+        long hit = getHit(publicKey, lastBlock);
+        long hitTime = getHitTime(effectiveBalance, hit, lastBlock);
+        newHit = new Hit(this, hit, effectiveBalance, hitTime, Math.max(hitTime - lastBlock.getTimestamp(), 0));
+        currentHit = newHit;
         listeners.notify(this, Event.GENERATION_DEADLINE);
+        return newHit;
     }
 
     boolean forge(Block lastBlock, int generationLimit) throws BlockchainProcessor.BlockNotAcceptedException {
-        int timestamp = getTimestamp(generationLimit);
-        if (!verifyHit(hit, effectiveBalance, lastBlock, timestamp)) {
-            Logger.logDebugMessage(this.toString() + " failed to forge at " + timestamp + " height " + lastBlock.getHeight() + " last timestamp " + lastBlock.getTimestamp());
-            return false;
+        return currentHit.forge(lastBlock, generationLimit);
+    }
+
+    /**
+     * Hit of a generator for a block
+     *
+     * A hit is not changed once it has been created, so the sorted forgers list
+     * stays ordered while the hits for the next block are calculated.
+     */
+    private static final class Hit implements Comparable<Hit> {
+
+        private final Generator generator;
+        private final long hit;
+        private final long effectiveBalance;
+        private final long hitTime;
+        private final long deadline;
+
+        private Hit(Generator generator, long hit, long effectiveBalance, long hitTime, long deadline) {
+            this.generator = generator;
+            this.hit = hit;
+            this.effectiveBalance = effectiveBalance;
+            this.hitTime = hitTime;
+            this.deadline = deadline;
         }
-        int start = Nxt.getEpochTime();
-        while (true) {
-            try {
-                BlockchainProcessorImpl.getInstance().generateBlock(secretPhrase, timestamp);
-                setDelay(Constants.FORGING_DELAY);
-                return true;
-            } catch (BlockchainProcessor.TransactionNotAcceptedException e) {
-                // the bad transaction has been expunged, try again
-                if (Nxt.getEpochTime() - start > 10) { // give up after trying for 10 s
-                    throw e;
+
+        @Override
+        public int compareTo(Hit h) {
+            int i = GeneratorMath.compareProducts(this.hit, h.effectiveBalance, h.hit, this.effectiveBalance);
+            if (i != 0) {
+                return i;
+            }
+            return Long.compare(generator.accountId, h.generator.accountId);
+        }
+
+        private boolean forge(Block lastBlock, int generationLimit) throws BlockchainProcessor.BlockNotAcceptedException {
+            int timestamp = getTimestamp(generationLimit);
+            if (!verifyHit(hit, effectiveBalance, lastBlock, timestamp)) {
+                Logger.logDebugMessage(generator.toString() + " failed to forge at " + timestamp + " height " + lastBlock.getHeight() + " last timestamp " + lastBlock.getTimestamp());
+                return false;
+            }
+            int start = Nxt.getEpochTime();
+            while (true) {
+                try {
+                    BlockchainProcessorImpl.getInstance().generateBlock(generator.secretPhrase, timestamp);
+                    setDelay(Constants.FORGING_DELAY);
+                    return true;
+                } catch (BlockchainProcessor.TransactionNotAcceptedException e) {
+                    // the bad transaction has been expunged, try again
+                    if (Nxt.getEpochTime() - start > 10) { // give up after trying for 10 s
+                        throw e;
+                    }
                 }
             }
         }
-    }
 
-    private int getTimestamp(int generationLimit) {
-        return (generationLimit - hitTime > 3600) ? generationLimit : (int)hitTime + 1;
+        private int getTimestamp(int generationLimit) {
+            return (generationLimit - hitTime > 3600) ? generationLimit : (int)hitTime + 1;
+        }
     }
 
-    /** Active block generators */
-    private static final Set<Long> activeGeneratorIds = new HashSet<>();
+    /** Blocks without generating a block before an active generator is dropped */
+    private static final int ACTIVE_GENERATOR_EXPIRATION = 10000;
 
-    /** Active block identifier */
-    private static long activeBlockId;
+    /** Height of the last block generated by each active generator */
+    private static final Map<Long, Integer> activeGeneratorHeights = new HashMap<>();
 
-    /** Sorted list of generators for the next block */
-    private static final List<ActiveGenerator> activeGenerators = new ArrayList<>();
+    /** Public keys of the active generators */
+    private static final Map<Long, byte[]> activeGeneratorKeys = new HashMap<>();
 
     /** Generator list has been initialized */
     private static boolean generatorsInitialized = false;
 
+    /** Sorted generators for the most recent block */
+    private static volatile ActiveGenerators activeGenerators;
+
     /**
-     * Return a list of generators for the next block.  The caller must hold the blockchain
-     * read lock to ensure the integrity of the returned list.
+     * Return a list of generators for the next block after the current last block
      *
-     * @return                      List of generator account identifiers
+     * @return                      List of generators ordered by hit time
      */
     public static List<ActiveGenerator> getNextGenerators() {
-        List<ActiveGenerator> generatorList;
-        Blockchain blockchain = Nxt.getBlockchain();
-        synchronized(activeGenerators) {
+        return getNextGenerators(Nxt.getBlockchain().getLastBlock());
+    }
+
+    /**
+     * Return a list of generators for the next block after the supplied block
+     *
+     * The list is calculated once per block and is then returned without locking
+     * until the next block arrives.
+     *
+     * @param   lastBlock           Block to generate on
+     * @return                      List of generators ordered by hit time
+     */
+    public static List<ActiveGenerator> getNextGenerators(Block lastBlock) {
+        List<ActiveGenerator> cachedList = getCachedNextGenerators(lastBlock);
+        if (cachedList != null) {
+            return cachedList;
+        }
+        synchronized(activeGeneratorHeights) {
+            ActiveGenerators generators = activeGenerators;
+            if (generators != null && generators.blockId == lastBlock.getId()) {
+                return generators.list;
+            }
             if (!generatorsInitialized) {
-                activeGeneratorIds.addAll(BlockDb.getBlockGenerators(Math.max(1, blockchain.getHeight() - 10000)));
-                activeGeneratorIds.forEach(activeGeneratorId -> activeGenerators.add(new ActiveGenerator(activeGeneratorId)));
-                Logger.logDebugMessage(activeGeneratorIds.size() + " block generators found");
+                activeGeneratorHeights.putAll(BlockDb.getBlockGenerators(Math.max(1, lastBlock.getHeight() - ACTIVE_GENERATOR_EXPIRATION)));
+                Logger.logDebugMessage(activeGeneratorHeights.size() + " block generators found");
                 Nxt.getBlockchainProcessor().addListener(block -> {
-                    long generatorId = block.getGeneratorId();
-                    synchronized(activeGenerators) {
-                        if (!activeGeneratorIds.contains(generatorId)) {
-                            activeGeneratorIds.add(generatorId);
-                            activeGenerators.add(new ActiveGenerator(generatorId));
-                        }
+                    synchronized(activeGeneratorHeights) {
+                        activeGeneratorHeights.put(block.getGeneratorId(), block.getHeight());
                     }
                 }, BlockchainProcessor.Event.BLOCK_PUSHED);
                 generatorsInitialized = true;
             }
-            long blockId = blockchain.getLastBlock().getId();
-            if (blockId != activeBlockId) {
-                activeBlockId = blockId;
-                Block lastBlock = blockchain.getLastBlock();
-                for (ActiveGenerator generator : activeGenerators) {
-                    generator.setLastBlock(lastBlock);
+            //
+            // Drop generators that have not generated a block recently
+            //
+            Iterator<Map.Entry<Long, Integer>> it = activeGeneratorHeights.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Long, Integer> entry = it.next();
+                if (entry.getValue() < lastBlock.getHeight() - ACTIVE_GENERATOR_EXPIRATION) {
+                    it.remove();
+                    activeGeneratorKeys.remove(entry.getKey());
                 }
-                Collections.sort(activeGenerators);
             }
-            generatorList = new ArrayList<>(activeGenerators);
+            List<Long> accountIds = new ArrayList<>(activeGeneratorHeights.size());
+            for (Long accountId : activeGeneratorHeights.keySet()) {
+                byte[] publicKey = activeGeneratorKeys.get(accountId);
+                if (publicKey == null) {
+                    publicKey = Account.getPublicKey(accountId);
+                    if (publicKey == null) {
+                        continue;
+                    }
+                    activeGeneratorKeys.put(accountId, publicKey);
+                }
+                accountIds.add(accountId);
+            }
+            Map<Long, Long> effectiveBalances = Account.getEffectiveBalancesNXT(accountIds, lastBlock.getHeight());
+            List<ActiveGenerator> list = new ArrayList<>(accountIds.size());
+            for (Long accountId : accountIds) {
+                long effectiveBalance = effectiveBalances.getOrDefault(accountId, 0L);
+                long hitTime = Long.MAX_VALUE;
+                if (effectiveBalance > 0) {
+                    hitTime = getHitTime(effectiveBalance, getHit(activeGeneratorKeys.get(accountId), lastBlock), lastBlock);
+                }
+                list.add(new ActiveGenerator(accountId, effectiveBalance, hitTime));
+            }
+            Collections.sort(list);
+            generators = new ActiveGenerators(lastBlock.getId(), Collections.unmodifiableList(list));
+            if (lastBlock.getId() == Nxt.getBlockchain().getLastBlock().getId()) {
+                activeGenerators = generators;
+            }
+            return generators.list;
+        }
+    }
+
+    /**
+     * Return the generator list for the supplied block if it has already been calculated
+     *
+     * No locks are taken, so the caller does not need to hold the blockchain lock.
+     *
+     * @param   lastBlock           Block to generate on
+     * @return                      List of generators ordered by hit time or null if the list
+     *                              for the block has not been calculated
+     */
+    public static List<ActiveGenerator> getCachedNextGenerators(Block lastBlock) {
+        ActiveGenerators generators = activeGenerators;
+        return (generators != null && generators.blockId == lastBlock.getId()) ? generators.list : null;
+    }
+
+    /**
+     * Generator list for a block
+     */
+    private static final class ActiveGenerators {
+        private final long blockId;
+        private final List<ActiveGenerator> list;
+
+        private ActiveGenerators(long blockId, List<ActiveGenerator> list) {
+            this.blockId = blockId;
+            this.list = list;
         }
-        return generatorList;
     }
 
     /**
@@ -423,13 +653,13 @@ public final class Generator implements Comparable<Generator> {
      */
     public static class ActiveGenerator implements Comparable<ActiveGenerator> {
         private final long accountId;
-        private long hitTime;
-        private long effectiveBalanceNXT;
-        private byte[] publicKey;
+        private final long hitTime;
+        private final long effectiveBalanceNXT;
 
-        private ActiveGenerator(long accountId) {
+        private ActiveGenerator(long accountId, long effectiveBalanceNXT, long hitTime) {
             this.accountId = accountId;
-            this.hitTime = Long.MAX_VALUE;
+            this.effectiveBalanceNXT = effectiveBalanceNXT;
+            this.hitTime = hitTime;
         }
 
         public long getAccountId() {
@@ -444,30 +674,6 @@ public final class Generator implements Comparable<Generator> {
             return hitTime;
         }
 
-        private void setLastBlock(Block lastBlock) {
-            if (publicKey == null) {
-                publicKey = Account.getPublicKey(accountId);
-                if (publicKey == null) {
-                    hitTime = Long.MAX_VALUE;
-                    return;
-                }
-            }
-            int height = lastBlock.getHeight();
-            Account account = Account.getAccount(accountId, height);
-            if (account == null) {
-                hitTime = Long.MAX_VALUE;
-                return;
-            }
-            effectiveBalanceNXT = Math.max(account.getEffectiveBalanceNXT(height), 0);
-            if (effectiveBalanceNXT == 0) {
-                hitTime = Long.MAX_VALUE;
-                return;
-            }
-            BigInteger effectiveBalance = BigInteger.valueOf(effectiveBalanceNXT);
-            BigInteger hit = Generator.getHit(publicKey, lastBlock);
-            hitTime = Generator.getHitTime(effectiveBalance, hit, lastBlock);
-        }
-
         @Override
         public int hashCode() {
             return Long.hashCode(accountId);
@@ -0,0 +1,150 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt;
+
+import java.math.BigInteger;
+
+/**
+ * Hit and target arithmetic for block generation
+ *
+ * A hit is the first 8 bytes of the generation signature hash taken as an unsigned
+ * little-endian 64-bit integer.  The effective base target is the product of the base
+ * target and the effective balance and can be well beyond 2^64, so it does not always
+ * fit in 64 bits.  Each target comparison is done on the quotient hit / effectiveBaseTarget,
+ * which is 0 whenever the effective base target is 2^64 or more because a hit is always
+ * smaller than that.  The BigInteger reference versions of the calculations are kept for
+ * cross-checking.
+ */
+final class GeneratorMath {
+
+    private GeneratorMath() {} // never
+
+    /**
+     * Return the hit for a generation signature hash
+     *
+     * @param   generationSignatureHash     Generation signature hash
+     * @return                              Unsigned hit
+     */
+    static long getHit(byte[] generationSignatureHash) {
+        long hit = 0;
+        for (int i = 7; i >= 0; i--) {
+            hit = (hit << 8) | (generationSignatureHash[i] & 0xff);
+        }
+        return hit;
+    }
+
+    /**
+     * Divide a hit by the effective base target
+     *
+     * @param   hit                 Unsigned hit
+     * @param   baseTarget          Base target
+     * @param   effectiveBalance    Effective balance in NXT
+     * @return                      Unsigned hit / (baseTarget * effectiveBalance)
+     * @throws  ArithmeticException The effective base target is 0
+     */
+    static long divide(long hit, long baseTarget, long effectiveBalance) {
+        if (baseTarget < 0 || effectiveBalance < 0) {
+            throw new IllegalArgumentException("Negative base target or effective balance");
+        }
+        if (baseTarget != 0 && Long.compareUnsigned(effectiveBalance, Long.divideUnsigned(-1L, baseTarget)) > 0) {
+            return 0;
+        }
+        return Long.divideUnsigned(hit, baseTarget * effectiveBalance);
+    }
+
+    /**
+     * Check if the hit is less than the target for the elapsed time
+     *
+     * @param   hit                 Unsigned hit
+     * @param   baseTarget          Base target
+     * @param   effectiveBalance    Effective balance in NXT
+     * @param   elapsedTime         Elapsed time since the previous block
+     * @return                      TRUE if hit < baseTarget * effectiveBalance * elapsedTime
+     */
+    static boolean isBelowTarget(long hit, long baseTarget, long effectiveBalance, int elapsedTime) {
+        if (baseTarget == 0 || effectiveBalance == 0 || elapsedTime <= 0) {
+            return false;
+        }
+        return Long.compareUnsigned(divide(hit, baseTarget, effectiveBalance), elapsedTime) < 0;
+    }
+
+    /**
+     * Check if the hit is at least the target for the previous second
+     *
+     * @param   hit                 Unsigned hit
+     * @param   baseTarget          Base target
+     * @param   effectiveBalance    Effective balance in NXT
+     * @param   elapsedTime         Elapsed time since the previous block
+     * @return                      TRUE if hit >= baseTarget * effectiveBalance * (elapsedTime - 1)
+     */
+    static boolean isAbovePrevTarget(long hit, long baseTarget, long effectiveBalance, int elapsedTime) {
+        if (baseTarget == 0 || effectiveBalance == 0 || elapsedTime <= 1) {
+            return true;
+        }
+        return Long.compareUnsigned(divide(hit, baseTarget, effectiveBalance), elapsedTime - 1) >= 0;
+    }
+
+    /**
+     * Compare two unsigned 128-bit products
+     *
+     * @param   a                   Unsigned first factor of the first product
+     * @param   b                   Unsigned second factor of the first product
+     * @param   c                   Unsigned first factor of the second product
+     * @param   d                   Unsigned second factor of the second product
+     * @return                      Negative, zero or positive as a * b is less than, equal to or greater than c * d
+     */
+    static int compareProducts(long a, long b, long c, long d) {
+        int i = Long.compareUnsigned(multiplyHigh(a, b), multiplyHigh(c, d));
+        return i != 0 ? i : Long.compareUnsigned(a * b, c * d);
+    }
+
+    /**
+     * Return the high 64 bits of the unsigned 128-bit product
+     *
+     * @param   x                   Unsigned first factor
+     * @param   y                   Unsigned second factor
+     * @return                      High 64 bits of x * y
+     */
+    static long multiplyHigh(long x, long y) {
+        long x0 = x & 0xffffffffL;
+        long x1 = x >>> 32;
+        long y0 = y & 0xffffffffL;
+        long y1 = y >>> 32;
+        long t = x1 * y0 + ((x0 * y0) >>> 32);
+        long w1 = (t & 0xffffffffL) + x0 * y1;
+        return x1 * y1 + (t >>> 32) + (w1 >>> 32);
+    }
+
+    static BigInteger toBigInteger(long hit) {
+        BigInteger bigInteger = BigInteger.valueOf(hit & Long.MAX_VALUE);
+        return hit < 0 ? bigInteger.setBit(63) : bigInteger;
+    }
+
+    static long divideReference(long hit, long baseTarget, long effectiveBalance) {
+        return toBigInteger(hit).divide(BigInteger.valueOf(baseTarget).multiply(BigInteger.valueOf(effectiveBalance))).longValue();
+    }
+
+    static boolean isBelowTargetReference(long hit, long baseTarget, long effectiveBalance, int elapsedTime) {
+        BigInteger effectiveBaseTarget = BigInteger.valueOf(baseTarget).multiply(BigInteger.valueOf(effectiveBalance));
+        return toBigInteger(hit).compareTo(effectiveBaseTarget.multiply(BigInteger.valueOf(elapsedTime))) < 0;
+    }
+
+    static boolean isAbovePrevTargetReference(long hit, long baseTarget, long effectiveBalance, int elapsedTime) {
+        BigInteger effectiveBaseTarget = BigInteger.valueOf(baseTarget).multiply(BigInteger.valueOf(effectiveBalance));
+        return toBigInteger(hit).compareTo(effectiveBaseTarget.multiply(BigInteger.valueOf(elapsedTime - 1))) >= 0;
+    }
+}
@@ -20,7 +20,6 @@ import nxt.db.DbIterator;
 import nxt.db.DbKey;
 import nxt.db.VersionedEntityDbTable;
 
-import java.math.BigInteger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -88,7 +87,7 @@ public class Hub {
                         if (account != null) {
                             long effectiveBalance = account.getEffectiveBalanceNXT(block.getHeight());
                             if (effectiveBalance >= Constants.MIN_HUB_EFFECTIVE_BALANCE) {
-                                currentHits.add(new Hit(hub, Generator.getHitTime(BigInteger.valueOf(effectiveBalance),
+                                currentHits.add(new Hit(hub, Generator.getHitTime(effectiveBalance,
                                         Generator.getHit(Account.getPublicKey(hub.getAccountId()), block), block)));
                             }
                         }
@@ -18,6 +18,7 @@ package nxt;
 
 import nxt.addons.AddOns;
 import nxt.crypto.Crypto;
+import nxt.crypto.SigningKeyStore;
 import nxt.env.DirProvider;
 import nxt.env.RuntimeEnvironment;
 import nxt.env.RuntimeMode;
@@ -334,6 +335,7 @@ public final class Nxt {
         API.shutdown();
         Users.shutdown();
         FundingMonitor.shutdown();
+        Generator.shutdown();
         ThreadPool.shutdown();
         BlockchainProcessorImpl.getInstance().shutdown();
         Peers.shutdown();
@@ -392,6 +394,9 @@ public final class Nxt {
                 Peers.init();
                 APIProxy.init();
                 Generator.init();
+                BlockTemplate.init();
+                SigningKeyStore.init();
+                StateSnapshot.init();
                 AddOns.init();
                 API.init();
                 Users.init();
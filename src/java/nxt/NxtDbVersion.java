@@ -29,6 +29,11 @@ import java.util.List;
 
 class NxtDbVersion extends DbVersion {
 
+    @Override
+    protected boolean loadSnapshot(Connection con) throws SQLException {
+        return StateSnapshot.importSnapshot(con);
+    }
+
     protected void update(int nextUpdate) {
         switch (nextUpdate) {
             case 1:
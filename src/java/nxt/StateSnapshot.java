@@ -0,0 +1,687 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt;
+
+import nxt.crypto.Crypto;
+import nxt.db.DerivedDbTable;
+import nxt.db.FullTextTrigger;
+import nxt.db.PrunableDbTable;
+import nxt.util.Convert;
+import nxt.util.Logger;
+import nxt.util.ThreadPool;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Export and import of state snapshots
+ *
+ * A snapshot contains the rows of the consensus tables at the snapshot height: the blocks, the
+ * transactions, the referenced transactions and the derived tables, excluding the tables with node-specific or prunable data and
+ * the database identifiers.  The derived tables are trimmed to the snapshot height minus MAX_ROLLBACK
+ * before they are exported, the tables are written in a fixed order and the rows of each table are
+ * written in a canonical order, so that independent nodes export the same content at the same height.
+ * A snapshot is identified by the SHA-256 hash of its uncompressed content, which does not depend on
+ * the compression, and is only imported into an empty database if that hash matches the expected hash.
+ * The node then only needs to download the blocks following the snapshot height.
+ *
+ * The state hash is calculated over the current rows of the derived tables, excluding node-specific
+ * data, so that independent nodes at the same height can compare their state.  When snapshot
+ * verification is enabled, an imported snapshot has its state hash logged during startup and the
+ * imported blocks and transactions are verified in the background.
+ */
+public final class StateSnapshot {
+
+    /** Derived tables which contain node-specific data and are not part of the state hash */
+    private static final List<String> excludedTables = Arrays.asList("unconfirmed_transaction", "account_ledger",
+            "account_guaranteed_balance", "account_fxt");
+
+    /** Derived tables which contain node-specific data and are not included in a snapshot */
+    private static final List<String> nodeTables = Arrays.asList("unconfirmed_transaction", "account_ledger");
+
+    /** Snapshot format identifier */
+    private static final String SNAPSHOT_FORMAT = "NXT state snapshot 2";
+
+    /** Maximum length of a string, byte array or array value */
+    private static final int MAX_VALUE_LENGTH = 1024 * 1024;
+
+    /** Value tags */
+    private static final byte NULL_VALUE = 0, LONG_VALUE = 1, INT_VALUE = 2, SHORT_VALUE = 3, BYTE_VALUE = 4,
+            BOOLEAN_VALUE = 5, STRING_VALUE = 6, BYTES_VALUE = 7, ARRAY_VALUE = 8;
+
+    private static final int snapshotInterval = Nxt.getIntProperty("nxt.stateSnapshotInterval");
+    private static final String snapshotDir = Nxt.getStringProperty("nxt.stateSnapshotDir", "snapshots");
+    private static final boolean verifySnapshot = Nxt.getBooleanProperty("nxt.verifyStateSnapshot");
+
+    /** Snapshot was imported during database initialization */
+    private static volatile boolean snapshotImported;
+
+    /** Snapshot export is in progress */
+    private static final AtomicBoolean isExporting = new AtomicBoolean();
+
+    /**
+     * Exported snapshot
+     */
+    public static final class SnapshotFile {
+
+        private final Path file;
+        private final int height;
+        private final long blockId;
+        private final byte[] snapshotHash;
+
+        private SnapshotFile(Path file, int height, long blockId, byte[] snapshotHash) {
+            this.file = file;
+            this.height = height;
+            this.blockId = blockId;
+            this.snapshotHash = snapshotHash;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public long getBlockId() {
+            return blockId;
+        }
+
+        public byte[] getSnapshotHash() {
+            return snapshotHash;
+        }
+    }
+
+    static void init() {
+        if (snapshotImported && verifySnapshot) {
+            ThreadPool.runBeforeStart(() -> {
+                BlockchainImpl.getInstance().readLock();
+                try {
+                    Block lastBlock = BlockchainImpl.getInstance().getLastBlock();
+                    Logger.logInfoMessage("Imported snapshot at height " + lastBlock.getHeight()
+                            + " has state hash " + Convert.toHexString(getStateHash()));
+                } finally {
+                    BlockchainImpl.getInstance().readUnlock();
+                }
+            }, true);
+            ThreadPool.runAfterStart(() -> {
+                Thread thread = new Thread(StateSnapshot::verifyBlocks, "StateSnapshotVerification");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.start();
+            });
+        }
+    }
+
+    /**
+     * Check if a snapshot should be exported after trimming the derived tables at the specified height
+     *
+     * @param   height              Trim height
+     * @return                      TRUE if a snapshot should be exported
+     */
+    static boolean isSnapshotHeight(int height) {
+        return snapshotInterval > 0 && height % snapshotInterval == 0 && !isExporting.get();
+    }
+
+    /**
+     * Export a snapshot of the database at the current height
+     *
+     * The blockchain is locked for reading only while the derived tables are trimmed and written to
+     * a temporary file.  The blocks and transactions up to the snapshot height are then written
+     * without the lock, since rows below the last block are only removed when the blockchain is
+     * rolled back, and the export fails if the block at the snapshot height has changed.  Only one
+     * snapshot can be exported at a time.
+     *
+     * @return                      Exported snapshot
+     * @throws  IOException         Unable to create the snapshot file
+     * @throws  SQLException        Unable to export the database
+     */
+    public static SnapshotFile export() throws IOException, SQLException {
+        if (!Nxt.getBooleanProperty("nxt.trimDerivedTables")) {
+            throw new IllegalStateException("State snapshots require nxt.trimDerivedTables to be enabled");
+        }
+        BlockchainImpl blockchain = BlockchainImpl.getInstance();
+        BlockchainProcessorImpl blockchainProcessor = BlockchainProcessorImpl.getInstance();
+        if (!isExporting.compareAndSet(false, true)) {
+            throw new IllegalStateException("A state snapshot export is already in progress");
+        }
+        Path derivedFile = null;
+        Path tempFile = null;
+        try {
+            Path dir = Paths.get(Nxt.getUserHomeDir()).resolve(snapshotDir);
+            Files.createDirectories(dir);
+            derivedFile = Files.createTempFile(dir, "nxt-snapshot-derived-", ".tmp");
+            int height;
+            long blockId;
+            blockchain.readLock();
+            try {
+                Block lastBlock = blockchain.getLastBlock();
+                height = lastBlock.getHeight();
+                blockId = lastBlock.getId();
+                Logger.logInfoMessage("Exporting state snapshot at height " + height);
+                if (blockchainProcessor.getLastTrimHeight() != Math.max(height - Constants.MAX_ROLLBACK, 0)) {
+                    blockchainProcessor.trimDerivedTables();
+                }
+                try (Connection con = Db.db.getConnection();
+                     DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(derivedFile), 65536))) {
+                    for (String table : getDerivedTables()) {
+                        writeTable(con, out, table, height);
+                    }
+                }
+            } finally {
+                blockchain.readUnlock();
+            }
+            Path file = dir.resolve("nxt-snapshot-" + height + ".gz");
+            tempFile = Files.createTempFile(dir, "nxt-snapshot-" + height + "-", ".tmp");
+            MessageDigest digest = Crypto.sha256();
+            try (Connection con = Db.db.getConnection();
+                 DataOutputStream out = new DataOutputStream(new DigestOutputStream(new BufferedOutputStream(
+                         new GZIPOutputStream(Files.newOutputStream(tempFile), 65536), 65536), digest))) {
+                out.writeUTF(SNAPSHOT_FORMAT);
+                out.writeInt(getDbVersion(con));
+                out.writeInt(height);
+                out.writeLong(blockId);
+                writeTable(con, out, "block", height);
+                writeTable(con, out, "transaction", height);
+                writeTable(con, out, "referenced_transaction", height);
+                Files.copy(derivedFile, out);
+                out.writeBoolean(false);
+            }
+            blockchain.readLock();
+            try {
+                if (blockchain.getHeight() < height || blockchain.getBlockIdAtHeight(height) != blockId) {
+                    throw new IOException("Blockchain was rolled back below the snapshot height during the export");
+                }
+            } finally {
+                blockchain.readUnlock();
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            tempFile = null;
+            byte[] snapshotHash = digest.digest();
+            Logger.logInfoMessage("State snapshot " + file + " exported, snapshot hash " + Convert.toHexString(snapshotHash));
+            return new SnapshotFile(file, height, blockId, snapshotHash);
+        } finally {
+            try {
+                if (derivedFile != null) {
+                    Files.deleteIfExists(derivedFile);
+                }
+                if (tempFile != null) {
+                    Files.deleteIfExists(tempFile);
+                }
+            } finally {
+                isExporting.set(false);
+            }
+        }
+    }
+
+    /**
+     * Import the configured snapshot into an empty database
+     *
+     * The database schema has already been created.  The snapshot content is verified before any
+     * rows are inserted.
+     *
+     * @param   con                 Database connection
+     * @return                      TRUE if the snapshot was imported
+     * @throws  SQLException        Unable to import the snapshot
+     */
+    static boolean importSnapshot(Connection con) throws SQLException {
+        String fileName = Nxt.getStringProperty("nxt.stateSnapshotFile");
+        if (fileName == null) {
+            return false;
+        }
+        Path file = Paths.get(Nxt.getUserHomeDir()).resolve(fileName);
+        byte[] expectedHash = Convert.parseHexString(Nxt.getStringProperty("nxt.stateSnapshotHash"));
+        if (expectedHash == null) {
+            throw new RuntimeException("nxt.stateSnapshotHash must be set in order to import snapshot " + file);
+        }
+        try {
+            MessageDigest digest = Crypto.sha256();
+            try (DataInputStream in = openSnapshot(file, digest)) {
+                readSnapshot(in, con, false);
+            }
+            byte[] snapshotHash = digest.digest();
+            if (!Arrays.equals(snapshotHash, expectedHash)) {
+                throw new RuntimeException("Snapshot " + file + " has hash " + Convert.toHexString(snapshotHash)
+                        + ", expected " + Convert.toHexString(expectedHash));
+            }
+            Logger.logInfoMessage("Importing state snapshot " + file + ", this may take a while...");
+            try (DataInputStream in = openSnapshot(file, null)) {
+                readSnapshot(in, con, true);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read snapshot " + file + ": " + e.toString(), e);
+        }
+        //
+        // Scans scheduled by the schema updates are not needed for the imported tables
+        //
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("UPDATE scan SET rescan = FALSE, height = 0, validate = FALSE");
+        }
+        con.commit();
+        FullTextTrigger.reindex(con);
+        snapshotImported = true;
+        Logger.logInfoMessage("State snapshot imported");
+        return true;
+    }
+
+    /**
+     * Return the derived tables included in a snapshot in snapshot order
+     *
+     * @return                      Table names
+     */
+    private static List<String> getDerivedTables() {
+        List<String> tables = new ArrayList<>();
+        for (DerivedDbTable table : BlockchainProcessorImpl.getInstance().getDerivedTables()) {
+            if (!(table instanceof PrunableDbTable) && !nodeTables.contains(table.toString())) {
+                tables.add(table.toString());
+            }
+        }
+        tables.sort(Comparator.naturalOrder());
+        return tables;
+    }
+
+    private static int getDbVersion(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT next_update FROM version")) {
+            if (!rs.next()) {
+                throw new SQLException("Invalid version table");
+            }
+            return rs.getInt(1);
+        }
+    }
+
+    /**
+     * Write the rows of a table
+     *
+     * The block, transaction and referenced transaction rows up to the snapshot height are written in
+     * the order they were added, and the next block identifier of the block at the snapshot height is
+     * written as null.
+     * The rows of a derived table are ordered by all of their columns.
+     *
+     * @param   con                 Database connection
+     * @param   out                 Snapshot stream
+     * @param   table               Table name
+     * @param   height              Snapshot height
+     * @throws  IOException         Unable to write the snapshot
+     * @throws  SQLException        Unable to read the table
+     */
+    private static void writeTable(Connection con, DataOutputStream out, String table, int height)
+            throws IOException, SQLException {
+        List<String> columns = new ArrayList<>();
+        try (ResultSet rs = con.getMetaData().getColumns(null, "PUBLIC", table.toUpperCase(), null)) {
+            while (rs.next()) {
+                String column = rs.getString("COLUMN_NAME");
+                if (!column.equals("DB_ID")) {
+                    columns.add(column);
+                }
+            }
+        }
+        if (columns.isEmpty()) {
+            throw new SQLException("Table " + table + " not found");
+        }
+        boolean isChainTable = table.equals("block") || table.equals("transaction") || table.equals("referenced_transaction");
+        String columnList = String.join(",", columns);
+        int nextBlockColumn = table.equals("block") ? columns.indexOf("NEXT_BLOCK_ID") : -1;
+        int heightColumn = columns.indexOf("HEIGHT");
+        out.writeBoolean(true);
+        out.writeUTF(table);
+        out.writeInt(columns.size());
+        for (String column : columns) {
+            out.writeUTF(column);
+        }
+        String condition = table.equals("referenced_transaction") ?
+                " WHERE transaction_id IN (SELECT id FROM transaction WHERE height <= ?)" : " WHERE height <= ?";
+        try (PreparedStatement pstmt = con.prepareStatement("SELECT " + columnList + " FROM " + table
+                + (isChainTable ? condition + " ORDER BY db_id" : " ORDER BY " + columnList))) {
+            if (isChainTable) {
+                pstmt.setInt(1, height);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    out.writeBoolean(true);
+                    for (int i = 0; i < columns.size(); i++) {
+                        if (i == nextBlockColumn && rs.getInt(heightColumn + 1) == height) {
+                            out.writeByte(NULL_VALUE);
+                        } else {
+                            writeValue(out, rs.getObject(i + 1));
+                        }
+                    }
+                }
+            }
+        }
+        out.writeBoolean(false);
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException, SQLException {
+        if (value == null) {
+            out.writeByte(NULL_VALUE);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG_VALUE);
+            out.writeLong((Long)value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT_VALUE);
+            out.writeInt((Integer)value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT_VALUE);
+            out.writeShort((Short)value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE_VALUE);
+            out.writeByte((Byte)value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN_VALUE);
+            out.writeBoolean((Boolean)value);
+        } else if (value instanceof String) {
+            out.writeByte(STRING_VALUE);
+            byte[] bytes = ((String)value).getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES_VALUE);
+            out.writeInt(((byte[])value).length);
+            out.write((byte[])value);
+        } else if (value instanceof Array || value instanceof Object[]) {
+            Object[] array = value instanceof Array ? (Object[])((Array)value).getArray() : (Object[])value;
+            out.writeByte(ARRAY_VALUE);
+            out.writeInt(array.length);
+            for (Object element : array) {
+                writeValue(out, element);
+            }
+        } else {
+            throw new SQLException("Unsupported column value " + value.getClass().getName());
+        }
+    }
+
+    private static DataInputStream openSnapshot(Path file, MessageDigest digest) throws IOException {
+        InputStream in = new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file), 65536), 65536);
+        return new DataInputStream(digest != null ? new DigestInputStream(in, digest) : in);
+    }
+
+    /**
+     * Read a snapshot
+     *
+     * @param   in                  Snapshot stream
+     * @param   con                 Database connection
+     * @param   insert              TRUE to insert the rows, FALSE to read the snapshot without changing the database
+     * @throws  IOException         Unable to read the snapshot
+     * @throws  SQLException        Unable to insert the rows
+     */
+    private static void readSnapshot(DataInputStream in, Connection con, boolean insert) throws IOException, SQLException {
+        if (!in.readUTF().equals(SNAPSHOT_FORMAT)) {
+            throw new IOException("Unsupported snapshot format");
+        }
+        int dbVersion = in.readInt();
+        if (dbVersion != getDbVersion(con)) {
+            throw new IOException("Snapshot database version " + (dbVersion - 1) + " does not match the database version "
+                    + (getDbVersion(con) - 1));
+        }
+        int height = in.readInt();
+        long blockId = in.readLong();
+        if (insert) {
+            Logger.logInfoMessage("Snapshot height " + height + ", last block " + Long.toUnsignedString(blockId));
+        }
+        int count = 0;
+        while (in.readBoolean()) {
+            String table = in.readUTF();
+            String[] columns = new String[in.readInt()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = in.readUTF();
+                if (!columns[i].matches("[A-Z0-9_]+")) {
+                    throw new IOException("Invalid column name " + columns[i]);
+                }
+            }
+            if (!table.matches("[a-z0-9_]+")) {
+                throw new IOException("Invalid table name " + table);
+            }
+            StringBuilder sb = new StringBuilder("INSERT INTO ").append(table).append(" (").append(String.join(",", columns))
+                    .append(") VALUES (?");
+            for (int i = 1; i < columns.length; i++) {
+                sb.append(",?");
+            }
+            sb.append(')');
+            try (PreparedStatement pstmt = insert ? con.prepareStatement(sb.toString()) : null) {
+                while (in.readBoolean()) {
+                    for (int i = 0; i < columns.length; i++) {
+                        Object value = readValue(in);
+                        if (insert) {
+                            pstmt.setObject(i + 1, value);
+                        }
+                    }
+                    if (insert) {
+                        pstmt.addBatch();
+                        if (++count % Constants.BATCH_COMMIT_SIZE == 0) {
+                            pstmt.executeBatch();
+                            con.commit();
+                        }
+                    }
+                }
+                if (insert) {
+                    pstmt.executeBatch();
+                    con.commit();
+                    Logger.logDebugMessage("Imported table " + table);
+                }
+            }
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        if (tag == ARRAY_VALUE) {
+            Object[] array = new Object[readLength(in)];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = readElement(in, in.readByte());
+            }
+            return array;
+        }
+        return readElement(in, tag);
+    }
+
+    private static Object readElement(DataInputStream in, byte tag) throws IOException {
+        switch (tag) {
+            case NULL_VALUE:
+                return null;
+            case LONG_VALUE:
+                return in.readLong();
+            case INT_VALUE:
+                return in.readInt();
+            case SHORT_VALUE:
+                return in.readShort();
+            case BYTE_VALUE:
+                return in.readByte();
+            case BOOLEAN_VALUE:
+                return in.readBoolean();
+            case STRING_VALUE:
+                return new String(readBytes(in), StandardCharsets.UTF_8);
+            case BYTES_VALUE:
+                return readBytes(in);
+            default:
+                throw new IOException("Invalid value tag " + tag);
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readLength(in)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Read a value length, which is limited since the snapshot has not been verified when it is first read
+     *
+     * @param   in                  Snapshot stream
+     * @return                      Length
+     * @throws  IOException         Invalid length
+     */
+    private static int readLength(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_VALUE_LENGTH) {
+            throw new IOException("Invalid value length " + length);
+        }
+        return length;
+    }
+
+    /**
+     * Calculate the state hash for the current height
+     *
+     * The state hash covers the last block identifier and the current rows of the derived tables,
+     * excluding the database identifiers.  The caller must hold the blockchain read lock.
+     *
+     * @return                      State hash
+     */
+    public static byte[] getStateHash() {
+        MessageDigest digest = Crypto.sha256();
+        digest.update(Convert.toBytes(Long.toUnsignedString(BlockchainImpl.getInstance().getLastBlock().getId())));
+        try (Connection con = Db.db.getConnection()) {
+            for (DerivedDbTable table : BlockchainProcessorImpl.getInstance().getDerivedTables()) {
+                String tableName = table.toString();
+                if (table instanceof PrunableDbTable || excludedTables.contains(tableName)) {
+                    continue;
+                }
+                List<String> columns = new ArrayList<>();
+                boolean isVersioned = false;
+                DatabaseMetaData metaData = con.getMetaData();
+                try (ResultSet rs = metaData.getColumns(null, "PUBLIC", tableName.toUpperCase(), null)) {
+                    while (rs.next()) {
+                        String column = rs.getString("COLUMN_NAME");
+                        if (column.equals("LATEST")) {
+                            isVersioned = true;
+                        } else if (!column.equals("DB_ID")) {
+                            columns.add(column);
+                        }
+                    }
+                }
+                if (columns.isEmpty()) {
+                    continue;
+                }
+                String columnList = String.join(",", columns);
+                digest.update(tableName.getBytes(StandardCharsets.UTF_8));
+                try (Statement stmt = con.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT " + columnList + " FROM " + tableName
+                             + (isVersioned ? " WHERE latest = TRUE" : "") + " ORDER BY " + columnList)) {
+                    ResultSetMetaData rsMetaData = rs.getMetaData();
+                    int columnCount = rsMetaData.getColumnCount();
+                    while (rs.next()) {
+                        for (int i = 1; i <= columnCount; i++) {
+                            String value = rs.getString(i);
+                            digest.update(value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[] {(byte)0xff});
+                            digest.update((byte)0);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Verify the blocks and transactions contained in an imported snapshot
+     *
+     * The block signatures, the previous block hashes, the generation signatures, the payload hashes and
+     * the transaction signatures are verified up to the snapshot height.  The derived tables are not
+     * verified, compare the logged state hash with that of an independent node for that.
+     */
+    private static void verifyBlocks() {
+        int height = BlockDb.findLastBlock().getHeight();
+        Logger.logInfoMessage("Verifying the blocks of the imported snapshot up to height " + height);
+        try {
+            BlockImpl previousBlock = BlockDb.findBlockAtHeight(0);
+            for (int i = 1; i <= height; i++) {
+                BlockImpl block = BlockDb.findBlockAtHeight(i);
+                String error = verifyBlock(block, previousBlock);
+                if (error != null) {
+                    Logger.logErrorMessage("Imported snapshot verification failed at height " + i + ": " + error
+                            + ", the database must be deleted and the blockchain downloaded again");
+                    return;
+                }
+                if (i % 50000 == 0) {
+                    Logger.logInfoMessage("Imported snapshot verified up to height " + i);
+                }
+                previousBlock = block;
+            }
+            Logger.logInfoMessage("Imported snapshot blocks successfully verified");
+        } catch (RuntimeException e) {
+            Logger.logErrorMessage("Unable to verify the imported snapshot", e);
+        }
+    }
+
+    private static String verifyBlock(BlockImpl block, BlockImpl previousBlock) {
+        if (block.getPreviousBlockId() != previousBlock.getId()) {
+            return "previous block id mismatch";
+        }
+        MessageDigest digest = Crypto.sha256();
+        if (block.getVersion() > 1 && !Arrays.equals(digest.digest(previousBlock.bytes()), block.getPreviousBlockHash())) {
+            return "previous block hash mismatch";
+        }
+        byte[] blockBytes = block.bytes();
+        if (!Crypto.verify(block.getBlockSignature(), Arrays.copyOf(blockBytes, blockBytes.length - 64),
+                block.getGeneratorPublicKey(), block.getVersion() >= 3)) {
+            return "invalid block signature";
+        }
+        if (block.getVersion() == 1) {
+            if (!Crypto.verify(block.getGenerationSignature(), previousBlock.getGenerationSignature(),
+                    block.getGeneratorPublicKey(), false)) {
+                return "invalid generation signature";
+            }
+        } else {
+            digest.update(previousBlock.getGenerationSignature());
+            if (!Arrays.equals(digest.digest(block.getGeneratorPublicKey()), block.getGenerationSignature())) {
+                return "invalid generation signature";
+            }
+        }
+        for (TransactionImpl transaction : block.getTransactions()) {
+            if (!transaction.verifySignature()) {
+                return "invalid signature for transaction " + transaction.getStringId();
+            }
+            digest.update(transaction.bytes());
+        }
+        if (!Arrays.equals(digest.digest(), block.getPayloadHash())) {
+            return "payload hash mismatch";
+        }
+        return null;
+    }
+
+    private StateSnapshot() {} // never
+}
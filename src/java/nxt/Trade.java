@@ -17,6 +17,7 @@
 package nxt;
 
 import nxt.db.DbClause;
+import nxt.db.DbCursor;
 import nxt.db.DbIterator;
 import nxt.db.DbKey;
 import nxt.db.DbUtils;
@@ -66,6 +67,10 @@ public final class Trade {
         return tradeTable.getAll(from, to);
     }
 
+    public static DbIterator<Trade> getAllTrades(DbCursor cursor, int from, int to) {
+        return tradeTable.getManyBy(DbClause.EMPTY_CLAUSE, cursor, from, to);
+    }
+
     public static int getCount() {
         return tradeTable.getCount();
     }
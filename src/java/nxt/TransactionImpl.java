@@ -26,9 +26,9 @@ import org.json.simple.JSONObject;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -496,12 +496,10 @@ final class TransactionImpl implements Transaction {
             }
             if (useNQT()) {
                 byte[] data = zeroSignature(getBytes());
-                byte[] signatureHash = Crypto.sha256().digest(signature);
-                MessageDigest digest = Crypto.sha256();
-                digest.update(data);
-                fullHash = digest.digest(signatureHash);
+                byte[] signatureHash = Crypto.sha256(signature);
+                fullHash = Crypto.sha256(data, signatureHash);
             } else {
-                fullHash = Crypto.sha256().digest(bytes());
+                fullHash = Crypto.sha256(bytes());
             }
             BigInteger bigInteger = new BigInteger(1, new byte[] {fullHash[7], fullHash[6], fullHash[5], fullHash[4], fullHash[3], fullHash[2], fullHash[1], fullHash[0]});
             id = bigInteger.longValue();
@@ -896,6 +894,41 @@ final class TransactionImpl implements Transaction {
 
     private volatile boolean hasValidSignature = false;
 
+    /**
+     * Verify the signatures of a list of transactions as a batch
+     *
+     * Valid signatures are remembered, so that a following call to verifySignature() only
+     * needs to check the sender public key.  Transactions with an invalid signature are left
+     * to be rejected by verifySignature().
+     *
+     * @param   transactions        Transactions to check
+     */
+    static void checkSignatures(List<TransactionImpl> transactions) {
+        List<TransactionImpl> unchecked = new ArrayList<>(transactions.size());
+        for (TransactionImpl transaction : transactions) {
+            if (!transaction.hasValidSignature && transaction.signature != null && transaction.useNQT()
+                    && transaction.getSenderPublicKey() != null) {
+                unchecked.add(transaction);
+            }
+        }
+        if (unchecked.size() < 2) {
+            return;
+        }
+        byte[][] signatures = new byte[unchecked.size()][];
+        byte[][] messages = new byte[unchecked.size()][];
+        byte[][] publicKeys = new byte[unchecked.size()][];
+        for (int i = 0; i < unchecked.size(); i++) {
+            TransactionImpl transaction = unchecked.get(i);
+            signatures[i] = transaction.signature;
+            messages[i] = transaction.zeroSignature(transaction.getBytes());
+            publicKeys[i] = transaction.getSenderPublicKey();
+        }
+        BitSet verified = Crypto.verifyBatch(signatures, messages, publicKeys, true);
+        for (int i = verified.nextSetBit(0); i >= 0; i = verified.nextSetBit(i + 1)) {
+            unchecked.get(i).hasValidSignature = true;
+        }
+    }
+
     private boolean checkSignature() {
         if (!hasValidSignature) {
             hasValidSignature = signature != null && Crypto.verify(signature, zeroSignature(getBytes()), getSenderPublicKey(), useNQT());
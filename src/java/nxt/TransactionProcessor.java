@@ -57,6 +57,18 @@ public interface TransactionProcessor extends Observable<List<? extends Transact
 
     void broadcast(Transaction transaction) throws NxtException.ValidationException;
 
+    /**
+     * Broadcast a list of transactions
+     *
+     * The signatures are verified as a batch before the blockchain write lock is obtained,
+     * and the transactions are added to the unconfirmed pool in a single database transaction
+     *
+     * @param   transactions        Transactions
+     * @return                      Validation exception for each transaction that was not accepted,
+     *                              or null if the transaction was accepted, in transaction order
+     */
+    List<NxtException.ValidationException> broadcast(List<? extends Transaction> transactions);
+
     void processPeerTransactions(JSONObject request) throws NxtException.ValidationException;
 
     void processLater(Collection<? extends Transaction> transactions);
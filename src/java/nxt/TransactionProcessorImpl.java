@@ -431,6 +431,70 @@ final class TransactionProcessorImpl implements TransactionProcessor {
         }
     }
 
+    @Override
+    public List<NxtException.ValidationException> broadcast(List<? extends Transaction> transactions) {
+        List<NxtException.ValidationException> results = new ArrayList<>(Collections.nCopies(transactions.size(), null));
+        List<TransactionImpl> transactionList = new ArrayList<>(transactions.size());
+        transactions.forEach(transaction -> transactionList.add((TransactionImpl)transaction));
+        TransactionImpl.checkSignatures(transactionList);
+        long arrivalTimestamp = System.currentTimeMillis();
+        List<Transaction> acceptedTransactions = new ArrayList<>();
+        BlockchainImpl.getInstance().writeLock();
+        try {
+            boolean broadcastLater = BlockchainProcessorImpl.getInstance().isProcessingBlock();
+            try {
+                Db.db.beginTransaction();
+                for (int i = 0; i < transactionList.size(); i++) {
+                    TransactionImpl transaction = transactionList.get(i);
+                    if (TransactionDb.hasTransaction(transaction.getId())) {
+                        Logger.logMessage("Transaction " + transaction.getStringId() + " already in blockchain, will not broadcast again");
+                        continue;
+                    }
+                    if (getUnconfirmedTransaction(transaction.getDbKey()) != null) {
+                        if (enableTransactionRebroadcasting) {
+                            broadcastedTransactions.add(transaction);
+                        }
+                        continue;
+                    }
+                    try {
+                        transaction.validate();
+                        UnconfirmedTransaction unconfirmedTransaction = new UnconfirmedTransaction(transaction, arrivalTimestamp);
+                        if (broadcastLater) {
+                            waitingTransactions.add(unconfirmedTransaction);
+                            broadcastedTransactions.add(transaction);
+                        } else {
+                            checkTransaction(transaction);
+                            addUnconfirmedTransaction(unconfirmedTransaction);
+                            acceptedTransactions.add(transaction);
+                        }
+                    } catch (NxtException.ValidationException e) {
+                        results.set(i, e);
+                    }
+                }
+                Db.db.commitTransaction();
+            } catch (Exception e) {
+                Logger.logErrorMessage(e.toString(), e);
+                Db.db.rollbackTransaction();
+                acceptedTransactions.forEach(transaction -> transactionCache.remove(((TransactionImpl)transaction).getDbKey()));
+                rebuildUnconfirmedDuplicates();
+                throw e;
+            } finally {
+                Db.db.endTransaction();
+            }
+            if (!acceptedTransactions.isEmpty()) {
+                Logger.logDebugMessage("Accepted " + acceptedTransactions.size() + " new transactions");
+                Peers.sendToSomePeers(acceptedTransactions);
+                transactionListeners.notify(acceptedTransactions, Event.ADDED_UNCONFIRMED_TRANSACTIONS);
+                if (enableTransactionRebroadcasting) {
+                    acceptedTransactions.forEach(transaction -> broadcastedTransactions.add((TransactionImpl)transaction));
+                }
+            }
+        } finally {
+            BlockchainImpl.getInstance().writeUnlock();
+        }
+        return results;
+    }
+
     @Override
     public void processPeerTransactions(JSONObject request) throws NxtException.ValidationException {
         JSONArray transactionsData = (JSONArray)request.get("transactions");
@@ -524,6 +588,18 @@ final class TransactionProcessorImpl implements TransactionProcessor {
         }
     }
 
+    /**
+     * Rebuild the unconfirmed duplicates from the unconfirmed transaction pool after a rollback
+     */
+    private void rebuildUnconfirmedDuplicates() {
+        unconfirmedDuplicates.clear();
+        try (DbIterator<UnconfirmedTransaction> unconfirmedTransactions = getAllUnconfirmedTransactions()) {
+            for (UnconfirmedTransaction unconfirmedTransaction : unconfirmedTransactions) {
+                unconfirmedTransaction.getTransaction().isUnconfirmedDuplicate(unconfirmedDuplicates);
+            }
+        }
+    }
+
     void removeUnconfirmedTransaction(TransactionImpl transaction) {
         if (!Db.db.isInTransaction()) {
             try {
@@ -618,6 +694,7 @@ final class TransactionProcessorImpl implements TransactionProcessor {
         List<TransactionImpl> sendToPeersTransactions = new ArrayList<>();
         List<TransactionImpl> addedUnconfirmedTransactions = new ArrayList<>();
         List<Exception> exceptions = new ArrayList<>();
+        List<TransactionImpl> newTransactions = new ArrayList<>();
         for (Object transactionData : transactionsData) {
             try {
                 TransactionImpl transaction = TransactionImpl.parseTransaction((JSONObject) transactionData);
@@ -625,6 +702,15 @@ final class TransactionProcessorImpl implements TransactionProcessor {
                 if (getUnconfirmedTransaction(transaction.getDbKey()) != null || TransactionDb.hasTransaction(transaction.getId())) {
                     continue;
                 }
+                newTransactions.add(transaction);
+            } catch (NxtException.ValidationException|RuntimeException e) {
+                Logger.logDebugMessage(String.format("Invalid transaction from peer: %s", ((JSONObject) transactionData).toJSONString()), e);
+                exceptions.add(e);
+            }
+        }
+        TransactionImpl.checkSignatures(newTransactions);
+        for (TransactionImpl transaction : newTransactions) {
+            try {
                 transaction.validate();
                 UnconfirmedTransaction unconfirmedTransaction = new UnconfirmedTransaction(transaction, arrivalTimestamp);
                 processTransaction(unconfirmedTransaction);
@@ -638,7 +724,7 @@ final class TransactionProcessorImpl implements TransactionProcessor {
 
             } catch (NxtException.NotCurrentlyValidException ignore) {
             } catch (NxtException.ValidationException|RuntimeException e) {
-                Logger.logDebugMessage(String.format("Invalid transaction from peer: %s", ((JSONObject) transactionData).toJSONString()), e);
+                Logger.logDebugMessage(String.format("Invalid transaction from peer: %s", transaction.getJSONObject().toJSONString()), e);
                 exceptions.add(e);
             }
         }
@@ -655,7 +741,25 @@ final class TransactionProcessorImpl implements TransactionProcessor {
     }
 
     private void processTransaction(UnconfirmedTransaction unconfirmedTransaction) throws NxtException.ValidationException {
-        TransactionImpl transaction = unconfirmedTransaction.getTransaction();
+        checkTransaction(unconfirmedTransaction.getTransaction());
+        BlockchainImpl.getInstance().writeLock();
+        try {
+            try {
+                Db.db.beginTransaction();
+                addUnconfirmedTransaction(unconfirmedTransaction);
+                Db.db.commitTransaction();
+            } catch (Exception e) {
+                Db.db.rollbackTransaction();
+                throw e;
+            } finally {
+                Db.db.endTransaction();
+            }
+        } finally {
+            BlockchainImpl.getInstance().writeUnlock();
+        }
+    }
+
+    private void checkTransaction(TransactionImpl transaction) throws NxtException.ValidationException {
         int curTime = Nxt.getEpochTime();
         if (transaction.getTimestamp() > curTime + Constants.MAX_TIMEDRIFT || transaction.getExpiration() < curTime) {
             throw new NxtException.NotCurrentlyValidException("Invalid transaction timestamp");
@@ -666,47 +770,43 @@ final class TransactionProcessorImpl implements TransactionProcessor {
         if (transaction.getId() == 0L) {
             throw new NxtException.NotValidException("Invalid transaction id 0");
         }
+    }
 
-        BlockchainImpl.getInstance().writeLock();
-        try {
-            try {
-                Db.db.beginTransaction();
-                if (Nxt.getBlockchain().getHeight() <= Constants.LAST_KNOWN_BLOCK && !testUnconfirmedTransactions) {
-                    throw new NxtException.NotCurrentlyValidException("Blockchain not ready to accept transactions");
-                }
-
-                if (getUnconfirmedTransaction(transaction.getDbKey()) != null || TransactionDb.hasTransaction(transaction.getId())) {
-                    throw new NxtException.ExistingTransactionException("Transaction already processed");
-                }
-
-                if (! transaction.verifySignature()) {
-                    if (Account.getAccount(transaction.getSenderId()) != null) {
-                        throw new NxtException.NotValidException("Transaction signature verification failed");
-                    } else {
-                        throw new NxtException.NotCurrentlyValidException("Unknown transaction sender");
-                    }
-                }
+    /**
+     * Add a transaction to the unconfirmed pool
+     *
+     * Must be called with the blockchain write lock held and within a database transaction.
+     * A rejected transaction leaves no changes in the database transaction, so the database
+     * transaction can be used for more than one transaction.
+     */
+    private void addUnconfirmedTransaction(UnconfirmedTransaction unconfirmedTransaction) throws NxtException.ValidationException {
+        TransactionImpl transaction = unconfirmedTransaction.getTransaction();
+        if (Nxt.getBlockchain().getHeight() <= Constants.LAST_KNOWN_BLOCK && !testUnconfirmedTransactions) {
+            throw new NxtException.NotCurrentlyValidException("Blockchain not ready to accept transactions");
+        }
 
-                if (! transaction.applyUnconfirmed()) {
-                    throw new NxtException.InsufficientBalanceException("Insufficient balance");
-                }
+        if (getUnconfirmedTransaction(transaction.getDbKey()) != null || TransactionDb.hasTransaction(transaction.getId())) {
+            throw new NxtException.ExistingTransactionException("Transaction already processed");
+        }
 
-                if (transaction.isUnconfirmedDuplicate(unconfirmedDuplicates)) {
-                    throw new NxtException.NotCurrentlyValidException("Duplicate unconfirmed transaction");
-                }
+        if (! transaction.verifySignature()) {
+            if (Account.getAccount(transaction.getSenderId()) != null) {
+                throw new NxtException.NotValidException("Transaction signature verification failed");
+            } else {
+                throw new NxtException.NotCurrentlyValidException("Unknown transaction sender");
+            }
+        }
 
-                unconfirmedTransactionTable.insert(unconfirmedTransaction);
+        if (! transaction.applyUnconfirmed()) {
+            throw new NxtException.InsufficientBalanceException("Insufficient balance");
+        }
 
-                Db.db.commitTransaction();
-            } catch (Exception e) {
-                Db.db.rollbackTransaction();
-                throw e;
-            } finally {
-                Db.db.endTransaction();
-            }
-        } finally {
-            BlockchainImpl.getInstance().writeUnlock();
+        if (transaction.isUnconfirmedDuplicate(unconfirmedDuplicates)) {
+            transaction.undoUnconfirmed();
+            throw new NxtException.NotCurrentlyValidException("Duplicate unconfirmed transaction");
         }
+
+        unconfirmedTransactionTable.insert(unconfirmedTransaction);
     }
 
     private static final Comparator<UnconfirmedTransaction> cachedUnconfirmedTransactionComparator = (UnconfirmedTransaction t1, UnconfirmedTransaction t2) -> {
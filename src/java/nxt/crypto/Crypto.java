@@ -30,16 +30,23 @@ import org.bouncycastle.crypto.params.ParametersWithIV;
 import org.bouncycastle.jcajce.provider.digest.Keccak;
 import org.bouncycastle.jcajce.provider.digest.RIPEMD160;
 
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public final class Crypto {
 
     private static final boolean useStrongSecureRandom = Nxt.getBooleanProperty("nxt.useStrongSecureRandom");
 
+    private static final Curve25519Provider curve25519 = Nxt.getBooleanProperty("nxt.useFastCurve25519") ?
+            Curve25519Provider.FAST : Curve25519Provider.REFERENCE;
+
     private static final ThreadLocal<SecureRandom> secureRandom = ThreadLocal.withInitial(() -> {
         try {
             SecureRandom secureRandom = useStrongSecureRandom ? SecureRandom.getInstanceStrong() : new SecureRandom();
@@ -51,6 +58,15 @@ public final class Crypto {
         }
     });
 
+    private static final MessageDigest sha256Prototype = getMessageDigest("SHA-256");
+
+    private static final boolean sha256Cloneable = isCloneable(sha256Prototype);
+
+    /** Per-thread digests for the one-shot hash methods */
+    private static final ThreadLocal<MessageDigest> sha256Digest = ThreadLocal.withInitial(Crypto::sha256);
+    private static final ThreadLocal<MessageDigest> ripemd160Digest = ThreadLocal.withInitial(Crypto::ripemd160);
+    private static final ThreadLocal<MessageDigest> sha3Digest = ThreadLocal.withInitial(Crypto::sha3);
+
     private Crypto() {} //never
 
     public static SecureRandom getSecureRandom() {
@@ -66,7 +82,22 @@ public final class Crypto {
         }
     }
 
+    /**
+     * Return a new SHA-256 digest
+     *
+     * The digest is cloned from a prototype instance to avoid the provider lookup done by
+     * MessageDigest.getInstance().  Use sha256(byte[]) instead when just hashing a single value.
+     *
+     * @return                      SHA-256 digest
+     */
     public static MessageDigest sha256() {
+        if (sha256Cloneable) {
+            try {
+                return (MessageDigest)sha256Prototype.clone();
+            } catch (CloneNotSupportedException e) {
+                // fall through
+            }
+        }
         return getMessageDigest("SHA-256");
     }
 
@@ -78,6 +109,65 @@ public final class Crypto {
         return new Keccak.Digest256();
     }
 
+    /**
+     * Return the SHA-256 hash of the input using a digest owned by the current thread
+     *
+     * @param   input               Data to hash
+     * @return                      Hash
+     */
+    public static byte[] sha256(byte[] input) {
+        MessageDigest digest = sha256Digest.get();
+        digest.reset();
+        return digest.digest(input);
+    }
+
+    /**
+     * Return the SHA-256 hash of the concatenated inputs using a digest owned by the current thread
+     *
+     * @param   input1              First data to hash
+     * @param   input2              Second data to hash
+     * @return                      Hash
+     */
+    public static byte[] sha256(byte[] input1, byte[] input2) {
+        MessageDigest digest = sha256Digest.get();
+        digest.reset();
+        digest.update(input1);
+        return digest.digest(input2);
+    }
+
+    /**
+     * Return the RIPEMD-160 hash of the input using a digest owned by the current thread
+     *
+     * @param   input               Data to hash
+     * @return                      Hash
+     */
+    public static byte[] ripemd160(byte[] input) {
+        MessageDigest digest = ripemd160Digest.get();
+        digest.reset();
+        return digest.digest(input);
+    }
+
+    /**
+     * Return the SHA-3 (Keccak-256) hash of the input using a digest owned by the current thread
+     *
+     * @param   input               Data to hash
+     * @return                      Hash
+     */
+    public static byte[] sha3(byte[] input) {
+        MessageDigest digest = sha3Digest.get();
+        digest.reset();
+        return digest.digest(input);
+    }
+
+    private static boolean isCloneable(MessageDigest digest) {
+        try {
+            digest.clone();
+            return true;
+        } catch (CloneNotSupportedException e) {
+            return false;
+        }
+    }
+
     public static byte[] getKeySeed(String secretPhrase, byte[]... nonces) {
         MessageDigest digest = Crypto.sha256();
         digest.update(Convert.toBytes(secretPhrase));
@@ -89,14 +179,12 @@ public final class Crypto {
 
     public static byte[] getPublicKey(byte[] keySeed) {
         byte[] publicKey = new byte[32];
-        Curve25519.keygen(publicKey, null, Arrays.copyOf(keySeed, keySeed.length));
+        curve25519.keygen(publicKey, null, Arrays.copyOf(keySeed, keySeed.length));
         return publicKey;
     }
 
     public static byte[] getPublicKey(String secretPhrase) {
-        byte[] publicKey = new byte[32];
-        Curve25519.keygen(publicKey, null, Crypto.sha256().digest(Convert.toBytes(secretPhrase)));
-        return publicKey;
+        return SigningKeyStore.getSigningKey(secretPhrase).getPublicKey().clone();
     }
 
     public static byte[] getPrivateKey(byte[] keySeed) {
@@ -106,34 +194,51 @@ public final class Crypto {
     }
 
     public static byte[] getPrivateKey(String secretPhrase) {
-        byte[] s = Crypto.sha256().digest(Convert.toBytes(secretPhrase));
+        byte[] s = sha256(Convert.toBytes(secretPhrase));
         Curve25519.clamp(s);
         return s;
     }
 
     public static void curve(byte[] Z, byte[] k, byte[] P) {
-        Curve25519.curve(Z, k, P);
+        curve25519.curve(Z, k, P);
+    }
+
+    static void keygen(byte[] P, byte[] s, byte[] k) {
+        curve25519.keygen(P, s, k);
     }
 
     public static byte[] sign(byte[] message, String secretPhrase) {
-        byte[] P = new byte[32];
-        byte[] s = new byte[32];
-        MessageDigest digest = Crypto.sha256();
-        Curve25519.keygen(P, s, digest.digest(Convert.toBytes(secretPhrase)));
+        try {
+            return SigningKeyStore.getSigningKey(secretPhrase).sign(message);
+        } catch (IllegalStateException e) {
+            // The cached key was wiped while we were using it
+            return SigningKey.fromSecretPhrase(secretPhrase).sign(message);
+        }
+    }
 
-        byte[] m = digest.digest(message);
+    /**
+     * Sign a message using a previously derived signing key
+     *
+     * @param   message             Message to sign
+     * @param   signingKey          Signing key
+     * @return                      Signature
+     */
+    public static byte[] sign(byte[] message, SigningKey signingKey) {
+        return signingKey.sign(message);
+    }
+
+    static byte[] sign(byte[] message, byte[] s) {
+        byte[] m = sha256(message);
 
-        digest.update(m);
-        byte[] x = digest.digest(s);
+        byte[] x = sha256(m, s);
 
         byte[] Y = new byte[32];
-        Curve25519.keygen(Y, null, x);
+        curve25519.keygen(Y, null, x);
 
-        digest.update(m);
-        byte[] h = digest.digest(Y);
+        byte[] h = sha256(m, Y);
 
         byte[] v = new byte[32];
-        Curve25519.sign(v, h, x, s);
+        curve25519.sign(v, h, x, s);
 
         byte[] signature = new byte[64];
         System.arraycopy(v, 0, signature, 0, 32);
@@ -142,6 +247,43 @@ public final class Crypto {
     }
 
     public static boolean verify(byte[] signature, byte[] message, byte[] publicKey, boolean enforceCanonical) {
+        return verify(signature, message, publicKey, enforceCanonical, verifyContexts.get());
+    }
+
+    /**
+     * Verify a batch of signatures
+     *
+     * Large batches are split across the common fork-join pool.  The result bit for an entry
+     * is set if the signature is valid.
+     *
+     * @param   signatures          Signatures
+     * @param   messages            Signed messages
+     * @param   publicKeys          Signer public keys
+     * @param   enforceCanonical    TRUE to reject non-canonical signatures and public keys
+     * @return                      Verification results
+     */
+    public static BitSet verifyBatch(byte[][] signatures, byte[][] messages, byte[][] publicKeys, boolean enforceCanonical) {
+        if (messages.length != signatures.length || publicKeys.length != signatures.length) {
+            throw new IllegalArgumentException("Signature, message and public key counts are not the same");
+        }
+        boolean[] results = new boolean[signatures.length];
+        VerifyTask task = new VerifyTask(signatures, messages, publicKeys, enforceCanonical, results, 0, signatures.length);
+        if (signatures.length <= VerifyTask.BATCH_SIZE) {
+            task.compute();
+        } else {
+            ForkJoinPool.commonPool().invoke(task);
+        }
+        BitSet verified = new BitSet(results.length);
+        for (int i = 0; i < results.length; i++) {
+            if (results[i]) {
+                verified.set(i);
+            }
+        }
+        return verified;
+    }
+
+    private static boolean verify(byte[] signature, byte[] message, byte[] publicKey, boolean enforceCanonical,
+                                  VerifyContext ctx) {
         try {
             if (signature.length != 64) {
                 return false;
@@ -156,27 +298,85 @@ public final class Crypto {
                 return false;
             }
 
-            byte[] Y = new byte[32];
-            byte[] v = new byte[32];
+            byte[] Y = ctx.Y;
+            byte[] v = ctx.v;
             System.arraycopy(signature, 0, v, 0, 32);
-            byte[] h = new byte[32];
+            byte[] h = ctx.h;
             System.arraycopy(signature, 32, h, 0, 32);
-            Curve25519.verify(Y, v, h, publicKey);
-
-            MessageDigest digest = Crypto.sha256();
-            byte[] m = digest.digest(message);
-            digest.update(m);
-            byte[] h2 = digest.digest(Y);
-
-            return Arrays.equals(h, h2);
-        } catch (RuntimeException e) {
+            curve25519.verify(Y, v, h, publicKey);
+
+            MessageDigest digest = ctx.digest;
+            digest.reset();
+            digest.update(message);
+            digest.digest(ctx.m, 0, 32);
+            digest.update(ctx.m);
+            digest.update(Y);
+            digest.digest(ctx.h2, 0, 32);
+
+            return Arrays.equals(h, ctx.h2);
+        } catch (RuntimeException | DigestException e) {
             Logger.logErrorMessage("Error verifying signature", e);
             return false;
         }
     }
 
+    private static final ThreadLocal<VerifyContext> verifyContexts = ThreadLocal.withInitial(VerifyContext::new);
+
+    /**
+     * Per-thread signature verification buffers
+     */
+    private static final class VerifyContext {
+        private final MessageDigest digest = sha256Digest.get();
+        private final byte[] Y = new byte[32];
+        private final byte[] v = new byte[32];
+        private final byte[] h = new byte[32];
+        private final byte[] m = new byte[32];
+        private final byte[] h2 = new byte[32];
+    }
+
+    /**
+     * Verify a range of a signature batch, splitting it until it is small enough
+     */
+    private static final class VerifyTask extends RecursiveAction {
+
+        private static final int BATCH_SIZE = 8;
+
+        private final byte[][] signatures;
+        private final byte[][] messages;
+        private final byte[][] publicKeys;
+        private final boolean enforceCanonical;
+        private final boolean[] results;
+        private final int start;
+        private final int end;
+
+        private VerifyTask(byte[][] signatures, byte[][] messages, byte[][] publicKeys, boolean enforceCanonical,
+                           boolean[] results, int start, int end) {
+            this.signatures = signatures;
+            this.messages = messages;
+            this.publicKeys = publicKeys;
+            this.enforceCanonical = enforceCanonical;
+            this.results = results;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= BATCH_SIZE) {
+                VerifyContext ctx = verifyContexts.get();
+                for (int i = start; i < end; i++) {
+                    results[i] = verify(signatures[i], messages[i], publicKeys[i], enforceCanonical, ctx);
+                }
+            } else {
+                int mid = (start + end) >>> 1;
+                invokeAll(new VerifyTask(signatures, messages, publicKeys, enforceCanonical, results, start, mid),
+                        new VerifyTask(signatures, messages, publicKeys, enforceCanonical, results, mid, end));
+            }
+        }
+    }
+
     public static byte[] getSharedKey(byte[] myPrivateKey, byte[] theirPublicKey) {
-        return sha256().digest(getSharedSecret(myPrivateKey, theirPublicKey));
+        return sha256(getSharedSecret(myPrivateKey, theirPublicKey));
     }
 
     public static byte[] getSharedKey(byte[] myPrivateKey, byte[] theirPublicKey, byte[] nonce) {
@@ -184,13 +384,13 @@ public final class Crypto {
         for (int i = 0; i < 32; i++) {
             dhSharedSecret[i] ^= nonce[i];
         }
-        return sha256().digest(dhSharedSecret);
+        return sha256(dhSharedSecret);
     }
 
     private static byte[] getSharedSecret(byte[] myPrivateKey, byte[] theirPublicKey) {
         try {
             byte[] sharedSecret = new byte[32];
-            Curve25519.curve(sharedSecret, myPrivateKey, theirPublicKey);
+            curve25519.curve(sharedSecret, myPrivateKey, theirPublicKey);
             return sharedSecret;
         } catch (RuntimeException e) {
             Logger.logMessage("Error getting shared secret", e);
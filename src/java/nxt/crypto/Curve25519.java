@@ -902,26 +902,34 @@ final class Curve25519 {
             sub(dx, dx, t1);	/* dx = t2 (Px - Gx)^2 - Py^2  */
             dx._0 -= 39420360;	/* dx = t2 (Px - Gx)^2 - Py^2 - Gy^2  */
             mul(t1, dx, BASE_R2Y);	/* t1 = -Py  */
-            if (is_negative(t1)!=0)	/* sign is 1, so just copy  */
-                cpy32(s, k);
-            else			/* sign is -1, so negate  */
-                mula_small(s, ORDER_TIMES_8, 0, k, 32, -1);
-
-            /* reduce s mod q
-             * (is this needed?  do it just in case, it's fast anyway) */
-            //divmod((dstptr) t1, s, 32, order25519, 32);
-
-            /* take reciprocal of s mod q */
-            byte[] temp1=new byte[32];
-            byte[] temp2=new byte[64];
-            byte[] temp3=new byte[64];
-            cpy32(temp1, ORDER);
-            cpy32(s, egcd32(temp2, temp3, s, temp1));
-            if ((s[31] & 0x80)!=0)
-                mula_small(s, s, 0, ORDER, 32, 1);
+            signing_key(s, k, is_negative(t1)!=0);
         }
     }
 
+    /* s = sign(P)/k mod q
+     *   s  [out] private key for signing
+     *   k  [in]  private key for key agreement
+     *   negative [in] sign of -Py  */
+    static void signing_key(byte[] s, byte[] k, boolean negative) {
+        if (negative)	/* sign is 1, so just copy  */
+            cpy32(s, k);
+        else			/* sign is -1, so negate  */
+            mula_small(s, ORDER_TIMES_8, 0, k, 32, -1);
+
+        /* reduce s mod q
+         * (is this needed?  do it just in case, it's fast anyway) */
+        //divmod((dstptr) t1, s, 32, order25519, 32);
+
+        /* take reciprocal of s mod q */
+        byte[] temp1=new byte[32];
+        byte[] temp2=new byte[64];
+        byte[] temp3=new byte[64];
+        cpy32(temp1, ORDER);
+        cpy32(s, egcd32(temp2, temp3, s, temp1));
+        if ((s[31] & 0x80)!=0)
+            mula_small(s, s, 0, ORDER, 32, 1);
+    }
+
     /* smallest multiple of the order that's >= 2^255 */
     private static final byte[] ORDER_TIMES_8 = {
             (byte)104, (byte)159, (byte)174, (byte)231,
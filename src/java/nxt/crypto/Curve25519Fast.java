@@ -0,0 +1,922 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.crypto;
+
+import java.util.Arrays;
+
+/**
+ * Optimized Curve25519 implementation
+ *
+ * Signature verification computes v abs(P) + h G on the birationally equivalent twisted
+ * Edwards curve, using a signed sliding window for both scalars with the shared doublings
+ * and a precomputed table of base point multiples, instead of the three-point Montgomery
+ * ladder of the reference implementation.  Public keys for which the reference ladder is
+ * not defined, or which are not on the curve, are verified using the reference
+ * implementation, so the output is identical for every input.
+ *
+ * The same radix 2^25.5 field arithmetic as the reference implementation is used, since
+ * Java 8 has no 64x64 to 128 bit multiplication for a radix 2^51 representation.  All
+ * temporary values are allocated once per thread, and key generation and key agreement
+ * use a Montgomery ladder with conditional swaps instead of indexing by the key bits.
+ */
+final class Curve25519Fast implements Curve25519Provider {
+
+    static final Curve25519Fast instance = new Curve25519Fast();
+
+    private static final ThreadLocal<Context> contexts = ThreadLocal.withInitial(Context::new);
+
+    private Curve25519Fast() {}
+
+    @Override
+    public void keygen(byte[] P, byte[] s, byte[] k) {
+        Curve25519.clamp(k);
+        core(contexts.get(), P, s, k, null);
+    }
+
+    @Override
+    public void curve(byte[] Z, byte[] k, byte[] P) {
+        core(contexts.get(), Z, null, k, P);
+    }
+
+    @Override
+    public boolean sign(byte[] v, byte[] h, byte[] x, byte[] s) {
+        // Radix 2^8 arithmetic modulo the group order, not worth duplicating
+        return Curve25519.sign(v, h, x, s);
+    }
+
+    @Override
+    public void verify(byte[] Y, byte[] v, byte[] h, byte[] P) {
+        /* Y = v abs(P) + h G, calculated on the birationally equivalent
+         * twisted Edwards curve -x^2 + y^2 = 1 + d x^2 y^2  */
+        Context ctx = contexts.get();
+        ExtendedPoint A = ctx.a, r = ctx.r, u = ctx.u;
+        CompletedPoint t = ctx.t;
+        CachedPoint[] Ai = ctx.ai;
+        byte[] aslide = ctx.aslide, bslide = ctx.bslide;
+        int i;
+
+        if (!unpack_point(ctx, A, P)) {
+            /* the reference ladder gives its own result for these */
+            Curve25519.verify(Y, v, h, P);
+            return;
+        }
+
+        /* Ai = A, 3A, 5A, ... 15A  */
+        to_cached(Ai[0], A);
+        ed_dbl(t, A, ctx.e0);
+        to_p3(u, t);
+        for (i = 1; i < 8; i++) {
+            ed_add(t, u, Ai[i - 1], ctx.e0, false);
+            to_p3(ctx.a2, t);
+            to_cached(Ai[i], ctx.a2);
+        }
+
+        slide(aslide, v);
+        slide(bslide, h);
+        for (i = 256; i >= 0 && aslide[i] == 0 && bslide[i] == 0; i--)
+            ;
+
+        /* r = identity */
+        set(r.X, 0);
+        set(r.Y, 1);
+        set(r.Z, 1);
+
+        for (; i >= 0; i--) {
+            ed_dbl(t, r, ctx.e0);
+            if (aslide[i] != 0) {
+                to_p3(u, t);
+                ed_add(t, u, Ai[Math.abs(aslide[i]) >> 1], ctx.e0, aslide[i] < 0);
+            }
+            if (bslide[i] != 0) {
+                to_p3(u, t);
+                ed_madd(t, u, BASE_MULTIPLES[Math.abs(bslide[i]) >> 1], ctx.e0, bslide[i] < 0);
+            }
+            to_p2(r, t);
+        }
+
+        /* Montgomery u = (1 + y) / (1 - y)  */
+        add(ctx.e0, r.Z, r.Y);
+        sub(ctx.e1, r.Z, r.Y);
+        recip(ctx, ctx.e2, ctx.e1, 0);
+        mul(ctx.e1, ctx.e0, ctx.e2);
+        pack(ctx.e1, Y);
+    }
+
+    /* Convert a public key to abs(P) in extended Edwards coordinates.  Returns
+     * false if P is not on the curve, or if P, P+G or P-G is a point where the
+     * reference ladder or the birational map is not defined, in which case the
+     * caller must use the reference implementation  */
+    private static boolean unpack_point(Context ctx, ExtendedPoint p, byte[] P) {
+        FieldElement u = ctx.e0, w = ctx.e1, y = ctx.e2, t = ctx.e3;
+        byte[] b = ctx.b1;
+
+        unpack(u, P);
+        mul_small(u, u, 1);		/* reduce */
+        pack(u, b);
+        if (Arrays.equals(b, Curve25519.ZERO) || Arrays.equals(b, U_NINE) ||
+                Arrays.equals(b, U_INV_NINE) || Arrays.equals(b, U_MINUS_ONE))
+            return false;
+        x_to_y2(t, w, u);		/* w = Py^2  */
+        sqrt(ctx, y, w);		/* y = Py or -Py  */
+        sqr(t, y);
+        if (!equals(ctx, t, w))
+            return false;		/* not on the curve  */
+        if (is_negative(y) != 0) {
+            set(t, 0);
+            sub(y, t, y);
+            mul_small(y, y, 1);
+        }
+        to_edwards(p, u, y, ctx.e3, ctx.e1);
+        return true;
+    }
+
+    /* Birational map from Montgomery (u, v) to extended Edwards coordinates
+     *   X = c u (u + 1), Y = (u - 1) v, Z = v (u + 1), T = c u (u - 1)
+     * where c = sqrt(-486664).  u and v are preserved  */
+    private static void to_edwards(ExtendedPoint p, FieldElement u, FieldElement v, FieldElement t1, FieldElement t2) {
+        mul(t1, SQRT_M486664, u);	/* t1 = c u  */
+        cpy(t2, u);
+        t2._0 += 1;			/* t2 = u + 1  */
+        mul(p.X, t1, t2);
+        mul(p.Z, v, t2);
+        t2._0 -= 2;			/* t2 = u - 1  */
+        mul(p.T, t1, t2);
+        mul(p.Y, t2, v);
+    }
+
+    /* Signed sliding window representation of a 256-bit scalar, odd digits in
+     * range -15 .. 15, one more digit than bits for the final carry  */
+    private static void slide(byte[] r, byte[] a) {
+        int i, b, k;
+        for (i = 0; i < 256; ++i)
+            r[i] = (byte)(1 & ((a[i >> 3] & 0xFF) >> (i & 7)));
+        r[256] = 0;
+        for (i = 0; i < 257; ++i) {
+            if (r[i] != 0) {
+                for (b = 1; b <= 6 && i + b < 257; ++b) {
+                    if (r[i + b] != 0) {
+                        if (r[i] + (r[i + b] << b) <= 15) {
+                            r[i] += r[i + b] << b;
+                            r[i + b] = 0;
+                        } else if (r[i] - (r[i + b] << b) >= -15) {
+                            r[i] -= r[i + b] << b;
+                            for (k = i + b; k < 257; ++k) {
+                                if (r[k] == 0) {
+                                    r[k] = 1;
+                                    break;
+                                }
+                                r[k] = 0;
+                            }
+                        } else {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /* P = kG   and  s = sign(P)/k  */
+    private static void core(Context ctx, byte[] Px, byte[] s, byte[] k, byte[] Gx) {
+        FieldElement dx = ctx.dx, t1 = ctx.c1, t2 = ctx.c2, t3 = ctx.c3, t4 = ctx.c4;
+        FieldElement x0 = ctx.x0, z0 = ctx.z0, x1 = ctx.x1, z1 = ctx.z1;
+        int i, j;
+
+        /* unpack the base */
+        if (Gx!=null)
+            unpack(dx, Gx);
+        else
+            set(dx, 9);
+
+        /* 0G = point-at-infinity */
+        set(x0, 1);
+        set(z0, 0);
+
+        /* 1G = G */
+        cpy(x1, dx);
+        set(z1, 1);
+
+        long swap = 0;
+        for (i = 32; i--!=0; ) {
+            for (j = 8; j--!=0; ) {
+                /* swap arguments depending on bit, without branching on the key,
+                 * the swap back is merged with the swap for the next bit */
+                long bit = ((k[i] & 0xFF) >> j & 1) ^ 1;
+                swap ^= bit;
+                cswap(x0, x1, swap);
+                cswap(z0, z1, swap);
+                swap = bit;
+
+                /* a' = a + b	*/
+                /* b' = 2 b	*/
+                mont_prep(t1, t2, x0, z0);
+                mont_prep(t3, t4, x1, z1);
+                mont_add(t1, t2, t3, t4, x0, z0, dx);
+                mont_dbl(t1, t2, t3, t4, x1, z1);
+            }
+        }
+        cswap(x0, x1, swap);
+        cswap(z0, z1, swap);
+
+        recip(ctx, t1, z0, 0);
+        mul(dx, x0, t1);
+        pack(dx, Px);
+
+        /* calculate s such that s abs(P) = G  .. assumes G is std base point */
+        if (s!=null) {
+            x_to_y2(t2, t1, dx);	/* t1 = Py^2  */
+            recip(ctx, t3, z1, 0);	/* where Q=P+G ... */
+            mul(t2, x1, t3);	/* t2 = Qx  */
+            add(t2, t2, dx);	/* t2 = Qx + Px  */
+            t2._0 += 9 + 486662;	/* t2 = Qx + Px + Gx + 486662  */
+            dx._0 -= 9;		/* dx = Px - Gx  */
+            sqr(t3, dx);	/* t3 = (Px - Gx)^2  */
+            mul(dx, t2, t3);	/* dx = t2 (Px - Gx)^2  */
+            sub(dx, dx, t1);	/* dx = t2 (Px - Gx)^2 - Py^2  */
+            dx._0 -= 39420360;	/* dx = t2 (Px - Gx)^2 - Py^2 - Gy^2  */
+            mul(t1, dx, BASE_R2Y);	/* t1 = -Py  */
+            Curve25519.signing_key(s, k, is_negative(t1)!=0);
+        }
+    }
+
+    /* Per-thread temporaries */
+    private static final class Context {
+        /* verify */
+        private final ExtendedPoint a = new ExtendedPoint(), a2 = new ExtendedPoint(),
+                r = new ExtendedPoint(), u = new ExtendedPoint();
+        private final CompletedPoint t = new CompletedPoint();
+        private final CachedPoint[] ai = new CachedPoint[8];
+        private final byte[] aslide = new byte[257], bslide = new byte[257];
+        private final FieldElement e0 = new FieldElement(), e1 = new FieldElement(), e2 = new FieldElement(),
+                e3 = new FieldElement();
+        private final byte[] b1 = new byte[32], b2 = new byte[32];
+        /* core */
+        private final FieldElement dx = new FieldElement(), c1 = new FieldElement(), c2 = new FieldElement(),
+                c3 = new FieldElement(), c4 = new FieldElement();
+        private final FieldElement x0 = new FieldElement(), z0 = new FieldElement(),
+                x1 = new FieldElement(), z1 = new FieldElement();
+        /* recip */
+        private final FieldElement r0 = new FieldElement(), r1 = new FieldElement(), r2 = new FieldElement(),
+                r3 = new FieldElement(), r4 = new FieldElement();
+        /* sqrt */
+        private final FieldElement q0 = new FieldElement(), q1 = new FieldElement(), q2 = new FieldElement();
+
+        private Context() {
+            for (int i = 0; i < ai.length; i++) {
+                ai[i] = new CachedPoint();
+            }
+        }
+    }
+
+    /* Edwards point (X:Y:Z:T) with x = X/Z, y = Y/Z, xy = T/Z, T is not
+     * maintained when only used for doubling  */
+    private static final class ExtendedPoint {
+        private final FieldElement X = new FieldElement(), Y = new FieldElement(),
+                Z = new FieldElement(), T = new FieldElement();
+    }
+
+    /* Edwards point ((X:Z),(Y:T)) with x = X/Z, y = Y/T  */
+    private static final class CompletedPoint {
+        private final FieldElement X = new FieldElement(), Y = new FieldElement(),
+                Z = new FieldElement(), T = new FieldElement();
+    }
+
+    /* Edwards point prepared for addition (Y+X, Y-X, Z, 2dT)  */
+    private static final class CachedPoint {
+        private final FieldElement YplusX = new FieldElement(), YminusX = new FieldElement(),
+                Z = new FieldElement(), T2d = new FieldElement();
+    }
+
+    /* Affine Edwards point prepared for addition (y+x, y-x, 2dxy)  */
+    private static final class AffinePoint {
+        private final FieldElement yplusx = new FieldElement(), yminusx = new FieldElement(),
+                xy2d = new FieldElement();
+    }
+
+    /* Using fields instead of long[10] to avoid bounds checks */
+    private static final class FieldElement {
+        private FieldElement() {}
+        private FieldElement(
+                long _0, long _1, long _2, long _3, long _4,
+                long _5, long _6, long _7, long _8, long _9)
+        {
+            this._0=_0; this._1=_1; this._2=_2;
+            this._3=_3; this._4=_4; this._5=_5;
+            this._6=_6; this._7=_7; this._8=_8;
+            this._9=_9;
+        }
+        private long _0,_1,_2,_3,_4,_5,_6,_7,_8,_9;
+    }
+
+    /********************* radix 2^25.5 GF(2^255-19) math *********************/
+
+    private static final int P25=33554431;	/* (1 << 25) - 1 */
+    private static final int P26=67108863;	/* (1 << 26) - 1 */
+
+    /* Convert to internal format from little-endian byte format */
+    private static void unpack(FieldElement x,byte[] m) {
+        x._0 = ((m[0] & 0xFF))         | ((m[1] & 0xFF))<<8 |
+                (m[2] & 0xFF)<<16      | ((m[3] & 0xFF)& 3)<<24;
+        x._1 = ((m[3] & 0xFF)&~ 3)>>2  | (m[4] & 0xFF)<<6 |
+                (m[5] & 0xFF)<<14 | ((m[6] & 0xFF)& 7)<<22;
+        x._2 = ((m[6] & 0xFF)&~ 7)>>3  | (m[7] & 0xFF)<<5 |
+                (m[8] & 0xFF)<<13 | ((m[9] & 0xFF)&31)<<21;
+        x._3 = ((m[9] & 0xFF)&~31)>>5  | (m[10] & 0xFF)<<3 |
+                (m[11] & 0xFF)<<11 | ((m[12] & 0xFF)&63)<<19;
+        x._4 = ((m[12] & 0xFF)&~63)>>6 | (m[13] & 0xFF)<<2 |
+                (m[14] & 0xFF)<<10 |  (m[15] & 0xFF)    <<18;
+        x._5 =  (m[16] & 0xFF)         | (m[17] & 0xFF)<<8 |
+                (m[18] & 0xFF)<<16 | ((m[19] & 0xFF)& 1)<<24;
+        x._6 = ((m[19] & 0xFF)&~ 1)>>1 | (m[20] & 0xFF)<<7 |
+                (m[21] & 0xFF)<<15 | ((m[22] & 0xFF)& 7)<<23;
+        x._7 = ((m[22] & 0xFF)&~ 7)>>3 | (m[23] & 0xFF)<<5 |
+                (m[24] & 0xFF)<<13 | ((m[25] & 0xFF)&15)<<21;
+        x._8 = ((m[25] & 0xFF)&~15)>>4 | (m[26] & 0xFF)<<4 |
+                (m[27] & 0xFF)<<12 | ((m[28] & 0xFF)&63)<<20;
+        x._9 = ((m[28] & 0xFF)&~63)>>6 | (m[29] & 0xFF)<<2 |
+                (m[30] & 0xFF)<<10 |  (m[31] & 0xFF)    <<18;
+    }
+
+    /* Check if reduced-form input >= 2^255-19 */
+    private static boolean is_overflow(FieldElement x) {
+        return (
+                ((x._0 > P26-19)) &&
+                        ((x._1 & x._3 & x._5 & x._7 & x._9) == P25) &&
+                        ((x._2 & x._4 & x._6 & x._8) == P26)
+        ) || (x._9 > P25);
+    }
+
+    /* Convert from internal format to little-endian byte format.  The
+     * number must be in a reduced form which is output by the following ops:
+     *     unpack, mul, sqr
+     *     set --  if input in range 0 .. P25
+     * If you're unsure if the number is reduced, first multiply it by 1.  */
+    private static void pack(FieldElement x,byte[] m) {
+        int ld = 0, ud = 0;
+        long t;
+        ld = (is_overflow(x)?1:0) - ((x._9 < 0)?1:0);
+        ud = ld * -(P25+1);
+        ld *= 19;
+        t = ld + x._0 + (x._1 << 26);
+        m[ 0] = (byte)t;
+        m[ 1] = (byte)(t >> 8);
+        m[ 2] = (byte)(t >> 16);
+        m[ 3] = (byte)(t >> 24);
+        t = (t >> 32) + (x._2 << 19);
+        m[ 4] = (byte)t;
+        m[ 5] = (byte)(t >> 8);
+        m[ 6] = (byte)(t >> 16);
+        m[ 7] = (byte)(t >> 24);
+        t = (t >> 32) + (x._3 << 13);
+        m[ 8] = (byte)t;
+        m[ 9] = (byte)(t >> 8);
+        m[10] = (byte)(t >> 16);
+        m[11] = (byte)(t >> 24);
+        t = (t >> 32) + (x._4 <<  6);
+        m[12] = (byte)t;
+        m[13] = (byte)(t >> 8);
+        m[14] = (byte)(t >> 16);
+        m[15] = (byte)(t >> 24);
+        t = (t >> 32) + x._5 + (x._6 << 25);
+        m[16] = (byte)t;
+        m[17] = (byte)(t >> 8);
+        m[18] = (byte)(t >> 16);
+        m[19] = (byte)(t >> 24);
+        t = (t >> 32) + (x._7 << 19);
+        m[20] = (byte)t;
+        m[21] = (byte)(t >> 8);
+        m[22] = (byte)(t >> 16);
+        m[23] = (byte)(t >> 24);
+        t = (t >> 32) + (x._8 << 12);
+        m[24] = (byte)t;
+        m[25] = (byte)(t >> 8);
+        m[26] = (byte)(t >> 16);
+        m[27] = (byte)(t >> 24);
+        t = (t >> 32) + ((x._9 + ud) << 6);
+        m[28] = (byte)t;
+        m[29] = (byte)(t >> 8);
+        m[30] = (byte)(t >> 16);
+        m[31] = (byte)(t >> 24);
+    }
+
+    /* Copy a number */
+    private static void cpy(FieldElement out, FieldElement in) {
+        out._0=in._0;	out._1=in._1;
+        out._2=in._2;	out._3=in._3;
+        out._4=in._4;	out._5=in._5;
+        out._6=in._6;	out._7=in._7;
+        out._8=in._8;	out._9=in._9;
+    }
+
+    /* Set a number to value, which must be in range -185861411 .. 185861411 */
+    private static void set(FieldElement out, int in) {
+        out._0=in;	out._1=0;
+        out._2=0;	out._3=0;
+        out._4=0;	out._5=0;
+        out._6=0;	out._7=0;
+        out._8=0;	out._9=0;
+    }
+
+    /* Add/subtract two numbers.  The inputs must be in reduced form, and the
+     * output isn't, so to do another addition or subtraction on the output,
+     * first multiply it by one to reduce it. */
+    private static void add(FieldElement xy, FieldElement x, FieldElement y) {
+        xy._0 = x._0 + y._0;	xy._1 = x._1 + y._1;
+        xy._2 = x._2 + y._2;	xy._3 = x._3 + y._3;
+        xy._4 = x._4 + y._4;	xy._5 = x._5 + y._5;
+        xy._6 = x._6 + y._6;	xy._7 = x._7 + y._7;
+        xy._8 = x._8 + y._8;	xy._9 = x._9 + y._9;
+    }
+    private static void sub(FieldElement xy, FieldElement x, FieldElement y) {
+        xy._0 = x._0 - y._0;	xy._1 = x._1 - y._1;
+        xy._2 = x._2 - y._2;	xy._3 = x._3 - y._3;
+        xy._4 = x._4 - y._4;	xy._5 = x._5 - y._5;
+        xy._6 = x._6 - y._6;	xy._7 = x._7 - y._7;
+        xy._8 = x._8 - y._8;	xy._9 = x._9 - y._9;
+    }
+
+    /* Multiply a number by a small integer in range -185861411 .. 185861411.
+     * The output is in reduced form, the input x need not be.  x and xy may point
+     * to the same buffer. */
+    private static FieldElement mul_small(FieldElement xy, FieldElement x, long y) {
+        long t;
+        t = (x._8*y);
+        xy._8 = (t & ((1 << 26) - 1));
+        t = (t >> 26) + (x._9*y);
+        xy._9 = (t & ((1 << 25) - 1));
+        t = 19 * (t >> 25) + (x._0*y);
+        xy._0 = (t & ((1 << 26) - 1));
+        t = (t >> 26) + (x._1*y);
+        xy._1 = (t & ((1 << 25) - 1));
+        t = (t >> 25) + (x._2*y);
+        xy._2 = (t & ((1 << 26) - 1));
+        t = (t >> 26) + (x._3*y);
+        xy._3 = (t & ((1 << 25) - 1));
+        t = (t >> 25) + (x._4*y);
+        xy._4 = (t & ((1 << 26) - 1));
+        t = (t >> 26) + (x._5*y);
+        xy._5 = (t & ((1 << 25) - 1));
+        t = (t >> 25) + (x._6*y);
+        xy._6 = (t & ((1 << 26) - 1));
+        t = (t >> 26) + (x._7*y);
+        xy._7 = (t & ((1 << 25) - 1));
+        t = (t >> 25) + xy._8;
+        xy._8 = (t & ((1 << 26) - 1));
+        xy._9 += (t >> 26);
+        return xy;
+    }
+
+    /* Multiply two numbers.  The output is in reduced form, the inputs need not
+     * be. */
+    private static FieldElement mul(FieldElement xy, FieldElement x, FieldElement y) {
+        /* sahn0:
+         * Using local variables to avoid class access.
+         * This seem to improve performance a bit...
+         */
+        long
+                x_0=x._0,x_1=x._1,x_2=x._2,x_3=x._3,x_4=x._4,
+                x_5=x._5,x_6=x._6,x_7=x._7,x_8=x._8,x_9=x._9;
+        long
+                y_0=y._0,y_1=y._1,y_2=y._2,y_3=y._3,y_4=y._4,
+                y_5=y._5,y_6=y._6,y_7=y._7,y_8=y._8,y_9=y._9;
+        long t;
+        t = (x_0*y_8) + (x_2*y_6) + (x_4*y_4) + (x_6*y_2) +
+                (x_8*y_0) + 2 * ((x_1*y_7) + (x_3*y_5) +
+                (x_5*y_3) + (x_7*y_1)) + 38 *
+                (x_9*y_9);
+        xy._8 = (t & ((1 << 26) - 1));
+        t = (t >> 26) + (x_0*y_9) + (x_1*y_8) + (x_2*y_7) +
+                (x_3*y_6) + (x_4*y_5) + (x_5*y_4) +
+                (x_6*y_3) + (x_7*y_2) + (x_8*y_1) +
+                (x_9*y_0);
+        xy._9 = (t & ((1 << 25) - 1));
+        t = (x_0*y_0) + 19 * ((t >> 25) + (x_2*y_8) + (x_4*y_6)
+                + (x_6*y_4) + (x_8*y_2)) + 38 *
+                ((x_1*y_9) + (x_3*y_7) + (x_5*y_5) +
+                        (x_7*y_3) + (x_9*y_1));
+        xy._0 = (t & ((1 << 26) - 1));
+        t = (t >> 26) + (x_0*y_1) + (x_1*y_0) + 19 * ((x_2*y_9)
+                + (x_3*y_8) + (x_4*y_7) + (x_5*y_6) +
+                (x_6*y_5) + (x_7*y_4) + (x_8*y_3) +
+                (x_9*y_2));
+        xy._1 = (t & ((1 << 25) - 1));
+        t = (t >> 25) + (x_0*y_2) + (x_2*y_0) + 19 * ((x_4*y_8)
+                + (x_6*y_6) + (x_8*y_4)) + 2 * (x_1*y_1)
+                + 38 * ((x_3*y_9) + (x_5*y_7) +
+                (x_7*y_5) + (x_9*y_3));
+        xy._2 = (t & ((1 << 26) - 1));
+        t = (t >> 26) + (x_0*y_3) + (x_1*y_2) + (x_2*y_1) +
+                (x_3*y_0) + 19 * ((x_4*y_9) + (x_5*y_8) +
+                (x_6*y_7) + (x_7*y_6) +
+                (x_8*y_5) + (x_9*y_4));
+        xy._3 = (t & ((1 << 25) - 1));
+        t = (t >> 25) + (x_0*y_4) + (x_2*y_2) + (x_4*y_0) + 19 *
+                ((x_6*y_8) + (x_8*y_6)) + 2 * ((x_1*y_3) +
+                (x_3*y_1)) + 38 *
+                ((x_5*y_9) + (x_7*y_7) + (x_9*y_5));
+        xy._4 = (t & ((1 << 26) - 1));
+        t = (t >> 26) + (x_0*y_5) + (x_1*y_4) + (x_2*y_3) +
+                (x_3*y_2) + (x_4*y_1) + (x_5*y_0) + 19 *
+                ((x_6*y_9) + (x_7*y_8) + (x_8*y_7) +
+                        (x_9*y_6));
+        xy._5 = (t & ((1 << 25) - 1));
+        t = (t >> 25) + (x_0*y_6) + (x_2*y_4) + (x_4*y_2) +
+                (x_6*y_0) + 19 * (x_8*y_8) + 2 * ((x_1*y_5) +
+                (x_3*y_3) + (x_5*y_1)) + 38 *
+                ((x_7*y_9) + (x_9*y_7));
+        xy._6 = (t & ((1 << 26) - 1));
+        t = (t >> 26) + (x_0*y_7) + (x_1*y_6) + (x_2*y_5) +
+                (x_3*y_4) + (x_4*y_3) + (x_5*y_2) +
+                (x_6*y_1) + (x_7*y_0) + 19 * ((x_8*y_9) +
+                (x_9*y_8));
+        xy._7 = (t & ((1 << 25) - 1));
+        t = (t >> 25) + xy._8;
+        xy._8 = (t & ((1 << 26) - 1));
+        xy._9 += (t >> 26);
+        return xy;
+    }
+
+    /* Square a number.  Optimization of  mul25519(x2, x, x)  */
+    private static FieldElement sqr(FieldElement x2, FieldElement x) {
+        long
+                x_0=x._0,x_1=x._1,x_2=x._2,x_3=x._3,x_4=x._4,
+                x_5=x._5,x_6=x._6,x_7=x._7,x_8=x._8,x_9=x._9;
+        long t;
+        t = (x_4*x_4) + 2 * ((x_0*x_8) + (x_2*x_6)) + 38 *
+                (x_9*x_9) + 4 * ((x_1*x_7) + (x_3*x_5));
+        x2._8 = (t & ((1 << 26) - 1));
+        t = (t >> 26) + 2 * ((x_0*x_9) + (x_1*x_8) + (x_2*x_7) +
+                (x_3*x_6) + (x_4*x_5));
+        x2._9 = (t & ((1 << 25) - 1));
+        t = 19 * (t >> 25) + (x_0*x_0) + 38 * ((x_2*x_8) +
+                (x_4*x_6) + (x_5*x_5)) + 76 * ((x_1*x_9)
+                + (x_3*x_7));
+        x2._0 = (t & ((1 << 26) - 1));
+        t = (t >> 26) + 2 * (x_0*x_1) + 38 * ((x_2*x_9) +
+                (x_3*x_8) + (x_4*x_7) + (x_5*x_6));
+        x2._1 = (t & ((1 << 25) - 1));
+        t = (t >> 25) + 19 * (x_6*x_6) + 2 * ((x_0*x_2) +
+                (x_1*x_1)) + 38 * (x_4*x_8) + 76 *
+                ((x_3*x_9) + (x_5*x_7));
+        x2._2 = (t & ((1 << 26) - 1));
+        t = (t >> 26) + 2 * ((x_0*x_3) + (x_1*x_2)) + 38 *
+                ((x_4*x_9) + (x_5*x_8) + (x_6*x_7));
+        x2._3 = (t & ((1 << 25) - 1));
+        t = (t >> 25) + (x_2*x_2) + 2 * (x_0*x_4) + 38 *
+                ((x_6*x_8) + (x_7*x_7)) + 4 * (x_1*x_3) + 76 *
+                (x_5*x_9);
+        x2._4 = (t & ((1 << 26) - 1));
+        t = (t >> 26) + 2 * ((x_0*x_5) + (x_1*x_4) + (x_2*x_3))
+                + 38 * ((x_6*x_9) + (x_7*x_8));
+        x2._5 = (t & ((1 << 25) - 1));
+        t = (t >> 25) + 19 * (x_8*x_8) + 2 * ((x_0*x_6) +
+                (x_2*x_4) + (x_3*x_3)) + 4 * (x_1*x_5) +
+                76 * (x_7*x_9);
+        x2._6 = (t & ((1 << 26) - 1));
+        t = (t >> 26) + 2 * ((x_0*x_7) + (x_1*x_6) + (x_2*x_5) +
+                (x_3*x_4)) + 38 * (x_8*x_9);
+        x2._7 = (t & ((1 << 25) - 1));
+        t = (t >> 25) + x2._8;
+        x2._8 = (t & ((1 << 26) - 1));
+        x2._9 += (t >> 26);
+        return x2;
+    }
+
+    /* Calculates a reciprocal.  The output is in reduced form, the inputs need not
+     * be.  Simply calculates  y = x^(p-2)  so it's not too fast. */
+    /* When sqrtassist is true, it instead calculates y = x^((p-5)/8) */
+    private static void recip(Context ctx, FieldElement y, FieldElement x, int sqrtassist) {
+        FieldElement t0 = ctx.r0, t1 = ctx.r1, t2 = ctx.r2, t3 = ctx.r3, t4 = ctx.r4;
+        int i;
+        /* the chain for x^(2^255-21) is straight from djb's implementation */
+        sqr(t1, x);	/*  2 == 2 * 1	*/
+        sqr(t2, t1);	/*  4 == 2 * 2	*/
+        sqr(t0, t2);	/*  8 == 2 * 4	*/
+        mul(t2, t0, x);	/*  9 == 8 + 1	*/
+        mul(t0, t2, t1);	/* 11 == 9 + 2	*/
+        sqr(t1, t0);	/* 22 == 2 * 11	*/
+        mul(t3, t1, t2);	/* 31 == 22 + 9
+                    == 2^5   - 2^0	*/
+        sqr(t1, t3);	/* 2^6   - 2^1	*/
+        sqr(t2, t1);	/* 2^7   - 2^2	*/
+        sqr(t1, t2);	/* 2^8   - 2^3	*/
+        sqr(t2, t1);	/* 2^9   - 2^4	*/
+        sqr(t1, t2);	/* 2^10  - 2^5	*/
+        mul(t2, t1, t3);	/* 2^10  - 2^0	*/
+        sqr(t1, t2);	/* 2^11  - 2^1	*/
+        sqr(t3, t1);	/* 2^12  - 2^2	*/
+        for (i = 1; i < 5; i++) {
+            sqr(t1, t3);
+            sqr(t3, t1);
+        } /* t3 */		/* 2^20  - 2^10	*/
+        mul(t1, t3, t2);	/* 2^20  - 2^0	*/
+        sqr(t3, t1);	/* 2^21  - 2^1	*/
+        sqr(t4, t3);	/* 2^22  - 2^2	*/
+        for (i = 1; i < 10; i++) {
+            sqr(t3, t4);
+            sqr(t4, t3);
+        } /* t4 */		/* 2^40  - 2^20	*/
+        mul(t3, t4, t1);	/* 2^40  - 2^0	*/
+        for (i = 0; i < 5; i++) {
+            sqr(t1, t3);
+            sqr(t3, t1);
+        } /* t3 */		/* 2^50  - 2^10	*/
+        mul(t1, t3, t2);	/* 2^50  - 2^0	*/
+        sqr(t2, t1);	/* 2^51  - 2^1	*/
+        sqr(t3, t2);	/* 2^52  - 2^2	*/
+        for (i = 1; i < 25; i++) {
+            sqr(t2, t3);
+            sqr(t3, t2);
+        } /* t3 */		/* 2^100 - 2^50 */
+        mul(t2, t3, t1);	/* 2^100 - 2^0	*/
+        sqr(t3, t2);	/* 2^101 - 2^1	*/
+        sqr(t4, t3);	/* 2^102 - 2^2	*/
+        for (i = 1; i < 50; i++) {
+            sqr(t3, t4);
+            sqr(t4, t3);
+        } /* t4 */		/* 2^200 - 2^100 */
+        mul(t3, t4, t2);	/* 2^200 - 2^0	*/
+        for (i = 0; i < 25; i++) {
+            sqr(t4, t3);
+            sqr(t3, t4);
+        } /* t3 */		/* 2^250 - 2^50	*/
+        mul(t2, t3, t1);	/* 2^250 - 2^0	*/
+        sqr(t1, t2);	/* 2^251 - 2^1	*/
+        sqr(t2, t1);	/* 2^252 - 2^2	*/
+        if (sqrtassist!=0) {
+            mul(y, x, t2);	/* 2^252 - 3 */
+        } else {
+            sqr(t1, t2);	/* 2^253 - 2^3	*/
+            sqr(t2, t1);	/* 2^254 - 2^4	*/
+            sqr(t1, t2);	/* 2^255 - 2^5	*/
+            mul(y, t1, t0);	/* 2^255 - 21	*/
+        }
+    }
+
+    /* checks if x is "negative", requires reduced input */
+    private static int is_negative(FieldElement x) {
+        return (int)(((is_overflow(x) || (x._9 < 0))?1:0) ^ (x._0 & 1));
+    }
+
+    /* a square root */
+    private static void sqrt(Context ctx, FieldElement x, FieldElement u) {
+        FieldElement v = ctx.q0, t1 = ctx.q1, t2 = ctx.q2;
+        add(t1, u, u);	/* t1 = 2u		*/
+        recip(ctx, v, t1, 1);	/* v = (2u)^((p-5)/8)	*/
+        sqr(x, v);		/* x = v^2		*/
+        mul(t2, t1, x);	/* t2 = 2uv^2		*/
+        t2._0--;		/* t2 = 2uv^2-1		*/
+        mul(t1, v, t2);	/* t1 = v(2uv^2-1)	*/
+        mul(x, u, t1);	/* x = uv(2uv^2-1)	*/
+    }
+
+    /********************* Elliptic curve *********************/
+
+    /* y^2 = x^3 + 486662 x^2 + x  over GF(2^255-19) */
+
+    /* t1 = ax + az
+     * t2 = ax - az  */
+    private static void mont_prep(FieldElement t1, FieldElement t2, FieldElement ax, FieldElement az) {
+        add(t1, ax, az);
+        sub(t2, ax, az);
+    }
+
+    /* A = P + Q   where
+     *  X(A) = ax/az
+     *  X(P) = (t1+t2)/(t1-t2)
+     *  X(Q) = (t3+t4)/(t3-t4)
+     *  X(P-Q) = dx
+     * clobbers t1 and t2, preserves t3 and t4  */
+    private static void mont_add(FieldElement t1, FieldElement t2, FieldElement t3, FieldElement t4,FieldElement ax, FieldElement az, FieldElement dx) {
+        mul(ax, t2, t3);
+        mul(az, t1, t4);
+        add(t1, ax, az);
+        sub(t2, ax, az);
+        sqr(ax, t1);
+        sqr(t1, t2);
+        mul(az, t1, dx);
+    }
+
+    /* B = 2 * Q   where
+     *  X(B) = bx/bz
+     *  X(Q) = (t3+t4)/(t3-t4)
+     * clobbers t1 and t2, preserves t3 and t4  */
+    private static void mont_dbl(FieldElement t1, FieldElement t2, FieldElement t3, FieldElement t4,FieldElement bx, FieldElement bz) {
+        sqr(t1, t3);
+        sqr(t2, t4);
+        mul(bx, t1, t2);
+        sub(t2, t1, t2);
+        mul_small(bz, t2, 121665);
+        add(t1, t1, bz);
+        mul(bz, t1, t2);
+    }
+
+    /* Y^2 = X^3 + 486662 X^2 + X
+     * t is a temporary  */
+    private static void x_to_y2(FieldElement t, FieldElement y2, FieldElement x) {
+        sqr(t, x);
+        mul_small(y2, x, 486662);
+        add(t, t, y2);
+        t._0++;
+        mul(y2, t, x);
+    }
+
+    /* Check if two reduced numbers are equal */
+    private static boolean equals(Context ctx, FieldElement x, FieldElement y) {
+        pack(x, ctx.b1);
+        pack(y, ctx.b2);
+        return Arrays.equals(ctx.b1, ctx.b2);
+    }
+
+    /********************* Twisted Edwards curve *********************/
+
+    /* -x^2 + y^2 = 1 + d x^2 y^2  where d = -121665/121666
+     *
+     * Inputs to mul and sqr are kept to sums of at most three reduced
+     * numbers so that the products cannot overflow  */
+
+    /* r = 2p, ignores p.T  */
+    private static void ed_dbl(CompletedPoint r, ExtendedPoint p, FieldElement t0) {
+        sqr(r.X, p.X);
+        sqr(r.Z, p.Y);
+        sqr(r.T, p.Z);
+        mul_small(r.T, r.T, 2);
+        add(r.Y, p.X, p.Y);
+        sqr(t0, r.Y);
+        add(r.Y, r.Z, r.X);
+        sub(r.Z, r.Z, r.X);
+        sub(r.X, t0, r.Y);
+        sub(r.T, r.T, r.Z);
+    }
+
+    /* r = p + q, or p - q if negate is true  */
+    private static void ed_add(CompletedPoint r, ExtendedPoint p, CachedPoint q, FieldElement t0, boolean negate) {
+        add(r.X, p.Y, p.X);
+        sub(r.Y, p.Y, p.X);
+        mul(r.Z, r.X, negate ? q.YminusX : q.YplusX);
+        mul(r.Y, r.Y, negate ? q.YplusX : q.YminusX);
+        mul(r.T, q.T2d, p.T);
+        mul(r.X, p.Z, q.Z);
+        add(t0, r.X, r.X);
+        ed_finish(r, t0, negate);
+    }
+
+    /* r = p + q, or p - q if negate is true, for an affine q  */
+    private static void ed_madd(CompletedPoint r, ExtendedPoint p, AffinePoint q, FieldElement t0, boolean negate) {
+        add(r.X, p.Y, p.X);
+        sub(r.Y, p.Y, p.X);
+        mul(r.Z, r.X, negate ? q.yminusx : q.yplusx);
+        mul(r.Y, r.Y, negate ? q.yplusx : q.yminusx);
+        mul(r.T, q.xy2d, p.T);
+        add(t0, p.Z, p.Z);
+        ed_finish(r, t0, negate);
+    }
+
+    private static void ed_finish(CompletedPoint r, FieldElement t0, boolean negate) {
+        sub(r.X, r.Z, r.Y);
+        add(r.Y, r.Z, r.Y);
+        if (negate) {
+            sub(r.Z, t0, r.T);
+            add(r.T, t0, r.T);
+        } else {
+            add(r.Z, t0, r.T);
+            sub(r.T, t0, r.T);
+        }
+    }
+
+    /* Completed to projective, leaves r.T unset  */
+    private static void to_p2(ExtendedPoint r, CompletedPoint p) {
+        mul(r.X, p.X, p.T);
+        mul(r.Y, p.Y, p.Z);
+        mul(r.Z, p.Z, p.T);
+    }
+
+    /* Completed to extended  */
+    private static void to_p3(ExtendedPoint r, CompletedPoint p) {
+        mul(r.X, p.X, p.T);
+        mul(r.Y, p.Y, p.Z);
+        mul(r.Z, p.Z, p.T);
+        mul(r.T, p.X, p.Y);
+    }
+
+    private static void to_cached(CachedPoint r, ExtendedPoint p) {
+        add(r.YplusX, p.Y, p.X);
+        sub(r.YminusX, p.Y, p.X);
+        cpy(r.Z, p.Z);
+        mul(r.T2d, p.T, D2);
+    }
+
+    /* Swap a and b if swap is 1, leave them unchanged if swap is 0 */
+    private static void cswap(FieldElement a, FieldElement b, long swap) {
+        long mask = -swap, t;
+        t = mask & (a._0 ^ b._0); a._0 ^= t; b._0 ^= t;
+        t = mask & (a._1 ^ b._1); a._1 ^= t; b._1 ^= t;
+        t = mask & (a._2 ^ b._2); a._2 ^= t; b._2 ^= t;
+        t = mask & (a._3 ^ b._3); a._3 ^= t; b._3 ^= t;
+        t = mask & (a._4 ^ b._4); a._4 ^= t; b._4 ^= t;
+        t = mask & (a._5 ^ b._5); a._5 ^= t; b._5 ^= t;
+        t = mask & (a._6 ^ b._6); a._6 ^= t; b._6 ^= t;
+        t = mask & (a._7 ^ b._7); a._7 ^= t; b._7 ^= t;
+        t = mask & (a._8 ^ b._8); a._8 ^= t; b._8 ^= t;
+        t = mask & (a._9 ^ b._9); a._9 ^= t; b._9 ^= t;
+    }
+
+    /* constants 2Gy and 1/(2Gy) */
+    private static final FieldElement BASE_2Y = new FieldElement(
+            39999547, 18689728, 59995525, 1648697, 57546132,
+            24010086, 19059592, 5425144, 63499247, 16420658
+    );
+    private static final FieldElement BASE_R2Y = new FieldElement(
+            5744, 8160848, 4790893, 13779497, 35730846,
+            12541209, 49101323, 30047407, 40071253, 6226132
+    );
+
+    /* 2d  */
+    private static final FieldElement D2 = new FieldElement();
+
+    /* sqrt(-486664), scales Montgomery coordinates to the Edwards curve  */
+    private static final FieldElement SQRT_M486664 = new FieldElement();
+
+    /* G, 3G, 5G, ... 15G  */
+    private static final AffinePoint[] BASE_MULTIPLES = new AffinePoint[8];
+
+    /* Montgomery coordinates of P for which the reference ladder or the
+     * birational map is not defined: P = (0,0), P = -G or G, P + G = (0,0)
+     * or P - G = (0,0), and u = -1  */
+    private static final byte[] U_NINE = new byte[32];
+    private static final byte[] U_INV_NINE = new byte[32];
+    private static final byte[] U_MINUS_ONE = new byte[32];
+
+    static {
+        Context ctx = new Context();
+        FieldElement t0 = new FieldElement(), t1 = new FieldElement(), t2 = new FieldElement();
+
+        set(t0, 121666);
+        recip(ctx, t1, t0, 0);
+        mul_small(D2, t1, -2 * 121665);
+
+        set(t0, -486664);
+        mul_small(t0, t0, 1);
+        sqrt(ctx, SQRT_M486664, t0);
+        sqr(t1, SQRT_M486664);
+        if (!equals(ctx, t0, t1)) {
+            throw new IllegalStateException("Unable to initialize Curve25519 constants");
+        }
+
+        set(t0, 9);
+        pack(t0, U_NINE);
+        recip(ctx, t1, t0, 0);
+        pack(t1, U_INV_NINE);
+        set(t0, -1);
+        mul_small(t0, t0, 1);
+        pack(t0, U_MINUS_ONE);
+
+        /* G = (9, Gy)  */
+        ExtendedPoint g = new ExtendedPoint(), g2 = new ExtendedPoint(), b = new ExtendedPoint();
+        CompletedPoint c = new CompletedPoint();
+        CachedPoint g2Cached = new CachedPoint();
+        set(t0, 2);
+        recip(ctx, t1, t0, 0);
+        mul(t2, BASE_2Y, t1);
+        set(t0, 9);
+        to_edwards(g, t0, t2, ctx.e0, ctx.e1);
+        ed_dbl(c, g, t0);
+        to_p3(g2, c);
+        to_cached(g2Cached, g2);
+        cpy(b.X, g.X);
+        cpy(b.Y, g.Y);
+        cpy(b.Z, g.Z);
+        cpy(b.T, g.T);
+        for (int i = 0; i < BASE_MULTIPLES.length; i++) {
+            if (i > 0) {
+                ed_add(c, b, g2Cached, t0, false);
+                to_p3(b, c);
+            }
+            AffinePoint q = new AffinePoint();
+            recip(ctx, t0, b.Z, 0);
+            mul(t1, b.X, t0);		/* x  */
+            mul(t2, b.Y, t0);		/* y  */
+            add(q.yplusx, t2, t1);
+            mul_small(q.yplusx, q.yplusx, 1);
+            sub(q.yminusx, t2, t1);
+            mul_small(q.yminusx, q.yminusx, 1);
+            mul(t0, t1, t2);
+            mul(q.xy2d, t0, D2);
+            BASE_MULTIPLES[i] = q;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.crypto;
+
+/**
+ * Curve25519 key agreement and EC-KCDSA signature primitives
+ *
+ * All implementations must produce the same output as the reference implementation
+ * in {@link Curve25519} for every input.
+ */
+public interface Curve25519Provider {
+
+    /** Reference implementation */
+    Curve25519Provider REFERENCE = new Curve25519Provider() {
+
+        @Override
+        public void keygen(byte[] P, byte[] s, byte[] k) {
+            Curve25519.keygen(P, s, k);
+        }
+
+        @Override
+        public void curve(byte[] Z, byte[] k, byte[] P) {
+            Curve25519.curve(Z, k, P);
+        }
+
+        @Override
+        public boolean sign(byte[] v, byte[] h, byte[] x, byte[] s) {
+            return Curve25519.sign(v, h, x, s);
+        }
+
+        @Override
+        public void verify(byte[] Y, byte[] v, byte[] h, byte[] P) {
+            Curve25519.verify(Y, v, h, P);
+        }
+    };
+
+    /** Optimized implementation */
+    Curve25519Provider FAST = Curve25519Fast.instance;
+
+    /**
+     * Key-pair generation, clamps k
+     *
+     * @param   P                   Public key (output)
+     * @param   s                   Private key for signing (output) or null
+     * @param   k                   32 random bytes (input), private key for key agreement (output)
+     */
+    void keygen(byte[] P, byte[] s, byte[] k);
+
+    /**
+     * Key agreement
+     *
+     * @param   Z                   Shared secret (output)
+     * @param   k                   Private key for key agreement
+     * @param   P                   Peer public key
+     */
+    void curve(byte[] Z, byte[] k, byte[] P);
+
+    /**
+     * Signature generation primitive, calculates (x-h)s mod q
+     *
+     * @param   v                   Signature value (output)
+     * @param   h                   Signature hash
+     * @param   x                   Signature private key
+     * @param   s                   Private key for signing
+     * @return                      TRUE if successful, FALSE if a different x or h must be used
+     */
+    boolean sign(byte[] v, byte[] h, byte[] x, byte[] s);
+
+    /**
+     * Signature verification primitive, calculates Y = vP + hG
+     *
+     * @param   Y                   Signature public key (output)
+     * @param   v                   Signature value
+     * @param   h                   Signature hash
+     * @param   P                   Public key
+     */
+    void verify(byte[] Y, byte[] v, byte[] h, byte[] P);
+}
@@ -23,7 +23,7 @@ public enum HashFunction {
      */
     SHA256((byte)2) {
         public byte[] hash(byte[] input) {
-            return Crypto.sha256().digest(input);
+            return Crypto.sha256(input);
         }
     },
     /**
@@ -31,7 +31,7 @@ public enum HashFunction {
      */
     SHA3((byte)3) {
         public byte[] hash(byte[] input) {
-            return Crypto.sha3().digest(input);
+            return Crypto.sha3(input);
         }
     },
     /**
@@ -52,12 +52,12 @@ public enum HashFunction {
     },
     RIPEMD160((byte)6) {
         public byte[] hash(byte[] input) {
-            return Crypto.ripemd160().digest(input);
+            return Crypto.ripemd160(input);
         }
     },
     RIPEMD160_SHA256((byte)62) {
         public byte[] hash(byte[] input) {
-            return Crypto.ripemd160().digest(Crypto.sha256().digest(input));
+            return Crypto.ripemd160(Crypto.sha256(input));
         }
     };
 
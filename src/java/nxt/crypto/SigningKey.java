@@ -0,0 +1,132 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.crypto;
+
+import nxt.util.Convert;
+
+import java.util.Arrays;
+
+/**
+ * Derived signing key for an account
+ *
+ * Deriving the EC-KCDSA signing key from a private key takes a full Curve25519 key
+ * generation.  A SigningKey holds the result so that it can be used to sign any number
+ * of messages without repeating the derivation.  The key material can be wiped when
+ * it is no longer needed, after which the key can no longer be used.
+ */
+public final class SigningKey {
+
+    /** Public key */
+    private final byte[] publicKey;
+
+    /** Account identifier */
+    private final long accountId;
+
+    /** Signing key, all zeros once wiped */
+    private final byte[] signingKey;
+
+    /** Key has been wiped */
+    private boolean wiped;
+
+    /**
+     * Derive the signing key for a secret phrase
+     *
+     * @param   secretPhrase        Secret phrase
+     * @return                      Signing key
+     */
+    public static SigningKey fromSecretPhrase(String secretPhrase) {
+        return fromPrivateKey(Crypto.sha256(Convert.toBytes(secretPhrase)));
+    }
+
+    /**
+     * Derive the signing key for a private key
+     *
+     * @param   privateKey          Private key, clamped or unclamped
+     * @return                      Signing key
+     */
+    public static SigningKey fromPrivateKey(byte[] privateKey) {
+        byte[] publicKey = new byte[32];
+        byte[] signingKey = new byte[32];
+        byte[] k = Arrays.copyOf(privateKey, 32);
+        Crypto.keygen(publicKey, signingKey, k);
+        Arrays.fill(k, (byte)0);
+        return new SigningKey(publicKey, signingKey);
+    }
+
+    private SigningKey(byte[] publicKey, byte[] signingKey) {
+        this.publicKey = publicKey;
+        this.signingKey = signingKey;
+        this.accountId = Convert.fullHashToId(Crypto.sha256(publicKey));
+    }
+
+    /**
+     * Return the public key
+     *
+     * @return                      Public key
+     */
+    public byte[] getPublicKey() {
+        return publicKey;
+    }
+
+    /**
+     * Return the account identifier
+     *
+     * @return                      Account identifier
+     */
+    public long getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * Sign a message
+     *
+     * @param   message             Message to sign
+     * @return                      Signature
+     * @throws  IllegalStateException   The key has been wiped
+     */
+    public byte[] sign(byte[] message) {
+        byte[] s;
+        synchronized (this) {
+            if (wiped) {
+                throw new IllegalStateException("Signing key for account " + Long.toUnsignedString(accountId) + " has been wiped");
+            }
+            s = signingKey.clone();
+        }
+        try {
+            return Crypto.sign(message, s);
+        } finally {
+            Arrays.fill(s, (byte)0);
+        }
+    }
+
+    /**
+     * Check if the key has been wiped
+     *
+     * @return                      TRUE if the key has been wiped
+     */
+    public synchronized boolean isWiped() {
+        return wiped;
+    }
+
+    /**
+     * Overwrite the key material
+     */
+    public synchronized void wipe() {
+        wiped = true;
+        Arrays.fill(signingKey, (byte)0);
+    }
+}
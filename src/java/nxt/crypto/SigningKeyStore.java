@@ -0,0 +1,223 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.crypto;
+
+import nxt.Nxt;
+import nxt.util.Convert;
+import nxt.util.ThreadPool;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory store of derived signing keys
+ *
+ * The keys of accounts that are forging on this node are stored when nxt.signingKeyCacheSize
+ * is greater than 0, and are wiped when forging is stopped for the account.  Keys derived
+ * for API requests are stored as well when nxt.signingKeyCacheApiKeys is enabled, and are
+ * wiped after nxt.signingKeyCacheTimeout seconds without use.  A stored key works as the
+ * private key of the account, so the store is disabled by default.  Keys are held by account
+ * identifier and are found from a secret phrase through a salted hash of the private key, so
+ * the secret phrase itself is never stored.  The least recently used key is wiped when the
+ * store is full.
+ */
+public final class SigningKeyStore {
+
+    private static final int maxSize = Nxt.getIntProperty("nxt.signingKeyCacheSize");
+
+    private static final boolean cacheApiKeys = Nxt.getBooleanProperty("nxt.signingKeyCacheApiKeys");
+
+    private static final long timeout = Nxt.getIntProperty("nxt.signingKeyCacheTimeout") * 1000L;
+
+    /** Per-process salt for the lookup hash */
+    private static final byte[] salt = new byte[32];
+
+    /** Signing keys by account identifier in least recently used order */
+    private static final Map<Long, Entry> keys = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Account identifiers by salted private key hash */
+    private static final Map<String, Long> lookup = new HashMap<>();
+
+    static {
+        Crypto.getSecureRandom().nextBytes(salt);
+    }
+
+    private SigningKeyStore() {} // never
+
+    /**
+     * Schedule the task that wipes expired API keys
+     */
+    public static void init() {
+        if (maxSize > 0 && cacheApiKeys && timeout > 0) {
+            ThreadPool.scheduleThread("SigningKeyExpiration", SigningKeyStore::removeExpired,
+                    (int)Math.max(1, Math.min(60, timeout / 1000)));
+        }
+    }
+
+    /**
+     * Return the signing key for a secret phrase
+     *
+     * The stored key is returned if there is one.  Otherwise the key is derived, and it
+     * is stored only when nxt.signingKeyCacheApiKeys is enabled.
+     *
+     * @param   secretPhrase        Secret phrase
+     * @return                      Signing key
+     */
+    public static SigningKey getSigningKey(String secretPhrase) {
+        byte[] privateKey = Crypto.sha256(Convert.toBytes(secretPhrase));
+        if (maxSize <= 0) {
+            return SigningKey.fromPrivateKey(privateKey);
+        }
+        String lookupKey = Convert.toHexString(Crypto.sha256(salt, privateKey));
+        synchronized (keys) {
+            Long accountId = lookup.get(lookupKey);
+            if (accountId != null) {
+                Entry entry = keys.get(accountId);
+                if (entry != null && !entry.signingKey.isWiped()) {
+                    entry.lastUsed = System.currentTimeMillis();
+                    return entry.signingKey;
+                }
+            }
+        }
+        SigningKey signingKey = SigningKey.fromPrivateKey(privateKey);
+        if (!cacheApiKeys) {
+            return signingKey;
+        }
+        return store(signingKey, lookupKey, false);
+    }
+
+    /**
+     * Store the signing key for a forging account
+     *
+     * @param   secretPhrase        Secret phrase
+     * @return                      Signing key
+     */
+    public static SigningKey add(String secretPhrase) {
+        byte[] privateKey = Crypto.sha256(Convert.toBytes(secretPhrase));
+        SigningKey signingKey = SigningKey.fromPrivateKey(privateKey);
+        if (maxSize <= 0) {
+            return signingKey;
+        }
+        String lookupKey = Convert.toHexString(Crypto.sha256(salt, privateKey));
+        return store(signingKey, lookupKey, true);
+    }
+
+    /**
+     * Wipe and remove the signing key for an account
+     *
+     * @param   accountId           Account identifier
+     * @return                      TRUE if the store held a key for the account
+     */
+    public static boolean remove(long accountId) {
+        synchronized (keys) {
+            Entry entry = keys.remove(accountId);
+            if (entry != null) {
+                wipe(entry);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Wipe and remove all signing keys
+     */
+    public static void clear() {
+        synchronized (keys) {
+            keys.values().forEach(entry -> entry.signingKey.wipe());
+            keys.clear();
+            lookup.clear();
+        }
+    }
+
+    /**
+     * Return the number of signing keys in the store
+     *
+     * @return                      Number of keys
+     */
+    public static int size() {
+        synchronized (keys) {
+            return keys.size();
+        }
+    }
+
+    /**
+     * Wipe and remove API keys that have not been used within the timeout
+     */
+    static void removeExpired() {
+        long expiration = System.currentTimeMillis() - timeout;
+        synchronized (keys) {
+            Iterator<Entry> it = keys.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (!entry.forging && entry.lastUsed < expiration) {
+                    it.remove();
+                    wipe(entry);
+                }
+            }
+        }
+    }
+
+    private static SigningKey store(SigningKey signingKey, String lookupKey, boolean forging) {
+        synchronized (keys) {
+            //
+            // Another thread may have stored the key while we were deriving it
+            //
+            Entry entry = keys.get(signingKey.getAccountId());
+            if (entry != null && !entry.signingKey.isWiped()) {
+                signingKey.wipe();
+                entry.forging |= forging;
+                entry.lastUsed = System.currentTimeMillis();
+                return entry.signingKey;
+            }
+            keys.put(signingKey.getAccountId(), new Entry(signingKey, lookupKey, forging));
+            lookup.put(lookupKey, signingKey.getAccountId());
+            Iterator<Entry> it = keys.values().iterator();
+            while (keys.size() > maxSize && it.hasNext()) {
+                Entry oldEntry = it.next();
+                it.remove();
+                wipe(oldEntry);
+            }
+        }
+        return signingKey;
+    }
+
+    private static void wipe(Entry entry) {
+        lookup.remove(entry.lookupKey);
+        entry.signingKey.wipe();
+    }
+
+    private static final class Entry {
+
+        private final SigningKey signingKey;
+
+        private final String lookupKey;
+
+        /** Key of a forging account, which does not expire */
+        private boolean forging;
+
+        private long lastUsed = System.currentTimeMillis();
+
+        private Entry(SigningKey signingKey, String lookupKey, boolean forging) {
+            this.signingKey = signingKey;
+            this.lookupKey = lookupKey;
+            this.forging = forging;
+        }
+    }
+}
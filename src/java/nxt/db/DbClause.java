@@ -18,6 +18,7 @@ package nxt.db;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Collections;
 
 public abstract class DbClause {
 
@@ -154,6 +155,24 @@ public abstract class DbClause {
         }
     }
 
+    public static final class LongsClause extends DbClause {
+
+        private final long[] values;
+
+        public LongsClause(String columnName, long[] values) {
+            super(values.length == 0 ? " FALSE " : " " + columnName + " IN (" + String.join(",", Collections.nCopies(values.length, "?")) + ") ");
+            this.values = values;
+        }
+
+        @Override
+        protected int set(PreparedStatement pstmt, int index) throws SQLException {
+            for (long value : values) {
+                pstmt.setLong(index++, value);
+            }
+            return index;
+        }
+    }
+
     public static final class IntClause extends DbClause {
 
         private final int value;
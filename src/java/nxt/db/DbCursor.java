@@ -0,0 +1,200 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.db;
+
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Base64;
+
+/**
+ * Position in an ordered result set
+ *
+ * A cursor holds the values of the sort columns for the last row returned by a query.
+ * The next page is selected by a keyset condition on the sort columns instead of an
+ * OFFSET, so the database does not read and discard the rows of the earlier pages.
+ * The sort columns must be numeric and must identify a row uniquely.
+ *
+ * The string form of a cursor is opaque to API clients.
+ */
+public final class DbCursor {
+
+    /** Sort column values */
+    private final long[] values;
+
+    /**
+     * Create a cursor
+     *
+     * @param   values              Sort column values of the last row
+     */
+    public DbCursor(long... values) {
+        if (values.length == 0) {
+            throw new IllegalArgumentException("No cursor values");
+        }
+        this.values = values.clone();
+    }
+
+    /**
+     * Parse the string form of a cursor
+     *
+     * @param   cursor              Cursor string
+     * @return                      Cursor
+     * @throws  IllegalArgumentException    The cursor string is not valid
+     */
+    public static DbCursor parse(String cursor) {
+        byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+        if (bytes.length == 0 || bytes.length % 8 != 0) {
+            throw new IllegalArgumentException("Invalid cursor length");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long[] values = new long[bytes.length / 8];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.getLong();
+        }
+        return new DbCursor(values);
+    }
+
+    /**
+     * Return the sort column values
+     *
+     * @return                      Sort column values
+     */
+    public long[] getValues() {
+        return values.clone();
+    }
+
+    /**
+     * Return the clause that selects the rows following the cursor position
+     *
+     * @param   sort                Sort clause of the query, for example " ORDER BY height DESC, db_id DESC "
+     * @return                      Keyset clause
+     * @throws  IllegalArgumentException    The cursor does not match the sort columns
+     */
+    public DbClause getClause(String sort) {
+        return new KeysetClause(getCondition(sort));
+    }
+
+    /**
+     * Return the SQL condition that selects the rows following the cursor position
+     *
+     * The condition parameters are set by setCondition()
+     *
+     * @param   sort                Sort clause of the query, for example " ORDER BY height DESC, db_id DESC "
+     * @return                      SQL condition
+     * @throws  IllegalArgumentException    The cursor does not match the sort columns
+     */
+    public String getCondition(String sort) {
+        String[] sortColumns = parseSort(sort);
+        if (sortColumns.length != values.length) {
+            throw new IllegalArgumentException("Cursor does not match the sort order");
+        }
+        String[] columns = new String[sortColumns.length];
+        boolean[] descending = new boolean[sortColumns.length];
+        for (int i = 0; i < sortColumns.length; i++) {
+            columns[i] = sortColumns[i].split(" ")[0];
+            descending[i] = sortColumns[i].toUpperCase().endsWith(" DESC");
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(" ").append(columns[0]).append(descending[0] ? " <= ? " : " >= ? ");
+        sb.append("AND ");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sb.append("OR (").append(columns[i - 1]).append(" = ? AND ");
+            }
+            sb.append("(").append(columns[i]).append(descending[i] ? " < ? " : " > ? ");
+        }
+        for (int i = 0; i < columns.length; i++) {
+            sb.append(i > 0 ? "))" : ")");
+        }
+        sb.append(" ");
+        return sb.toString();
+    }
+
+    /**
+     * Set the parameters of the SQL condition
+     *
+     * @param   pstmt               Prepared statement
+     * @param   index               Index of the first parameter
+     * @return                      Index of the next parameter
+     * @throws  SQLException        Unable to set a parameter
+     */
+    public int setCondition(PreparedStatement pstmt, int index) throws SQLException {
+        pstmt.setLong(index++, values[0]);
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                pstmt.setLong(index++, values[i - 1]);
+            }
+            pstmt.setLong(index++, values[i]);
+        }
+        return index;
+    }
+
+    /**
+     * Return the sort column names without the table prefix and direction
+     *
+     * @param   sort                Sort clause
+     * @return                      Column names
+     */
+    public static String[] getColumns(String sort) {
+        String[] columns = parseSort(sort);
+        for (int i = 0; i < columns.length; i++) {
+            String column = columns[i].split(" ")[0];
+            int pos = column.lastIndexOf('.');
+            columns[i] = pos >= 0 ? column.substring(pos + 1) : column;
+        }
+        return columns;
+    }
+
+    private static String[] parseSort(String sort) {
+        String s = sort.trim();
+        if (!s.toUpperCase().startsWith("ORDER BY ")) {
+            throw new IllegalArgumentException("Invalid sort clause: " + sort);
+        }
+        String[] columns = s.substring(9).split(",");
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = columns[i].trim().replaceAll("\\s+", " ");
+        }
+        return columns;
+    }
+
+    @Override
+    public String toString() {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 8);
+        for (long value : values) {
+            buffer.putLong(value);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * Keyset condition
+     *
+     * The first column is bounded by itself so that an index on the column can be used,
+     * and each following column is compared when all the preceding columns are equal.
+     */
+    private final class KeysetClause extends DbClause {
+
+        private KeysetClause(String clause) {
+            super(clause);
+        }
+
+        @Override
+        protected int set(PreparedStatement pstmt, int index) throws SQLException {
+            return setCondition(pstmt, index);
+        }
+    }
+}
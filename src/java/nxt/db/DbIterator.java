@@ -33,14 +33,29 @@ public final class DbIterator<T> implements Iterator<T>, Iterable<T>, AutoClosea
     private final PreparedStatement pstmt;
     private final ResultSetReader<T> rsReader;
     private final ResultSet rs;
+    private final String[] cursorColumns;
 
     private boolean hasNext;
     private boolean iterated;
+    private DbCursor cursor;
 
     public DbIterator(Connection con, PreparedStatement pstmt, ResultSetReader<T> rsReader) {
+        this(con, pstmt, rsReader, null);
+    }
+
+    /**
+     * Create an iterator that keeps the position of the last row returned
+     *
+     * @param   con                 Database connection
+     * @param   pstmt               Prepared statement
+     * @param   rsReader            Result set reader
+     * @param   sort                Sort clause of the statement or null if the position is not needed
+     */
+    public DbIterator(Connection con, PreparedStatement pstmt, ResultSetReader<T> rsReader, String sort) {
         this.con = con;
         this.pstmt = pstmt;
         this.rsReader = rsReader;
+        this.cursorColumns = sort != null ? DbCursor.getColumns(sort) : null;
         try {
             this.rs = pstmt.executeQuery();
             this.hasNext = rs.next();
@@ -66,6 +81,13 @@ public final class DbIterator<T> implements Iterator<T>, Iterable<T>, AutoClosea
         }
         try {
             T result = rsReader.get(con, rs);
+            if (cursorColumns != null) {
+                long[] values = new long[cursorColumns.length];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = rs.getLong(cursorColumns[i]);
+                }
+                cursor = new DbCursor(values);
+            }
             hasNext = rs.next();
             return result;
         } catch (Exception e) {
@@ -74,6 +96,15 @@ public final class DbIterator<T> implements Iterator<T>, Iterable<T>, AutoClosea
         }
     }
 
+    /**
+     * Return the position of the last row returned
+     *
+     * @return                      Cursor or null if no row has been returned or the position is not kept
+     */
+    public DbCursor getCursor() {
+        return cursor;
+    }
+
     @Override
     public void remove() {
         throw new UnsupportedOperationException("Removal not supported");
@@ -35,6 +35,7 @@ public abstract class DbVersion {
             con = db.getConnection();
             stmt = con.createStatement();
             int nextUpdate = 1;
+            boolean isEmpty = false;
             try {
                 ResultSet rs = stmt.executeQuery("SELECT next_update FROM version");
                 if (! rs.next()) {
@@ -51,8 +52,12 @@ public abstract class DbVersion {
                 stmt.executeUpdate("CREATE TABLE version (next_update INT NOT NULL)");
                 stmt.executeUpdate("INSERT INTO version VALUES (1)");
                 con.commit();
+                isEmpty = true;
             }
             update(nextUpdate);
+            if (isEmpty && loadSnapshot(con)) {
+                Logger.logMessage("Database loaded from snapshot");
+            }
         } catch (SQLException e) {
             DbUtils.rollback(con);
             throw new RuntimeException(e.toString(), e);
@@ -86,6 +91,17 @@ public abstract class DbVersion {
         }
     }
 
+    /**
+     * Load a snapshot into an empty database after the schema has been created
+     *
+     * @param   con                 Database connection
+     * @return                      TRUE if a snapshot was loaded
+     * @throws  SQLException        Unable to load the snapshot
+     */
+    protected boolean loadSnapshot(Connection con) throws SQLException {
+        return false;
+    }
+
     protected abstract void update(int nextUpdate);
 
 }
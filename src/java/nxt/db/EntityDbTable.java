@@ -211,6 +211,43 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
         }
     }
 
+    public final DbIterator<T> getManyBy(DbClause dbClause, DbCursor cursor, int from, int to) {
+        return getManyBy(dbClause, cursor, from, to, defaultSort());
+    }
+
+    /**
+     * Return the rows following a cursor position
+     *
+     * The returned iterator keeps the position of the last row, which is used as the cursor for
+     * the next page.  The sort columns must be numeric and must identify a row uniquely.
+     *
+     * @param   dbClause            Selection clause
+     * @param   cursor              Position of the last row of the previous page or null for the first page
+     * @param   from                Index of the first row following the cursor
+     * @param   to                  Index of the last row following the cursor
+     * @param   sort                Sort clause
+     * @return                      Rows
+     */
+    public final DbIterator<T> getManyBy(DbClause dbClause, DbCursor cursor, int from, int to, String sort) {
+        if (cursor != null) {
+            dbClause = dbClause.and(cursor.getClause(sort));
+        }
+        Connection con = null;
+        try {
+            con = db.getConnection();
+            PreparedStatement pstmt = con.prepareStatement("SELECT * FROM " + table
+                    + " WHERE " + dbClause.getClause() + (multiversion ? " AND latest = TRUE " : " ") + sort
+                    + DbUtils.limitsClause(from, to));
+            int i = 0;
+            i = dbClause.set(pstmt, ++i);
+            i = DbUtils.setLimits(i, pstmt, from, to);
+            return getManyBy(con, pstmt, true, sort);
+        } catch (SQLException e) {
+            DbUtils.close(con);
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
     public final DbIterator<T> getManyBy(DbClause dbClause, int height, int from, int to) {
         return getManyBy(dbClause, height, from, to, defaultSort());
     }
@@ -246,6 +283,10 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
     }
 
     public final DbIterator<T> getManyBy(Connection con, PreparedStatement pstmt, boolean cache) {
+        return getManyBy(con, pstmt, cache, null);
+    }
+
+    private DbIterator<T> getManyBy(Connection con, PreparedStatement pstmt, boolean cache, String sort) {
         final boolean doCache = cache && db.isInTransaction();
         return new DbIterator<>(con, pstmt, (connection, rs) -> {
             T t = null;
@@ -261,7 +302,7 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
                 }
             }
             return t;
-        });
+        }, sort);
     }
 
     public final DbIterator<T> search(String query, DbClause dbClause, int from, int to) {
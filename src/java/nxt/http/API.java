@@ -260,6 +260,10 @@ public final class API {
 
             apiHandler.addServlet(DbShellServlet.class, "/dbshell");
 
+            if (APIEventSocketServlet.maxEventSubscribers > 0) {
+                apiHandler.addServlet(APIEventSocketServlet.class, "/nxt-events");
+            }
+
             if (apiServerCORS) {
                 FilterHolder filterHolder = apiHandler.addFilter(CrossOriginFilter.class, "/*", null);
                 filterHolder.setInitParameter("allowedHeaders", "*");
@@ -317,6 +321,8 @@ public final class API {
     public static void init() {}
 
     public static void shutdown() {
+        Batch.shutdown();
+        APIWorkerPools.shutdown();
         if (apiServer != null) {
             try {
                 apiServer.stop();
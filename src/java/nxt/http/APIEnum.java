@@ -284,7 +284,11 @@ public enum APIEnum {
     GET_NEXT_BLOCK_GENERATORS("getNextBlockGenerators", GetNextBlockGeneratorsTemp.instance),
     GET_SCHEDULED_TRANSACTIONS("getScheduledTransactions", GetScheduledTransactions.instance),
     SCHEDULE_CURRENCY_BUY("scheduleCurrencyBuy", ScheduleCurrencyBuy.instance),
-    DELETE_SCHEDULED_TRANSACTION("deleteScheduledTransaction", DeleteScheduledTransaction.instance);
+    DELETE_SCHEDULED_TRANSACTION("deleteScheduledTransaction", DeleteScheduledTransaction.instance),
+    EXPORT_STATE_SNAPSHOT("exportStateSnapshot", ExportStateSnapshot.instance),
+    BATCH("batch", Batch.instance),
+    GET_API_STATS("getAPIStats", GetAPIStats.instance),
+    BROADCAST_TRANSACTIONS("broadcastTransactions", BroadcastTransactions.instance);
 
     private static final Map<String, APIEnum> apiByName = new HashMap<>();
 
@@ -0,0 +1,258 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.http;
+
+import nxt.AccountLedger;
+import nxt.Db;
+import nxt.Nxt;
+import nxt.Transaction;
+import nxt.db.TransactionalDb;
+import nxt.peer.Peers;
+import nxt.util.Convert;
+import nxt.util.JSON;
+import nxt.util.Logger;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Publish server events to the WebSocket event subscribers
+ *
+ * A single Nxt listener is registered for each of the events supported by EventRegister,
+ * no matter how many clients subscribe to the event.  Block, transaction and ledger events
+ * are published once the database transaction that raised them has been committed, and
+ * are discarded if the database transaction is rolled back.
+ *
+ * Each event is encoded once for all of the subscribers, or once for each account filter
+ * when subscribers only want the transactions or ledger entries for an account.  The events
+ * are sent by a single publisher thread, so a subscriber receives the events in the order
+ * they happened, and the blockchain is not delayed by sending the events.
+ */
+final class APIEventPublisher implements TransactionalDb.TransactionCallback {
+
+    /** Publisher instance */
+    private static final APIEventPublisher instance = new APIEventPublisher();
+
+    /** Subscribers for each event */
+    private static final Map<Enum<?>, Set<APIEventSocket>> subscribers = new ConcurrentHashMap<>();
+
+    /** Events waiting for the database transaction to commit */
+    private static final ThreadLocal<List<Event>> dbEvents = new ThreadLocal<>();
+
+    /** Publisher thread */
+    private static final ExecutorService publisherService = Executors.newSingleThreadExecutor();
+
+    static {
+        EventListener.peerEvents.forEach(event ->
+                Peers.addListener(peer -> publish(new Event("Peer." + event.name(), event, peer.getHost(), 0), false), event));
+        EventListener.blockEvents.forEach(event ->
+                Nxt.getBlockchainProcessor().addListener(block ->
+                        publish(new Event("Block." + event.name(), event, block.getStringId(), 0), true), event));
+        EventListener.txEvents.forEach(event ->
+                Nxt.getTransactionProcessor().addListener(transactions -> {
+                    if (hasSubscribers(event)) {
+                        publish(new Event("Transaction." + event.name(), event, transactions), true);
+                    }
+                }, event));
+        EventListener.ledgerEvents.forEach(event ->
+                AccountLedger.addListener(entry -> publish(new Event("Ledger." + event.name() + "." + Convert.rsAccount(entry.getAccountId()),
+                        event, Long.toUnsignedString(entry.getLedgerId()), entry.getAccountId()), true), event));
+    }
+
+    private APIEventPublisher() {}
+
+    /**
+     * Add a subscriber for an event
+     *
+     * @param   event               Event
+     * @param   socket              Subscriber
+     */
+    static void subscribe(Enum<?> event, APIEventSocket socket) {
+        subscribers.computeIfAbsent(event, e -> new CopyOnWriteArraySet<>()).add(socket);
+    }
+
+    /**
+     * Remove a subscriber for an event
+     *
+     * @param   event               Event
+     * @param   socket              Subscriber
+     */
+    static void unsubscribe(Enum<?> event, APIEventSocket socket) {
+        Set<APIEventSocket> sockets = subscribers.get(event);
+        if (sockets != null) {
+            sockets.remove(socket);
+        }
+    }
+
+    private static boolean hasSubscribers(Enum<?> event) {
+        Set<APIEventSocket> sockets = subscribers.get(event);
+        return sockets != null && !sockets.isEmpty();
+    }
+
+    /**
+     * Publish an event now or when the database transaction is committed
+     *
+     * @param   event               Event
+     * @param   waitTransaction     TRUE to wait for the database transaction to commit
+     */
+    private static void publish(Event event, boolean waitTransaction) {
+        if (!hasSubscribers(event.event)) {
+            return;
+        }
+        if (waitTransaction && Db.db.isInTransaction()) {
+            List<Event> events = dbEvents.get();
+            if (events == null) {
+                events = new ArrayList<>();
+                dbEvents.set(events);
+                Db.db.registerCallback(instance);
+            }
+            events.add(event);
+        } else {
+            publisherService.execute(() -> send(event));
+        }
+    }
+
+    /**
+     * Database transaction has been committed
+     */
+    @Override
+    public void commit() {
+        List<Event> events = dbEvents.get();
+        dbEvents.remove();
+        if (events != null) {
+            publisherService.execute(() -> events.forEach(APIEventPublisher::send));
+        }
+    }
+
+    /**
+     * Database transaction has been rolled back
+     */
+    @Override
+    public void rollback() {
+        dbEvents.remove();
+    }
+
+    /**
+     * Send an event to the subscribers
+     *
+     * @param   event               Event
+     */
+    private static void send(Event event) {
+        Set<APIEventSocket> sockets = subscribers.get(event.event);
+        if (sockets == null) {
+            return;
+        }
+        Map<Long, String> payloads = new HashMap<>();
+        for (APIEventSocket socket : sockets) {
+            try {
+                Set<Long> accountIds = socket.getAccountIds(event.event);
+                if (accountIds == null) {
+                    continue;
+                }
+                if (accountIds.contains(0L)) {
+                    socket.send(payloads.computeIfAbsent(0L, accountId -> event.getPayload(0)));
+                } else {
+                    for (Long accountId : accountIds) {
+                        String payload = payloads.computeIfAbsent(accountId, event::getPayload);
+                        if (payload != null) {
+                            socket.send(payload);
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                Logger.logDebugMessage("Unable to send event to subscriber", e);
+            }
+        }
+    }
+
+    /**
+     * Server event
+     */
+    private static final class Event {
+
+        /** Event name */
+        private final String name;
+
+        /** Nxt event */
+        private final Enum<?> event;
+
+        /** Event identifiers */
+        private final List<String> ids;
+
+        /** Accounts for each identifier */
+        private final List<long[]> accountIds;
+
+        private Event(String name, Enum<?> event, String id, long accountId) {
+            this.name = name;
+            this.event = event;
+            this.ids = new ArrayList<>(1);
+            this.ids.add(id);
+            this.accountIds = new ArrayList<>(1);
+            this.accountIds.add(new long[] {accountId});
+        }
+
+        private Event(String name, Enum<?> event, List<? extends Transaction> transactions) {
+            this.name = name;
+            this.event = event;
+            this.ids = new ArrayList<>(transactions.size());
+            this.accountIds = new ArrayList<>(transactions.size());
+            transactions.forEach(transaction -> {
+                ids.add(transaction.getStringId());
+                accountIds.add(new long[] {transaction.getSenderId(), transaction.getRecipientId()});
+            });
+        }
+
+        /**
+         * Return the encoded event
+         *
+         * @param   accountId       Account filter or 0 for all accounts
+         * @return                  Encoded event or null if there is no identifier for the account
+         */
+        @SuppressWarnings("unchecked")
+        private String getPayload(long accountId) {
+            JSONArray idsJSON = new JSONArray();
+            for (int i = 0; i < ids.size(); i++) {
+                if (accountId == 0) {
+                    idsJSON.add(ids.get(i));
+                } else {
+                    for (long id : accountIds.get(i)) {
+                        if (id == accountId) {
+                            idsJSON.add(ids.get(i));
+                            break;
+                        }
+                    }
+                }
+            }
+            if (idsJSON.isEmpty()) {
+                return null;
+            }
+            JSONObject eventJSON = new JSONObject();
+            eventJSON.put("name", name);
+            eventJSON.put("ids", idsJSON);
+            return JSON.toJSONString(eventJSON);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.http;
+
+import nxt.util.Convert;
+import nxt.util.JSON;
+import nxt.util.Logger;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
+import org.eclipse.jetty.websocket.api.annotations.WebSocket;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WebSocket event subscriber
+ *
+ * The client subscribes to events by sending a text message with the subscribe request
+ * and the event names, using the event names of the EventRegister API:
+ * <pre>
+ * {"requestType":"subscribe","events":["Block.BLOCK_PUSHED","Ledger.ADD_ENTRY.NXT-..."]}
+ * </pre>
+ * A Transaction event name can also end with an account, in which case only the transactions
+ * sent or received by the account are reported.  Events are removed by sending the unsubscribe
+ * request, and all events are removed when the events array is omitted.  Each request is
+ * answered with a message containing the requestType and the subscribed event names, or
+ * with an error message.
+ *
+ * Each event is sent as a text message in the same format as the events returned by the
+ * EventWait API:
+ * <pre>
+ * {"name":"Block.BLOCK_PUSHED","ids":["1234567890"]}
+ * </pre>
+ *
+ * The connection is closed if the client does not read its events and more than
+ * MAX_PENDING_MESSAGES messages are waiting to be sent.
+ */
+@WebSocket
+public final class APIEventSocket {
+
+    /** Maximum number of messages waiting to be sent */
+    private static final int MAX_PENDING_MESSAGES = 1000;
+
+    /** Number of connected subscribers */
+    private static final AtomicInteger subscriberCount = new AtomicInteger();
+
+    /** WebSocket session */
+    private volatile Session session;
+
+    /** Subscribed events and the account filters for each event, with 0 for all accounts */
+    private final Map<Enum<?>, Set<Long>> subscriptions = new ConcurrentHashMap<>();
+
+    /** Number of messages waiting to be sent */
+    private final AtomicInteger pendingMessages = new AtomicInteger();
+
+    /** Write completion */
+    private final WriteCallback writeCallback = new WriteCallback() {
+        @Override
+        public void writeFailed(Throwable x) {
+            pendingMessages.decrementAndGet();
+        }
+
+        @Override
+        public void writeSuccess() {
+            pendingMessages.decrementAndGet();
+        }
+    };
+
+    /**
+     * Return the number of connected subscribers
+     *
+     * @return                      Number of subscribers
+     */
+    static int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    /**
+     * WebSocket connection complete
+     *
+     * @param   session             WebSocket session
+     */
+    @OnWebSocketConnect
+    public void onConnect(Session session) {
+        this.session = session;
+        subscriberCount.incrementAndGet();
+    }
+
+    /**
+     * Process a subscription request
+     *
+     * @param   message             Request message
+     */
+    @OnWebSocketMessage
+    public void onMessage(String message) {
+        JSONObject response;
+        try {
+            Object request = JSON.parse(message);
+            if (!(request instanceof JSONObject)) {
+                throw new IllegalArgumentException("Request is not a JSON object");
+            }
+            response = processRequest((JSONObject)request);
+        } catch (ParseException | IllegalArgumentException e) {
+            response = new JSONObject();
+            response.put("errorCode", 4);
+            response.put("errorDescription", e instanceof ParseException ? "Incorrect JSON request" : e.getMessage());
+        }
+        send(JSON.toJSONString(response));
+    }
+
+    /**
+     * WebSocket session has been closed
+     *
+     * @param   statusCode          Status code
+     * @param   reason              Reason message
+     */
+    @OnWebSocketClose
+    public void onClose(int statusCode, String reason) {
+        synchronized (subscriptions) {
+            subscriptions.keySet().forEach(event -> APIEventPublisher.unsubscribe(event, this));
+            subscriptions.clear();
+        }
+        if (session != null) {
+            session = null;
+            subscriberCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Return the account filters for an event
+     *
+     * @param   event               Event
+     * @return                      Account filters, with 0 for all accounts, or null if not subscribed
+     */
+    Set<Long> getAccountIds(Enum<?> event) {
+        return subscriptions.get(event);
+    }
+
+    /**
+     * Send a message without waiting for it to be written
+     *
+     * @param   message             Message
+     */
+    void send(String message) {
+        Session currentSession = session;
+        if (currentSession == null || !currentSession.isOpen()) {
+            return;
+        }
+        if (pendingMessages.incrementAndGet() > MAX_PENDING_MESSAGES) {
+            pendingMessages.decrementAndGet();
+            Logger.logDebugMessage("Closing event subscriber " + currentSession.getRemoteAddress() + ": too many pending events");
+            currentSession.close(StatusCode.POLICY_VIOLATION, "Too many pending events");
+            return;
+        }
+        currentSession.getRemote().sendString(message, writeCallback);
+    }
+
+    /**
+     * Process a subscribe or unsubscribe request
+     *
+     * @param   request             Request
+     * @return                      Response
+     */
+    private JSONObject processRequest(JSONObject request) {
+        Object requestType = request.get("requestType");
+        boolean subscribe;
+        if ("subscribe".equals(requestType)) {
+            subscribe = true;
+        } else if ("unsubscribe".equals(requestType)) {
+            subscribe = false;
+        } else {
+            throw new IllegalArgumentException("Unknown request type");
+        }
+        Object eventsJSON = request.get("events");
+        if (eventsJSON != null && !(eventsJSON instanceof List)) {
+            throw new IllegalArgumentException("Incorrect events");
+        }
+        List<EventListener.EventRegistration> events = new ArrayList<>();
+        if (eventsJSON == null) {
+            if (subscribe) {
+                throw new IllegalArgumentException("No events specified");
+            }
+        } else {
+            for (Object name : (List<?>)eventsJSON) {
+                events.add(parseEvent(String.valueOf(name)));
+            }
+        }
+        synchronized (subscriptions) {
+            if (subscribe) {
+                events.forEach(registration -> {
+                    subscriptions.computeIfAbsent(registration.getEvent(), e -> ConcurrentHashMap.newKeySet())
+                            .add(registration.getAccountId());
+                    APIEventPublisher.subscribe(registration.getEvent(), this);
+                });
+            } else if (eventsJSON == null) {
+                subscriptions.keySet().forEach(event -> APIEventPublisher.unsubscribe(event, this));
+                subscriptions.clear();
+            } else {
+                events.forEach(registration -> {
+                    Set<Long> accountIds = subscriptions.get(registration.getEvent());
+                    if (accountIds != null) {
+                        if (registration.getAccountId() == 0) {
+                            accountIds.clear();
+                        } else {
+                            accountIds.remove(registration.getAccountId());
+                        }
+                        if (accountIds.isEmpty()) {
+                            subscriptions.remove(registration.getEvent());
+                            APIEventPublisher.unsubscribe(registration.getEvent(), this);
+                        }
+                    }
+                });
+            }
+        }
+        JSONObject response = new JSONObject();
+        response.put("requestType", requestType);
+        JSONArray subscribed = new JSONArray();
+        subscriptions.forEach((event, accountIds) -> accountIds.forEach(accountId ->
+                subscribed.add(getEventName(event) + (accountId != 0 ? "." + Convert.rsAccount(accountId) : ""))));
+        Collections.sort(subscribed);
+        response.put("subscribed", subscribed);
+        return response;
+    }
+
+    /**
+     * Parse an event name
+     *
+     * @param   name                Event name
+     * @return                      Event registration
+     * @throws  IllegalArgumentException    Incorrect or unknown event name
+     */
+    private static EventListener.EventRegistration parseEvent(String name) {
+        String[] parts = name.split("\\.");
+        if (parts.length != 2 && parts.length != 3) {
+            throw new IllegalArgumentException("Incorrect event name format: " + name);
+        }
+        List<? extends Enum<?>> eventList;
+        switch (parts[0]) {
+            case "Block":
+                eventList = EventListener.blockEvents;
+                break;
+            case "Peer":
+                eventList = EventListener.peerEvents;
+                break;
+            case "Transaction":
+                eventList = EventListener.txEvents;
+                break;
+            case "Ledger":
+                eventList = EventListener.ledgerEvents;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown event name: " + name);
+        }
+        long accountId = 0;
+        if (parts.length == 3) {
+            if (eventList != EventListener.txEvents && eventList != EventListener.ledgerEvents) {
+                throw new IllegalArgumentException("Incorrect event name format: " + name);
+            }
+            try {
+                accountId = Convert.parseAccountId(parts[2]);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Incorrect account: " + name);
+            }
+        }
+        for (Enum<?> event : eventList) {
+            if (event.name().equals(parts[1])) {
+                return new EventListener.EventRegistration(event, accountId);
+            }
+        }
+        throw new IllegalArgumentException("Unknown event name: " + name);
+    }
+
+    private static String getEventName(Enum<?> event) {
+        if (EventListener.blockEvents.contains(event)) {
+            return "Block." + event.name();
+        }
+        if (EventListener.peerEvents.contains(event)) {
+            return "Peer." + event.name();
+        }
+        if (EventListener.txEvents.contains(event)) {
+            return "Transaction." + event.name();
+        }
+        return "Ledger." + event.name();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.http;
+
+import nxt.Nxt;
+import org.eclipse.jetty.websocket.servlet.WebSocketServlet;
+import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * WebSocket endpoint for event subscriptions
+ *
+ * The maximum number of connected subscribers is specified by nxt.apiMaxEventSubscribers.
+ * A connection is closed if it has been idle for nxt.apiEventTimeout seconds, so clients
+ * should send a WebSocket ping when they have not received an event within that time.
+ */
+public final class APIEventSocketServlet extends WebSocketServlet {
+
+    /** Maximum number of connected subscribers */
+    static final int maxEventSubscribers = Nxt.getIntProperty("nxt.apiMaxEventSubscribers");
+
+    /**
+     * Configure the WebSocket factory
+     *
+     * @param   factory             WebSocket factory
+     */
+    @Override
+    public void configure(WebSocketServletFactory factory) {
+        factory.getPolicy().setIdleTimeout(EventListener.eventTimeout * 1000L);
+        factory.getPolicy().setMaxTextMessageSize(64 * 1024);
+        factory.setCreator((req, resp) -> {
+            try {
+                if (!API.isAllowed(req.getRemoteAddress())) {
+                    resp.sendForbidden("Not allowed");
+                    return null;
+                }
+                if (APIEventSocket.getSubscriberCount() >= maxEventSubscribers) {
+                    resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many event subscribers");
+                    return null;
+                }
+            } catch (IOException e) {
+                return null;
+            }
+            return new APIEventSocket();
+        });
+    }
+}
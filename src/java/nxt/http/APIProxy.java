@@ -24,6 +24,7 @@ import nxt.util.Logger;
 import nxt.util.ThreadPool;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
@@ -41,6 +42,7 @@ public class APIProxy {
     static final boolean enableAPIProxy = Constants.isLightClient ||
             (Nxt.getBooleanProperty("nxt.enableAPIProxy") && ! API.isOpenAPI);
     private static final int blacklistingPeriod = Nxt.getIntProperty("nxt.apiProxyBlacklistingPeriod") / 1000;
+    private static final int slowResponseLimit = Nxt.getIntProperty("nxt.apiProxySlowResponseLimit");
     static final String forcedServerURL = Nxt.getStringProperty("nxt.forceAPIProxyServerURL", "");
 
     private volatile String forcedPeerHost;
@@ -48,6 +50,7 @@ public class APIProxy {
     private volatile String mainPeerAnnouncedAddress;
 
     private final Map<String, Integer> blacklistedPeers = new ConcurrentHashMap<>();
+    private final Map<String, Integer> slowResponses = new ConcurrentHashMap<>();
 
     static {
         Set<String> requests = new HashSet<>();
@@ -166,6 +169,43 @@ public class APIProxy {
         }
     }
 
+    /**
+     * Return a second peer for a hedged request
+     *
+     * @param   requestType         Request type
+     * @param   excludedHosts       Hosts already used for the request
+     * @return                      Peer or null if no other peer is available
+     */
+    Peer getHedgePeer(String requestType, Collection<String> excludedHosts) {
+        APIEnum requestAPI = APIEnum.fromName(requestType);
+        return getRandomAPIPeer(Peers.getPeers(p -> p.isApiConnectable() && !blacklistedPeers.containsKey(p.getHost())
+                && !excludedHosts.contains(p.getHost()) && !p.getDisabledAPIs().contains(requestAPI)));
+    }
+
+    boolean isPeerForced() {
+        return forcedPeerHost != null;
+    }
+
+    /**
+     * Record the response time of a peer.  A peer is blacklisted once it has been slow
+     * for nxt.apiProxySlowResponseLimit consecutive requests.
+     *
+     * @param   host                Peer host
+     * @param   slow                TRUE if the response was slower than the hedge delay
+     */
+    void recordResponse(String host, boolean slow) {
+        if (!slow) {
+            slowResponses.remove(host);
+            return;
+        }
+        int count = slowResponses.merge(host, 1, Integer::sum);
+        if (slowResponseLimit > 0 && count >= slowResponseLimit) {
+            slowResponses.remove(host);
+            Logger.logDebugMessage("Blacklisting slow API peer " + host);
+            blacklistHost(host);
+        }
+    }
+
     String getMainPeerAnnouncedAddress() {
         // The first client request GetBlockchainState is handled by the server
         // Not by the proxy. In order to report a peer to the client we have
@@ -0,0 +1,206 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.http;
+
+import nxt.Nxt;
+import nxt.util.JSON;
+import org.eclipse.jetty.util.MultiMap;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache for responses returned by the remote API servers used by the API proxy
+ *
+ * Only responses that do not change once the data is confirmed are cached:
+ * <ul>
+ * <li>getBlock for a block identifier, once the block has a next block</li>
+ * <li>getTransaction and getTransactionBytes, once the transaction has nxt.apiProxyCacheConfirmations
+ * confirmations and if the transaction is not phased</li>
+ * </ul>
+ * The confirmations reported by a cached transaction are those of the response that was cached,
+ * so cached responses expire after nxt.apiProxyCacheTimeout seconds.  The least recently used
+ * responses are removed once the cached responses exceed nxt.apiProxyCacheSize kilobytes.  The
+ * cache is disabled by setting nxt.apiProxyCacheSize to 0.
+ */
+final class APIProxyCache {
+
+    /** Maximum number of bytes held by the cache */
+    private static final long maxSize = Math.max(Nxt.getIntProperty("nxt.apiProxyCacheSize"), 0) * 1024L;
+
+    /** Cached response timeout in milliseconds */
+    private static final long timeout = Nxt.getIntProperty("nxt.apiProxyCacheTimeout") * 1000L;
+
+    /** Minimum number of confirmations for a cached transaction */
+    private static final int minConfirmations = Nxt.getIntProperty("nxt.apiProxyCacheConfirmations");
+
+    /** Cached responses in access order */
+    private static final Map<String, CachedResponse> cache = new LinkedHashMap<>(256, 0.75f, true);
+
+    /** Number of bytes held by the cache */
+    private static long cacheSize;
+
+    private APIProxyCache() {} // never
+
+    /**
+     * Return the cache key for a request
+     *
+     * @param   requestType         Request type
+     * @param   parameters          Request parameters
+     * @return                      Cache key or null if the response is not cached
+     */
+    static String getKey(String requestType, MultiMap<String> parameters) {
+        if (maxSize == 0) {
+            return null;
+        }
+        switch (requestType) {
+            case "getBlock":
+                if (parameters.getString("block") == null) {
+                    return null;
+                }
+                break;
+            case "getTransaction":
+            case "getTransactionBytes":
+                break;
+            default:
+                return null;
+        }
+        StringBuilder sb = new StringBuilder(64);
+        sb.append(requestType);
+        String[] names = parameters.keySet().toArray(new String[0]);
+        Arrays.sort(names);
+        for (String name : names) {
+            if (name.equals("requestType") || name.equals("random")) {
+                continue;
+            }
+            sb.append('\n').append(name);
+            List<String> values = parameters.getValues(name);
+            if (values != null) {
+                values.forEach(value -> sb.append('\u0000').append(value));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Return a cached response
+     *
+     * @param   key                 Cache key
+     * @return                      Cached response or null if the response is not cached
+     */
+    static CachedResponse get(String key) {
+        synchronized (cache) {
+            CachedResponse response = cache.get(key);
+            if (response != null && response.expiration < System.currentTimeMillis()) {
+                cache.remove(key);
+                cacheSize -= response.content.length;
+                response = null;
+            }
+            return response;
+        }
+    }
+
+    /**
+     * Cache a response if it contains confirmed data
+     *
+     * @param   key                 Cache key
+     * @param   requestType         Request type
+     * @param   contentType         Response content type
+     * @param   content             Response content
+     */
+    static void put(String key, String requestType, String contentType, byte[] content) {
+        if (content.length > maxSize / 8) {
+            return;
+        }
+        Object json;
+        try {
+            json = JSON.parse(new String(content, StandardCharsets.UTF_8));
+        } catch (ParseException e) {
+            return;
+        }
+        if (!(json instanceof JSONObject) || !isConfirmed(requestType, (JSONObject)json)) {
+            return;
+        }
+        CachedResponse response = new CachedResponse(contentType, content, System.currentTimeMillis() + timeout);
+        synchronized (cache) {
+            CachedResponse oldResponse = cache.put(key, response);
+            if (oldResponse != null) {
+                cacheSize -= oldResponse.content.length;
+            }
+            cacheSize += content.length;
+            Iterator<CachedResponse> it = cache.values().iterator();
+            while (cacheSize > maxSize && it.hasNext()) {
+                cacheSize -= it.next().content.length;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Check if a response contains confirmed data
+     *
+     * @param   requestType         Request type
+     * @param   json                Response
+     * @return                      TRUE if the response can be cached
+     */
+    private static boolean isConfirmed(String requestType, JSONObject json) {
+        if (json.containsKey("errorCode")) {
+            return false;
+        }
+        if (requestType.equals("getBlock")) {
+            return json.get("nextBlock") != null;
+        }
+        Object confirmations = json.get("confirmations");
+        return confirmations instanceof Long && (Long)confirmations >= minConfirmations
+                && !Boolean.TRUE.equals(json.get("phased"));
+    }
+
+    /**
+     * Cached response
+     */
+    static final class CachedResponse {
+
+        /** Response content type */
+        private final String contentType;
+
+        /** Response content */
+        private final byte[] content;
+
+        /** Expiration time */
+        private final long expiration;
+
+        private CachedResponse(String contentType, byte[] content, long expiration) {
+            this.contentType = contentType;
+            this.content = content;
+            this.expiration = expiration;
+        }
+
+        String getContentType() {
+            return contentType;
+        }
+
+        byte[] getContent() {
+            return content;
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package nxt.http;
 
+import nxt.Nxt;
 import nxt.peer.Peer;
 import nxt.peer.Peers;
 import nxt.util.Convert;
@@ -24,12 +25,17 @@ import nxt.util.Logger;
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.BufferingResponseListener;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.proxy.AsyncMiddleManServlet;
 import org.eclipse.jetty.util.MultiMap;
 import org.eclipse.jetty.util.UrlEncoded;
 import org.json.simple.JSONStreamAware;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -37,9 +43,19 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.Writer;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
 import java.net.URI;
+import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static nxt.http.JSONResponses.ERROR_NOT_ALLOWED;
 
@@ -48,6 +64,8 @@ public final class APIProxyServlet extends AsyncMiddleManServlet {
     private static final String REMOTE_URL = APIProxyServlet.class.getName() + ".remoteUrl";
     private static final String REMOTE_SERVER_IDLE_TIMEOUT = APIProxyServlet.class.getName() + ".remoteServerIdleTimeout";
     static final int PROXY_IDLE_TIMEOUT_DELTA = 5000;
+    private static final int MAX_BUFFERED_RESPONSE = 16 * 1024 * 1024;
+    private static final int hedgeDelay = Nxt.getIntProperty("nxt.apiProxyHedgeDelay");
 
     static void initClass() {}
 
@@ -71,12 +89,31 @@ public final class APIProxyServlet extends AsyncMiddleManServlet {
                 if (parameters.containsKey("secretPhrase") || parameters.containsKey("adminPassword") || parameters.containsKey("sharedKey")) {
                     throw new ParameterException(JSONResponses.PROXY_SECRET_DATA_DETECTED);
                 }
-                if (!initRemoteRequest(request, requestType)) {
-                    if (Peers.getPeers(peer -> peer.getState() == Peer.State.CONNECTED, 1).size() >= 1) {
-                        responseJson = JSONResponses.API_PROXY_NO_OPEN_API_PEERS;
+                String cacheKey = null;
+                boolean hedged = false;
+                APIServlet.APIRequestHandler apiRequestHandler = APIServlet.apiRequestHandlers.get(requestType);
+                if ("GET".equals(request.getMethod()) && APIProxy.forcedServerURL.isEmpty() && request.isAsyncSupported()
+                        && apiRequestHandler != null && !apiRequestHandler.requirePost()) {
+                    cacheKey = APIProxyCache.getKey(requestType, parameters);
+                    if (cacheKey != null) {
+                        APIProxyCache.CachedResponse cachedResponse = APIProxyCache.get(cacheKey);
+                        if (cachedResponse != null) {
+                            response.setContentType(cachedResponse.getContentType());
+                            response.getOutputStream().write(cachedResponse.getContent());
+                            return;
+                        }
+                    }
+                    hedged = cacheKey != null || hedgeDelay > 0;
+                }
+                if (hedged) {
+                    Peer servingPeer = APIProxy.getInstance().getServingPeer(requestType);
+                    if (servingPeer == null) {
+                        responseJson = getNoPeersResponse();
                     } else {
-                        responseJson = JSONResponses.API_PROXY_NO_PUBLIC_PEERS;
+                        new HedgedRequest(request, response, requestType, cacheKey).start(servingPeer);
                     }
+                } else if (!initRemoteRequest(request, requestType)) {
+                    responseJson = getNoPeersResponse();
                 } else {
                     super.service(request, response);
                 }
@@ -99,6 +136,14 @@ public final class APIProxyServlet extends AsyncMiddleManServlet {
         }
     }
 
+    private static JSONStreamAware getNoPeersResponse() {
+        if (Peers.getPeers(peer -> peer.getState() == Peer.State.CONNECTED, 1).size() >= 1) {
+            return JSONResponses.API_PROXY_NO_OPEN_API_PEERS;
+        } else {
+            return JSONResponses.API_PROXY_NO_PUBLIC_PEERS;
+        }
+    }
+
     private MultiMap<String> getRequestParameters(HttpServletRequest request) {
         MultiMap<String> parameters = new MultiMap<>();
         String queryString = request.getQueryString();
@@ -222,6 +267,178 @@ public final class APIProxyServlet extends AsyncMiddleManServlet {
         }
     }
 
+    /**
+     * Read-only request sent to the serving peer and, if the serving peer has not responded
+     * after nxt.apiProxyHedgeDelay milliseconds, has failed or is busy, to a second peer.  The
+     * first successful response is returned to the client and the other request is aborted.
+     * Only the serving peer is recorded as slow when it has not responded within the hedge delay,
+     * and serving peers that are repeatedly slow are blacklisted by APIProxy.  A busy response
+     * (HTTP status 503) does not blacklist the peer.
+     */
+    private final class HedgedRequest {
+
+        private final HttpServletRequest clientRequest;
+        private final HttpServletResponse clientResponse;
+        private final String requestType;
+        private final String cacheKey;
+        private final AsyncContext asyncContext;
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final AtomicBoolean hedgeSent = new AtomicBoolean();
+        private final AtomicInteger pendingRequests = new AtomicInteger();
+        private final AtomicBoolean busy = new AtomicBoolean();
+        private volatile long startTime;
+        private final List<String> hosts = new CopyOnWriteArrayList<>();
+        private final List<Request> proxyRequests = new CopyOnWriteArrayList<>();
+
+        private HedgedRequest(HttpServletRequest clientRequest, HttpServletResponse clientResponse,
+                              String requestType, String cacheKey) {
+            this.clientRequest = clientRequest;
+            this.clientResponse = clientResponse;
+            this.requestType = requestType;
+            this.cacheKey = cacheKey;
+            this.asyncContext = clientRequest.startAsync();
+            this.asyncContext.setTimeout(0);
+        }
+
+        private void start(Peer peer) {
+            startTime = System.currentTimeMillis();
+            pendingRequests.incrementAndGet();
+            if (hedgeDelay > 0 && !APIProxy.getInstance().isPeerForced()) {
+                getHttpClient().getScheduler().schedule(this::sendHedge, hedgeDelay, TimeUnit.MILLISECONDS);
+            } else {
+                hedgeSent.set(true);
+            }
+            send(peer);
+        }
+
+        private boolean sendHedge() {
+            if (completed.get()) {
+                return false;
+            }
+            //
+            // The hedge is counted as pending before it is marked as sent, so a failed
+            // request can not complete the client request while the hedge is being sent
+            //
+            pendingRequests.incrementAndGet();
+            if (!hedgeSent.compareAndSet(false, true)) {
+                requestDone();
+                return false;
+            }
+            Peer peer = APIProxy.getInstance().getHedgePeer(requestType, hosts);
+            if (peer == null) {
+                requestDone();
+                return false;
+            }
+            send(peer);
+            return true;
+        }
+
+        /**
+         * Complete the client request with an error when the last pending proxy request
+         * has finished without a response
+         */
+        private void requestDone() {
+            if (pendingRequests.decrementAndGet() == 0 && completed.compareAndSet(false, true)) {
+                clientResponse.setStatus(busy.get() ? HttpStatus.SERVICE_UNAVAILABLE_503 : HttpStatus.BAD_GATEWAY_502);
+                asyncContext.complete();
+            }
+        }
+
+        private void send(Peer peer) {
+            String host = peer.getHost();
+            StringBuilder uri = peer.getPeerApiUri().append("/nxt");
+            String query = clientRequest.getQueryString();
+            if (query != null) {
+                uri.append("?").append(query);
+            }
+            Request proxyRequest = getHttpClient().newRequest(URI.create(uri.toString()).normalize()).method(HttpMethod.GET);
+            if (peer.getApiServerIdleTimeout() > 0) {
+                proxyRequest.idleTimeout(Math.max(peer.getApiServerIdleTimeout() - PROXY_IDLE_TIMEOUT_DELTA, 0), TimeUnit.MILLISECONDS);
+            }
+            hosts.add(host);
+            proxyRequests.add(proxyRequest);
+            proxyRequest.send(new BufferingResponseListener(MAX_BUFFERED_RESPONSE) {
+                @Override
+                public void onComplete(Result result) {
+                    if (result.isSucceeded() && result.getResponse().getStatus() == HttpStatus.OK_200) {
+                        if (completed.compareAndSet(false, true)) {
+                            //
+                            // Only the serving peer is timed, a hedge peer started later is not slow
+                            // because it lost the race
+                            //
+                            String servingHost = hosts.get(0);
+                            boolean slow = hedgeDelay > 0 && System.currentTimeMillis() - startTime > hedgeDelay;
+                            APIProxy.getInstance().recordResponse(servingHost, slow);
+                            proxyRequests.forEach(request -> {
+                                if (request != result.getRequest()) {
+                                    request.abort(new CancellationException("Hedged request completed"));
+                                }
+                            });
+                            byte[] content = getContent();
+                            String contentType = result.getResponse().getHeaders().get(HttpHeader.CONTENT_TYPE);
+                            if (cacheKey != null) {
+                                APIProxyCache.put(cacheKey, requestType, contentType, content);
+                            }
+                            sendResponse(contentType, content);
+                        }
+                        requestDone();
+                        return;
+                    }
+                    if (!completed.get()) {
+                        if (result.isSucceeded()) {
+                            int status = result.getResponse().getStatus();
+                            if (status == HttpStatus.SERVICE_UNAVAILABLE_503) {
+                                Logger.logDebugMessage("proxy server " + host + " is busy");
+                                busy.set(true);
+                            } else {
+                                Logger.logDebugMessage("proxy server " + host + " returned status " + status);
+                            }
+                        } else if (isHostFailure(result.getFailure())) {
+                            Logger.logDebugMessage("proxy failed for " + host, result.getFailure());
+                            APIProxy.getInstance().blacklistHost(host);
+                        } else {
+                            Logger.logDebugMessage("proxy request to " + host + " failed", result.getFailure());
+                        }
+                        sendHedge();
+                    }
+                    requestDone();
+                }
+            });
+        }
+
+        /**
+         * Check if a proxy request failed because the host could not be reached or did not
+         * respond in time.  Other failures, such as an aborted request or a response that
+         * exceeds the buffer size, do not blacklist the host.
+         *
+         * @param   failure             Request failure
+         * @return                      TRUE if the host should be blacklisted
+         */
+        private boolean isHostFailure(Throwable failure) {
+            for (Throwable t = failure; t != null; t = t.getCause()) {
+                if (t instanceof ConnectException || t instanceof NoRouteToHostException ||
+                        t instanceof UnknownHostException || t instanceof SocketTimeoutException ||
+                        t instanceof TimeoutException) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void sendResponse(String contentType, byte[] content) {
+            try {
+                if (contentType != null) {
+                    clientResponse.setContentType(contentType);
+                }
+                clientResponse.getOutputStream().write(content);
+            } catch (IOException e) {
+                Logger.logInfoMessage("Failed to write response to client", e);
+            } finally {
+                asyncContext.complete();
+            }
+        }
+    }
+
     @Override
     protected ContentTransformer newClientRequestContentTransformer(HttpServletRequest clientRequest, Request proxyRequest) {
         String contentType = clientRequest.getContentType();
@@ -0,0 +1,280 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.http;
+
+import nxt.BlockchainProcessor;
+import nxt.Nxt;
+import nxt.TransactionProcessor;
+import nxt.util.JSON;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache for read-only API responses
+ *
+ * A request handler enables caching of its responses by returning the events that change
+ * the response from getCacheInvalidation().  A response is cached using the request type,
+ * the sorted request parameters and the last block identifier as the key, so a cached
+ * response is never returned once a new block has been pushed or popped.  Responses that
+ * depend on the unconfirmed transaction pool also include the pool generation in the key,
+ * and status responses expire after nxt.apiResponseCacheStatusTimeout seconds.
+ *
+ * The cached responses are held in their encoded form, and the least recently used responses
+ * are removed once the encoded responses exceed nxt.apiResponseCacheSize kilobytes.  The
+ * cache is disabled by setting nxt.apiResponseCacheSize to 0.
+ *
+ * Requests with the adminPassword, requireBlock or requireLastBlock parameter are never cached.
+ * The random parameter, which is used by clients to defeat browser caching, is ignored.
+ */
+public final class APIResponseCache {
+
+    /**
+     * Events that change a response
+     */
+    public enum Invalidation {
+        /** Response changes when a block is pushed or popped */
+        BLOCK,
+        /** Response changes when a block is pushed or popped or the unconfirmed transaction pool changes */
+        UNCONFIRMED_TRANSACTIONS,
+        /** Response includes node status and expires after the status timeout */
+        STATUS
+    }
+
+    /** Maximum number of characters held by the cache */
+    private static final long maxSize = Math.max(Nxt.getIntProperty("nxt.apiResponseCacheSize"), 0) * 1024L;
+
+    /** Status response timeout in milliseconds */
+    private static final long statusTimeout = Nxt.getIntProperty("nxt.apiResponseCacheStatusTimeout") * 1000L;
+
+    /** Block generation, incremented when a block is pushed or popped */
+    private static final AtomicLong blockGeneration = new AtomicLong();
+
+    /** Unconfirmed transaction pool generation */
+    private static final AtomicLong unconfirmedGeneration = new AtomicLong();
+
+    /** Cached responses in access order */
+    private static final Map<String, CacheEntry> cache = new LinkedHashMap<>(256, 0.75f, true);
+
+    /** Number of characters held by the cache */
+    private static long cacheSize;
+
+    static {
+        if (maxSize > 0) {
+            Nxt.getBlockchainProcessor().addListener(block -> blockChanged(), BlockchainProcessor.Event.BLOCK_PUSHED);
+            Nxt.getBlockchainProcessor().addListener(block -> blockChanged(), BlockchainProcessor.Event.BLOCK_POPPED);
+            Nxt.getTransactionProcessor().addListener(transactions -> unconfirmedGeneration.incrementAndGet(),
+                    TransactionProcessor.Event.ADDED_UNCONFIRMED_TRANSACTIONS);
+            Nxt.getTransactionProcessor().addListener(transactions -> unconfirmedGeneration.incrementAndGet(),
+                    TransactionProcessor.Event.REMOVED_UNCONFIRMED_TRANSACTIONS);
+        }
+    }
+
+    private APIResponseCache() {} // never
+
+    /**
+     * Return the cache key for a request
+     *
+     * @param   req                 HTTP request
+     * @param   requestType         Request type
+     * @param   invalidation        Events that change the response
+     * @return                      Cache key or null if the response is not to be cached
+     */
+    static Key getKey(HttpServletRequest req, String requestType, Invalidation invalidation) {
+        if (maxSize == 0 || invalidation == null) {
+            return null;
+        }
+        Map<String, String[]> parameters = req.getParameterMap();
+        if (parameters.containsKey("adminPassword") || parameters.containsKey("requireBlock")
+                || parameters.containsKey("requireLastBlock")) {
+            return null;
+        }
+        long currentBlockGeneration = blockGeneration.get();
+        long currentUnconfirmedGeneration = unconfirmedGeneration.get();
+        StringBuilder sb = new StringBuilder(64);
+        sb.append(requestType).append('\n').append(Nxt.getBlockchain().getLastBlock().getId());
+        if (invalidation == Invalidation.UNCONFIRMED_TRANSACTIONS) {
+            sb.append('\n').append(currentUnconfirmedGeneration);
+        }
+        String[] names = parameters.keySet().toArray(new String[0]);
+        Arrays.sort(names);
+        for (String name : names) {
+            if (name.equals("requestType") || name.equals("random")) {
+                continue;
+            }
+            sb.append('\n').append(name);
+            for (String value : parameters.get(name)) {
+                sb.append('\u0000').append(value);
+            }
+        }
+        return new Key(sb.toString(), invalidation, currentBlockGeneration, currentUnconfirmedGeneration);
+    }
+
+    /**
+     * Return a cached response
+     *
+     * @param   key                 Cache key
+     * @return                      Cached response or null if the response is not cached
+     */
+    static JSONStreamAware get(Key key) {
+        CacheEntry entry;
+        synchronized (cache) {
+            entry = cache.get(key.key);
+            if (entry != null && entry.expiration != 0 && entry.expiration < System.currentTimeMillis()) {
+                cache.remove(key.key);
+                cacheSize -= entry.chars.length;
+                entry = null;
+            }
+        }
+        return entry != null ? new CachedResponse(entry.chars) : null;
+    }
+
+    /**
+     * Cache a response
+     *
+     * The response is not cached if it is an error response or if a block or unconfirmed
+     * transaction event happened while the response was created
+     *
+     * @param   key                 Cache key
+     * @param   response            Response
+     * @return                      Response to be returned to the client
+     */
+    static JSONStreamAware put(Key key, JSONStreamAware response) {
+        if (!(response instanceof JSONObject) || ((JSONObject)response).containsKey("errorCode")) {
+            return response;
+        }
+        char[] chars = JSON.toJSONString((JSONObject)response).toCharArray();
+        if (chars.length > maxSize / 8 || key.blockGeneration != blockGeneration.get()
+                || (key.invalidation == Invalidation.UNCONFIRMED_TRANSACTIONS && key.unconfirmedGeneration != unconfirmedGeneration.get())) {
+            return new CachedResponse(chars);
+        }
+        long expiration = key.invalidation == Invalidation.STATUS ? System.currentTimeMillis() + statusTimeout : 0;
+        synchronized (cache) {
+            CacheEntry oldEntry = cache.put(key.key, new CacheEntry(chars, expiration));
+            if (oldEntry != null) {
+                cacheSize -= oldEntry.chars.length;
+            }
+            cacheSize += chars.length;
+            Iterator<CacheEntry> it = cache.values().iterator();
+            while (cacheSize > maxSize && it.hasNext()) {
+                cacheSize -= it.next().chars.length;
+                it.remove();
+            }
+        }
+        return new CachedResponse(chars);
+    }
+
+    /**
+     * Remove all cached responses when the last block changes
+     */
+    private static void blockChanged() {
+        blockGeneration.incrementAndGet();
+        synchronized (cache) {
+            cache.clear();
+            cacheSize = 0;
+        }
+    }
+
+    /**
+     * Cache key
+     */
+    static final class Key {
+
+        /** Key string */
+        private final String key;
+
+        /** Events that change the response */
+        private final Invalidation invalidation;
+
+        /** Block generation when the key was created */
+        private final long blockGeneration;
+
+        /** Unconfirmed transaction pool generation when the key was created */
+        private final long unconfirmedGeneration;
+
+        private Key(String key, Invalidation invalidation, long blockGeneration, long unconfirmedGeneration) {
+            this.key = key;
+            this.invalidation = invalidation;
+            this.blockGeneration = blockGeneration;
+            this.unconfirmedGeneration = unconfirmedGeneration;
+        }
+    }
+
+    /**
+     * Cache entry
+     */
+    private static final class CacheEntry {
+
+        /** Encoded response */
+        private final char[] chars;
+
+        /** Expiration time or 0 if the entry does not expire */
+        private final long expiration;
+
+        private CacheEntry(char[] chars, long expiration) {
+            this.chars = chars;
+            this.expiration = expiration;
+        }
+    }
+
+    /**
+     * Encoded response
+     *
+     * The request processing time is added to the encoded response when it is written
+     */
+    static final class CachedResponse implements JSONStreamAware {
+
+        /** Encoded response */
+        private final char[] chars;
+
+        /** Request start time */
+        private long startTime;
+
+        private CachedResponse(char[] chars) {
+            this.chars = chars;
+        }
+
+        /**
+         * Report the request processing time in the response
+         *
+         * @param   startTime       Request start time
+         */
+        void setStartTime(long startTime) {
+            this.startTime = startTime;
+        }
+
+        @Override
+        public void writeJSONString(Writer out) throws IOException {
+            if (startTime == 0) {
+                out.write(chars);
+                return;
+            }
+            out.write(chars, 0, chars.length - 1);
+            out.write(chars.length > 2 ? ",\"requestProcessingTime\":" : "\"requestProcessingTime\":");
+            out.write(Long.toString(System.currentTimeMillis() - startTime));
+            out.write('}');
+        }
+    }
+}
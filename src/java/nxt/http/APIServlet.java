@@ -21,11 +21,13 @@ import nxt.Db;
 import nxt.Nxt;
 import nxt.NxtException;
 import nxt.addons.AddOns;
+import nxt.util.CountingOutputWriter;
 import nxt.util.JSON;
 import nxt.util.Logger;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -40,6 +42,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 import static nxt.http.JSONResponses.ERROR_DISABLED;
 import static nxt.http.JSONResponses.ERROR_INCORRECT_REQUEST;
@@ -48,6 +52,7 @@ import static nxt.http.JSONResponses.LIGHT_CLIENT_DISABLED_API;
 import static nxt.http.JSONResponses.POST_REQUIRED;
 import static nxt.http.JSONResponses.REQUIRED_BLOCK_NOT_FOUND;
 import static nxt.http.JSONResponses.REQUIRED_LAST_BLOCK_NOT_FOUND;
+import static nxt.http.JSONResponses.SERVER_BUSY;
 
 public final class APIServlet extends HttpServlet {
 
@@ -126,6 +131,26 @@ public final class APIServlet extends HttpServlet {
             return false;
         }
 
+        /**
+         * Return the events that change the response of a read-only request.  The response
+         * is cached by APIResponseCache until one of these events happens.
+         *
+         * @return                  Invalidation events or null if the response is not cached
+         */
+        protected APIResponseCache.Invalidation getCacheInvalidation() {
+            return null;
+        }
+
+        /**
+         * Check if the request can be processed by an API worker pool.  A request handler
+         * that creates its own asynchronous context must return false.
+         *
+         * @return                  TRUE if the request can be processed by a worker pool
+         */
+        protected boolean allowWorkerPool() {
+            return true;
+        }
+
     }
 
     private static final boolean enforcePost = Nxt.getBooleanProperty("nxt.apiServerEnforcePOST");
@@ -196,8 +221,51 @@ public final class APIServlet extends HttpServlet {
         resp.setDateHeader("Expires", 0);
         resp.setContentType("text/plain; charset=UTF-8");
 
-        JSONStreamAware response = JSON.emptyJSON;
         long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        String requestType = req.getParameter("requestType");
+        ExecutorService pool = requestType != null && req.isAsyncSupported() && API.isAllowed(req.getRemoteHost()) ?
+                APIWorkerPools.getPool(requestType) : null;
+        if (pool == null) {
+            process(req, resp, startTime, startNanos);
+            return;
+        }
+        AsyncContext context = req.startAsync();
+        context.setTimeout(0);
+        try {
+            pool.execute(() -> {
+                try {
+                    APIStats.RequestStats stats = APIStats.getRequestStats(requestType);
+                    if (stats != null) {
+                        stats.recordLatency(APIStats.Phase.QUEUE_WAIT, APIStats.elapsedMicros(startNanos));
+                    }
+                    process(req, resp, startTime, startNanos);
+                } catch (IOException | RuntimeException e) {
+                    Logger.logDebugMessage("Error processing API request", e);
+                } finally {
+                    context.complete();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            try {
+                resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                try (Writer writer = resp.getWriter()) {
+                    JSON.writeJSONString(SERVER_BUSY, writer);
+                }
+                APIStats.RequestStats stats = APIStats.getRequestStats(requestType);
+                if (stats != null) {
+                    stats.recordRequest(true, 0);
+                }
+            } finally {
+                context.complete();
+            }
+        }
+    }
+
+    private void process(HttpServletRequest req, HttpServletResponse resp, long startTime, long startNanos) throws IOException {
+        JSONStreamAware response = JSON.emptyJSON;
+        APIStats.RequestStats stats = null;
+        JSONStreamingResponse<?> streamingResponse = null;
 
         try {
 
@@ -221,6 +289,7 @@ public final class APIServlet extends HttpServlet {
                 }
                 return;
             }
+            stats = APIStats.getRequestStats(requestType);
 
             if (Constants.isLightClient && apiRequestHandler.requireFullClient()) {
                 response = LIGHT_CLIENT_DISABLED_API;
@@ -239,8 +308,21 @@ public final class APIServlet extends HttpServlet {
                     ParameterParser.getUnsignedLong(req, "requireBlock", false) : 0;
             final long requireLastBlockId = apiRequestHandler.allowRequiredBlockParameters() ?
                     ParameterParser.getUnsignedLong(req, "requireLastBlock", false) : 0;
+            final APIResponseCache.Key cacheKey = APIResponseCache.getKey(req, requestType,
+                    apiRequestHandler.getCacheInvalidation());
+            if (cacheKey != null) {
+                JSONStreamAware cachedResponse = APIResponseCache.get(cacheKey);
+                if (cachedResponse != null) {
+                    response = cachedResponse;
+                    return;
+                }
+            }
             if (requireBlockId != 0 || requireLastBlockId != 0) {
+                long lockNanos = System.nanoTime();
                 Nxt.getBlockchain().readLock();
+                if (stats != null) {
+                    stats.recordLatency(APIStats.Phase.LOCK_WAIT, APIStats.elapsedMicros(lockNanos));
+                }
             }
             try {
                 try {
@@ -255,9 +337,29 @@ public final class APIServlet extends HttpServlet {
                         response = REQUIRED_LAST_BLOCK_NOT_FOUND;
                         return;
                     }
+                    long processNanos = System.nanoTime();
                     response = apiRequestHandler.processRequest(req, resp);
-                    if (requireLastBlockId == 0 && requireBlockId != 0 && response instanceof JSONObject) {
-                        ((JSONObject) response).put("lastBlock", Nxt.getBlockchain().getLastBlock().getStringId());
+                    if (response instanceof JSONStreamingResponse) {
+                        // Read the rows while holding the lock, the response is written once it has been released
+                        streamingResponse = (JSONStreamingResponse<?>) response;
+                        if (!streamingResponse.readRows()) {
+                            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                            response = SERVER_BUSY;
+                            return;
+                        }
+                    }
+                    if (stats != null) {
+                        stats.recordLatency(APIStats.Phase.PROCESS, APIStats.elapsedMicros(processNanos));
+                    }
+                    if (cacheKey != null) {
+                        response = APIResponseCache.put(cacheKey, response);
+                    }
+                    if (requireLastBlockId == 0 && requireBlockId != 0) {
+                        if (response instanceof JSONObject) {
+                            ((JSONObject) response).put("lastBlock", Nxt.getBlockchain().getLastBlock().getStringId());
+                        } else if (streamingResponse != null) {
+                            streamingResponse.put("lastBlock", Nxt.getBlockchain().getLastBlock().getStringId());
+                        }
                     }
                 } finally {
                     if (apiRequestHandler.startDbTransaction()) {
@@ -283,13 +385,32 @@ public final class APIServlet extends HttpServlet {
             Logger.logErrorMessage("Error processing request", e);
             response = ERROR_INCORRECT_REQUEST;
         } finally {
-            // The response will be null if we created an asynchronous context
-            if (response != null) {
-                if (response instanceof JSONObject) {
-                    ((JSONObject) response).put("requestProcessingTime", System.currentTimeMillis() - startTime);
+            try {
+                // The response will be null if we created an asynchronous context
+                if (response != null) {
+                    if (response instanceof JSONObject) {
+                        ((JSONObject) response).put("requestProcessingTime", System.currentTimeMillis() - startTime);
+                    } else if (response instanceof JSONStreamingResponse) {
+                        ((JSONStreamingResponse) response).setStartTime(startTime);
+                    } else if (response instanceof APIResponseCache.CachedResponse) {
+                        ((APIResponseCache.CachedResponse) response).setStartTime(startTime);
+                    }
+                    long writeNanos = System.nanoTime();
+                    CountingOutputWriter countingWriter = stats != null ? new CountingOutputWriter(resp.getWriter()) : null;
+                    try (Writer writer = countingWriter != null ? countingWriter : resp.getWriter()) {
+                        JSON.writeJSONString(response, writer);
+                    } finally {
+                        if (stats != null) {
+                            stats.recordLatency(APIStats.Phase.WRITE, APIStats.elapsedMicros(writeNanos));
+                            stats.recordLatency(APIStats.Phase.TOTAL, APIStats.elapsedMicros(startNanos));
+                            stats.recordRequest(JSON.isError(response), countingWriter.getCount());
+                        }
+                    }
                 }
-                try (Writer writer = resp.getWriter()) {
-                    JSON.writeJSONString(response, writer);
+            } finally {
+                // The streaming response may have been replaced by an error response and never written
+                if (streamingResponse != null) {
+                    streamingResponse.close();
                 }
             }
         }
@@ -0,0 +1,257 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.http;
+
+import nxt.Nxt;
+import nxt.util.Histogram;
+import nxt.util.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * API request statistics
+ *
+ * The statistics are kept for each request type and contain the number of requests, the
+ * number of error responses, the number of characters written and a latency histogram for
+ * each request phase.  The latencies are in microseconds:
+ * <ul>
+ * <li>QUEUE_WAIT - Time waiting for a worker when the request is processed by an API worker pool</li>
+ * <li>LOCK_WAIT - Time waiting for the blockchain read lock for requireBlock, requireLastBlock or batch requests</li>
+ * <li>PROCESS - Time spent in the request handler, which includes the database queries</li>
+ * <li>WRITE - Time spent encoding and writing the response, which includes the database queries
+ * for streaming responses</li>
+ * <li>TOTAL - Time from the start of the request until the response has been written</li>
+ * </ul>
+ *
+ * The statistics are returned by the getAPIStats request.  They are also registered as
+ * MXBeans with the name nxt:type=APIStats,requestType=<i>name</i> when nxt.enableAPIStatsJMX
+ * is true.  The statistics are not kept when nxt.enableAPIStats is false.
+ */
+public final class APIStats {
+
+    /**
+     * Request phase
+     */
+    public enum Phase {
+        QUEUE_WAIT, LOCK_WAIT, PROCESS, WRITE, TOTAL
+    }
+
+    /** Statistics are enabled */
+    private static final boolean enabled = Nxt.getBooleanProperty("nxt.enableAPIStats");
+
+    /** Statistics are registered with the platform MBean server */
+    private static final boolean jmxEnabled = enabled && Nxt.getBooleanProperty("nxt.enableAPIStatsJMX");
+
+    /** Statistics for each request type */
+    private static final ConcurrentMap<String, RequestStats> requestStats = new ConcurrentHashMap<>();
+
+    private APIStats() {} // never
+
+    /**
+     * Check if statistics are enabled
+     *
+     * @return                      TRUE if statistics are enabled
+     */
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Return the statistics for a request type
+     *
+     * @param   requestType         Request type
+     * @return                      Request statistics or null if statistics are not enabled
+     */
+    static RequestStats getRequestStats(String requestType) {
+        if (!enabled) {
+            return null;
+        }
+        RequestStats stats = requestStats.get(requestType);
+        if (stats == null) {
+            stats = new RequestStats(requestType);
+            RequestStats oldStats = requestStats.putIfAbsent(requestType, stats);
+            if (oldStats != null) {
+                stats = oldStats;
+            } else if (jmxEnabled) {
+                try {
+                    ManagementFactory.getPlatformMBeanServer().registerMBean(stats,
+                            new ObjectName("nxt:type=APIStats,requestType=" + ObjectName.quote(requestType)));
+                } catch (JMException e) {
+                    Logger.logErrorMessage("Unable to register API statistics for " + requestType, e);
+                }
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Return the statistics for all request types that have been used
+     *
+     * @return                      Request statistics
+     */
+    static List<RequestStats> getAllRequestStats() {
+        return new ArrayList<>(requestStats.values());
+    }
+
+    /**
+     * Return the elapsed time in microseconds
+     *
+     * @param   startTime           Start time returned by System.nanoTime()
+     * @return                      Elapsed time in microseconds
+     */
+    static long elapsedMicros(long startTime) {
+        return (System.nanoTime() - startTime) / 1000;
+    }
+
+    /**
+     * Request statistics MXBean
+     */
+    public interface RequestStatsMXBean {
+
+        String getRequestType();
+
+        long getRequestCount();
+
+        long getErrorCount();
+
+        long getCharsWritten();
+
+        Histogram.Snapshot getQueueWait();
+
+        Histogram.Snapshot getLockWait();
+
+        Histogram.Snapshot getProcess();
+
+        Histogram.Snapshot getWrite();
+
+        Histogram.Snapshot getTotal();
+    }
+
+    /**
+     * Statistics for a request type
+     */
+    static final class RequestStats implements RequestStatsMXBean {
+
+        /** Request type */
+        private final String requestType;
+
+        /** Number of requests */
+        private final LongAdder requestCount = new LongAdder();
+
+        /** Number of error responses */
+        private final LongAdder errorCount = new LongAdder();
+
+        /** Number of characters written */
+        private final LongAdder charsWritten = new LongAdder();
+
+        /** Latency histograms indexed by phase */
+        private final Histogram[] latencies = new Histogram[Phase.values().length];
+
+        private RequestStats(String requestType) {
+            this.requestType = requestType;
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = new Histogram();
+            }
+        }
+
+        /**
+         * Record the latency of a request phase
+         *
+         * @param   phase           Request phase
+         * @param   micros          Latency in microseconds
+         */
+        void recordLatency(Phase phase, long micros) {
+            latencies[phase.ordinal()].record(micros);
+        }
+
+        /**
+         * Record a completed request
+         *
+         * @param   error           TRUE if an error response was returned
+         * @param   chars           Number of characters written
+         */
+        void recordRequest(boolean error, long chars) {
+            requestCount.increment();
+            if (error) {
+                errorCount.increment();
+            }
+            charsWritten.add(chars);
+        }
+
+        /**
+         * Return the latency snapshot for a request phase
+         *
+         * @param   phase           Request phase
+         * @return                  Latency snapshot
+         */
+        Histogram.Snapshot getLatency(Phase phase) {
+            return latencies[phase.ordinal()].getSnapshot();
+        }
+
+        @Override
+        public String getRequestType() {
+            return requestType;
+        }
+
+        @Override
+        public long getRequestCount() {
+            return requestCount.sum();
+        }
+
+        @Override
+        public long getErrorCount() {
+            return errorCount.sum();
+        }
+
+        @Override
+        public long getCharsWritten() {
+            return charsWritten.sum();
+        }
+
+        @Override
+        public Histogram.Snapshot getQueueWait() {
+            return getLatency(Phase.QUEUE_WAIT);
+        }
+
+        @Override
+        public Histogram.Snapshot getLockWait() {
+            return getLatency(Phase.LOCK_WAIT);
+        }
+
+        @Override
+        public Histogram.Snapshot getProcess() {
+            return getLatency(Phase.PROCESS);
+        }
+
+        @Override
+        public Histogram.Snapshot getWrite() {
+            return getLatency(Phase.WRITE);
+        }
+
+        @Override
+        public Histogram.Snapshot getTotal() {
+            return getLatency(Phase.TOTAL);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.http;
+
+import nxt.Nxt;
+import nxt.util.Logger;
+import nxt.util.ThreadPool;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Worker pools for expensive API requests
+ *
+ * Requests for a tag listed in nxt.apiWorkerPoolTags are processed by a worker pool for
+ * that tag, and the request types listed in nxt.apiSlowAPIs are processed by a shared pool
+ * for slow requests.  All other requests are processed by the Jetty thread that received
+ * the request.  This keeps cheap requests fast when many expensive requests are received,
+ * since an expensive request waits for a worker without holding a Jetty thread.
+ *
+ * Each pool has nxt.apiWorkerPoolThreads threads and queues at most nxt.apiWorkerPoolQueueSize
+ * requests.  A request is rejected with HTTP status 503 when the queue for its pool is full.
+ */
+final class APIWorkerPools {
+
+    /** Name of the pool for the request types listed in nxt.apiSlowAPIs */
+    private static final String SLOW_POOL = "slow";
+
+    /** Number of threads in each pool */
+    private static final int poolThreads = Math.max(Nxt.getIntProperty("nxt.apiWorkerPoolThreads"), 1);
+
+    /** Maximum number of queued requests for each pool */
+    private static final int queueSize = Math.max(Nxt.getIntProperty("nxt.apiWorkerPoolQueueSize"), 1);
+
+    /** Worker pools by name */
+    private static final Map<String, ExecutorService> pools;
+
+    /** Worker pool for each request type processed by a worker pool */
+    private static final Map<String, ExecutorService> requestPools;
+
+    static {
+        Map<String, ExecutorService> poolMap = new LinkedHashMap<>();
+        Map<String, ExecutorService> requestPoolMap = new HashMap<>();
+        List<String> slowAPIs = Nxt.getStringListProperty("nxt.apiSlowAPIs");
+        Map<String, APITag> poolTags = new LinkedHashMap<>();
+        for (String tagName : Nxt.getStringListProperty("nxt.apiWorkerPoolTags")) {
+            try {
+                poolTags.put(tagName, APITag.fromDisplayName(tagName));
+            } catch (IllegalArgumentException e) {
+                Logger.logErrorMessage("Ignoring unknown API tag '" + tagName + "' in nxt.apiWorkerPoolTags");
+            }
+        }
+        APIServlet.apiRequestHandlers.forEach((requestType, handler) -> {
+            if (!handler.allowWorkerPool()) {
+                return;
+            }
+            String poolName = null;
+            if (slowAPIs.contains(requestType)) {
+                poolName = SLOW_POOL;
+            } else {
+                for (Map.Entry<String, APITag> entry : poolTags.entrySet()) {
+                    if (handler.getAPITags().contains(entry.getValue())) {
+                        poolName = entry.getKey();
+                        break;
+                    }
+                }
+            }
+            if (poolName != null) {
+                requestPoolMap.put(requestType, poolMap.computeIfAbsent(poolName, name ->
+                        new ThreadPoolExecutor(poolThreads, poolThreads, 0, TimeUnit.MILLISECONDS,
+                                new ArrayBlockingQueue<>(queueSize))));
+            }
+        });
+        pools = Collections.unmodifiableMap(poolMap);
+        requestPools = Collections.unmodifiableMap(requestPoolMap);
+        if (!pools.isEmpty()) {
+            Logger.logDebugMessage("API worker pools: " + pools.keySet());
+        }
+    }
+
+    private APIWorkerPools() {} // never
+
+    /**
+     * Return the worker pool for a request type
+     *
+     * @param   requestType         Request type
+     * @return                      Worker pool or null if the request is processed by the Jetty thread
+     */
+    static ExecutorService getPool(String requestType) {
+        return requestPools.get(requestType);
+    }
+
+    /**
+     * Stop the worker pools
+     */
+    static void shutdown() {
+        pools.forEach((name, pool) -> ThreadPool.shutdownExecutor("API worker pool " + name, pool, 5));
+    }
+}
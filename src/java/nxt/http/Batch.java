@@ -0,0 +1,333 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.http;
+
+import nxt.Blockchain;
+import nxt.BlockchainLockDelegate;
+import nxt.Constants;
+import nxt.Nxt;
+import nxt.NxtException;
+import nxt.util.Convert;
+import nxt.util.JSON;
+import nxt.util.Logger;
+import nxt.util.ThreadPool;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+import org.json.simple.parser.ParseException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static nxt.http.JSONResponses.ERROR_DISABLED;
+import static nxt.http.JSONResponses.ERROR_INCORRECT_REQUEST;
+import static nxt.http.JSONResponses.LIGHT_CLIENT_DISABLED_API;
+import static nxt.http.JSONResponses.MISSING_REQUESTS;
+import static nxt.http.JSONResponses.SERVER_BUSY;
+
+/**
+ * Process a list of read-only API requests
+ *
+ * The requests parameter is a JSON array with one object for each request.  The object
+ * contains the requestType and the request parameters, where a parameter value is a string,
+ * number or boolean, or an array of values for a parameter that is repeated.  For example:
+ * <pre>
+ * [{"requestType":"getAccount","account":"NXT-..."},{"requestType":"getBalance","account":"NXT-..."}]
+ * </pre>
+ *
+ * All of the requests are processed at the same blockchain height while holding the
+ * blockchain read lock, and the requests are processed in parallel when nxt.apiBatchThreads
+ * is greater than 1.  The response contains a responses array with the response for each
+ * request in request order, along with the lastBlock and height used for the requests.
+ * An error for one request is returned as the response for that request.
+ *
+ * Requests that require POST, the admin password, a database transaction or an uploaded
+ * file are not allowed in a batch, nor are requests that write their own response.  The number
+ * of requests is limited by nxt.apiBatchMaxRequests.
+ */
+public final class Batch extends APIServlet.APIRequestHandler {
+
+    static final Batch instance = new Batch();
+
+    /** Maximum number of requests in a batch */
+    private static final int maxRequests = Nxt.getIntProperty("nxt.apiBatchMaxRequests");
+
+    /** Number of threads used to process the requests */
+    private static final int batchThreads = Nxt.getIntProperty("nxt.apiBatchThreads") > 0 ?
+            Nxt.getIntProperty("nxt.apiBatchThreads") : Runtime.getRuntime().availableProcessors();
+
+    /** Request executor or null if requests are processed sequentially */
+    private static final ExecutorService batchService = batchThreads > 1 ? Executors.newFixedThreadPool(batchThreads) : null;
+
+    /** Request handler classes that write their own response */
+    private static final Map<Class<?>, Boolean> ownResponseHandlers = new ConcurrentHashMap<>();
+
+    private Batch() {
+        super(new APITag[] {APITag.INFO}, "requests");
+    }
+
+    @Override
+    protected JSONStreamAware processRequest(HttpServletRequest req) throws NxtException {
+        List<BatchRequest> requests = parseRequests(req);
+        JSONStreamAware[] responses = new JSONStreamAware[requests.size()];
+        JSONObject response = new JSONObject();
+        Blockchain blockchain = Nxt.getBlockchain();
+        long lockNanos = System.nanoTime();
+        blockchain.readLock();
+        APIStats.RequestStats stats = APIStats.getRequestStats(req.getParameter("requestType"));
+        if (stats != null) {
+            stats.recordLatency(APIStats.Phase.LOCK_WAIT, APIStats.elapsedMicros(lockNanos));
+        }
+        try {
+            if (batchService == null || requests.size() < 2) {
+                for (int i = 0; i < requests.size(); i++) {
+                    responses[i] = processRequest(requests.get(i));
+                }
+            } else {
+                //
+                // The requests run on behalf of this thread, so they must all complete before the
+                // read lock is released.  Requests that have not started yet are skipped on an error.
+                //
+                AtomicBoolean cancelled = new AtomicBoolean();
+                List<Future<JSONStreamAware>> futures = new ArrayList<>(requests.size());
+                requests.forEach(request -> futures.add(batchService.submit(BlockchainLockDelegate.wrap(
+                        () -> cancelled.get() ? null : processRequest(request)))));
+                try {
+                    for (int i = 0; i < futures.size(); i++) {
+                        responses[i] = futures.get(i).get();
+                    }
+                } catch (InterruptedException e) {
+                    cancelled.set(true);
+                    BlockchainLockDelegate.awaitAll(futures);
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e.toString(), e);
+                } catch (ExecutionException e) {
+                    cancelled.set(true);
+                    BlockchainLockDelegate.awaitAll(futures);
+                    throw new RuntimeException(e.getCause().toString(), e.getCause());
+                }
+            }
+            response.put("lastBlock", blockchain.getLastBlock().getStringId());
+            response.put("height", blockchain.getHeight());
+        } finally {
+            blockchain.readUnlock();
+        }
+        JSONArray responseArray = new JSONArray();
+        Collections.addAll(responseArray, responses);
+        response.put("responses", responseArray);
+        return response;
+    }
+
+    /**
+     * Process a single request
+     *
+     * The rows of a list response are read while the blockchain read lock is still held, so the
+     * response is for the same height as the other responses in the batch
+     *
+     * @param   request             Request
+     * @return                      Response
+     */
+    private static JSONStreamAware processRequest(BatchRequest request) {
+        String requestType = request.getParameter("requestType");
+        if (requestType == null) {
+            return ERROR_INCORRECT_REQUEST;
+        }
+        APIServlet.APIRequestHandler apiRequestHandler = APIServlet.apiRequestHandlers.get(requestType);
+        if (apiRequestHandler == null) {
+            return APIServlet.disabledRequestHandlers.containsKey(requestType) ? ERROR_DISABLED : ERROR_INCORRECT_REQUEST;
+        }
+        if (!isAllowed(apiRequestHandler)) {
+            return JSONResponses.error("Request type " + requestType + " is not allowed in a batch");
+        }
+        if (Constants.isLightClient && apiRequestHandler.requireFullClient()) {
+            return LIGHT_CLIENT_DISABLED_API;
+        }
+        try {
+            JSONStreamAware response = apiRequestHandler.processRequest(request);
+            if (response instanceof JSONStreamingResponse) {
+                JSONStreamingResponse<?> streamingResponse = (JSONStreamingResponse<?>) response;
+                try {
+                    if (!streamingResponse.readRows()) {
+                        return SERVER_BUSY;
+                    }
+                    char[] chars = JSON.toString(response).toCharArray();
+                    return out -> out.write(chars);
+                } finally {
+                    streamingResponse.close();
+                }
+            }
+            return response;
+        } catch (ParameterException e) {
+            return e.getErrorResponse();
+        } catch (NxtException | RuntimeException e) {
+            Logger.logDebugMessage("Error processing batch API request", e);
+            JSONObject json = new JSONObject();
+            JSONData.putException(json, e);
+            return json;
+        }
+    }
+
+    /**
+     * Check if a request type is allowed in a batch
+     *
+     * @param   apiRequestHandler   Request handler
+     * @return                      TRUE if the request is allowed
+     */
+    static boolean isAllowed(APIServlet.APIRequestHandler apiRequestHandler) {
+        return apiRequestHandler != instance && !apiRequestHandler.requirePost() && !apiRequestHandler.requirePassword()
+                && !apiRequestHandler.startDbTransaction() && apiRequestHandler.getFileParameter() == null
+                && !ownResponseHandlers.computeIfAbsent(apiRequestHandler.getClass(), Batch::writesResponse);
+    }
+
+    /**
+     * Check if a request handler writes its own response, which can't be included in a batch response
+     *
+     * @param   handlerClass        Request handler class
+     * @return                      TRUE if the handler overrides processRequest(HttpServletRequest, HttpServletResponse)
+     */
+    private static boolean writesResponse(Class<?> handlerClass) {
+        for (Class<?> c = handlerClass; c != APIServlet.APIRequestHandler.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod("processRequest", HttpServletRequest.class, HttpServletResponse.class);
+                return true;
+            } catch (NoSuchMethodException ignore) {}
+        }
+        return false;
+    }
+
+    /**
+     * Parse the batch requests
+     *
+     * @param   req                 HTTP request
+     * @return                      Batch requests
+     * @throws  ParameterException  Incorrect requests parameter
+     */
+    private static List<BatchRequest> parseRequests(HttpServletRequest req) throws ParameterException {
+        String requestsValue = Convert.emptyToNull(req.getParameter("requests"));
+        if (requestsValue == null) {
+            throw new ParameterException(MISSING_REQUESTS);
+        }
+        Object requestsJSON;
+        try {
+            requestsJSON = JSON.parse(requestsValue);
+        } catch (ParseException e) {
+            throw new ParameterException(JSONResponses.incorrect("requests", "(not a valid JSON array)"));
+        }
+        if (!(requestsJSON instanceof List)) {
+            throw new ParameterException(JSONResponses.incorrect("requests", "(not a valid JSON array)"));
+        }
+        List<?> requestList = (List<?>)requestsJSON;
+        if (requestList.size() > maxRequests) {
+            throw new ParameterException(JSONResponses.incorrect("requests", "(more than " + maxRequests + " requests)"));
+        }
+        List<BatchRequest> requests = new ArrayList<>(requestList.size());
+        for (Object requestJSON : requestList) {
+            if (!(requestJSON instanceof Map)) {
+                throw new ParameterException(JSONResponses.incorrect("requests", "(request is not a JSON object)"));
+            }
+            Map<String, String[]> parameters = new HashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>)requestJSON).entrySet()) {
+                Object value = entry.getValue();
+                String[] values;
+                if (value == null) {
+                    continue;
+                } else if (value instanceof List) {
+                    List<?> valueList = (List<?>)value;
+                    values = new String[valueList.size()];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = String.valueOf(valueList.get(i));
+                    }
+                } else {
+                    values = new String[] {value.toString()};
+                }
+                parameters.put(entry.getKey().toString(), values);
+            }
+            requests.add(new BatchRequest(req, parameters));
+        }
+        return requests;
+    }
+
+    /**
+     * Stop the request executor
+     */
+    static void shutdown() {
+        if (batchService != null) {
+            ThreadPool.shutdownExecutor("batchService", batchService, 5);
+        }
+    }
+
+    @Override
+    protected boolean allowRequiredBlockParameters() {
+        return false;
+    }
+
+    @Override
+    protected boolean requireFullClient() {
+        return true;
+    }
+
+    /**
+     * HTTP request with the parameters of a batch request
+     *
+     * All other request properties, such as the remote host, are those of the batch request
+     */
+    private static final class BatchRequest extends HttpServletRequestWrapper {
+
+        /** Request parameters */
+        private final Map<String, String[]> parameters;
+
+        private BatchRequest(HttpServletRequest req, Map<String, String[]> parameters) {
+            super(req);
+            this.parameters = Collections.unmodifiableMap(parameters);
+        }
+
+        @Override
+        public String getParameter(String name) {
+            String[] values = parameters.get(name);
+            return values != null && values.length > 0 ? values[0] : null;
+        }
+
+        @Override
+        public String[] getParameterValues(String name) {
+            String[] values = parameters.get(name);
+            return values != null ? values.clone() : null;
+        }
+
+        @Override
+        public Enumeration<String> getParameterNames() {
+            return Collections.enumeration(parameters.keySet());
+        }
+
+        @Override
+        public Map<String, String[]> getParameterMap() {
+            return parameters;
+        }
+    }
+}
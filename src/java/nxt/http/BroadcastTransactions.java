@@ -0,0 +1,174 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.http;
+
+import nxt.Nxt;
+import nxt.NxtException;
+import nxt.Transaction;
+import nxt.util.Convert;
+import nxt.util.JSON;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+import org.json.simple.parser.ParseException;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static nxt.http.JSONResponses.MISSING_TRANSACTIONS;
+
+/**
+ * Broadcast a list of signed transactions
+ *
+ * The transactions parameter is a JSON array with one entry for each transaction.  An entry
+ * is either the signed transaction bytes as a hex string, a JSON object with the transactionBytes
+ * and the optional prunableAttachmentJSON, or the signed transaction JSON as returned by
+ * {@link nxt.http.CreateTransaction}.  For example:
+ * <pre>
+ * ["0010...",{"transactionBytes":"0010...","prunableAttachmentJSON":{...}}]
+ * </pre>
+ *
+ * The transactions are parsed in parallel and their signatures are verified as a batch before
+ * they are added to the unconfirmed pool in a single database transaction.  The response contains
+ * a transactions array with the result for each transaction in request order: the transaction
+ * and fullHash for a transaction that was broadcast, or the error for a transaction that was
+ * rejected.  The number of transactions is limited by nxt.apiMaxBroadcastTransactions.
+ */
+public final class BroadcastTransactions extends APIServlet.APIRequestHandler {
+
+    static final BroadcastTransactions instance = new BroadcastTransactions();
+
+    /** Maximum number of transactions in a request */
+    private static final int maxTransactions = Nxt.getIntProperty("nxt.apiMaxBroadcastTransactions");
+
+    private BroadcastTransactions() {
+        super(new APITag[] {APITag.TRANSACTIONS}, "transactions");
+    }
+
+    @Override
+    protected JSONStreamAware processRequest(HttpServletRequest req) throws ParameterException {
+        String transactionsValue = Convert.emptyToNull(req.getParameter("transactions"));
+        if (transactionsValue == null) {
+            throw new ParameterException(MISSING_TRANSACTIONS);
+        }
+        Object transactionsJSON;
+        try {
+            transactionsJSON = JSON.parse(transactionsValue);
+        } catch (ParseException e) {
+            throw new ParameterException(JSONResponses.incorrect("transactions", "(not a valid JSON array)"));
+        }
+        if (!(transactionsJSON instanceof List)) {
+            throw new ParameterException(JSONResponses.incorrect("transactions", "(not a valid JSON array)"));
+        }
+        List<?> transactionList = (List<?>)transactionsJSON;
+        if (transactionList.size() > maxTransactions) {
+            throw new ParameterException(JSONResponses.incorrect("transactions", "(more than " + maxTransactions + " transactions)"));
+        }
+        //
+        // Parse the transactions in parallel
+        //
+        Transaction[] transactions = new Transaction[transactionList.size()];
+        JSONObject[] responses = new JSONObject[transactionList.size()];
+        IntStream.range(0, transactions.length).parallel().forEach(i -> {
+            try {
+                transactions[i] = parseTransaction(transactionList.get(i));
+            } catch (NxtException.ValidationException | RuntimeException e) {
+                JSONObject response = new JSONObject();
+                JSONData.putException(response, e, "Incorrect transaction");
+                responses[i] = response;
+            }
+        });
+        //
+        // Broadcast the valid transactions
+        //
+        List<Transaction> validTransactions = new ArrayList<>(transactions.length);
+        for (Transaction transaction : transactions) {
+            if (transaction != null) {
+                validTransactions.add(transaction);
+            }
+        }
+        List<NxtException.ValidationException> results = validTransactions.isEmpty() ?
+                new ArrayList<>() : Nxt.getTransactionProcessor().broadcast(validTransactions);
+        int accepted = 0;
+        for (int i = 0, j = 0; i < transactions.length; i++) {
+            if (transactions[i] == null) {
+                continue;
+            }
+            JSONObject response = new JSONObject();
+            NxtException.ValidationException e = results.get(j++);
+            if (e == null) {
+                response.put("transaction", transactions[i].getStringId());
+                response.put("fullHash", transactions[i].getFullHash());
+                accepted++;
+            } else {
+                JSONData.putException(response, e, "Failed to broadcast transaction");
+            }
+            responses[i] = response;
+        }
+        JSONArray responseArray = new JSONArray();
+        for (JSONObject response : responses) {
+            responseArray.add(response);
+        }
+        JSONObject response = new JSONObject();
+        response.put("transactions", responseArray);
+        response.put("accepted", accepted);
+        return response;
+    }
+
+    /**
+     * Parse a signed transaction
+     *
+     * @param   transactionData     Transaction bytes, transaction bytes and prunable attachments, or transaction JSON
+     * @return                      Transaction
+     * @throws  NxtException.ValidationException    Transaction is not valid
+     */
+    private static Transaction parseTransaction(Object transactionData) throws NxtException.ValidationException {
+        Transaction.Builder builder;
+        if (transactionData instanceof String) {
+            builder = Nxt.newTransactionBuilder(Convert.parseHexString((String)transactionData));
+        } else if (transactionData instanceof JSONObject) {
+            JSONObject json = (JSONObject)transactionData;
+            Object transactionBytes = json.get("transactionBytes");
+            if (transactionBytes != null) {
+                Object prunableAttachmentJSON = json.get("prunableAttachmentJSON");
+                if (prunableAttachmentJSON != null && !(prunableAttachmentJSON instanceof JSONObject)) {
+                    throw new NxtException.NotValidException("Incorrect prunableAttachmentJSON");
+                }
+                builder = Nxt.newTransactionBuilder(Convert.parseHexString(transactionBytes.toString()),
+                        (JSONObject)prunableAttachmentJSON);
+            } else {
+                builder = Nxt.newTransactionBuilder(json);
+            }
+        } else {
+            throw new NxtException.NotValidException("Transaction is not a hex string or a JSON object");
+        }
+        return builder.build();
+    }
+
+    @Override
+    protected boolean requirePost() {
+        return true;
+    }
+
+    @Override
+    protected final boolean allowRequiredBlockParameters() {
+        return false;
+    }
+
+}
@@ -182,6 +182,16 @@ public class EventWait extends APIServlet.APIRequestHandler {
         return false;
     }
 
+    /**
+     * EventWait creates its own asynchronous context
+     *
+     * @return                      FALSE since the request is not processed by a worker pool
+     */
+    @Override
+    protected boolean allowWorkerPool() {
+        return false;
+    }
+
     /**
      * Format the EventWait response
      *
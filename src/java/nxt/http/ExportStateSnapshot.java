@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.http;
+
+import nxt.StateSnapshot;
+import nxt.util.Convert;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.sql.SQLException;
+
+public final class ExportStateSnapshot extends APIServlet.APIRequestHandler {
+
+    static final ExportStateSnapshot instance = new ExportStateSnapshot();
+
+    private ExportStateSnapshot() {
+        super(new APITag[] {APITag.DEBUG});
+    }
+
+    @Override
+    protected JSONStreamAware processRequest(HttpServletRequest req) {
+        JSONObject response = new JSONObject();
+        try {
+            StateSnapshot.SnapshotFile snapshot = StateSnapshot.export();
+            response.put("file", snapshot.getFile().toString());
+            response.put("height", snapshot.getHeight());
+            response.put("block", Long.toUnsignedString(snapshot.getBlockId()));
+            response.put("snapshotHash", Convert.toHexString(snapshot.getSnapshotHash()));
+        } catch (IOException | SQLException | IllegalStateException e) {
+            JSONData.putException(response, e);
+        }
+        return response;
+    }
+
+    @Override
+    protected final boolean requirePost() {
+        return true;
+    }
+
+    @Override
+    protected boolean requirePassword() {
+        return true;
+    }
+
+    @Override
+    protected boolean allowRequiredBlockParameters() {
+        return false;
+    }
+
+}
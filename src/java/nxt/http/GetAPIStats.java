@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.http;
+
+import nxt.util.Convert;
+import nxt.util.Histogram;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <p>The GetAPIStats API returns the statistics kept for each API request type
+ * since the server was started.  The request types are sorted by the total time
+ * spent processing the requests, with the most expensive request type first.</p>
+ *
+ * <p>Request parameters:</p>
+ * <ul>
+ * <li>requestType - Return the statistics for this request type only (optional)</li>
+ * </ul>
+ *
+ * <p>Response parameters:</p>
+ * <ul>
+ * <li>enabled - TRUE if API statistics are enabled by nxt.enableAPIStats</li>
+ * <li>requests - An array of request statistics containing requestType, count, errors,
+ * charsWritten and the queueWait, lockWait, process, write and total latencies.  Each latency
+ * contains the count, sum, p50, p90, p99 and max values in microseconds.</li>
+ * </ul>
+ */
+public final class GetAPIStats extends APIServlet.APIRequestHandler {
+
+    /** GetAPIStats instance */
+    static final GetAPIStats instance = new GetAPIStats();
+
+    /**
+     * Create the GetAPIStats instance
+     */
+    private GetAPIStats() {
+        super(new APITag[] {APITag.DEBUG}, "requestType");
+    }
+
+    /**
+     * Process the GetAPIStats API request
+     *
+     * @param   req                 API request
+     * @return                      API response
+     */
+    @Override
+    protected JSONStreamAware processRequest(HttpServletRequest req) {
+        String requestType = Convert.emptyToNull(req.getParameter("requestType"));
+        List<JSONObject> requestList = new ArrayList<>();
+        APIStats.getAllRequestStats().forEach(stats -> {
+            if (requestType != null && !requestType.equals(stats.getRequestType())) {
+                return;
+            }
+            JSONObject statsJSON = new JSONObject();
+            statsJSON.put("requestType", stats.getRequestType());
+            statsJSON.put("count", stats.getRequestCount());
+            statsJSON.put("errors", stats.getErrorCount());
+            statsJSON.put("charsWritten", stats.getCharsWritten());
+            statsJSON.put("queueWait", latency(stats.getQueueWait()));
+            statsJSON.put("lockWait", latency(stats.getLockWait()));
+            statsJSON.put("process", latency(stats.getProcess()));
+            statsJSON.put("write", latency(stats.getWrite()));
+            statsJSON.put("total", latency(stats.getTotal()));
+            requestList.add(statsJSON);
+        });
+        requestList.sort(Comparator.comparingLong((JSONObject json) -> (Long)((JSONObject)json.get("total")).get("sum")).reversed());
+        JSONArray requestsJSON = new JSONArray();
+        requestsJSON.addAll(requestList);
+        JSONObject response = new JSONObject();
+        response.put("enabled", APIStats.isEnabled());
+        response.put("requests", requestsJSON);
+        return response;
+    }
+
+    private static JSONObject latency(Histogram.Snapshot snapshot) {
+        JSONObject json = new JSONObject();
+        json.put("count", snapshot.getCount());
+        json.put("sum", snapshot.getSum());
+        json.put("p50", snapshot.getP50());
+        json.put("p90", snapshot.getP90());
+        json.put("p99", snapshot.getP99());
+        json.put("max", snapshot.getMax());
+        return json;
+    }
+
+    /**
+     * Require the administrator password
+     *
+     * @return                      TRUE if the admin password is required
+     */
+    @Override
+    protected boolean requirePassword() {
+        return true;
+    }
+
+    @Override
+    protected boolean allowRequiredBlockParameters() {
+        return false;
+    }
+
+    @Override
+    protected boolean requireBlockchain() {
+        return false;
+    }
+
+}
@@ -21,6 +21,7 @@ import nxt.AccountLedger.LedgerEntry;
 import nxt.AccountLedger.LedgerEvent;
 import nxt.AccountLedger.LedgerHolding;
 import nxt.NxtException;
+import nxt.db.DbCursor;
 import nxt.util.Convert;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
@@ -105,6 +106,13 @@ import java.util.List;
  *           unless the administrator password is specified.
  *       </td>
  *     </tr>
+ *     <tr>
+ *       <td>cursor</td>
+ *       <td>Continue after the last entry of the previous page.  The 'nextCursor' value is returned
+ *           when a page is full, and 'firstIndex' and 'lastIndex' are then relative to the cursor
+ *           position.  A cursor page is retrieved as quickly as the first page.
+ *       </td>
+ *     </tr>
  *   </tbody>
  * </table>
  * <br>
@@ -228,7 +236,7 @@ public class GetAccountLedger extends APIServlet.APIRequestHandler {
      * Create the GetAccountLedger instance
      */
     private GetAccountLedger() {
-        super(new APITag[] {APITag.ACCOUNTS}, "account", "firstIndex", "lastIndex",
+        super(new APITag[] {APITag.ACCOUNTS}, "account", "firstIndex", "lastIndex", "cursor",
                 "eventType", "event", "holdingType", "holding", "includeTransactions", "includeHoldingInfo");
     }
 
@@ -275,8 +283,9 @@ public class GetAccountLedger extends APIServlet.APIRequestHandler {
         //
         // Get the ledger entries
         //
+        DbCursor cursor = ParameterParser.getCursor(req, 1);
         List<LedgerEntry> ledgerEntries = AccountLedger.getEntries(accountId, event, eventId,
-                                                                   holding, holdingId, firstIndex, lastIndex);
+                                                                   holding, holdingId, cursor, firstIndex, lastIndex);
         //
         // Return the response
         //
@@ -288,6 +297,9 @@ public class GetAccountLedger extends APIServlet.APIRequestHandler {
         });
         JSONObject response = new JSONObject();
         response.put("entries", responseEntries);
+        if (!ledgerEntries.isEmpty() && ledgerEntries.size() == lastIndex - firstIndex + 1) {
+            response.put("nextCursor", new DbCursor(ledgerEntries.get(ledgerEntries.size() - 1).getLedgerId()).toString());
+        }
         return response;
     }
 }
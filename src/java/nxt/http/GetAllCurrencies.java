@@ -50,4 +50,9 @@ public final class GetAllCurrencies extends APIServlet.APIRequestHandler {
         return response;
     }
 
+    @Override
+    protected APIResponseCache.Invalidation getCacheInvalidation() {
+        return APIResponseCache.Invalidation.BLOCK;
+    }
+
 }
@@ -51,4 +51,9 @@ public final class GetAllOpenAskOrders extends APIServlet.APIRequestHandler {
         return response;
     }
 
+    @Override
+    protected APIResponseCache.Invalidation getCacheInvalidation() {
+        return APIResponseCache.Invalidation.BLOCK;
+    }
+
 }
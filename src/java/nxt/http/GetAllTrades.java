@@ -18,9 +18,8 @@ package nxt.http;
 
 import nxt.NxtException;
 import nxt.Trade;
+import nxt.db.DbCursor;
 import nxt.db.DbIterator;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 
 import javax.servlet.http.HttpServletRequest;
@@ -30,7 +29,7 @@ public final class GetAllTrades extends APIServlet.APIRequestHandler {
     static final GetAllTrades instance = new GetAllTrades();
 
     private GetAllTrades() {
-        super(new APITag[] {APITag.AE}, "timestamp", "firstIndex", "lastIndex", "includeAssetInfo");
+        super(new APITag[] {APITag.AE}, "timestamp", "firstIndex", "lastIndex", "cursor", "includeAssetInfo");
     }
     
     @Override
@@ -39,20 +38,16 @@ public final class GetAllTrades extends APIServlet.APIRequestHandler {
         int firstIndex = ParameterParser.getFirstIndex(req);
         int lastIndex = ParameterParser.getLastIndex(req);
         boolean includeAssetInfo = "true".equalsIgnoreCase(req.getParameter("includeAssetInfo"));
-
-        JSONObject response = new JSONObject();
-        JSONArray trades = new JSONArray();
-        try (DbIterator<Trade> tradeIterator = Trade.getAllTrades(firstIndex, lastIndex)) {
-            while (tradeIterator.hasNext()) {
-                Trade trade = tradeIterator.next();
-                if (trade.getTimestamp() < timestamp) {
-                    break;
-                }
-                trades.add(JSONData.trade(trade, includeAssetInfo));
-            }
-        }
-        response.put("trades", trades);
-        return response;
+        DbCursor cursor = ParameterParser.getCursor(req, 2);
+
+        DbIterator<Trade> tradeIterator = Trade.getAllTrades(cursor, firstIndex, lastIndex);
+        return new JSONStreamingResponse<Trade>("trades", tradeIterator, trade -> JSONData.trade(trade, includeAssetInfo))
+                .setCondition(trade -> trade.getTimestamp() >= timestamp)
+                .setTrailer((trailer, count, lastRow, truncated) -> {
+                    if (tradeIterator.getCursor() != null && (truncated || count == lastIndex - firstIndex + 1)) {
+                        trailer.put("nextCursor", tradeIterator.getCursor().toString());
+                    }
+                });
     }
 
 }
@@ -18,6 +18,7 @@ package nxt.http;
 
 import nxt.Account;
 import nxt.NxtException;
+import nxt.db.DbCursor;
 import nxt.db.DbIterator;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
@@ -30,7 +31,7 @@ public final class GetAssetAccounts extends APIServlet.APIRequestHandler {
     static final GetAssetAccounts instance = new GetAssetAccounts();
 
     private GetAssetAccounts() {
-        super(new APITag[] {APITag.AE}, "asset", "height", "firstIndex", "lastIndex");
+        super(new APITag[] {APITag.AE}, "asset", "height", "firstIndex", "lastIndex", "cursor");
     }
 
     @Override
@@ -40,17 +41,28 @@ public final class GetAssetAccounts extends APIServlet.APIRequestHandler {
         int firstIndex = ParameterParser.getFirstIndex(req);
         int lastIndex = ParameterParser.getLastIndex(req);
         int height = ParameterParser.getHeight(req);
+        DbCursor cursor = ParameterParser.getCursor(req, 2);
+        if (cursor != null && height >= 0) {
+            return JSONResponses.incorrect("cursor", "cursor cannot be used with height");
+        }
 
         JSONArray accountAssets = new JSONArray();
-        try (DbIterator<Account.AccountAsset> iterator = Account.getAssetAccounts(assetId, height, firstIndex, lastIndex)) {
+        DbCursor nextCursor;
+        try (DbIterator<Account.AccountAsset> iterator = height >= 0 ?
+                Account.getAssetAccounts(assetId, height, firstIndex, lastIndex) :
+                Account.getAssetAccounts(assetId, cursor, firstIndex, lastIndex)) {
             while (iterator.hasNext()) {
                 Account.AccountAsset accountAsset = iterator.next();
                 accountAssets.add(JSONData.accountAsset(accountAsset, true, false));
             }
+            nextCursor = iterator.getCursor();
         }
 
         JSONObject response = new JSONObject();
         response.put("accountAssets", accountAssets);
+        if (nextCursor != null && accountAssets.size() == lastIndex - firstIndex + 1) {
+            response.put("nextCursor", nextCursor.toString());
+        }
         return response;
 
     }
@@ -80,4 +80,9 @@ public final class GetBlockchainStatus extends APIServlet.APIRequestHandler {
         return false;
     }
 
+    @Override
+    protected APIResponseCache.Invalidation getCacheInvalidation() {
+        return APIResponseCache.Invalidation.STATUS;
+    }
+
 }
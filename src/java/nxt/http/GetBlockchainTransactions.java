@@ -19,9 +19,8 @@ package nxt.http;
 import nxt.Nxt;
 import nxt.NxtException;
 import nxt.Transaction;
+import nxt.db.DbCursor;
 import nxt.db.DbIterator;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 
 import javax.servlet.http.HttpServletRequest;
@@ -32,7 +31,7 @@ public final class GetBlockchainTransactions extends APIServlet.APIRequestHandle
 
     private GetBlockchainTransactions() {
         super(new APITag[] {APITag.ACCOUNTS, APITag.TRANSACTIONS}, "account", "timestamp", "type", "subtype",
-                "firstIndex", "lastIndex", "numberOfConfirmations", "withMessage", "phasedOnly", "nonPhasedOnly",
+                "firstIndex", "lastIndex", "cursor", "numberOfConfirmations", "withMessage", "phasedOnly", "nonPhasedOnly",
                 "includeExpiredPrunable", "includePhasingResult", "executedOnly");
     }
 
@@ -64,20 +63,18 @@ public final class GetBlockchainTransactions extends APIServlet.APIRequestHandle
 
         int firstIndex = ParameterParser.getFirstIndex(req);
         int lastIndex = ParameterParser.getLastIndex(req);
+        DbCursor cursor = ParameterParser.getCursor(req, 2);
 
-        JSONArray transactions = new JSONArray();
-        try (DbIterator<? extends Transaction> iterator = Nxt.getBlockchain().getTransactions(accountId, numberOfConfirmations,
-                type, subtype, timestamp, withMessage, phasedOnly, nonPhasedOnly, firstIndex, lastIndex,
-                includeExpiredPrunable, executedOnly)) {
-            while (iterator.hasNext()) {
-                Transaction transaction = iterator.next();
-                transactions.add(JSONData.transaction(transaction, includePhasingResult));
-            }
-        }
-
-        JSONObject response = new JSONObject();
-        response.put("transactions", transactions);
-        return response;
+        DbIterator<? extends Transaction> iterator = Nxt.getBlockchain().getTransactions(accountId, numberOfConfirmations,
+                type, subtype, timestamp, withMessage, phasedOnly, nonPhasedOnly, cursor, firstIndex, lastIndex,
+                includeExpiredPrunable, executedOnly);
+        return new JSONStreamingResponse<Transaction>("transactions", iterator,
+                transaction -> JSONData.transaction(transaction, includePhasingResult))
+                .setTrailer((trailer, count, lastRow, truncated) -> {
+                    if (iterator.getCursor() != null && (truncated || count == lastIndex - firstIndex + 1)) {
+                        trailer.put("nextCursor", iterator.getCursor().toString());
+                    }
+                });
 
     }
 
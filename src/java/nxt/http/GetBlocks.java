@@ -19,9 +19,8 @@ package nxt.http;
 import nxt.Block;
 import nxt.Nxt;
 import nxt.NxtException;
+import nxt.db.DbCursor;
 import nxt.db.DbIterator;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 
 import javax.servlet.http.HttpServletRequest;
@@ -31,7 +30,7 @@ public final class GetBlocks extends APIServlet.APIRequestHandler {
     static final GetBlocks instance = new GetBlocks();
 
     private GetBlocks() {
-        super(new APITag[] {APITag.BLOCKS}, "firstIndex", "lastIndex", "timestamp", "includeTransactions", "includeExecutedPhased");
+        super(new APITag[] {APITag.BLOCKS}, "firstIndex", "lastIndex", "cursor", "timestamp", "includeTransactions", "includeExecutedPhased");
     }
 
     @Override
@@ -43,21 +42,31 @@ public final class GetBlocks extends APIServlet.APIRequestHandler {
         boolean includeTransactions = "true".equalsIgnoreCase(req.getParameter("includeTransactions"));
         boolean includeExecutedPhased = "true".equalsIgnoreCase(req.getParameter("includeExecutedPhased"));
 
-        JSONArray blocks = new JSONArray();
-        try (DbIterator<? extends Block> iterator = Nxt.getBlockchain().getBlocks(firstIndex, lastIndex)) {
-            while (iterator.hasNext()) {
-                Block block = iterator.next();
-                if (block.getTimestamp() < timestamp) {
-                    break;
-                }
-                blocks.add(JSONData.block(block, includeTransactions, includeExecutedPhased));
+        DbCursor cursor = ParameterParser.getCursor(req, 1);
+
+        DbIterator<? extends Block> iterator;
+        Nxt.getBlockchain().readLock();
+        try {
+            int from = firstIndex;
+            int to = lastIndex;
+            if (cursor != null) {
+                // Blocks are selected by height, so the cursor is converted to an offset from the last block
+                int offset = Nxt.getBlockchain().getHeight() - (int)cursor.getValues()[0] + 1;
+                from = (int)Math.min(Integer.MAX_VALUE, (long)from + offset);
+                to = (int)Math.min(Integer.MAX_VALUE, (long)to + offset);
             }
+            iterator = Nxt.getBlockchain().getBlocks(from, to);
+        } finally {
+            Nxt.getBlockchain().readUnlock();
         }
-
-        JSONObject response = new JSONObject();
-        response.put("blocks", blocks);
-
-        return response;
+        return new JSONStreamingResponse<Block>("blocks", iterator,
+                block -> JSONData.block(block, includeTransactions, includeExecutedPhased))
+                .setCondition(block -> block.getTimestamp() >= timestamp)
+                .setTrailer((trailer, count, lastBlock, truncated) -> {
+                    if (lastBlock != null && lastBlock.getHeight() > 0 && (truncated || count == lastIndex - firstIndex + 1)) {
+                        trailer.put("nextCursor", new DbCursor(lastBlock.getHeight()).toString());
+                    }
+                });
     }
 
 }
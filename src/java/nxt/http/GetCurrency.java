@@ -54,4 +54,9 @@ public final class GetCurrency extends APIServlet.APIRequestHandler {
         return JSONData.currency(currency, includeCounts);
     }
 
+    @Override
+    protected APIResponseCache.Invalidation getCacheInvalidation() {
+        return APIResponseCache.Invalidation.BLOCK;
+    }
+
 }
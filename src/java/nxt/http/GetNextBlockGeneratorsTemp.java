@@ -33,7 +33,8 @@ import java.util.List;
  * hit time.  The list of active forgers is initialized using the block generators
  * with at least 2 blocks generated within the previous 10,000 blocks.  Accounts without
  * a public key will not be included.  The list is
- * updated as new blocks are processed.  This means the results will not be 100%
+ * updated as new blocks are processed and generators that have not generated a block
+ * within the previous 10,000 blocks are dropped.  This means the results will not be 100%
  * correct since previously active generators may no longer be running and new generators
  * won't be known until they generate a block.  This API will be replaced when transparent
  * forging is activated.
@@ -71,34 +72,43 @@ public final class GetNextBlockGeneratorsTemp extends APIServlet.APIRequestHandl
     protected JSONStreamAware processRequest(HttpServletRequest req) throws NxtException {
         JSONObject response = new JSONObject();
         int limit = Math.max(1, ParameterParser.getInt(req, "limit", 1, Integer.MAX_VALUE, false));
+        //
+        // The list for the current last block is read without locking.  The blockchain
+        // read lock is needed only when the list must be rebuilt for a new block, since
+        // the effective balances are then read at the last block height.
+        //
         Blockchain blockchain = Nxt.getBlockchain();
-        blockchain.readLock();
-        try {
-            Block lastBlock = blockchain.getLastBlock();
-            response.put("timestamp", lastBlock.getTimestamp());
-            response.put("height", lastBlock.getHeight());
-            response.put("lastBlock", Long.toUnsignedString(lastBlock.getId()));
-            List<Generator.ActiveGenerator> activeGenerators = Generator.getNextGenerators();
-            response.put("activeCount", activeGenerators.size());
-            JSONArray generators = new JSONArray();
-            for (Generator.ActiveGenerator generator : activeGenerators) {
-                if (generator.getHitTime() > Integer.MAX_VALUE) {
-                    break;
-                }
-                JSONObject resp = new JSONObject();
-                JSONData.putAccount(resp, "account", generator.getAccountId());
-                resp.put("effectiveBalanceNXT", generator.getEffectiveBalance());
-                resp.put("hitTime", generator.getHitTime());
-                resp.put("deadline", (int)generator.getHitTime() - lastBlock.getTimestamp());
-                generators.add(resp);
-                if (generators.size() == limit) {
-                    break;
-                }
+        Block lastBlock = blockchain.getLastBlock();
+        List<Generator.ActiveGenerator> activeGenerators = Generator.getCachedNextGenerators(lastBlock);
+        if (activeGenerators == null) {
+            blockchain.readLock();
+            try {
+                lastBlock = blockchain.getLastBlock();
+                activeGenerators = Generator.getNextGenerators(lastBlock);
+            } finally {
+                blockchain.readUnlock();
             }
-            response.put("generators", generators);
-        } finally {
-            blockchain.readUnlock();
         }
+        response.put("timestamp", lastBlock.getTimestamp());
+        response.put("height", lastBlock.getHeight());
+        response.put("lastBlock", Long.toUnsignedString(lastBlock.getId()));
+        response.put("activeCount", activeGenerators.size());
+        JSONArray generators = new JSONArray();
+        for (Generator.ActiveGenerator generator : activeGenerators) {
+            if (generator.getHitTime() > Integer.MAX_VALUE) {
+                break;
+            }
+            JSONObject resp = new JSONObject();
+            JSONData.putAccount(resp, "account", generator.getAccountId());
+            resp.put("effectiveBalanceNXT", generator.getEffectiveBalance());
+            resp.put("hitTime", generator.getHitTime());
+            resp.put("deadline", (int)generator.getHitTime() - lastBlock.getTimestamp());
+            generators.add(resp);
+            if (generators.size() == limit) {
+                break;
+            }
+        }
+        response.put("generators", generators);
         return response;
     }
 
@@ -37,6 +37,7 @@ import nxt.Shuffling;
 import nxt.TaggedData;
 import nxt.Trade;
 import nxt.Vote;
+import nxt.peer.PeerServlet;
 import nxt.peer.Peers;
 import nxt.util.UPnP;
 import org.json.simple.JSONObject;
@@ -91,6 +92,9 @@ public final class GetState extends APIServlet.APIRequestHandler {
         }
         response.put("numberOfPeers", Peers.getAllPeers().size());
         response.put("numberOfActivePeers", Peers.getActivePeers().size());
+        JSONObject rejectedPeerRequests = new JSONObject();
+        rejectedPeerRequests.putAll(PeerServlet.getRejectedRequestCounts());
+        response.put("rejectedPeerRequests", rejectedPeerRequests);
         response.put("numberOfUnlockedAccounts", Generator.getAllGenerators().size());
         response.put("availableProcessors", Runtime.getRuntime().availableProcessors());
         response.put("maxMemory", Runtime.getRuntime().maxMemory());
@@ -112,4 +116,9 @@ public final class GetState extends APIServlet.APIRequestHandler {
         return false;
     }
 
+    @Override
+    protected APIResponseCache.Invalidation getCacheInvalidation() {
+        return APIResponseCache.Invalidation.STATUS;
+    }
+
 }
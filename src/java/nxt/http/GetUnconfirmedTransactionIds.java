@@ -68,4 +68,9 @@ public final class GetUnconfirmedTransactionIds extends APIServlet.APIRequestHan
         return response;
     }
 
+    @Override
+    protected APIResponseCache.Invalidation getCacheInvalidation() {
+        return APIResponseCache.Invalidation.UNCONFIRMED_TRANSACTIONS;
+    }
+
 }
@@ -68,4 +68,9 @@ public final class GetUnconfirmedTransactions extends APIServlet.APIRequestHandl
         return response;
     }
 
+    @Override
+    protected APIResponseCache.Invalidation getCacheInvalidation() {
+        return APIResponseCache.Invalidation.UNCONFIRMED_TRANSACTIONS;
+    }
+
 }
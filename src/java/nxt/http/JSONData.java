@@ -525,6 +525,11 @@ public final class JSONData {
         json.put("weight", peer.getWeight());
         json.put("downloadedVolume", peer.getDownloadedVolume());
         json.put("uploadedVolume", peer.getUploadedVolume());
+        json.put("responseTime", peer.getResponseTime());
+        json.put("throughput", peer.getThroughput());
+        json.put("errorRate", peer.getErrorRate());
+        json.put("usefulBlockRatio", peer.getUsefulBlockRatio());
+        json.put("quality", peer.getQuality());
         json.put("application", peer.getApplication());
         json.put("version", peer.getVersion());
         json.put("platform", peer.getPlatform());
@@ -953,7 +958,7 @@ public final class JSONData {
         byte[] signature = Convert.emptyToNull(transaction.getSignature());
         if (signature != null) {
             json.put("signature", Convert.toHexString(signature));
-            json.put("signatureHash", Convert.toHexString(Crypto.sha256().digest(signature)));
+            json.put("signatureHash", Convert.toHexString(Crypto.sha256(signature)));
             json.put("fullHash", transaction.getFullHash());
             json.put("transaction", transaction.getStringId());
         }
@@ -153,6 +153,8 @@ public final class JSONResponses {
     public static final JSONStreamAware INCORRECT_PROPERTY = incorrect("property", "(cannot be deleted by this account)");
     public static final JSONStreamAware UNKNOWN_PROPERTY = unknown("property");
     public static final JSONStreamAware MISSING_PROPERTY = missing("property");
+    public static final JSONStreamAware MISSING_REQUESTS = missing("requests");
+    public static final JSONStreamAware MISSING_TRANSACTIONS = missing("transactions");
     public static final JSONStreamAware INCORRECT_EC_BLOCK = incorrect("ecBlockId", "ecBlockId does not match the block id at ecBlockHeight");
 
     public static final JSONStreamAware NOT_ENOUGH_FUNDS;
@@ -411,6 +413,14 @@ public final class JSONResponses {
         API_PROXY_NO_PUBLIC_PEERS = JSON.prepare(response);
     }
 
+    public static final JSONStreamAware SERVER_BUSY;
+    static {
+        JSONObject response = new JSONObject();
+        response.put("errorCode", 22);
+        response.put("errorDescription", "Too many requests are waiting to be processed, please try again later");
+        SERVER_BUSY = JSON.prepare(response);
+    }
+
     public static final JSONStreamAware PEER_NOT_CONNECTED;
     static {
         JSONObject response = new JSONObject();
@@ -0,0 +1,221 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.http;
+
+import nxt.Nxt;
+import nxt.db.DbIterator;
+import nxt.util.JSONWriter;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * API response for a list of rows
+ *
+ * The response is a JSON object with the header fields, followed by an array with one
+ * element for each row of a database iterator, followed by the trailer fields.  The rows
+ * are read by readRows() before the response is written, so that neither the blockchain
+ * lock nor the database connection is held while the response is sent to the client, and
+ * the response is then written directly to the servlet output stream.
+ *
+ * At most nxt.apiMaxStreamingRows rows are read for a response, and the trailer is told
+ * when the rows were cut off so it can return a cursor for the next page.  The number of
+ * responses holding their rows at the same time is limited by nxt.apiMaxStreamingResponses.
+ *
+ * @param   <T>                 Row type
+ */
+final class JSONStreamingResponse<T> implements JSONStreamAware {
+
+    /**
+     * Add the trailer fields once all rows have been read
+     */
+    interface Trailer<T> {
+
+        /**
+         * Add the trailer fields
+         *
+         * @param   trailer         Trailer fields
+         * @param   count           Number of rows read
+         * @param   lastRow         Last row read or null if no rows were read
+         * @param   truncated       TRUE if reading stopped at the row limit
+         */
+        void put(JSONObject trailer, int count, T lastRow, boolean truncated);
+    }
+
+    /** Maximum number of rows read for a response */
+    private static final int maxRows = Nxt.getIntProperty("nxt.apiMaxStreamingRows");
+
+    /** Responses holding their rows */
+    private static final Semaphore responsePermits = new Semaphore(Nxt.getIntProperty("nxt.apiMaxStreamingResponses"));
+
+    /** Header fields */
+    private final JSONObject header = new JSONObject();
+
+    /** Array name */
+    private final String name;
+
+    /** Row iterator */
+    private final DbIterator<? extends T> iterator;
+
+    /** Row conversion */
+    private final Function<T, JSONObject> rowFunction;
+
+    /** Rows are read while this condition is true */
+    private Predicate<T> condition;
+
+    /** Trailer */
+    private Trailer<T> trailer;
+
+    /** Rows read from the iterator */
+    private List<JSONObject> rows;
+
+    /** Trailer fields */
+    private final JSONObject trailerFields = new JSONObject();
+
+    /** A response permit is held */
+    private boolean hasPermit;
+
+    /**
+     * Create a list response
+     *
+     * @param   name                Array name
+     * @param   iterator            Row iterator, closed once the rows have been read
+     * @param   rowFunction         Row conversion
+     */
+    JSONStreamingResponse(String name, DbIterator<? extends T> iterator, Function<T, JSONObject> rowFunction) {
+        this.name = name;
+        this.iterator = iterator;
+        this.rowFunction = rowFunction;
+    }
+
+    /**
+     * Stop at the first row that does not satisfy a condition
+     *
+     * @param   condition           Condition
+     * @return                      This response
+     */
+    JSONStreamingResponse<T> setCondition(Predicate<T> condition) {
+        this.condition = condition;
+        return this;
+    }
+
+    /**
+     * Set the trailer fields
+     *
+     * @param   trailer             Trailer
+     * @return                      This response
+     */
+    JSONStreamingResponse<T> setTrailer(Trailer<T> trailer) {
+        this.trailer = trailer;
+        return this;
+    }
+
+    /**
+     * Add a header field
+     *
+     * @param   key                 Field name
+     * @param   value               Field value
+     */
+    void put(String key, Object value) {
+        header.put(key, value);
+    }
+
+    /**
+     * Report the request processing time in the trailer
+     *
+     * @param   startTime           Request start time
+     */
+    void setStartTime(long startTime) {
+        trailerFields.put("requestProcessingTime", System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Read the rows and close the row iterator
+     *
+     * This must be called before the response is written, while holding any lock needed
+     * for a consistent result.  close() must be called once the response has been written.
+     *
+     * @return                      TRUE if the rows were read or FALSE if too many responses are active
+     */
+    boolean readRows() {
+        try {
+            if (!responsePermits.tryAcquire()) {
+                return false;
+            }
+            hasPermit = true;
+            rows = new ArrayList<>();
+            T lastRow = null;
+            boolean truncated = false;
+            while (iterator.hasNext()) {
+                if (rows.size() >= maxRows) {
+                    truncated = true;
+                    break;
+                }
+                T row = iterator.next();
+                if (condition != null && !condition.test(row)) {
+                    break;
+                }
+                rows.add(rowFunction.apply(row));
+                lastRow = row;
+            }
+            if (trailer != null) {
+                trailer.put(trailerFields, rows.size(), lastRow, truncated);
+            }
+            return true;
+        } finally {
+            iterator.close();
+        }
+    }
+
+    /**
+     * Close the row iterator and release the rows
+     */
+    void close() {
+        iterator.close();
+        rows = null;
+        if (hasPermit) {
+            hasPermit = false;
+            responsePermits.release();
+        }
+    }
+
+    @Override
+    public void writeJSONString(Writer out) throws IOException {
+        if (rows == null) {
+            throw new IllegalStateException("Rows have not been read");
+        }
+        try (JSONWriter jsonWriter = new JSONWriter(out)) {
+            jsonWriter.append('{');
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>)header).entrySet()) {
+                jsonWriter.writeKey(entry.getKey().toString()).writeValue(entry.getValue()).append(',');
+            }
+            jsonWriter.writeKey(name).writeArray(rows);
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>)trailerFields).entrySet()) {
+                jsonWriter.append(',').writeKey(entry.getKey().toString()).writeValue(entry.getValue());
+            }
+            jsonWriter.append('}');
+        }
+    }
+}
@@ -34,6 +34,7 @@ import nxt.Shuffling;
 import nxt.Transaction;
 import nxt.crypto.Crypto;
 import nxt.crypto.EncryptedData;
+import nxt.db.DbCursor;
 import nxt.util.Convert;
 import nxt.util.Logger;
 import nxt.util.Search;
@@ -516,6 +517,30 @@ public final class ParameterParser {
         return lastIndex;
     }
 
+    /**
+     * Return the continuation cursor returned as nextCursor by the previous page
+     *
+     * @param   req                 HTTP request
+     * @param   numberOfValues      Number of sort columns of the query
+     * @return                      Cursor or null if there is no cursor parameter
+     * @throws  ParameterException  Incorrect cursor
+     */
+    public static DbCursor getCursor(HttpServletRequest req, int numberOfValues) throws ParameterException {
+        String cursorValue = Convert.emptyToNull(req.getParameter("cursor"));
+        if (cursorValue == null) {
+            return null;
+        }
+        try {
+            DbCursor cursor = DbCursor.parse(cursorValue);
+            if (cursor.getValues().length != numberOfValues) {
+                throw new ParameterException(incorrect("cursor"));
+            }
+            return cursor;
+        } catch (IllegalArgumentException e) {
+            throw new ParameterException(incorrect("cursor"));
+        }
+    }
+
     public static int getNumberOfConfirmations(HttpServletRequest req) throws ParameterException {
         return getInt(req, "numberOfConfirmations", 0, Nxt.getBlockchain().getHeight(), false);
     }
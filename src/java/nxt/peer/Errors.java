@@ -29,6 +29,8 @@ final class Errors {
     final static String TOO_MANY_BLOCKS_REQUESTED = "Too many blocks requested";
     final static String DOWNLOADING = "Blockchain download in progress";
     final static String LIGHT_CLIENT = "Peer is in light mode";
+    final static String TOO_MANY_REQUESTS = "Request budget exceeded";
+    final static String BUSY = "Peer server is busy";
 
     private Errors() {} // never
 }
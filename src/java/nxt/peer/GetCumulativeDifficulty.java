@@ -44,4 +44,9 @@ final class GetCumulativeDifficulty extends PeerServlet.PeerRequestHandler {
         return true;
     }
 
+    @Override
+    String getCacheKey(JSONObject request) {
+        return "";
+    }
+
 }
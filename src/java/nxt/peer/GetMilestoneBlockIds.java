@@ -97,4 +97,19 @@ final class GetMilestoneBlockIds extends PeerServlet.PeerRequestHandler {
         return true;
     }
 
+    @Override
+    int getCost() {
+        return 2;
+    }
+
+    @Override
+    String getCacheKey(JSONObject request) {
+        Object lastBlockId = request.get("lastBlockId");
+        Object lastMilestoneBlockId = request.get("lastMilestoneBlockId");
+        if (lastBlockId == null && lastMilestoneBlockId == null) {
+            return null;
+        }
+        return lastBlockId + ":" + lastMilestoneBlockId;
+    }
+
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.peer;
+
+import nxt.Block;
+import nxt.Nxt;
+import nxt.util.Convert;
+import nxt.util.JSON;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import java.util.List;
+
+final class GetNextBlockHeaders extends PeerServlet.PeerRequestHandler {
+
+    static final GetNextBlockHeaders instance = new GetNextBlockHeaders();
+
+    static final int MAX_BLOCK_HEADERS = 720;
+
+    private static final JSONStreamAware TOO_MANY_BLOCKS_REQUESTED;
+    static {
+        JSONObject response = new JSONObject();
+        response.put("error", Errors.TOO_MANY_BLOCKS_REQUESTED);
+        TOO_MANY_BLOCKS_REQUESTED = JSON.prepare(response);
+    }
+
+    private GetNextBlockHeaders() {}
+
+
+    @Override
+    JSONStreamAware processRequest(JSONObject request, Peer peer) {
+
+        long blockId = Convert.parseUnsignedLong((String) request.get("blockId"));
+        long limit = Convert.parseLong(request.get("limit"));
+        if (limit > MAX_BLOCK_HEADERS) {
+            return TOO_MANY_BLOCKS_REQUESTED;
+        }
+        List<? extends Block> blocks = Nxt.getBlockchain().getBlocksAfter(blockId, limit > 0 ? (int)limit : MAX_BLOCK_HEADERS);
+        JSONArray nextBlockHeaders = new JSONArray();
+        blocks.forEach(block -> nextBlockHeaders.add(block.getHeaderJSONObject()));
+        JSONObject response = new JSONObject();
+        response.put("nextBlockHeaders", nextBlockHeaders);
+
+        return response;
+    }
+
+    @Override
+    boolean rejectWhileDownloading() {
+        return true;
+    }
+
+    @Override
+    int getCost() {
+        return 10;
+    }
+
+    @Override
+    String getCacheKey(JSONObject request) {
+        return request.get("blockId") + ":" + request.get("limit");
+    }
+
+}
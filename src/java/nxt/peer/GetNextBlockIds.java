@@ -54,4 +54,14 @@ final class GetNextBlockIds extends PeerServlet.PeerRequestHandler {
         return true;
     }
 
+    @Override
+    int getCost() {
+        return 5;
+    }
+
+    @Override
+    String getCacheKey(JSONObject request) {
+        return request.get("blockId") + ":" + request.get("limit");
+    }
+
 }
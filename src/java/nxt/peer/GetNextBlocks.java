@@ -74,4 +74,15 @@ final class GetNextBlocks extends PeerServlet.PeerRequestHandler {
         return true;
     }
 
+    @Override
+    int getCost() {
+        return PeerServlet.EXPENSIVE_REQUEST_COST;
+    }
+
+    @Override
+    String getCacheKey(JSONObject request) {
+        Object blockIds = request.get("blockIds");
+        return request.get("blockId") + ":" + (blockIds != null ? blockIds : request.get("limit"));
+    }
+
 }
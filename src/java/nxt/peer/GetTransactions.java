@@ -64,4 +64,9 @@ final class GetTransactions extends PeerServlet.PeerRequestHandler {
     boolean rejectWhileDownloading() {
         return true;
     }
+
+    @Override
+    int getCost() {
+        return 5;
+    }
 }
@@ -33,7 +33,8 @@ public interface Peer extends Comparable<Peer> {
         PRUNABLE(2),                    // Stores expired prunable messages
         API(4),                         // Provides open API access over http
         API_SSL(8),                     // Provides open API access over https
-        CORS(16);                       // API CORS enabled
+        CORS(16),                       // API CORS enabled
+        BLOCK_HEADERS(32);              // Supports getNextBlockHeaders
 
         private final long code;        // Service code - must be a power of 2
 
@@ -105,6 +106,18 @@ public interface Peer extends Comparable<Peer> {
 
     long getUploadedVolume();
 
+    long getResponseTime();
+
+    long getThroughput();
+
+    int getErrorRate();
+
+    int getUsefulBlockRatio();
+
+    int getQuality();
+
+    void updateBlockStatistics(int requestedBlocks, int usefulBlocks);
+
     int getLastUpdated();
 
     int getLastConnectAttempt();
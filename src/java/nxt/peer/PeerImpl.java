@@ -31,7 +31,6 @@ import nxt.util.JSON;
 import nxt.util.Logger;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
-import org.json.simple.JSONValue;
 import org.json.simple.parser.ParseException;
 
 import java.io.BufferedReader;
@@ -84,6 +83,12 @@ final class PeerImpl implements Peer {
     private volatile State state;
     private volatile long downloadedVolume;
     private volatile long uploadedVolume;
+    private volatile long responseTime;
+    private volatile long throughput;
+    private volatile int errorRate;
+    private volatile int usefulBlockRatio = 1000;
+    private long requestBudget;
+    private long lastBudgetUpdate;
     private volatile int lastUpdated;
     private volatile int lastConnectAttempt;
     private volatile int lastInboundRequest;
@@ -105,6 +110,8 @@ final class PeerImpl implements Peer {
         this.disabledAPIs = EnumSet.noneOf(APIEnum.class);
         this.apiServerIdleTimeout = API.apiServerIdleTimeout;
         this.blockchainState = BlockchainState.UP_TO_DATE;
+        this.requestBudget = Peers.requestBudget * 1000L;
+        this.lastBudgetUpdate = System.currentTimeMillis();
     }
 
     @Override
@@ -158,6 +165,86 @@ final class PeerImpl implements Peer {
         Peers.notifyListeners(this, Peers.Event.UPLOADED_VOLUME);
     }
 
+    @Override
+    public long getResponseTime() {
+        return responseTime;
+    }
+
+    @Override
+    public long getThroughput() {
+        return throughput;
+    }
+
+    @Override
+    public int getErrorRate() {
+        return errorRate;
+    }
+
+    @Override
+    public int getUsefulBlockRatio() {
+        return usefulBlockRatio;
+    }
+
+    /**
+     * Return the peer quality score, in the range 0-1000
+     *
+     * The score is derived from the smoothed error rate, the ratio of requested blocks which were
+     * on the chain we were downloading, and the smoothed response time.  A peer we haven't talked
+     * to yet gets the maximum score, so new peers get a chance to prove themselves.
+     *
+     * @return                      Quality score
+     */
+    @Override
+    public int getQuality() {
+        return (int)((long)(1000 - errorRate) * usefulBlockRatio / (1000 + responseTime));
+    }
+
+    void updateResponseStatistics(boolean success, long time, long size) {
+        synchronized (this) {
+            errorRate += ((success ? 0 : 1000) - errorRate) / 8;
+            if (success) {
+                responseTime += (time - responseTime) / 8;
+                throughput += (size * 1000 / Math.max(time, 1) - throughput) / 8;
+            }
+        }
+    }
+
+    @Override
+    public void updateBlockStatistics(int requestedBlocks, int usefulBlocks) {
+        if (requestedBlocks <= 0) {
+            return;
+        }
+        synchronized (this) {
+            usefulBlockRatio += (usefulBlocks * 1000 / requestedBlocks - usefulBlockRatio) / 8;
+        }
+    }
+
+    /**
+     * Charge the cost of an inbound request against the peer request budget
+     *
+     * The budget is kept in thousandths of a cost unit and is refilled continuously
+     * at the configured rate, up to the configured maximum.
+     *
+     * @param   cost                Request cost
+     * @return                      TRUE if the request is admitted
+     */
+    boolean admitRequest(int cost) {
+        if (Peers.requestBudget <= 0) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            requestBudget = Math.min(requestBudget + (now - lastBudgetUpdate) * Peers.requestBudgetRate,
+                    Peers.requestBudget * 1000L);
+            lastBudgetUpdate = now;
+            if (requestBudget < cost * 1000L) {
+                return false;
+            }
+            requestBudget -= cost * 1000L;
+            return true;
+        }
+    }
+
     @Override
     public String getVersion() {
         return version;
@@ -473,6 +560,8 @@ final class PeerImpl implements Peer {
         boolean showLog = false;
         HttpURLConnection connection = null;
         int communicationLoggingMask = Peers.communicationLoggingMask;
+        long startTime = System.currentTimeMillis();
+        long responseSize = 0;
 
         try {
             //
@@ -501,8 +590,9 @@ final class PeerImpl implements Peer {
                     }
                     if (wsResponse.length() > maxResponseSize)
                         throw new NxtException.NxtIOException("Maximum size exceeded: " + wsResponse.length());
-                    response = (JSONObject)JSONValue.parseWithException(wsResponse);
-                    updateDownloadedVolume(wsResponse.length());
+                    response = (JSONObject)JSON.parse(wsResponse);
+                    responseSize = wsResponse.length();
+                    updateDownloadedVolume(responseSize);
                 }
             } else {
                 //
@@ -543,16 +633,18 @@ final class PeerImpl implements Peer {
                                               cis.getCount(), (double)cis.getCount()/(double) responseValue.length());
                             log += " >>> " + responseValue;
                             showLog = true;
-                            response = (JSONObject) JSONValue.parseWithException(responseValue);
-                            updateDownloadedVolume(responseValue.length());
+                            response = (JSONObject) JSON.parse(responseValue);
+                            responseSize = responseValue.length();
+                            updateDownloadedVolume(responseSize);
                         } else {
                             InputStream responseStream = connection.getInputStream();
                             if ("gzip".equals(connection.getHeaderField("Content-Encoding")))
                                 responseStream = new GZIPInputStream(responseStream);
                             try (Reader reader = new BufferedReader(new InputStreamReader(responseStream, "UTF-8"))) {
                                 CountingInputReader cir = new CountingInputReader(reader, maxResponseSize);
-                                response = (JSONObject)JSONValue.parseWithException(cir);
-                                updateDownloadedVolume(cir.getCount());
+                                response = (JSONObject)JSON.parse(cir);
+                                responseSize = cir.getCount();
+                                updateDownloadedVolume(responseSize);
                             }
                         }
                     }
@@ -575,7 +667,8 @@ final class PeerImpl implements Peer {
                     Logger.logDebugMessage("Sequence error, reconnecting to " + host);
                     deactivate();
                     connect();
-                } else if (!Errors.DOWNLOADING.equals(error) && !Errors.LIGHT_CLIENT.equals(error)) {
+                } else if (!Errors.DOWNLOADING.equals(error) && !Errors.LIGHT_CLIENT.equals(error)
+                        && !Errors.BUSY.equals(error) && !Errors.TOO_MANY_REQUESTS.equals(error)) {
                     deactivate();
                     Logger.logDebugMessage("Peer " + host + " version " + version + " returned error: " +
                             response.toJSONString() + ", request was: " + JSON.toString(request) +
@@ -608,6 +701,10 @@ final class PeerImpl implements Peer {
         if (showLog) {
             Logger.logMessage(log + "\n");
         }
+        if (maxResponseSize > 0) {
+            updateResponseStatistics(response != null && response.get("error") == null,
+                    System.currentTimeMillis() - startTime, responseSize);
+        }
 
         return response;
     }
@@ -0,0 +1,136 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.peer;
+
+import nxt.BlockchainProcessor;
+import nxt.Nxt;
+import nxt.util.JSON;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Shared cache of serialized responses to peer requests
+ *
+ * Responses are keyed by the request type, the normalized request parameters and the
+ * current last block identifier, and are kept in serialized form so a popular response
+ * is only built and encoded once no matter how many peers ask for it.  The cache is
+ * cleared whenever a block is pushed or popped off.
+ */
+final class PeerResponseCache {
+
+    private static final long maxCacheSize = Nxt.getIntProperty("nxt.peerResponseCacheKB") * 1024L;
+
+    private static final Map<String, CachedResponse> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static long cacheSize;
+
+    private static long generation;
+
+    static {
+        if (maxCacheSize > 0) {
+            Nxt.getBlockchainProcessor().addListener(block -> clear(), BlockchainProcessor.Event.BLOCK_PUSHED);
+            Nxt.getBlockchainProcessor().addListener(block -> clear(), BlockchainProcessor.Event.BLOCK_POPPED);
+            Nxt.getBlockchainProcessor().addListener(block -> clear(), BlockchainProcessor.Event.RESCAN_BEGIN);
+        }
+    }
+
+    private PeerResponseCache() {} // never
+
+    /**
+     * Return the response for a peer request, using the cached response if there is one
+     *
+     * @param   handler             Request handler
+     * @param   request             Peer request
+     * @param   peer                Requesting peer
+     * @return                      JSON response
+     */
+    static JSONStreamAware processRequest(PeerServlet.PeerRequestHandler handler, JSONObject request, Peer peer) {
+        String requestKey;
+        if (maxCacheSize <= 0 || (requestKey = handler.getCacheKey(request)) == null) {
+            return handler.processRequest(request, peer);
+        }
+        String key = request.get("requestType") + ":" + Long.toUnsignedString(Nxt.getBlockchain().getLastBlock().getId())
+                + ":" + requestKey;
+        long startGeneration;
+        synchronized (cache) {
+            CachedResponse cachedResponse = cache.get(key);
+            if (cachedResponse != null) {
+                return cachedResponse;
+            }
+            startGeneration = generation;
+        }
+        JSONStreamAware response = handler.processRequest(request, peer);
+        if (!(response instanceof JSONObject) || ((JSONObject)response).get("error") != null) {
+            return response;
+        }
+        CachedResponse cachedResponse = new CachedResponse(JSON.toJSONString((JSONObject)response).toCharArray());
+        synchronized (cache) {
+            //
+            // Don't cache the response if the blockchain changed while we were building it
+            //
+            if (generation == startGeneration && cachedResponse.getSize() <= maxCacheSize / 4) {
+                CachedResponse oldResponse = cache.put(key, cachedResponse);
+                cacheSize += cachedResponse.getSize() - (oldResponse != null ? oldResponse.getSize() : 0);
+                Iterator<CachedResponse> it = cache.values().iterator();
+                while (cacheSize > maxCacheSize && it.hasNext()) {
+                    cacheSize -= it.next().getSize();
+                    it.remove();
+                }
+            }
+        }
+        return cachedResponse;
+    }
+
+    /**
+     * Remove all cached responses
+     */
+    static void clear() {
+        synchronized (cache) {
+            generation++;
+            cache.clear();
+            cacheSize = 0;
+        }
+    }
+
+    /**
+     * Serialized peer response
+     */
+    private static final class CachedResponse implements JSONStreamAware {
+
+        /** Serialized response */
+        private final char[] jsonChars;
+
+        CachedResponse(char[] jsonChars) {
+            this.jsonChars = jsonChars;
+        }
+
+        long getSize() {
+            return jsonChars.length * 2L;
+        }
+
+        @Override
+        public void writeJSONString(Writer out) throws IOException {
+            out.write(jsonChars);
+        }
+    }
+}
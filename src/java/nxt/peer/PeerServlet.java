@@ -30,7 +30,6 @@ import org.eclipse.jetty.websocket.servlet.WebSocketServlet;
 import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
-import org.json.simple.JSONValue;
 import org.json.simple.parser.ParseException;
 
 import javax.servlet.http.HttpServletRequest;
@@ -43,14 +42,44 @@ import java.net.InetSocketAddress;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public final class PeerServlet extends WebSocketServlet {
 
     abstract static class PeerRequestHandler {
         abstract JSONStreamAware processRequest(JSONObject request, Peer peer);
         abstract boolean rejectWhileDownloading();
+
+        /**
+         * Return the request cost charged against the peer request budget.  Requests
+         * with a cost of at least EXPENSIVE_REQUEST_COST are also limited by the number
+         * of concurrent expensive requests.
+         *
+         * @return                  Request cost
+         */
+        int getCost() {
+            return 1;
+        }
+
+        /**
+         * Return the key identifying the response in the peer response cache.  The request type
+         * and the current last block are always part of the cache key and don't need to be included.
+         *
+         * @param   request         Peer request
+         * @return                  Cache key or null if the response must not be cached
+         */
+        String getCacheKey(JSONObject request) {
+            return null;
+        }
     }
 
+    static final int EXPENSIVE_REQUEST_COST = 5;
+
     private static final Map<String,PeerRequestHandler> peerRequestHandlers;
 
     static {
@@ -61,6 +90,7 @@ public final class PeerServlet extends WebSocketServlet {
         map.put("getMilestoneBlockIds", GetMilestoneBlockIds.instance);
         map.put("getNextBlockIds", GetNextBlockIds.instance);
         map.put("getNextBlocks", GetNextBlocks.instance);
+        map.put("getNextBlockHeaders", GetNextBlockHeaders.instance);
         map.put("getPeers", GetPeers.instance);
         map.put("getTransactions", GetTransactions.instance);
         map.put("getUnconfirmedTransactions", GetUnconfirmedTransactions.instance);
@@ -118,6 +148,40 @@ public final class PeerServlet extends WebSocketServlet {
         LIGHT_CLIENT = JSON.prepare(response);
     }
 
+    private static final JSONStreamAware TOO_MANY_REQUESTS;
+    static {
+        JSONObject response = new JSONObject();
+        response.put("error", Errors.TOO_MANY_REQUESTS);
+        TOO_MANY_REQUESTS = JSON.prepare(response);
+    }
+
+    private static final JSONStreamAware BUSY;
+    static {
+        JSONObject response = new JSONObject();
+        response.put("error", Errors.BUSY);
+        BUSY = JSON.prepare(response);
+    }
+
+    private static final Semaphore expensiveRequests = Peers.maxExpensiveRequests > 0 ?
+            new Semaphore(Peers.maxExpensiveRequests, true) : null;
+
+    private static final ConcurrentMap<String, AtomicLong> rejectedRequests = new ConcurrentHashMap<>();
+
+    /**
+     * Return the number of peer requests rejected by admission control
+     *
+     * @return                      Rejected request count by request type
+     */
+    public static Map<String, Long> getRejectedRequestCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        rejectedRequests.forEach((requestType, count) -> counts.put(requestType, count.get()));
+        return counts;
+    }
+
+    private static void rejectRequest(String requestType) {
+        rejectedRequests.computeIfAbsent(requestType, k -> new AtomicLong()).incrementAndGet();
+    }
+
     private static final BlockchainProcessor blockchainProcessor = Nxt.getBlockchainProcessor();
 
     static JSONStreamAware error(Exception e) {
@@ -256,7 +320,7 @@ public final class PeerServlet extends WebSocketServlet {
         // Process the request
         //
         try (CountingInputReader cr = new CountingInputReader(inputReader, Peers.MAX_REQUEST_SIZE)) {
-            JSONObject request = (JSONObject)JSONValue.parseWithException(cr);
+            JSONObject request = (JSONObject)JSON.parse(cr);
             peer.updateDownloadedVolume(cr.getCount());
             if (request.get("protocol") == null || ((Number)request.get("protocol")).intValue() != 1) {
                 Logger.logDebugMessage("Unsupported protocol " + request.get("protocol"));
@@ -287,7 +351,34 @@ public final class PeerServlet extends WebSocketServlet {
                     return LIGHT_CLIENT;
                 }
             }
-            return peerRequestHandler.processRequest(request, peer);
+            //
+            // Charge the request against the peer budget and limit the number of
+            // expensive requests processed at the same time
+            //
+            String requestType = (String)request.get("requestType");
+            int cost = peerRequestHandler.getCost();
+            if (!peer.admitRequest(cost)) {
+                rejectRequest(requestType);
+                return TOO_MANY_REQUESTS;
+            }
+            if (cost < EXPENSIVE_REQUEST_COST || expensiveRequests == null) {
+                return PeerResponseCache.processRequest(peerRequestHandler, request, peer);
+            }
+            try {
+                if (!expensiveRequests.tryAcquire(Peers.requestQueueTimeout, TimeUnit.MILLISECONDS)) {
+                    rejectRequest(requestType);
+                    return BUSY;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejectRequest(requestType);
+                return BUSY;
+            }
+            try {
+                return PeerResponseCache.processRequest(peerRequestHandler, request, peer);
+            } finally {
+                expensiveRequests.release();
+            }
         } catch (RuntimeException|ParseException|IOException e) {
             Logger.logDebugMessage("Error processing POST request: " + e.toString());
             peer.blacklist(e);
@@ -130,6 +130,10 @@ public final class Peers {
     static final int MAX_PLATFORM_LENGTH = 30;
     static final int MAX_ANNOUNCED_ADDRESS_LENGTH = 100;
     static final boolean hideErrorDetails = Nxt.getBooleanProperty("nxt.hideErrorDetails");
+    static final int requestBudget = Nxt.getIntProperty("nxt.peerServerRequestBudget");
+    static final int requestBudgetRate = Nxt.getIntProperty("nxt.peerServerRequestBudgetRate");
+    static final int maxExpensiveRequests = Nxt.getIntProperty("nxt.peerServerMaxExpensiveRequests");
+    static final int requestQueueTimeout = Nxt.getIntProperty("nxt.peerServerQueueTimeout");
 
     private static final JSONObject myPeerInfo;
     private static final List<Peer.Service> myServices;
@@ -263,6 +267,9 @@ public final class Peers {
         if (!Constants.ENABLE_PRUNING && Constants.INCLUDE_EXPIRED_PRUNABLE) {
             servicesList.add(Peer.Service.PRUNABLE);
         }
+        if (!Constants.isLightClient) {
+            servicesList.add(Peer.Service.BLOCK_HEADERS);
+        }
         if (API.openAPIPort > 0) {
             json.put("apiPort", API.openAPIPort);
             servicesList.add(Peer.Service.API);
@@ -1097,6 +1104,71 @@ public final class Peers {
         return null;
     }
 
+    /**
+     * Select a peer at random, weighted by the peer quality score
+     *
+     * @param   selectedPeers       Candidate peers
+     * @return                      Selected peer or null if there are no candidates
+     */
+    public static Peer getQualityWeightedPeer(List<Peer> selectedPeers) {
+        if (selectedPeers.isEmpty()) {
+            return null;
+        }
+        //
+        // The quality of a peer can change while we are selecting, so read it just once
+        //
+        int[] qualities = new int[selectedPeers.size()];
+        long totalQuality = 0;
+        for (int i = 0; i < qualities.length; i++) {
+            qualities[i] = Math.max(selectedPeers.get(i).getQuality(), 1);
+            totalQuality += qualities[i];
+        }
+        long hit = ThreadLocalRandom.current().nextLong(totalQuality);
+        for (int i = 0; i < qualities.length - 1; i++) {
+            if ((hit -= qualities[i]) < 0) {
+                return selectedPeers.get(i);
+            }
+        }
+        return selectedPeers.get(qualities.length - 1);
+    }
+
+    /**
+     * Check if a peer response is an admission control error
+     *
+     * The peer is busy or this node has exceeded its request budget, which does not indicate a
+     * problem with the peer, and the request can be sent to another peer.
+     *
+     * @param   response            Peer response
+     * @return                      TRUE if the peer did not accept the request
+     */
+    public static boolean isBusyResponse(JSONObject response) {
+        Object error = response.get("error");
+        return Errors.BUSY.equals(error) || Errors.TOO_MANY_REQUESTS.equals(error);
+    }
+
+    /**
+     * Return the peer with the highest quality score
+     *
+     * @param   selectedPeers       Candidate peers
+     * @param   excludedPeer        Peer to skip or null
+     * @return                      Best peer or null if there are no candidates
+     */
+    public static Peer getBestQualityPeer(List<Peer> selectedPeers, Peer excludedPeer) {
+        Peer bestPeer = null;
+        int bestQuality = -1;
+        for (Peer peer : selectedPeers) {
+            if (peer == excludedPeer) {
+                continue;
+            }
+            int quality = peer.getQuality();
+            if (quality > bestQuality) {
+                bestQuality = quality;
+                bestPeer = peer;
+            }
+        }
+        return bestPeer;
+    }
+
     static String addressWithPort(String address) {
         if (address == null) {
             return null;
@@ -0,0 +1,207 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram for non-negative values
+ *
+ * Values are counted in log-linear buckets: each power of two is divided into 16 buckets,
+ * so a reported percentile is within 1/16 of the recorded value.  Values larger than
+ * 2^40 are counted in the last bucket.  Recording a value does not allocate and does not
+ * block, so the histogram can be updated by many threads at the same time.
+ */
+public final class Histogram {
+
+    /** Number of bits used for the buckets within a power of two */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /** Number of buckets within a power of two */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** Largest power of two with its own buckets */
+    private static final int MAX_EXPONENT = 40;
+
+    /** Number of buckets */
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    /** Bucket counts */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    /** Sum of the recorded values */
+    private final LongAdder sum = new LongAdder();
+
+    /** Largest recorded value */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value
+     *
+     * @param   value               Value, negative values are recorded as 0
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(getBucket(value));
+        sum.add(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Return a snapshot of the histogram
+     *
+     * The snapshot is not atomic with respect to concurrent updates, so the percentiles
+     * may not include values that are recorded while the snapshot is created
+     *
+     * @return                      Histogram snapshot
+     */
+    public Snapshot getSnapshot() {
+        long[] bucketCounts = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            bucketCounts[i] = counts.get(i);
+            count += bucketCounts[i];
+        }
+        long maxValue = max.get();
+        return new Snapshot(count, sum.sum(), maxValue,
+                getPercentile(bucketCounts, count, 0.50, maxValue),
+                getPercentile(bucketCounts, count, 0.90, maxValue),
+                getPercentile(bucketCounts, count, 0.99, maxValue));
+    }
+
+    /**
+     * Return the bucket for a value
+     *
+     * @param   value               Value
+     * @return                      Bucket index
+     */
+    private static int getBucket(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int)value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Return the largest value counted in a bucket
+     *
+     * @param   bucket              Bucket index
+     * @return                      Largest value
+     */
+    private static long getBucketLimit(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket % SUB_BUCKET_COUNT;
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((long)(SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Return a percentile
+     *
+     * @param   bucketCounts        Bucket counts
+     * @param   count               Number of values
+     * @param   percentile          Percentile between 0 and 1
+     * @param   maxValue            Largest value
+     * @return                      Percentile value
+     */
+    private static long getPercentile(long[] bucketCounts, long count, double percentile, long maxValue) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max((long)Math.ceil(count * percentile), 1);
+        long total = 0;
+        for (int i = 0; i < bucketCounts.length; i++) {
+            total += bucketCounts[i];
+            if (total >= target) {
+                return i < bucketCounts.length - 1 ? Math.min(getBucketLimit(i), maxValue) : maxValue;
+            }
+        }
+        return maxValue;
+    }
+
+    /**
+     * Histogram snapshot
+     */
+    public static final class Snapshot {
+
+        /** Number of values */
+        private final long count;
+
+        /** Sum of the values */
+        private final long sum;
+
+        /** Largest value */
+        private final long max;
+
+        /** Median value */
+        private final long p50;
+
+        /** 90th percentile */
+        private final long p90;
+
+        /** 99th percentile */
+        private final long p99;
+
+        private Snapshot(long count, long sum, long max, long p50, long p90, long p99) {
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP90() {
+            return p90;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+    }
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.util;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * JSON decoder
+ *
+ * The decoder returns the same JSONObject, JSONArray, String, Long, Double and Boolean
+ * values as the json-simple parser, but reads the input in a single pass through a
+ * character buffer that is reused by the next parse on the same thread.  It does not
+ * create a lexer, token objects or a string for each number, and object keys are taken
+ * from a small cache since the same keys appear in every NXT message.  Objects and
+ * arrays are parsed recursively, so the nesting depth is limited to MAX_DEPTH and a
+ * ParseException is thrown for deeper input.
+ */
+public final class JSONReader {
+
+    /** Character buffer size */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Maximum nesting depth of objects and arrays */
+    private static final int MAX_DEPTH = 256;
+
+    /** Maximum length of a cached key */
+    private static final int MAX_KEY_LENGTH = 32;
+
+    /** Object key cache */
+    private static final String[] keyCache = new String[1024];
+
+    /** Decoder for this thread */
+    private static final ThreadLocal<JSONReader> readerCache = ThreadLocal.withInitial(JSONReader::new);
+
+    /** Character buffer */
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    /** String builder for strings and numbers */
+    private final StringBuilder sb = new StringBuilder(256);
+
+    /** Input reader or null */
+    private Reader reader;
+
+    /** Input string or null */
+    private String string;
+
+    /** Position of the buffer in the input */
+    private int offset;
+
+    /** Position of the next character in the buffer */
+    private int pos;
+
+    /** Number of characters in the buffer */
+    private int limit;
+
+    /** Current nesting depth */
+    private int depth;
+
+    /** Decoder is in use */
+    private boolean busy;
+
+    private JSONReader() {}
+
+    /**
+     * Parse a JSON string
+     *
+     * @param   input               JSON string
+     * @return                      Parsed value
+     * @throws  ParseException      Input is not valid JSON
+     */
+    public static Object parse(String input) throws ParseException {
+        try {
+            return getReader().parse(null, input);
+        } catch (IOException e) {
+            throw new ParseException(-1, ParseException.ERROR_UNEXPECTED_EXCEPTION, e);
+        }
+    }
+
+    /**
+     * Parse JSON from a reader
+     *
+     * @param   input               Reader
+     * @return                      Parsed value
+     * @throws  IOException         I/O error
+     * @throws  ParseException      Input is not valid JSON
+     */
+    public static Object parse(Reader input) throws IOException, ParseException {
+        return getReader().parse(input, null);
+    }
+
+    /**
+     * Return the decoder for this thread or a new decoder if it is in use
+     *
+     * @return                      Decoder
+     */
+    private static JSONReader getReader() {
+        JSONReader jsonReader = readerCache.get();
+        return jsonReader.busy ? new JSONReader() : jsonReader;
+    }
+
+    private Object parse(Reader reader, String string) throws IOException, ParseException {
+        this.reader = reader;
+        this.string = string;
+        this.offset = 0;
+        this.pos = 0;
+        this.limit = 0;
+        this.depth = 0;
+        this.busy = true;
+        try {
+            Object value = readValue(skipWhitespace());
+            int c = skipWhitespace();
+            if (c >= 0) {
+                throw unexpected(c);
+            }
+            return value;
+        } finally {
+            this.reader = null;
+            this.string = null;
+            this.busy = false;
+            if (sb.capacity() > BUFFER_SIZE) {
+                sb.setLength(0);
+                sb.trimToSize();
+            }
+        }
+    }
+
+    private Object readValue(int c) throws IOException, ParseException {
+        switch (c) {
+            case '{':
+            case '[':
+                if (++depth > MAX_DEPTH) {
+                    throw new ParseException(getPosition() - 1, ParseException.ERROR_UNEXPECTED_CHAR, (char)c);
+                }
+                Object value = c == '{' ? readObject() : readArray();
+                depth--;
+                return value;
+            case '"':
+                return readString();
+            case 't':
+                expect("rue");
+                return Boolean.TRUE;
+            case 'f':
+                expect("alse");
+                return Boolean.FALSE;
+            case 'n':
+                expect("ull");
+                return null;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return readNumber(c);
+                }
+                throw unexpected(c);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private JSONObject readObject() throws IOException, ParseException {
+        JSONObject object = new JSONObject();
+        int c = skipWhitespace();
+        if (c == '}') {
+            return object;
+        }
+        while (true) {
+            if (c != '"') {
+                throw unexpected(c);
+            }
+            String key = readKey();
+            c = skipWhitespace();
+            if (c != ':') {
+                throw unexpected(c);
+            }
+            object.put(key, readValue(skipWhitespace()));
+            c = skipWhitespace();
+            if (c == '}') {
+                return object;
+            }
+            if (c != ',') {
+                throw unexpected(c);
+            }
+            c = skipWhitespace();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private JSONArray readArray() throws IOException, ParseException {
+        JSONArray array = new JSONArray();
+        int c = skipWhitespace();
+        if (c == ']') {
+            return array;
+        }
+        while (true) {
+            array.add(readValue(c));
+            c = skipWhitespace();
+            if (c == ']') {
+                return array;
+            }
+            if (c != ',') {
+                throw unexpected(c);
+            }
+            c = skipWhitespace();
+        }
+    }
+
+    /**
+     * Read an object key, using the cached string when the key has been seen before
+     *
+     * @return                      Key
+     */
+    private String readKey() throws IOException, ParseException {
+        readChars();
+        int length = sb.length();
+        if (length > MAX_KEY_LENGTH) {
+            return sb.toString();
+        }
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + sb.charAt(i);
+        }
+        int index = (hash ^ (hash >>> 16)) & (keyCache.length - 1);
+        String key = keyCache[index];
+        if (key != null && key.length() == length) {
+            int i = 0;
+            while (i < length && key.charAt(i) == sb.charAt(i)) {
+                i++;
+            }
+            if (i == length) {
+                return key;
+            }
+        }
+        key = sb.toString();
+        keyCache[index] = key;
+        return key;
+    }
+
+    private String readString() throws IOException, ParseException {
+        readChars();
+        return sb.toString();
+    }
+
+    /**
+     * Read the characters of a string into the string builder
+     */
+    private void readChars() throws IOException, ParseException {
+        sb.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return;
+            }
+            if (c < 0) {
+                throw unexpected(c);
+            }
+            if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        break;
+                    case 'b':
+                        c = '\b';
+                        break;
+                    case 'f':
+                        c = '\f';
+                        break;
+                    case 'n':
+                        c = '\n';
+                        break;
+                    case 'r':
+                        c = '\r';
+                        break;
+                    case 't':
+                        c = '\t';
+                        break;
+                    case 'u':
+                        c = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int d = Character.digit(read(), 16);
+                            if (d < 0) {
+                                throw new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_CHAR, "\\u");
+                            }
+                            c = (c << 4) | d;
+                        }
+                        break;
+                    default:
+                        throw unexpected(c);
+                }
+            }
+            sb.append((char)c);
+        }
+    }
+
+    /**
+     * Read a number
+     *
+     * Integers are accumulated without creating a string and are returned as a Long,
+     * while numbers with a fraction or exponent are returned as a Double
+     *
+     * @param   c                   First character
+     * @return                      Number
+     */
+    private Number readNumber(int c) throws IOException, ParseException {
+        boolean negative = (c == '-');
+        if (negative) {
+            c = read();
+        }
+        if (c < '0' || c > '9') {
+            throw unexpected(c);
+        }
+        long value = 0;
+        boolean overflow = false;
+        sb.setLength(0);
+        if (negative) {
+            sb.append('-');
+        }
+        while (c >= '0' && c <= '9') {
+            int digit = c - '0';
+            if (value < (Long.MIN_VALUE + digit) / 10) {
+                overflow = true;
+            }
+            value = value * 10 - digit;
+            sb.append((char)c);
+            c = peek();
+            if (c >= '0' && c <= '9') {
+                pos++;
+            }
+        }
+        if (c == '.' || c == 'e' || c == 'E') {
+            while (c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-' || (c >= '0' && c <= '9')) {
+                sb.append((char)c);
+                pos++;
+                c = peek();
+            }
+            try {
+                return Double.valueOf(sb.toString());
+            } catch (NumberFormatException e) {
+                throw new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_TOKEN, sb.toString());
+            }
+        }
+        if (overflow || (!negative && value == Long.MIN_VALUE)) {
+            throw new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_TOKEN, sb.toString());
+        }
+        return negative ? value : -value;
+    }
+
+    private void expect(String rest) throws IOException, ParseException {
+        for (int i = 0; i < rest.length(); i++) {
+            int c = read();
+            if (c != rest.charAt(i)) {
+                throw unexpected(c);
+            }
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos++];
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos];
+    }
+
+    private boolean fill() throws IOException {
+        offset += limit;
+        pos = 0;
+        if (string != null) {
+            limit = Math.min(buffer.length, string.length() - offset);
+            if (limit <= 0) {
+                limit = 0;
+                return false;
+            }
+            string.getChars(offset, offset + limit, buffer, 0);
+            return true;
+        }
+        int n = reader.read(buffer, 0, buffer.length);
+        limit = Math.max(n, 0);
+        return n > 0;
+    }
+
+    private int getPosition() {
+        return offset + pos;
+    }
+
+    private ParseException unexpected(int c) {
+        return c < 0 ? new ParseException(getPosition(), ParseException.ERROR_UNEXPECTED_TOKEN, null)
+                : new ParseException(getPosition() - 1, ParseException.ERROR_UNEXPECTED_CHAR, (char)c);
+    }
+}
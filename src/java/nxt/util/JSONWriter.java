@@ -0,0 +1,393 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.util;
+
+import org.json.simple.JSONStreamAware;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON encoder
+ *
+ * Values are encoded into a character buffer which is written to the output writer or
+ * string builder each time it fills up, so a large response is never held as a single
+ * string.  Integer values are written digit by digit and strings are escaped by scanning
+ * the characters, without creating intermediate strings.  The character buffer is reused
+ * by the next encoder created on the same thread once the encoder is closed.
+ *
+ * The output is the same as the output of the json-simple encoder.
+ */
+public final class JSONWriter implements AutoCloseable {
+
+    /** Character buffer size */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Hexadecimal digits */
+    private static final char[] hexDigits = "0123456789ABCDEF".toCharArray();
+
+    /** Buffer for the next encoder on this thread */
+    private static final ThreadLocal<char[]> bufferCache = new ThreadLocal<>();
+
+    /** Output writer or null */
+    private final Writer out;
+
+    /** Output string builder or null */
+    private final StringBuilder sb;
+
+    /** Character buffer */
+    private char[] buffer;
+
+    /** Number of characters in the buffer */
+    private int length;
+
+    /**
+     * Create an encoder for a writer
+     *
+     * @param   out                 Writer
+     */
+    public JSONWriter(Writer out) {
+        this(out, null);
+    }
+
+    /**
+     * Create an encoder for a string builder
+     *
+     * @param   sb                  String builder
+     */
+    public JSONWriter(StringBuilder sb) {
+        this(null, sb);
+    }
+
+    private JSONWriter(Writer out, StringBuilder sb) {
+        this.out = out;
+        this.sb = sb;
+        this.buffer = bufferCache.get();
+        if (buffer == null) {
+            buffer = new char[BUFFER_SIZE];
+        } else {
+            bufferCache.set(null);
+        }
+    }
+
+    /**
+     * Encode a JSON value
+     *
+     * @param   value               Map, list, string, number, boolean, JSONStreamAware or null
+     * @return                      This encoder
+     * @throws  IOException         I/O error
+     */
+    @SuppressWarnings("unchecked")
+    public JSONWriter writeValue(Object value) throws IOException {
+        if (value == null) {
+            append("null");
+        } else if (value instanceof String) {
+            writeString((String)value);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            writeLong(((Number)value).longValue());
+        } else if (value instanceof Double) {
+            double d = (Double)value;
+            append(Double.isInfinite(d) || Double.isNaN(d) ? "null" : value.toString());
+        } else if (value instanceof Float) {
+            float f = (Float)value;
+            append(Float.isInfinite(f) || Float.isNaN(f) ? "null" : value.toString());
+        } else if (value instanceof Number) {
+            append(value.toString());
+        } else if (value instanceof Boolean) {
+            append((Boolean)value ? "true" : "false");
+        } else if (value instanceof Map) {
+            writeObject((Map<Object, Object>)value);
+        } else if (value instanceof List) {
+            writeArray((List<Object>)value);
+        } else if (value instanceof JSONStreamAware) {
+            writeStreamAware((JSONStreamAware)value);
+        } else {
+            writeString(value.toString());
+        }
+        return this;
+    }
+
+    /**
+     * Encode a JSON object
+     *
+     * Entries with a null key are skipped
+     *
+     * @param   map                 Map
+     * @return                      This encoder
+     * @throws  IOException         I/O error
+     */
+    public JSONWriter writeObject(Map<?, ?> map) throws IOException {
+        if (map == null) {
+            append("null");
+            return this;
+        }
+        boolean firstElement = true;
+        append('{');
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            Object key = entry.getKey();
+            if (key == null) {
+                continue;
+            }
+            if (firstElement) {
+                firstElement = false;
+            } else {
+                append(',');
+            }
+            writeKey(key.toString());
+            writeValue(entry.getValue());
+        }
+        append('}');
+        return this;
+    }
+
+    /**
+     * Encode a JSON array
+     *
+     * @param   list                List
+     * @return                      This encoder
+     * @throws  IOException         I/O error
+     */
+    public JSONWriter writeArray(List<?> list) throws IOException {
+        if (list == null) {
+            append("null");
+            return this;
+        }
+        append('[');
+        for (int i = 0, size = list.size(); i < size; i++) {
+            if (i > 0) {
+                append(',');
+            }
+            writeValue(list.get(i));
+        }
+        append(']');
+        return this;
+    }
+
+    /**
+     * Write a value that encodes itself, such as a prepared response
+     *
+     * @param   json                Value
+     * @return                      This encoder
+     * @throws  IOException         I/O error
+     */
+    public JSONWriter writeStreamAware(JSONStreamAware json) throws IOException {
+        if (out != null) {
+            flushBuffer();
+            json.writeJSONString(out);
+        } else {
+            StringWriter writer = new StringWriter();
+            json.writeJSONString(writer);
+            append(writer.toString());
+        }
+        return this;
+    }
+
+    /**
+     * Write an object key followed by the name separator
+     *
+     * The key is not escaped, in the same way as json-simple
+     *
+     * @param   key                 Object key
+     * @return                      This encoder
+     * @throws  IOException         I/O error
+     */
+    public JSONWriter writeKey(String key) throws IOException {
+        append('"');
+        append(key);
+        append('"');
+        append(':');
+        return this;
+    }
+
+    /**
+     * Write a quoted and escaped string
+     *
+     * @param   string              String
+     * @return                      This encoder
+     * @throws  IOException         I/O error
+     */
+    public JSONWriter writeString(String string) throws IOException {
+        append('"');
+        for (int i = 0, n = string.length(); i < n; i++) {
+            char c = string.charAt(i);
+            switch (c) {
+                case '"':
+                    append('\\');
+                    append('"');
+                    break;
+                case '\\':
+                    append('\\');
+                    append('\\');
+                    break;
+                case '\b':
+                    append('\\');
+                    append('b');
+                    break;
+                case '\f':
+                    append('\\');
+                    append('f');
+                    break;
+                case '\n':
+                    append('\\');
+                    append('n');
+                    break;
+                case '\r':
+                    append('\\');
+                    append('r');
+                    break;
+                case '\t':
+                    append('\\');
+                    append('t');
+                    break;
+                case '/':
+                    append('\\');
+                    append('/');
+                    break;
+                default:
+                    if (c <= '\u001F' || (c >= '\u007F' && c <= '\u009F') || (c >= '\u2000' && c <= '\u20FF')) {
+                        append('\\');
+                        append('u');
+                        append(hexDigits[(c >> 12) & 0x0f]);
+                        append(hexDigits[(c >> 8) & 0x0f]);
+                        append(hexDigits[(c >> 4) & 0x0f]);
+                        append(hexDigits[c & 0x0f]);
+                    } else {
+                        append(c);
+                    }
+            }
+        }
+        append('"');
+        return this;
+    }
+
+    /**
+     * Write an integer value
+     *
+     * @param   value               Value
+     * @return                      This encoder
+     * @throws  IOException         I/O error
+     */
+    public JSONWriter writeLong(long value) throws IOException {
+        if (length + 20 > buffer.length) {
+            flushBuffer();
+        }
+        if (value == Long.MIN_VALUE) {
+            append("-9223372036854775808");
+            return this;
+        }
+        if (value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        int start = length;
+        do {
+            buffer[length++] = (char)('0' + (int)(value % 10));
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            char c = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = c;
+        }
+        return this;
+    }
+
+    /**
+     * Write a character without escaping
+     *
+     * @param   c                   Character
+     * @return                      This encoder
+     * @throws  IOException         I/O error
+     */
+    public JSONWriter append(char c) throws IOException {
+        if (length == buffer.length) {
+            flushBuffer();
+        }
+        buffer[length++] = c;
+        return this;
+    }
+
+    /**
+     * Write a string without escaping
+     *
+     * @param   string              String
+     * @return                      This encoder
+     * @throws  IOException         I/O error
+     */
+    public JSONWriter append(String string) throws IOException {
+        int offset = 0;
+        int count = string.length();
+        while (count > 0) {
+            if (length == buffer.length) {
+                flushBuffer();
+            }
+            int n = Math.min(count, buffer.length - length);
+            string.getChars(offset, offset + n, buffer, length);
+            length += n;
+            offset += n;
+            count -= n;
+        }
+        return this;
+    }
+
+    /**
+     * Write the buffered characters to the output
+     *
+     * @throws  IOException         I/O error
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    /**
+     * Write the buffered characters and release the character buffer
+     *
+     * The output writer is not closed
+     *
+     * @throws  IOException         I/O error
+     */
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            flushBuffer();
+        } finally {
+            bufferCache.set(buffer);
+            buffer = null;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (length == 0) {
+            return;
+        }
+        if (out != null) {
+            out.write(buffer, 0, length);
+        } else {
+            sb.append(buffer, 0, length);
+        }
+        length = 0;
+    }
+}
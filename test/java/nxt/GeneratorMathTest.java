@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+public class GeneratorMathTest {
+
+    private static final long[] HITS = {0, 1, 2, 0xffffffffL, 0x100000000L, Long.MAX_VALUE, Long.MIN_VALUE, -2, -1};
+
+    private static final long[] BASE_TARGETS = {1, Constants.MIN_BASE_TARGET, Constants.INITIAL_BASE_TARGET,
+            Constants.INITIAL_BASE_TARGET * 50, Constants.MAX_BASE_TARGET};
+
+    private static final long[] BALANCES = {1, 1000, 1000000, Constants.MAX_BALANCE_NXT};
+
+    private static final int[] ELAPSED_TIMES = {-1, 0, 1, 2, 60, 3600, 3601, Integer.MAX_VALUE};
+
+    @Test
+    public void getHit() {
+        Random random = new Random(1);
+        byte[] hash = new byte[32];
+        for (int i = 0; i < 1000; i++) {
+            random.nextBytes(hash);
+            BigInteger expected = new BigInteger(1, new byte[] {hash[7], hash[6], hash[5], hash[4], hash[3], hash[2], hash[1], hash[0]});
+            Assert.assertEquals(expected, GeneratorMath.toBigInteger(GeneratorMath.getHit(hash)));
+        }
+    }
+
+    @Test
+    public void edgeCases() {
+        for (long hit : HITS) {
+            for (long baseTarget : BASE_TARGETS) {
+                for (long balance : BALANCES) {
+                    check(hit, baseTarget, balance);
+                    for (int elapsedTime : ELAPSED_TIMES) {
+                        check(hit, baseTarget, balance, elapsedTime);
+                    }
+                }
+            }
+        }
+        for (long hit : HITS) {
+            for (int elapsedTime : ELAPSED_TIMES) {
+                check(hit, 0, 1, elapsedTime);
+                check(hit, 1, 0, elapsedTime);
+            }
+        }
+    }
+
+    @Test
+    public void randomValues() {
+        Random random = new Random(2);
+        for (int i = 0; i < 100000; i++) {
+            long hit = random.nextLong();
+            long baseTarget = 1 + (random.nextLong() >>> 1) % Constants.MAX_BASE_TARGET;
+            long balance = 1 + (random.nextLong() >>> 1) % Constants.MAX_BALANCE_NXT;
+            if (random.nextBoolean()) {
+                baseTarget >>>= random.nextInt(48);
+                baseTarget = Math.max(baseTarget, 1);
+                balance >>>= random.nextInt(30);
+                balance = Math.max(balance, 1);
+            }
+            check(hit, baseTarget, balance);
+            check(hit, baseTarget, balance, random.nextInt(4000));
+            long quotient = GeneratorMath.divide(hit, baseTarget, balance);
+            check(hit, baseTarget, balance, (int)Math.min(quotient, Integer.MAX_VALUE));
+            check(hit, baseTarget, balance, (int)Math.min(quotient + 1, Integer.MAX_VALUE));
+            long hit2 = random.nextLong();
+            long balance2 = 1 + (random.nextLong() >>> 1) % Constants.MAX_BALANCE_NXT;
+            Assert.assertEquals(Integer.signum(GeneratorMath.toBigInteger(hit).multiply(BigInteger.valueOf(balance2))
+                    .compareTo(GeneratorMath.toBigInteger(hit2).multiply(BigInteger.valueOf(balance)))),
+                    Integer.signum(GeneratorMath.compareProducts(hit, balance2, hit2, balance)));
+        }
+    }
+
+    private static void check(long hit, long baseTarget, long balance) {
+        Assert.assertEquals(GeneratorMath.divideReference(hit, baseTarget, balance), GeneratorMath.divide(hit, baseTarget, balance));
+    }
+
+    private static void check(long hit, long baseTarget, long balance, int elapsedTime) {
+        Assert.assertEquals(GeneratorMath.isBelowTargetReference(hit, baseTarget, balance, elapsedTime),
+                GeneratorMath.isBelowTarget(hit, baseTarget, balance, elapsedTime));
+        Assert.assertEquals(GeneratorMath.isAbovePrevTargetReference(hit, baseTarget, balance, elapsedTime),
+                GeneratorMath.isAbovePrevTarget(hit, baseTarget, balance, elapsedTime));
+    }
+}
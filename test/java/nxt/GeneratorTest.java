@@ -20,8 +20,6 @@ import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
 
-import java.math.BigInteger;
-
 public class GeneratorTest extends BlockchainTest {
 
     /**
@@ -32,9 +30,9 @@ public class GeneratorTest extends BlockchainTest {
     public void forge() {
         byte[] publicKey = ALICE.getPublicKey();
         BlockImpl lastBlock = blockchain.getLastBlock();
-        BigInteger hit = Generator.getHit(publicKey, lastBlock);
+        long hit = Generator.getHit(publicKey, lastBlock);
         Account account = Account.getAccount(publicKey);
-        BigInteger effectiveBalance = BigInteger.valueOf(account == null || account.getEffectiveBalanceNXT() <= 0 ? 0 : account.getEffectiveBalanceNXT());
+        long effectiveBalance = account == null || account.getEffectiveBalanceNXT() <= 0 ? 0 : account.getEffectiveBalanceNXT();
         long hitTime = Generator.getHitTime(effectiveBalance, hit, lastBlock);
         long deadline = hitTime - lastBlock.getTimestamp();
         Generator generator = Generator.startForging(ALICE.getSecretPhrase());
@@ -85,6 +85,70 @@ public class Curve25519Test {
         }
     }
     
+    @Test
+    public void testFastAliceVector() {
+        checkVector(Curve25519Provider.FAST, ALICE_SECRET, ALICE_PUBLIC);
+    }
+
+    @Test
+    public void testFastBobVector() {
+        checkVector(Curve25519Provider.FAST, BOB_SECRET, BOB_PUBLIC);
+    }
+
+    @Test
+    public void testFastMatchesReference() {
+        SecureRandom random = new SecureRandom();
+        for (int i = 0; i < 200; i++) {
+            byte[] secret = new byte[32];
+            random.nextBytes(secret);
+            byte[] refSecret = secret.clone();
+            byte[] fastSecret = secret.clone();
+            byte[] refPub = new byte[32], refPriv = new byte[32];
+            byte[] fastPub = new byte[32], fastPriv = new byte[32];
+            Curve25519Provider.REFERENCE.keygen(refPub, refPriv, refSecret);
+            Curve25519Provider.FAST.keygen(fastPub, fastPriv, fastSecret);
+            assertArrayEquals(refSecret, fastSecret);
+            assertArrayEquals(refPub, fastPub);
+            assertArrayEquals(refPriv, fastPriv);
+
+            byte[] otherPub = new byte[32];
+            random.nextBytes(otherPub);
+            byte[] refShared = new byte[32], fastShared = new byte[32];
+            Curve25519Provider.REFERENCE.curve(refShared, refSecret, otherPub);
+            Curve25519Provider.FAST.curve(fastShared, fastSecret, otherPub);
+            assertArrayEquals(refShared, fastShared);
+
+            byte[] h = new byte[32];
+            random.nextBytes(h);
+            byte[] sig = new byte[32];
+            Curve25519Provider.REFERENCE.sign(sig, h, refSecret, refPriv);
+            if (i % 2 == 1) {
+                sig[i % 32] += 1;
+            }
+            byte[] refY = new byte[32], fastY = new byte[32];
+            Curve25519Provider.REFERENCE.verify(refY, sig, h, refPub);
+            Curve25519Provider.FAST.verify(fastY, sig, h, refPub);
+            assertArrayEquals(refY, fastY);
+            if (i % 2 == 0) {
+                assertArrayEquals(refPub, fastY);
+            }
+            Curve25519Provider.REFERENCE.verify(refY, sig, h, otherPub);
+            Curve25519Provider.FAST.verify(fastY, sig, h, otherPub);
+            assertArrayEquals(refY, fastY);
+        }
+    }
+
+    private void checkVector(Curve25519Provider provider, String secret, String pub) {
+        byte[] secretKey = Convert.parseHexString(secret);
+        byte[] publicKey = Convert.parseHexString(pub);
+
+        byte[] pubGen = new byte[32];
+        byte[] privGen = new byte[32];
+        provider.keygen(pubGen, privGen, secretKey);
+
+        assertArrayEquals(publicKey, pubGen);
+    }
+
     private void checkVector(String secret, String pub) {
         byte[] secretKey = Convert.parseHexString(secret);
         byte[] publicKey = Convert.parseHexString(pub);
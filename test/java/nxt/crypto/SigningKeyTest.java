@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.crypto;
+
+import nxt.Nxt;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+public class SigningKeyTest {
+
+    /**
+     * Enable the signing key store before SigningKeyStore reads its properties
+     */
+    @BeforeClass
+    public static void enableSigningKeyStore() throws Exception {
+        Field field = Nxt.class.getDeclaredField("properties");
+        field.setAccessible(true);
+        Properties properties = (Properties)field.get(null);
+        properties.setProperty("nxt.signingKeyCacheSize", "2");
+        properties.setProperty("nxt.signingKeyCacheApiKeys", "true");
+        properties.setProperty("nxt.signingKeyCacheTimeout", "1");
+    }
+
+    @Test
+    public void signWithKey() {
+        String secretPhrase = "signing key secret phrase";
+        byte[] message = "signing key message".getBytes(StandardCharsets.UTF_8);
+        SigningKey signingKey = SigningKey.fromSecretPhrase(secretPhrase);
+        Assert.assertArrayEquals(Crypto.getPublicKey(secretPhrase), signingKey.getPublicKey());
+        Assert.assertArrayEquals(SigningKey.fromPrivateKey(Crypto.getPrivateKey(secretPhrase)).getPublicKey(), signingKey.getPublicKey());
+        byte[] signature = Crypto.sign(message, signingKey);
+        Assert.assertArrayEquals(Crypto.sign(message, secretPhrase), signature);
+        Assert.assertTrue(Crypto.verify(signature, message, signingKey.getPublicKey(), true));
+        signingKey.wipe();
+        Assert.assertTrue(signingKey.isWiped());
+        try {
+            signingKey.sign(message);
+            Assert.fail("Signed with a wiped key");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void signingKeyStore() throws Exception {
+        String secretPhrase = "signing key store secret phrase";
+        byte[] message = "signing key store message".getBytes(StandardCharsets.UTF_8);
+        SigningKeyStore.clear();
+        //
+        // Keys derived for API requests are stored and reused
+        //
+        SigningKey signingKey = SigningKeyStore.getSigningKey(secretPhrase);
+        Assert.assertEquals(1, SigningKeyStore.size());
+        Assert.assertSame(signingKey, SigningKeyStore.getSigningKey(secretPhrase));
+        Assert.assertArrayEquals(SigningKey.fromSecretPhrase(secretPhrase).sign(message), signingKey.sign(message));
+        //
+        // Unused API keys expire
+        //
+        Thread.sleep(1100);
+        SigningKeyStore.removeExpired();
+        Assert.assertEquals(0, SigningKeyStore.size());
+        Assert.assertTrue(signingKey.isWiped());
+        //
+        // Keys of forging accounts are stored and do not expire
+        //
+        SigningKey forgingKey = SigningKeyStore.add(secretPhrase);
+        Assert.assertEquals(1, SigningKeyStore.size());
+        Assert.assertSame(forgingKey, SigningKeyStore.getSigningKey(secretPhrase));
+        Thread.sleep(1100);
+        SigningKeyStore.removeExpired();
+        Assert.assertSame(forgingKey, SigningKeyStore.getSigningKey(secretPhrase));
+        //
+        // The least recently used key is evicted when the store is full
+        //
+        SigningKey key1 = SigningKeyStore.getSigningKey("signing key store phrase 1");
+        SigningKey key2 = SigningKeyStore.getSigningKey("signing key store phrase 2");
+        Assert.assertEquals(2, SigningKeyStore.size());
+        Assert.assertTrue(forgingKey.isWiped());
+        Assert.assertFalse(key1.isWiped());
+        Assert.assertFalse(key2.isWiped());
+        //
+        // Removed keys are wiped
+        //
+        Assert.assertTrue(SigningKeyStore.remove(key1.getAccountId()));
+        Assert.assertTrue(key1.isWiped());
+        Assert.assertFalse(SigningKeyStore.remove(key1.getAccountId()));
+        Assert.assertFalse(SigningKeyStore.remove(forgingKey.getAccountId()));
+        SigningKeyStore.clear();
+        Assert.assertEquals(0, SigningKeyStore.size());
+        Assert.assertTrue(key2.isWiped());
+        Assert.assertArrayEquals(SigningKey.fromSecretPhrase(secretPhrase).sign(message),
+                SigningKeyStore.getSigningKey(secretPhrase).sign(message));
+        SigningKeyStore.clear();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.crypto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+public class VerifyBatchTest {
+
+    @Test
+    public void verifyBatch() {
+        Random random = new Random(1);
+        int count = 100;
+        byte[][] signatures = new byte[count][];
+        byte[][] messages = new byte[count][];
+        byte[][] publicKeys = new byte[count][];
+        BitSet expected = new BitSet();
+        for (int i = 0; i < count; i++) {
+            String secretPhrase = "batch secret phrase " + i;
+            messages[i] = new byte[10 + random.nextInt(100)];
+            random.nextBytes(messages[i]);
+            signatures[i] = Crypto.sign(messages[i], secretPhrase);
+            publicKeys[i] = Crypto.getPublicKey(secretPhrase);
+            switch (i % 4) {
+                case 1:
+                    messages[i][0] ^= 1;
+                    break;
+                case 2:
+                    publicKeys[i] = Crypto.getPublicKey(secretPhrase + "x");
+                    break;
+                case 3:
+                    signatures[i] = new byte[63];
+                    break;
+                default:
+                    expected.set(i);
+            }
+            Assert.assertEquals(expected.get(i), Crypto.verify(signatures[i], messages[i], publicKeys[i], true));
+        }
+        Assert.assertEquals(expected, Crypto.verifyBatch(signatures, messages, publicKeys, true));
+        Assert.assertEquals(new BitSet(), Crypto.verifyBatch(new byte[0][], new byte[0][], new byte[0][], true));
+    }
+}
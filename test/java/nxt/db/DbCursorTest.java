@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.db;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+public class DbCursorTest {
+
+    @Test
+    public void parse() {
+        DbCursor cursor = new DbCursor(123456789L, -1L);
+        DbCursor parsed = DbCursor.parse(cursor.toString());
+        Assert.assertArrayEquals(cursor.getValues(), parsed.getValues());
+        try {
+            DbCursor.parse("AAAA");
+            Assert.fail("Invalid cursor accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            cursor.getClause(" ORDER BY db_id DESC ");
+            Assert.fail("Cursor accepted for a different sort order");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void pages() throws SQLException {
+        try (Connection con = DriverManager.getConnection("jdbc:h2:mem:cursor_test")) {
+            try (Statement stmt = con.createStatement()) {
+                stmt.executeUpdate("CREATE TABLE test (db_id IDENTITY, quantity BIGINT NOT NULL, height INT NOT NULL)");
+            }
+            try (PreparedStatement pstmt = con.prepareStatement("INSERT INTO test (quantity, height) VALUES (?, ?)")) {
+                for (int i = 0; i < 100; i++) {
+                    pstmt.setLong(1, i % 7);
+                    pstmt.setInt(2, i / 3);
+                    pstmt.executeUpdate();
+                }
+            }
+            for (String sort : new String[] {" ORDER BY height DESC, db_id DESC ", " ORDER BY quantity DESC, db_id ",
+                    " ORDER BY test.quantity, test.height DESC, test.db_id "}) {
+                List<Long> expected = new ArrayList<>();
+                try (PreparedStatement pstmt = con.prepareStatement("SELECT * FROM test" + sort);
+                     DbIterator<Long> iterator = new DbIterator<>(null, pstmt, (c, rs) -> rs.getLong("db_id"))) {
+                    iterator.forEachRemaining(expected::add);
+                }
+                List<Long> actual = new ArrayList<>();
+                DbCursor cursor = null;
+                do {
+                    DbClause clause = cursor == null ? DbClause.EMPTY_CLAUSE : cursor.getClause(sort);
+                    PreparedStatement pstmt = con.prepareStatement("SELECT * FROM test WHERE " + clause.getClause() + sort + " LIMIT 9");
+                    clause.set(pstmt, 1);
+                    try (DbIterator<Long> iterator = new DbIterator<>(null, pstmt, (c, rs) -> rs.getLong("db_id"), sort)) {
+                        iterator.forEachRemaining(actual::add);
+                        cursor = iterator.getCursor();
+                    }
+                } while (cursor != null);
+                Assert.assertEquals(sort, expected, actual);
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.http;
+
+import nxt.Nxt;
+import org.eclipse.jetty.util.MultiMap;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+public class APIProxyCacheTest {
+
+    /**
+     * Use a small cache before APIProxyCache reads its properties
+     */
+    @BeforeClass
+    public static void configureCache() throws Exception {
+        Field field = Nxt.class.getDeclaredField("properties");
+        field.setAccessible(true);
+        Properties properties = (Properties)field.get(null);
+        properties.setProperty("nxt.apiProxyCacheSize", "1");
+        properties.setProperty("nxt.apiProxyCacheTimeout", "600");
+        properties.setProperty("nxt.apiProxyCacheConfirmations", "10");
+    }
+
+    @Test
+    public void cacheKey() {
+        MultiMap<String> parameters = new MultiMap<>();
+        parameters.add("requestType", "getBlock");
+        Assert.assertNull(APIProxyCache.getKey("getBlock", parameters));
+        parameters.add("block", "123");
+        parameters.add("random", "0.5");
+        String key = APIProxyCache.getKey("getBlock", parameters);
+        Assert.assertNotNull(key);
+        //
+        // The key does not depend on the parameter order or on the random parameter
+        //
+        MultiMap<String> reordered = new MultiMap<>();
+        reordered.add("random", "0.7");
+        reordered.add("block", "123");
+        reordered.add("requestType", "getBlock");
+        Assert.assertEquals(key, APIProxyCache.getKey("getBlock", reordered));
+        parameters.add("includeTransactions", "true");
+        Assert.assertNotEquals(key, APIProxyCache.getKey("getBlock", parameters));
+        MultiMap<String> transaction = new MultiMap<>();
+        transaction.add("transaction", "123");
+        Assert.assertNotNull(APIProxyCache.getKey("getTransaction", transaction));
+        Assert.assertNotNull(APIProxyCache.getKey("getTransactionBytes", transaction));
+        Assert.assertNotEquals(APIProxyCache.getKey("getTransaction", transaction),
+                APIProxyCache.getKey("getTransactionBytes", transaction));
+        Assert.assertNull(APIProxyCache.getKey("getAccount", transaction));
+    }
+
+    @Test
+    public void confirmations() {
+        String key = "getTransaction\ntransaction\u00001";
+        APIProxyCache.put(key, "getTransaction", "text/plain", bytes("{\"confirmations\":9}"));
+        Assert.assertNull(APIProxyCache.get(key));
+        APIProxyCache.put(key, "getTransaction", "text/plain", bytes("{\"confirmations\":10,\"phased\":true}"));
+        Assert.assertNull(APIProxyCache.get(key));
+        APIProxyCache.put(key, "getTransaction", "text/plain", bytes("{\"errorCode\":5,\"confirmations\":10}"));
+        Assert.assertNull(APIProxyCache.get(key));
+        APIProxyCache.put(key, "getTransaction", "text/plain", bytes("not json"));
+        Assert.assertNull(APIProxyCache.get(key));
+        byte[] content = bytes("{\"confirmations\":10}");
+        APIProxyCache.put(key, "getTransaction", "text/plain", content);
+        APIProxyCache.CachedResponse response = APIProxyCache.get(key);
+        Assert.assertNotNull(response);
+        Assert.assertArrayEquals(content, response.getContent());
+        Assert.assertEquals("text/plain", response.getContentType());
+        //
+        // A block is cached once it has a next block
+        //
+        String blockKey = "getBlock\nblock\u00001";
+        APIProxyCache.put(blockKey, "getBlock", "text/plain", bytes("{\"height\":1}"));
+        Assert.assertNull(APIProxyCache.get(blockKey));
+        APIProxyCache.put(blockKey, "getBlock", "text/plain", bytes("{\"height\":1,\"nextBlock\":\"2\"}"));
+        Assert.assertNotNull(APIProxyCache.get(blockKey));
+    }
+
+    @Test
+    public void eviction() {
+        //
+        // Responses larger than 1/8 of the cache are not cached
+        //
+        StringBuilder sb = new StringBuilder("{\"nextBlock\":\"1\",\"payload\":\"");
+        while (sb.length() < 1024 / 8) {
+            sb.append('x');
+        }
+        sb.append("\"}");
+        APIProxyCache.put("large", "getBlock", null, bytes(sb.toString()));
+        Assert.assertNull(APIProxyCache.get("large"));
+        //
+        // The least recently used response is removed when the cache is full
+        //
+        byte[] content = bytes("{\"nextBlock\":\"1\",\"payload\":\"xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx\"}");
+        int count = 1024 / content.length;
+        for (int i = 0; i < count; i++) {
+            APIProxyCache.put("block" + i, "getBlock", null, content);
+        }
+        Assert.assertNotNull(APIProxyCache.get("block0"));
+        APIProxyCache.put("block" + count, "getBlock", null, content);
+        Assert.assertNotNull(APIProxyCache.get("block0"));
+        Assert.assertNull(APIProxyCache.get("block1"));
+        for (int i = 2; i <= count; i++) {
+            Assert.assertNotNull(APIProxyCache.get("block" + i));
+        }
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.http;
+
+import nxt.BlockchainTest;
+import nxt.util.Logger;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BatchTest extends BlockchainTest {
+
+    @Test
+    public void isAllowed() {
+        Assert.assertTrue(Batch.isAllowed(GetBlock.instance));
+        Assert.assertTrue(Batch.isAllowed(GetTaggedData.instance));
+        Assert.assertFalse(Batch.isAllowed(Batch.instance));
+        Assert.assertFalse(Batch.isAllowed(SendMoney.instance));
+        Assert.assertFalse(Batch.isAllowed(DownloadTaggedData.instance));
+        Assert.assertFalse(Batch.isAllowed(DownloadPrunableMessage.instance));
+    }
+
+    @Test
+    public void batch() throws InterruptedException {
+        JSONArray requests = new JSONArray();
+        requests.add(request("getBlock"));
+        JSONObject unknownBlock = request("getBlock");
+        unknownBlock.put("block", "1");
+        requests.add(unknownBlock);
+        requests.add(request("getBlockchainStatus"));
+        JSONObject getAccount = request("getAccount");
+        getAccount.put("account", ALICE.getStrId());
+        requests.add(getAccount);
+        requests.add(request("sendMoney"));
+        requests.add(request("getBlock"));
+
+        // The blocks are generated while the batches are processed
+        Thread generator = new Thread(() -> generateBlocks(5));
+        generator.start();
+        try {
+            for (int i = 0; i < 10; i++) {
+                JSONObject response = new APICall.Builder("batch").
+                        param("requests", requests.toJSONString()).
+                        build().invoke();
+                Logger.logDebugMessage("batch: " + response);
+                Assert.assertNull(response.get("errorCode"));
+                long height = (Long)response.get("height");
+                String lastBlock = (String)response.get("lastBlock");
+                JSONArray responses = (JSONArray)response.get("responses");
+                Assert.assertEquals(requests.size(), responses.size());
+                // Responses in request order, all at the same height
+                JSONObject block = (JSONObject)responses.get(0);
+                Assert.assertEquals(lastBlock, block.get("block"));
+                Assert.assertEquals(height, block.get("height"));
+                Assert.assertEquals(5L, ((JSONObject)responses.get(1)).get("errorCode"));
+                JSONObject status = (JSONObject)responses.get(2);
+                Assert.assertEquals(lastBlock, status.get("lastBlock"));
+                Assert.assertEquals(height + 1, status.get("numberOfBlocks"));
+                Assert.assertEquals(ALICE.getStrId(), ((JSONObject)responses.get(3)).get("account"));
+                Assert.assertNotNull(((JSONObject)responses.get(4)).get("errorCode"));
+                block = (JSONObject)responses.get(5);
+                Assert.assertEquals(lastBlock, block.get("block"));
+                Assert.assertEquals(height, block.get("height"));
+            }
+        } finally {
+            generator.join();
+        }
+    }
+
+    private static JSONObject request(String requestType) {
+        JSONObject request = new JSONObject();
+        request.put("requestType", requestType);
+        return request;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.http;
+
+import nxt.BlockchainTest;
+import nxt.Constants;
+import nxt.Nxt;
+import nxt.Tester;
+import nxt.util.Logger;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BroadcastTransactionsTest extends BlockchainTest {
+
+    @Test
+    public void broadcastTransactions() {
+        JSONObject aliceTransaction = createTransaction(ALICE, BOB, 100 * Constants.ONE_NXT);
+        long bobAmount1 = BOB.getInitialUnconfirmedBalance() / 10 * 6;
+        long bobAmount2 = BOB.getInitialUnconfirmedBalance() / 2;
+        JSONObject bobTransaction1 = createTransaction(BOB, CHUCK, bobAmount1);
+        JSONObject bobTransaction2 = createTransaction(BOB, DAVE, bobAmount2);
+        JSONObject chuckTransaction = createTransaction(CHUCK, DAVE, 10 * Constants.ONE_NXT);
+        JSONObject response = new APICall.Builder("broadcastTransaction").
+                param("transactionBytes", (String)chuckTransaction.get("transactionBytes")).
+                build().invoke();
+        Logger.logDebugMessage("broadcastTransaction: " + response);
+        Assert.assertEquals(chuckTransaction.get("transaction"), response.get("transaction"));
+
+        JSONArray transactions = new JSONArray();
+        transactions.add(aliceTransaction.get("transactionBytes"));
+        transactions.add("zz");
+        transactions.add(aliceTransaction.get("transactionBytes"));
+        transactions.add(bobTransaction1.get("transactionBytes"));
+        transactions.add(bobTransaction2.get("transactionBytes"));
+        transactions.add(chuckTransaction.get("transactionBytes"));
+        response = new APICall.Builder("broadcastTransactions").
+                param("transactions", transactions.toJSONString()).
+                build().invoke();
+        Logger.logDebugMessage("broadcastTransactions: " + response);
+
+        // Results in request order
+        JSONArray results = (JSONArray)response.get("transactions");
+        Assert.assertEquals(6, results.size());
+        Assert.assertEquals(aliceTransaction.get("transaction"), ((JSONObject)results.get(0)).get("transaction"));
+        Assert.assertEquals(4L, ((JSONObject)results.get(1)).get("errorCode"));
+        Assert.assertEquals(aliceTransaction.get("transaction"), ((JSONObject)results.get(2)).get("transaction"));
+        Assert.assertEquals(bobTransaction1.get("transaction"), ((JSONObject)results.get(3)).get("transaction"));
+        Assert.assertEquals(4L, ((JSONObject)results.get(4)).get("errorCode"));
+        Assert.assertTrue(((String)((JSONObject)results.get(4)).get("errorDescription")).contains("Insufficient balance"));
+        Assert.assertEquals(chuckTransaction.get("transaction"), ((JSONObject)results.get(5)).get("transaction"));
+        Assert.assertEquals(4L, response.get("accepted"));
+
+        // Accepted transactions are in the unconfirmed pool, each one only once
+        Assert.assertNotNull(getUnconfirmedTransaction(aliceTransaction));
+        Assert.assertNotNull(getUnconfirmedTransaction(bobTransaction1));
+        Assert.assertNotNull(getUnconfirmedTransaction(chuckTransaction));
+        Assert.assertNull(getUnconfirmedTransaction(bobTransaction2));
+        Assert.assertEquals(-100 * Constants.ONE_NXT - Constants.ONE_NXT, ALICE.getUnconfirmedBalanceDiff());
+        Assert.assertEquals(-10 * Constants.ONE_NXT - Constants.ONE_NXT, CHUCK.getUnconfirmedBalanceDiff());
+
+        // The rejected transaction leaves no unconfirmed balance change
+        Assert.assertEquals(-bobAmount1 - Constants.ONE_NXT, BOB.getUnconfirmedBalanceDiff());
+        Assert.assertEquals(0, DAVE.getUnconfirmedBalanceDiff());
+
+        generateBlock();
+        Assert.assertEquals(-100 * Constants.ONE_NXT - Constants.ONE_NXT, ALICE.getBalanceDiff());
+        Assert.assertEquals(100 * Constants.ONE_NXT - bobAmount1 - Constants.ONE_NXT, BOB.getBalanceDiff());
+        Assert.assertEquals(10 * Constants.ONE_NXT, DAVE.getBalanceDiff());
+    }
+
+    private static JSONObject createTransaction(Tester sender, Tester recipient, long amountNQT) {
+        JSONObject response = new APICall.Builder("sendMoney").
+                param("secretPhrase", sender.getSecretPhrase()).
+                param("recipient", recipient.getStrId()).
+                param("amountNQT", amountNQT).
+                param("feeNQT", Constants.ONE_NXT).
+                param("broadcast", "false").
+                build().invoke();
+        Logger.logDebugMessage("sendMoney: " + response);
+        Assert.assertNotNull(response.get("transactionBytes"));
+        return response;
+    }
+
+    private static Object getUnconfirmedTransaction(JSONObject transaction) {
+        return Nxt.getTransactionProcessor().getUnconfirmedTransaction(Long.parseUnsignedLong((String)transaction.get("transaction")));
+    }
+}
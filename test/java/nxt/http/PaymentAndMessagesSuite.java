@@ -22,6 +22,8 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
         SendMoneyTest.class,
+        BroadcastTransactionsTest.class,
+        BatchTest.class,
         SendMessageTest.class,
         LeaseTest.class,
         MessageEncryptionTest.class
@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HistogramTest {
+
+    @Test
+    public void percentiles() {
+        Histogram histogram = new Histogram();
+        Assert.assertEquals(0, histogram.getSnapshot().getP99());
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i);
+        }
+        Histogram.Snapshot snapshot = histogram.getSnapshot();
+        Assert.assertEquals(10000, snapshot.getCount());
+        Assert.assertEquals(50005000, snapshot.getSum());
+        Assert.assertEquals(10000, snapshot.getMax());
+        assertWithin(5000, snapshot.getP50());
+        assertWithin(9000, snapshot.getP90());
+        assertWithin(9900, snapshot.getP99());
+    }
+
+    @Test
+    public void limits() {
+        Histogram histogram = new Histogram();
+        histogram.record(-1);
+        histogram.record(Long.MAX_VALUE);
+        Histogram.Snapshot snapshot = histogram.getSnapshot();
+        Assert.assertEquals(0, snapshot.getP50());
+        Assert.assertEquals(Long.MAX_VALUE, snapshot.getMax());
+        Assert.assertEquals(Long.MAX_VALUE, snapshot.getP99());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        Assert.assertTrue("Expected " + expected + " but was " + actual,
+                actual >= expected && actual <= expected + expected / 16);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2013-2016 The Nxt Core Developers.
+ * Copyright © 2016-2018 Jelurida IP B.V.
+ *
+ * See the LICENSE.txt file at the top-level directory of this distribution
+ * for licensing information.
+ *
+ * Unless otherwise agreed in a custom licensing agreement with Jelurida B.V.,
+ * no part of the Nxt software, including this file, may be copied, modified,
+ * propagated, or distributed except according to the terms contained in the
+ * LICENSE.txt file.
+ *
+ * Removal or modification of this copyright notice is prohibited.
+ *
+ */
+
+package nxt.util;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.json.simple.parser.ParseException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+public class JSONReaderWriterTest {
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject createObject() {
+        JSONObject json = new JSONObject();
+        json.put("string", "quote \" backslash \\ slash / tab \t newline \n control \u0001 \u0085 \u2028 \ud83d\ude00");
+        json.put("long", Long.MIN_VALUE);
+        json.put("maxLong", Long.MAX_VALUE);
+        json.put("int", -42);
+        json.put("double", 1.5e-7);
+        json.put("true", true);
+        json.put("false", false);
+        json.put("null", null);
+        JSONArray array = new JSONArray();
+        array.add(0L);
+        array.add("");
+        array.add(new JSONObject());
+        array.add(new JSONArray());
+        json.put("array", array);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            sb.append((char)('a' + i % 26));
+        }
+        json.put("large", sb.toString());
+        return json;
+    }
+
+    @Test
+    public void write() throws IOException {
+        JSONObject json = createObject();
+        StringWriter writer = new StringWriter();
+        JSON.writeJSONString(json, writer);
+        Assert.assertEquals(JSONValue.toJSONString(json), writer.toString());
+        Assert.assertEquals(JSONValue.toJSONString(json), JSON.toJSONString(json));
+    }
+
+    @Test
+    public void read() throws IOException, ParseException {
+        JSONObject json = createObject();
+        String string = JSON.toJSONString(json);
+        Object expected = JSONValue.parseWithException(string);
+        Assert.assertEquals(expected, JSON.parse(string));
+        Assert.assertEquals(expected, JSON.parse(new StringReader(string)));
+        Assert.assertEquals(expected, JSON.parse(" \n" + string + "\t "));
+        Assert.assertEquals(JSONValue.parse("[{\"a\":1},-2.5E2,\"\\u00e9\"]"), JSON.parse(" [ {\"a\" : 1 } , -2.5E2 , \"\\u00e9\" ] "));
+        for (String invalid : new String[] {"", "{", "{\"a\":}", "[1,]", "[1 2]", "\"abc", "tru", "{} x", "99999999999999999999"}) {
+            try {
+                JSON.parse(invalid);
+                Assert.fail("Invalid JSON accepted: " + invalid);
+            } catch (ParseException expectedException) {
+            }
+        }
+    }
+
+    @Test
+    public void readNested() throws ParseException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("[{\"a\":");
+        }
+        sb.append("1");
+        for (int i = 0; i < 100; i++) {
+            sb.append("}]");
+        }
+        Assert.assertEquals(JSONValue.parse(sb.toString()), JSON.parse(sb.toString()));
+        sb.setLength(0);
+        for (int i = 0; i < 100000; i++) {
+            sb.append('[');
+        }
+        try {
+            JSON.parse(sb.toString());
+            Assert.fail("Deeply nested JSON accepted");
+        } catch (ParseException expectedException) {
+        }
+    }
+}